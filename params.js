@@ -35,6 +35,22 @@ var NumBots = 3;
 //this is the maximum number of search cycles allocated to *all* current path
 // planning searches per update
 var MaxSearchCyclesPerUpdateStep = 1000;
+
+//the number of threads searches for positions run on, 0 to cycle them on the
+//game thread with the budget above instead, and how long in milliseconds a
+//search runs on a worker before letting the others have a turn. Searches for
+//items read the triggers as the game changes them, so they always use the
+//budget above on the game thread
+var PathSearchThreads = 2;
+var PathSearchSliceMs = 2;
+
+//the number of threads the bots think on, 0 to update them one by one on
+//the game thread, and the seed of the game's random numbers, 0 to seed from
+//the clock. With a seed the bots play out the same whatever the number of
+//threads, and path searches run on the game thread whatever
+//PathSearchThreads says, as a worker may finish a search on any update
+var BotUpdateThreads = 2;
+var RandomSeed = 0;
 var StartMap = "maps/emptyMap1.raven";
 var StartPaused = true;
 
@@ -82,6 +98,9 @@ var Bot_VisionUpdateFreq = 4;
 //the bot's field of view (in degrees)
 var Bot_FOV = 180;
 
+//how far a bot can see. Only the bots this close are tested for line of sight
+var Bot_VisionRange = 1000;
+
 //the bot's reaction time (in seconds)
 var Bot_ReactionTime = 0.2;
 
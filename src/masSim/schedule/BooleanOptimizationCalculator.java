@@ -26,6 +26,7 @@ import org.sat4j.specs.IVecInt;
 import org.sat4j.specs.TimeoutException;
 
 import masSim.schedule.AgentScheduleQualities;
+import raven.Main;
 import raven.MeasureTime;
 
 public class BooleanOptimizationCalculator extends BestAgentCalculatorBase implements ILogAble {
@@ -34,11 +35,29 @@ public class BooleanOptimizationCalculator extends BestAgentCalculatorBase imple
 	final int TASKID = 1;
 	private String log = "";
 	
+	//Optional solver kept across negotiation rounds. When null, a new solver is built for every problem
+	private IncrementalAssignmentSolver incrementalSolver = null;
+	
 	public BooleanOptimizationCalculator(String instanceName, int numberOfAgents, int numberOfTasks)
 	{
 		super(instanceName, numberOfAgents, numberOfTasks);
 	}
 	
+	public BooleanOptimizationCalculator(String instanceName, int numberOfAgents, int numberOfTasks, IncrementalAssignmentSolver incrementalSolver)
+	{
+		this(instanceName, numberOfAgents, numberOfTasks);
+		this.incrementalSolver = incrementalSolver;
+	}
+	
+	//When set, the OPB form of every problem is written to this file for debugging. Problems are otherwise
+	//built directly in the solver without any string or disk I/O
+	private String opbDumpFile = null;
+	
+	public void setOpbDumpFile(String filename)
+	{
+		this.opbDumpFile = filename;
+	}
+	
 	@Override
 	public List<List<Integer>> GetBestAgent()
 	{
@@ -46,11 +65,42 @@ public class BooleanOptimizationCalculator extends BestAgentCalculatorBase imple
 		MeasureTime.Timer.Start();
 		
 		List<List<Integer>> selectedAgentsForTasks = new ArrayList<List<Integer>>();
+		if (opbDumpFile!=null)
+		{
+			MeasureTime.Timer.Stop();
+			DumpOPBInput(opbDumpFile);
+			MeasureTime.Timer.Resume();
+		}
+		List<List<Integer>> variableMappingToAgentTaskCombination = new ArrayList<List<Integer>>();
+		int[] model;
+		if (incrementalSolver!=null)
+			model = incrementalSolver.Solve(this.agentScheduleQualities, variableMappingToAgentTaskCombination);
+		else
+			model = SolveOptimizationProblem(this.agentScheduleQualities, variableMappingToAgentTaskCombination);
+		if (model!=null)
+		{
+			for(int r=0; r<model.length; r++)
+			{
+				if (model[r]>0) 
+				{
+					selectedAgentsForTasks.add(variableMappingToAgentTaskCombination.get(model[r]-1));
+				}
+			}
+		}
+		MeasureTime.Timer.Stop();
+		System.out.println("PB Calculation Took " + MeasureTime.Timer.GetTotal());
+		if (incrementalSolver!=null)
+		{
+			Main.Message(debugFlag, "[BooleanOptimizationCalculator] Round " + incrementalSolver.getRounds() + (incrementalSolver.WasLastRoundWarmStarted() ? " warm" : " cold")
+					+ " solve took " + incrementalSolver.getLastSolveTime() + " with " + incrementalSolver.getLastConflicts() + " conflicts");
+		}
+		return selectedAgentsForTasks;
+	}
+	
+	private void DumpOPBInput(String filename)
+	{
 		Map<String, List<Integer>> variableNameMappingToAgentTaskCombination = new HashMap<String, List<Integer>>();
-		
 		String result = BuildOPBInput( this.agentScheduleQualities, variableNameMappingToAgentTaskCombination, this.numberOfTasksInNegotiation );
-		String filename = "E:\\EclipseWorkspace\\RoverSim\\TaskRepository\\problemDynamic.opb";
-		MeasureTime.Timer.Stop();
 		try (Writer writer = new BufferedWriter(new OutputStreamWriter(
 	        new FileOutputStream(filename), "US-ASCII"))) {
 			writer.write(result);
@@ -59,22 +109,6 @@ public class BooleanOptimizationCalculator extends BestAgentCalculatorBase imple
 		{
 			System.out.print(ex);
 		}
-		MeasureTime.Timer.Resume();
-		int[] result2 = Solve("E:\\EclipseWorkspace\\RoverSim\\TaskRepository\\problemDynamic.opb");
-		List<Integer> resultList = new ArrayList<Integer>();
-		System.out.println(Arrays.toString(resultList.toArray()));
-		for(int r=0; r<result2.length; r++)
-		{
-			if (result2[r]>0) 
-			{
-				resultList.add(result2[r]);
-				List<Integer> selectedAgent = variableNameMappingToAgentTaskCombination.get("x" + result2[r]);
-				selectedAgentsForTasks.add(selectedAgent);
-			}
-		}
-		MeasureTime.Timer.Stop();
-		System.out.println("PB Calculation Took " + MeasureTime.Timer.GetTotal());
-		return selectedAgentsForTasks;
 	}
 	
 	public String BuildOPBInput(ArrayList<AgentScheduleQualities> input, Map<String, List<Integer>> variableNameMappingToAgentTastCombination, int numberOfTasks)
@@ -92,8 +126,9 @@ public class BooleanOptimizationCalculator extends BestAgentCalculatorBase imple
 		int agentsSize = agentIds.size();
 				
 		Map<Integer,List<String>> constraintsPerTask = new HashMap<Integer, List<String>>();
+		List<List<String>> constraintsPerAgent = new ArrayList<List<String>>();
 		
-		opb.append(  String.format("* #variable= %1$s #constraint= %2$s%3$s", agentsSize * taskCombinationsSize, numberOfTasks, System.lineSeparator()));
+		opb.append(  String.format("* #variable= %1$s #constraint= %2$s%3$s", agentsSize * taskCombinationsSize, numberOfTasks + agentsSize, System.lineSeparator()));
 		opb.append("min:");
 		int i = 1;
 		String variableMappingCommentBlock = "* ";
@@ -101,6 +136,8 @@ public class BooleanOptimizationCalculator extends BestAgentCalculatorBase imple
 		{
 			int agentVariable = input.get(agent).AgentVariableId;
 			List<MultipleTaskScheduleQualities> qls = input.get(agent).TaskQualities;
+			List<String> agentVariables = new ArrayList<String>();
+			constraintsPerAgent.add(agentVariables);
 			for(int j=0;j<qls.size();j++)
 			{
 				if(!qls.get(j).TaskIds.isEmpty())
@@ -124,6 +161,7 @@ public class BooleanOptimizationCalculator extends BestAgentCalculatorBase imple
 						opb.append(" " + quality + " " + variableName);
 					variableMappingCommentBlock += variableName + "=" + agentVariable + Arrays.toString(t.TaskIds.toArray()) + " ";
 					AddPBVariableToConstraintsList(constraintsPerTask, variableName, t.TaskIds);
+					agentVariables.add(variableName);
 				}
 			}
 		}
@@ -137,6 +175,16 @@ public class BooleanOptimizationCalculator extends BestAgentCalculatorBase imple
 			}
 			opb.append( "= 1;" + System.lineSeparator() );
 		}
+		//Each agent executes at most one of its task combinations
+		for(List<String> constraintsForAnAgent : constraintsPerAgent)
+		{
+			if (constraintsForAnAgent.isEmpty()) continue;
+			for(String str : constraintsForAnAgent)
+			{
+				opb.append( "-1 " + str + " "  );
+			}
+			opb.append( ">= -1;" + System.lineSeparator() );
+		}
 		return opb.toString();
 	}
 	
@@ -159,81 +207,94 @@ public class BooleanOptimizationCalculator extends BestAgentCalculatorBase imple
 	
 	public int[] SolveOptimizationProblem(ArrayList<AgentScheduleQualities> qualities)
 	{
-		int[] result;
+		return SolveOptimizationProblem(qualities, new ArrayList<List<Integer>>());
+	}
+	
+	//Builds the same problem as BuildOPBInput directly in the solver and solves it to optimality. Variable v of the
+	//returned model corresponds to the agent and task combination at position v-1 of the mapping list, which
+	//contains the agent id followed by the task ids
+	public int[] SolveOptimizationProblem(ArrayList<AgentScheduleQualities> qualities, List<List<Integer>> variableMappingToAgentTaskCombination)
+	{
 		try 
 		{
-			int numberOfAgents = qualities.size();
-			int numberOfTasks = qualities.get(0).TaskQualities.size();//Assuming all agents report qualities equally for all tasks
-			int numberOfVariables = numberOfAgents * numberOfTasks;
-			
-			ASolverFactory<IPBSolver> factory = SolverFactory.instance();
-			IPBSolver solver = factory.defaultSolver();
-			solver = new PseudoOptDecorator(solver);
-			solver.setVerbose(false);
-			solver.reset();
-			solver.newVar(numberOfVariables);
-			
 			IVecInt objectiveVars = new VecInt();
 			IVec<BigInteger> objectiveCoeffs = new Vec<BigInteger>();
-			
-			StringBuilder opb = new StringBuilder();
-			int i = 1;
+			Map<Integer, IVecInt> constraintVarsPerTask = new HashMap<Integer, IVecInt>();
+			List<IVecInt> constraintVarsPerAgent = new ArrayList<IVecInt>();
+			int variableNumber = 1;
 			for(AgentScheduleQualities ql : qualities)
 			{
-				/*for(TaskScheduleQualities tl : ql.TaskQualities)
+				IVecInt agentVars = new VecInt();
+				constraintVarsPerAgent.add(agentVars);
+				for(MultipleTaskScheduleQualities t : ql.TaskQualities)
 				{
-					int [] mapping = new int[2];
-					mapping[AGENTID] = ql.AgentVariableId;
-					mapping[TASKID] = tl.TaskId;
-					int variableNumber = i++;
-					String variableName = "x" + variableNumber;
-					dictionary.put(variableName,mapping);
-					int diff = tl.diff() * -1;
-					objectiveCoeffs.push( BigInteger.valueOf(diff) );
+					if (t.TaskIds.isEmpty()) continue;
+					List<Integer> mapping = new ArrayList<Integer>();
+					mapping.add(ql.AgentVariableId);
+					mapping.addAll(t.TaskIds);
+					variableMappingToAgentTaskCombination.add(mapping);
+					//Negated to convert the min function to max
+					objectiveCoeffs.push(BigInteger.valueOf(-t.diff()));
 					objectiveVars.push(variableNumber);
-				}*/
-			}
-			IVecInt[] constraintCoeffs = new VecInt[numberOfTasks];
-			IVecInt[] constraintVars = new VecInt[numberOfTasks];
-			for(int j=1;j<=numberOfTasks;j++)
-			{
-				constraintVars[j-1] = new VecInt();
-				constraintCoeffs[j-1] = new VecInt();
+					for(Integer taskId : t.TaskIds)
+					{
+						IVecInt vars = constraintVarsPerTask.get(taskId);
+						if (vars==null)
+						{
+							vars = new VecInt();
+							constraintVarsPerTask.put(taskId, vars);
+						}
+						vars.push(variableNumber);
+					}
+					agentVars.push(variableNumber);
+					variableNumber++;
+				}
 			}
-			int index = 1;
-			for(int k=1;k<=numberOfAgents;k++)
+			
+			IPBSolver solver = new PseudoOptDecorator(SolverFactory.newDefault());
+			solver.setVerbose(false);
+			solver.setTimeoutMs(1000);
+			solver.newVar(variableNumber-1);
+			for(IVecInt vars : constraintVarsPerTask.values())
 			{
-				for(int j=1;j<=numberOfTasks;j++)
-				{
-					constraintVars[j-1].push(index++);
-					constraintCoeffs[j-1].push(1);
-				}	
+				IVecInt coeffs = new VecInt();
+				for(int j=0;j<vars.size();j++) coeffs.push(1);
+				solver.addExactly(vars, coeffs, 1);//weight is always 1 in our problems
 			}
-			for(int j=1;j<=numberOfTasks;j++)
+			//Each agent executes at most one of its task combinations
+			for(IVecInt vars : constraintVarsPerAgent)
 			{
-				
-					solver.addExactly(constraintVars[j-1], constraintCoeffs[j-1], 1);//weight is always 1 in our problems
-				
+				if (vars.size()>1) solver.addAtMost(vars, 1);
 			}
 			solver.setObjectiveFunction(new ObjectiveFunction(objectiveVars,objectiveCoeffs));
-			IOptimizationProblem problem = (IOptimizationProblem)solver;
-			PrintWriter out = new PrintWriter(System.out, true);
-			long beginTime = 0;
-			long nano = System.nanoTime();
-			//MeasureTime.Timer = new MeasureTime();
-			//MeasureTime.Timer.Start();
-			problem.isSatisfiable(new VecInt(), true);
-			//ILauncherMode.OPTIMIZATION.solve(problem, new OPBReader2012(solver), this, out, beginTime);
-			//MeasureTime.Timer.Stop();
-			//System.out.println("Boolean Solver (direct) Took (microseconds) " + MeasureTime.Timer2.GetTotal() );
-			if (false) throw new TimeoutException();
-			return problem.model();
+			return SolveToOptimality((IOptimizationProblem)solver);
 		} catch (ContradictionException e) {
-			e.printStackTrace();
-		} catch (TimeoutException e) {
-			e.printStackTrace();
+			Main.Message(debugFlag, "[BooleanOptimizationCalculator] Problem is unsatisfiable " + e.getMessage());
 		}
 		return null;
+	}
+	
+	//Repeatedly asks for a better solution until the solver proves none exists, returning the last model found
+	private int[] SolveToOptimality(IOptimizationProblem problem)
+	{
+		int[] model = null;
+		try
+		{
+			while (problem.admitABetterSolution())
+			{
+				model = problem.model();
+				problem.discardCurrentSolution();
+			}
+		}
+		catch (ContradictionException e)
+		{
+			//Thrown once the current solution cannot be improved upon, so the last model is optimal
+		}
+		catch (TimeoutException e)
+		{
+			Main.Message(true, "[BooleanOptimizationCalculator] Solver timed out, using best solution found so far");
+		}
+		return model;
 	} 
 	
 	public int[] Solve(String problemName)//Convert to problem obp content string instead of file name
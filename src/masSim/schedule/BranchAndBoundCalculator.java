@@ -0,0 +1,221 @@
+package masSim.schedule;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import raven.Main;
+import raven.MeasureTime;
+
+//Exact allocator that finds the same assignment as PlainCalculator without enumerating every combination.
+//Agents are branched on in the order PlainCalculator counts them, trying their task combinations in order and
+//"no task" last, so the first best assignment found is the one the exhaustive enumeration would keep. Task sets
+//are held as bitsets, and branches are cut when the tasks left can not be covered, or when an upper bound on the
+//quality still achievable can not beat the best assignment found so far.
+public class BranchAndBoundCalculator extends BestAgentCalculatorBase {
+	private boolean debugFlag = false;
+	//Same starting value as PlainCalculator, which never accepts assignments at or below it
+	private static final int InitialBestQuality = -9999999;
+
+	private int agentsSize;
+	//Task combinations of each agent, as bitsets and their quality improvement
+	private long[][] combinationMasks;
+	private int[][] combinationQualities;
+	//Tasks any of the agents from this index onwards can take up
+	private long[] suffixCoverage;
+	private int requiredTasks;
+	private boolean allTasksRequired;
+	private int[] currentAssignment;
+	private int[] bestAssignment;
+	private int bestQuality;
+	private long nodesVisited;
+
+	public BranchAndBoundCalculator(String instanceName, int numberOfAgents, int numberOfTasks)
+	{
+		super(instanceName, numberOfAgents, numberOfTasks);
+	}
+
+	public BranchAndBoundCalculator(BestAgentCalculatorBase calc)
+	{
+		super(calc);
+	}
+
+	@Override
+	public List<List<Integer>> GetBestAgent()
+	{
+		MeasureTime.Timer = new MeasureTime();
+		MeasureTime.Timer.Start();
+		List<List<Integer>> result = new ArrayList<List<Integer>>();
+		if (Prepare())
+		{
+			bestQuality = InitialBestQuality;
+			bestAssignment = null;
+			nodesVisited = 0;
+			currentAssignment = new int[agentsSize];
+			Branch(0, 0L, 0);
+			if (bestAssignment!=null) result = MapToResult(bestAssignment);
+		}
+		MeasureTime.Timer.Stop();
+		System.out.println("Branch and Bound Calculation Took " + MeasureTime.Timer.GetTotal());
+		Main.Message(debugFlag, "[BranchAndBoundCalculator] Visited " + nodesVisited + " nodes, best quality " + bestQuality);
+		return result;
+	}
+
+	//Converts the reported qualities into bitsets. Returns false if there are too many tasks to hold in a bitset
+	private boolean Prepare()
+	{
+		agentsSize = this.agentScheduleQualities.size();
+		if (agentsSize==0) return false;
+		//Like PlainCalculator, only as many combinations as the first agent reported are considered per agent
+		int combinationsConsidered = this.agentScheduleQualities.get(0).TaskQualities.size();
+		Map<Integer, Integer> bitOfTask = new HashMap<Integer, Integer>();
+		combinationMasks = new long[agentsSize][];
+		combinationQualities = new int[agentsSize][];
+		for(int agent=0; agent<agentsSize; agent++)
+		{
+			List<MultipleTaskScheduleQualities> qls = this.agentScheduleQualities.get(agent).TaskQualities;
+			int size = Math.min(qls.size(), combinationsConsidered);
+			combinationMasks[agent] = new long[size];
+			combinationQualities[agent] = new int[size];
+			for(int c=0; c<size; c++)
+			{
+				long mask = 0L;
+				for(Integer task : qls.get(c).TaskIds)
+				{
+					Integer bit = bitOfTask.get(task);
+					if (bit==null)
+					{
+						bit = bitOfTask.size();
+						if (bit>=Long.SIZE) return false;
+						bitOfTask.put(task, bit);
+					}
+					//A task listed twice in a combination could never be valid
+					if ((mask & (1L<<bit))!=0) mask = -1L;
+					else if (mask!=-1L) mask |= 1L<<bit;
+				}
+				combinationMasks[agent][c] = mask;
+				combinationQualities[agent][c] = qls.get(c).diff();
+			}
+		}
+		suffixCoverage = new long[agentsSize+1];
+		for(int agent=agentsSize-1; agent>=0; agent--)
+		{
+			long coverage = suffixCoverage[agent+1];
+			for(long mask : combinationMasks[agent])
+			{
+				if (mask!=-1L) coverage |= mask;
+			}
+			suffixCoverage[agent] = coverage;
+		}
+		requiredTasks = this.numberOfTasksInNegotiation;
+		allTasksRequired = requiredTasks>=bitOfTask.size();
+		return true;
+	}
+
+	//Index combinationMasks[agent].length stands for the agent executing no task
+	private void Branch(int agent, long taken, int quality)
+	{
+		nodesVisited++;
+		if (agent==agentsSize)
+		{
+			if (Long.bitCount(taken)>=requiredTasks && quality>bestQuality)
+			{
+				bestQuality = quality;
+				bestAssignment = currentAssignment.clone();
+			}
+			return;
+		}
+		if (Long.bitCount(taken | suffixCoverage[agent])<requiredTasks) return;
+		if (quality + UpperBound(agent, taken)<=bestQuality) return;
+		long[] masks = combinationMasks[agent];
+		for(int c=0; c<=masks.length; c++)
+		{
+			if (c<masks.length)
+			{
+				if (masks[c]==-1L || (masks[c] & taken)!=0) continue;
+				currentAssignment[agent] = c;
+				Branch(agent+1, taken | masks[c], quality + combinationQualities[agent][c]);
+			}
+			else
+			{
+				currentAssignment[agent] = c;
+				Branch(agent+1, taken, quality);
+			}
+		}
+	}
+
+	//Upper bound on the quality the agents from the given index onwards can still add. Each agent can add at most
+	//its best combination that fits the tasks left, or nothing. When every task must be covered, the combinations
+	//chosen partition the tasks left, so the best per-task share of any combination bounds the total as well
+	private int UpperBound(int agent, long taken)
+	{
+		int agentBound = 0;
+		for(int a=agent; a<agentsSize; a++)
+		{
+			int best = 0;
+			long[] masks = combinationMasks[a];
+			for(int c=0; c<masks.length; c++)
+			{
+				if (masks[c]!=-1L && (masks[c] & taken)==0 && combinationQualities[a][c]>best)
+					best = combinationQualities[a][c];
+			}
+			agentBound += best;
+		}
+		if (!allTasksRequired) return agentBound;
+		long left = ~taken;
+		double taskBound = 0;
+		for(int bit=0; bit<Long.SIZE; bit++)
+		{
+			long task = 1L<<bit;
+			if ((left & task)==0 || (suffixCoverage[agent] & task)==0) continue;
+			double bestShare = Double.NEGATIVE_INFINITY;
+			for(int a=agent; a<agentsSize; a++)
+			{
+				long[] masks = combinationMasks[a];
+				for(int c=0; c<masks.length; c++)
+				{
+					if (masks[c]==-1L || (masks[c] & task)==0 || (masks[c] & taken)!=0) continue;
+					double share = (double)combinationQualities[a][c] / Long.bitCount(masks[c]);
+					if (share>bestShare) bestShare = share;
+				}
+			}
+			if (bestShare!=Double.NEGATIVE_INFINITY) taskBound += bestShare;
+		}
+		//Combinations without tasks add to the quality without covering any task
+		for(int a=agent; a<agentsSize; a++)
+		{
+			int best = 0;
+			long[] masks = combinationMasks[a];
+			for(int c=0; c<masks.length; c++)
+			{
+				if (masks[c]==0L && combinationQualities[a][c]>best)
+					best = combinationQualities[a][c];
+			}
+			taskBound += best;
+		}
+		//Qualities are integers, so rounding down keeps the bound valid
+		return Math.min(agentBound, (int)Math.floor(taskBound + 1e-9));
+	}
+
+	private List<List<Integer>> MapToResult(int[] chosenAssignment)
+	{
+		List<List<Integer>> allAgentAssignments = new ArrayList<List<Integer>>();
+		for(int i=0;i<chosenAssignment.length;i++)
+		{
+			if (chosenAssignment[i]<combinationMasks[i].length)
+			{
+				List<Integer> agentAssignment = new ArrayList<Integer>();
+				agentAssignment.add(agentScheduleQualities.get(i).AgentVariableId);
+				agentAssignment.addAll(agentScheduleQualities.get(i).TaskQualities.get(chosenAssignment[i]).TaskIds);
+				allAgentAssignments.add(agentAssignment);
+			}
+		}
+		return allAgentAssignments;
+	}
+
+	public long getNodesVisited()
+	{
+		return nodesVisited;
+	}
+}
@@ -138,7 +138,11 @@ public class DijkstraAlgorithm {
       if (maximum == null) {
         maximum = vertex;
       } else {
-        if (getHighestUtility(vertex).HasGreaterUtility(getHighestUtility(maximum),sourceNode)) {
+        DijkstraDistance vertexUtility = getHighestUtility(vertex);
+        DijkstraDistance maximumUtility = getHighestUtility(maximum);
+        //Ties are broken by method index, so that the result does not depend on the iteration order of the set
+        if (vertexUtility.HasGreaterUtility(maximumUtility,sourceNode)
+            || (!maximumUtility.HasGreaterUtility(vertexUtility,sourceNode) && vertex.getIndex()<maximum.getIndex())) {
           maximum = vertex;
         }
       }
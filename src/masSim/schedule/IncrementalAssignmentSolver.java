@@ -0,0 +1,267 @@
+package masSim.schedule;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.core.Vec;
+import org.sat4j.core.VecInt;
+import org.sat4j.pb.IPBSolver;
+import org.sat4j.pb.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IVec;
+import org.sat4j.specs.IVecInt;
+import org.sat4j.specs.TimeoutException;
+
+import raven.Main;
+
+//Pseudo-boolean assignment solver which is kept by a managing agent across negotiation rounds. As long as the
+//same agents report qualities for the same task combinations, the solver instance, along with the clauses it
+//has learned, is reused and only the objective changes. Bounds on the objective are added behind selector
+//variables passed as assumptions, so that learned clauses remain valid when the objective changes. The optimum
+//of the previous round is evaluated against the new objective and used as the starting bound.
+public class IncrementalAssignmentSolver {
+
+	private boolean debugFlag = false;
+	//Number of selector variables reserved when the solver is built. Once used up, the solver is rebuilt, in the
+	//middle of a round if need be
+	private static final int MaximumBoundsBeforeRebuild = 200;
+	private int timeoutMs = 1000;
+	private IPBSolver solver;
+	private List<List<Integer>> currentMapping;
+	private int numberOfProblemVariables;
+	private int boundsAdded;
+	private int[] previousModel;
+	private int rounds = 0;
+	private long lastSolveTime = 0;
+	private long lastConflicts = 0;
+	private int lastImprovements = 0;
+	private boolean lastRoundWarmStarted = false;
+
+	//Solves the assignment problem for the given qualities. Variable v of the returned model corresponds to the
+	//agent and task combination at position v-1 of the mapping list, as in
+	//BooleanOptimizationCalculator.SolveOptimizationProblem
+	public synchronized int[] Solve(List<AgentScheduleQualities> qualities, List<List<Integer>> variableMappingToAgentTaskCombination)
+	{
+		long startTime = System.nanoTime();
+		List<List<Integer>> mapping = new ArrayList<List<Integer>>();
+		List<BigInteger> coefficients = new ArrayList<BigInteger>();
+		for(AgentScheduleQualities ql : qualities)
+		{
+			for(MultipleTaskScheduleQualities t : ql.TaskQualities)
+			{
+				if (t.TaskIds.isEmpty()) continue;
+				List<Integer> combination = new ArrayList<Integer>();
+				combination.add(ql.AgentVariableId);
+				combination.addAll(t.TaskIds);
+				mapping.add(combination);
+				//Negated to convert the min function to max
+				coefficients.add(BigInteger.valueOf(-t.diff()));
+			}
+		}
+		variableMappingToAgentTaskCombination.addAll(mapping);
+
+		lastRoundWarmStarted = solver!=null && mapping.equals(currentMapping) && boundsAdded<MaximumBoundsBeforeRebuild;
+		int[] best = null;
+		try
+		{
+			if (!lastRoundWarmStarted)
+			{
+				Rebuild(qualities, mapping);
+			}
+			else if (previousModel!=null)
+			{
+				//The structure is unchanged, so the previous optimum is still feasible
+				best = previousModel;
+			}
+			long conflictsBefore = GetConflicts();
+			lastConflicts = 0;
+			lastImprovements = 0;
+			List<Integer> selectors = new ArrayList<Integer>();
+			try
+			{
+				while (true)
+				{
+					IVecInt assumptions = new VecInt();
+					if (best!=null)
+					{
+						if (boundsAdded>=MaximumBoundsBeforeRebuild)
+						{
+							//Out of selectors before reaching the optimum, so carry on tightening on a fresh solver
+							lastConflicts += GetConflicts() - conflictsBefore;
+							Rebuild(qualities, mapping);
+							conflictsBefore = GetConflicts();
+							selectors.clear();
+						}
+						int selector = AddBound(coefficients, Evaluate(best, coefficients).subtract(BigInteger.ONE));
+						selectors.add(selector);
+						assumptions.push(selector);
+					}
+					if (!solver.isSatisfiable(assumptions)) break;
+					best = ProblemModel(solver.model());
+					lastImprovements++;
+				}
+			}
+			catch (TimeoutException e)
+			{
+				Main.Message(true, "[IncrementalAssignmentSolver] Solver timed out, using best solution found so far");
+			}
+			//Bounds of this round are never assumed again, so switch them off for good
+			for(Integer selector : selectors)
+			{
+				solver.addClause(new VecInt(new int[]{-selector}));
+			}
+			lastConflicts += GetConflicts() - conflictsBefore;
+		}
+		catch (ContradictionException e)
+		{
+			Main.Message(debugFlag, "[IncrementalAssignmentSolver] Problem is unsatisfiable " + e.getMessage());
+			solver = null;
+		}
+		previousModel = best;
+		rounds++;
+		lastSolveTime = (System.nanoTime() - startTime) / 1000;
+		Main.Message(debugFlag, "[IncrementalAssignmentSolver] Round " + rounds + (lastRoundWarmStarted ? " (warm)" : " (cold)")
+				+ " took " + lastSolveTime + " microseconds, " + lastConflicts + " conflicts, " + lastImprovements + " improvements");
+		return best;
+	}
+
+	//Creates a fresh solver with the constraints that do not depend on the qualities reported: every task is
+	//executed exactly once, and every agent executes at most one of its task combinations
+	private void Rebuild(List<AgentScheduleQualities> qualities, List<List<Integer>> mapping) throws ContradictionException
+	{
+		solver = null;
+		currentMapping = mapping;
+		numberOfProblemVariables = mapping.size();
+		boundsAdded = 0;
+		previousModel = null;
+		IPBSolver newSolver = SolverFactory.newDefault();
+		newSolver.setVerbose(false);
+		newSolver.setTimeoutMs(timeoutMs);
+		newSolver.newVar(numberOfProblemVariables + MaximumBoundsBeforeRebuild);
+		Map<Integer, IVecInt> constraintVarsPerTask = new HashMap<Integer, IVecInt>();
+		Map<Integer, IVecInt> constraintVarsPerAgent = new HashMap<Integer, IVecInt>();
+		for(int v=1; v<=numberOfProblemVariables; v++)
+		{
+			List<Integer> combination = mapping.get(v-1);
+			AddToConstraint(constraintVarsPerAgent, combination.get(0), v);
+			for(int i=1;i<combination.size();i++)
+			{
+				AddToConstraint(constraintVarsPerTask, combination.get(i), v);
+			}
+		}
+		for(IVecInt vars : constraintVarsPerTask.values())
+		{
+			IVecInt coeffs = new VecInt();
+			for(int j=0;j<vars.size();j++) coeffs.push(1);
+			newSolver.addExactly(vars, coeffs, 1);
+		}
+		for(IVecInt vars : constraintVarsPerAgent.values())
+		{
+			if (vars.size()>1) newSolver.addAtMost(vars, 1);
+		}
+		solver = newSolver;
+	}
+
+	private void AddToConstraint(Map<Integer, IVecInt> constraints, Integer key, int variable)
+	{
+		IVecInt vars = constraints.get(key);
+		if (vars==null)
+		{
+			vars = new VecInt();
+			constraints.put(key, vars);
+		}
+		vars.push(variable);
+	}
+
+	//Adds "objective <= bound" guarded by a new selector variable, and returns the selector. When the selector is
+	//false, the slack coefficient makes the constraint trivially satisfied
+	private int AddBound(List<BigInteger> coefficients, BigInteger bound) throws ContradictionException
+	{
+		int selector = numberOfProblemVariables + (++boundsAdded);
+		IVecInt lits = new VecInt();
+		IVec<BigInteger> coeffs = new Vec<BigInteger>();
+		BigInteger maximum = BigInteger.ZERO;
+		for(int v=1; v<=numberOfProblemVariables; v++)
+		{
+			BigInteger c = coefficients.get(v-1);
+			lits.push(v);
+			coeffs.push(c);
+			if (c.signum()>0) maximum = maximum.add(c);
+		}
+		BigInteger slack = maximum.subtract(bound).max(BigInteger.ZERO);
+		lits.push(selector);
+		coeffs.push(slack);
+		solver.addPseudoBoolean(lits, coeffs, false, bound.add(slack));
+		return selector;
+	}
+
+	private BigInteger Evaluate(int[] model, List<BigInteger> coefficients)
+	{
+		BigInteger value = BigInteger.ZERO;
+		for(int lit : model)
+		{
+			if (lit>0) value = value.add(coefficients.get(lit-1));
+		}
+		return value;
+	}
+
+	//Strips selector variables from a solver model
+	private int[] ProblemModel(int[] model)
+	{
+		int count = 0;
+		for(int lit : model)
+		{
+			if (Math.abs(lit)<=numberOfProblemVariables) count++;
+		}
+		int[] result = new int[count];
+		int i = 0;
+		for(int lit : model)
+		{
+			if (Math.abs(lit)<=numberOfProblemVariables) result[i++] = lit;
+		}
+		return result;
+	}
+
+	private long GetConflicts()
+	{
+		Number conflicts = solver.getStat().get("conflicts");
+		return conflicts == null ? 0 : conflicts.longValue();
+	}
+
+	public void setTimeoutMs(int timeoutMs)
+	{
+		this.timeoutMs = timeoutMs;
+	}
+
+	public int getRounds()
+	{
+		return rounds;
+	}
+
+	//Wall clock time of the last round in microseconds, including building the solver on cold rounds
+	public long getLastSolveTime()
+	{
+		return lastSolveTime;
+	}
+
+	//Conflicts the solver ran into during the last round
+	public long getLastConflicts()
+	{
+		return lastConflicts;
+	}
+
+	//Number of improving solutions found during the last round. A warm round whose previous optimum still holds
+	//reports none
+	public int getLastImprovements()
+	{
+		return lastImprovements;
+	}
+
+	public boolean WasLastRoundWarmStarted()
+	{
+		return lastRoundWarmStarted;
+	}
+}
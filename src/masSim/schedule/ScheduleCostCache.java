@@ -0,0 +1,101 @@
+package masSim.schedule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import raven.math.Vector2D;
+
+//Bounded, least recently used cache of schedule qualities calculated by an agent for sets of candidate tasks.
+//Entries are keyed by the agent's position, rounded to a bucket, the version of the agent's task group and the
+//sorted ids of the candidate tasks. The version is bumped, and all entries dropped, whenever the task group or
+//schedule of the agent changes, so that stale qualities are never returned.
+public class ScheduleCostCache {
+
+	public static int DefaultMaximumEntries = 256;
+	public static double DefaultPositionBucketSize = 5;
+	private final double positionBucketSize;
+	private final LinkedHashMap<String, Integer> entries;
+	private int version = 0;
+	private long hits = 0;
+	private long misses = 0;
+
+	public ScheduleCostCache()
+	{
+		this(DefaultMaximumEntries, DefaultPositionBucketSize);
+	}
+
+	public ScheduleCostCache(final int maximumEntries, double positionBucketSize)
+	{
+		this.positionBucketSize = positionBucketSize;
+		//Access ordered, so the eldest entry is the least recently used one
+		this.entries = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+				return size() > maximumEntries;
+			}
+		};
+	}
+
+	//Builds the key for the given position and candidate task ids against the current version. The key should be
+	//built when the task group is read, so that qualities calculated from an older task group are filed under
+	//the older version
+	public synchronized String Key(Vector2D position, List<Integer> taskIds)
+	{
+		List<Integer> sorted = new ArrayList<Integer>();
+		if (taskIds!=null) sorted.addAll(taskIds);
+		Collections.sort(sorted);
+		long bucketX = (long)Math.floor(position.x / positionBucketSize);
+		long bucketY = (long)Math.floor(position.y / positionBucketSize);
+		return bucketX + "," + bucketY + "|" + version + "|" + sorted.toString();
+	}
+
+	//Returns the cached quality for the key, or null on a miss
+	public synchronized Integer Get(String key)
+	{
+		Integer quality = entries.get(key);
+		if (quality==null) misses++;
+		else hits++;
+		return quality;
+	}
+
+	public synchronized void Put(String key, int quality)
+	{
+		entries.put(key, quality);
+	}
+
+	//Called whenever the task group or schedule of the agent changes
+	public synchronized void Invalidate()
+	{
+		version++;
+		entries.clear();
+	}
+
+	public synchronized int getVersion()
+	{
+		return version;
+	}
+
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "Schedule cost cache hits " + hits + " misses " + misses + " entries " + entries.size() + " version " + version;
+	}
+}
@@ -0,0 +1,566 @@
+package masSim.schedule;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import masSim.taems.*;
+import raven.Main;
+import raven.math.Vector2D;
+
+//Calculates the order in which the methods of a Taems structure should be executed. Instead of expanding every
+//permutation of a SumAllQAF task into a graph, the ordering is solved with a dynamic program over
+//(visited subtasks, last subtask) states. Above a configurable number of subtasks, where the exact program would
+//need too much memory, a nearest insertion route improved by 2-opt is used instead.
+//
+//Methods that would break their deadline are left out of the route rather than executed for nothing. Orderings
+//keep as many subtasks as can meet their deadlines, and of those orderings the one with the highest quality
+public class ScheduleSolver {
+
+	private boolean debugFlag = false;
+	//Default number of subtasks up to which SumAllQAF orderings are solved exactly
+	public static int DefaultExactSubtaskLimit = 12;
+	//Hard ceiling for the exact solver. Without deadlines the state tables take about 21*n*2^n bytes, some 22MB
+	//at 16 subtasks against 440MB at 20. With deadlines each state may hold up to n entries, one per length of
+	//the last leg, so the program takes up to n times as much
+	private static final int MaximumExactSubtaskLimit = 16;
+	private int exactSubtaskLimit;
+	private int maximumTwoOptPasses = 50;
+
+	public ScheduleSolver()
+	{
+		this(DefaultExactSubtaskLimit);
+	}
+
+	public ScheduleSolver(int exactSubtaskLimit)
+	{
+		this.exactSubtaskLimit = Math.min(exactSubtaskLimit, MaximumExactSubtaskLimit);
+	}
+
+	public int getExactSubtaskLimit()
+	{
+		return exactSubtaskLimit;
+	}
+
+	//Returns the methods of the given task structure in the order in which they should be executed by an agent
+	//starting at the given position. Returned methods are the original objects of the task structure
+	public List<Method> Solve(Node task, Vector2D startPosition)
+	{
+		return SolveNode(task, new RouteState(startPosition, 0));
+	}
+
+	private List<Method> SolveNode(Node node, RouteState entry)
+	{
+		List<Method> route = new ArrayList<Method>();
+		if (node==null) return route;
+		if (!node.IsTask())
+		{
+			route.add((Method)node);
+			return route;
+		}
+		Task task = (Task)node;
+		masSim.taems.QAF qaf = task.getQAF();
+		List<Node> subtasks = new ArrayList<Node>();
+		for(Iterator<Node> it = task.getSubtasks(); it.hasNext(); )
+		{
+			Node subtask = it.next();
+			if (subtask!=null) subtasks.add(subtask);
+		}
+		if (qaf instanceof SeqSumQAF)
+		{
+			//All tasks must be executed in sequence, skipping those that can no longer meet their deadlines
+			RouteState state = new RouteState(entry);
+			for(Node subtask : subtasks)
+			{
+				List<Method> subRoute = SolveNode(subtask, state);
+				RouteState next = new RouteState(state);
+				next.quality = state.quality;
+				next.Advance(subRoute);
+				if (next.broken)
+				{
+					Main.Message(debugFlag, "[ScheduleSolver] Skipping " + subtask.label + " which would break its deadline");
+					continue;
+				}
+				state = next;
+				route.addAll(subRoute);
+			}
+		}
+		else if (qaf instanceof SumAllQAF)
+		{
+			//All tasks must be executed, though not necessarily in sequence. Each subtask is resolved into a fixed
+			//route first, and the order of these routes is then solved as a whole
+			List<List<Method>> units = new ArrayList<List<Method>>();
+			for(Node subtask : subtasks)
+			{
+				List<Method> subRoute = SolveNode(subtask, entry);
+				if (!subRoute.isEmpty()) units.add(subRoute);
+			}
+			int[] order;
+			if (units.size()<=exactSubtaskLimit)
+				order = new ExactOrdering(units, entry).Solve();
+			else
+				order = new HeuristicOrdering(units, entry).Solve();
+			if (order.length<units.size())
+				Main.Message(debugFlag, "[ScheduleSolver] " + (units.size()-order.length) + " subtasks of " + task.label + " left out as they would break their deadlines");
+			for(int i=0;i<order.length;i++)
+			{
+				route.addAll(units.get(order[i]));
+			}
+		}
+		else if (qaf instanceof ExactlyOneQAF)
+		{
+			//Only one task must be executed, so pick the one with the highest utility from the entry point
+			double bestQuality = Double.NEGATIVE_INFINITY;
+			for(Node subtask : subtasks)
+			{
+				List<Method> subRoute = SolveNode(subtask, entry);
+				if (subRoute.isEmpty()) continue;
+				RouteState state = new RouteState(entry);
+				state.Advance(subRoute);
+				if (!state.broken && state.quality>bestQuality)
+				{
+					bestQuality = state.quality;
+					route = subRoute;
+				}
+			}
+		}
+		return route;
+	}
+
+	//Position, last step duration and accumulated quality of an agent while walking along a route. A step that
+	//would break its deadline marks the walk as broken and adds no quality
+	private static class RouteState
+	{
+		Vector2D position;
+		double duration;
+		double quality = 0;
+		boolean broken = false;
+
+		RouteState(Vector2D position, double duration)
+		{
+			this.position = position;
+			this.duration = duration;
+		}
+
+		RouteState(RouteState other)
+		{
+			this(other.position, other.duration);
+		}
+
+		void Advance(Method m)
+		{
+			DijkstraDistance d = m.getStepUtility(position, duration);
+			//Method.getStepUtility marks steps that can not be done with the lowest quality there is
+			if (d.quality<=Long.MIN_VALUE)
+			{
+				broken = true;
+				return;
+			}
+			quality += d.quality;
+			position = d.position;
+			duration = d.duration;
+		}
+
+		void Advance(List<Method> methods)
+		{
+			for(Method m : methods)
+			{
+				Advance(m);
+			}
+		}
+	}
+
+	//Holds the subtask routes being ordered, along with memoized travel costs between them. Index units.size()
+	//stands for the entry point of the ordering
+	private abstract class Ordering
+	{
+		protected final List<List<Method>> units;
+		protected final RouteState entry;
+		protected final int n;
+		private final Vector2D[] exitPositions;
+		private final boolean[] hasDeadline;
+		protected final boolean anyDeadline;
+		private final boolean[][] transitionKnown;
+		private final boolean[][] transitionBroken;
+		private final double[][] transitionQuality;
+		private final double[][] transitionDuration;
+
+		Ordering(List<List<Method>> units, RouteState entry)
+		{
+			this.units = units;
+			this.entry = entry;
+			this.n = units.size();
+			exitPositions = new Vector2D[n+1];
+			hasDeadline = new boolean[n];
+			transitionKnown = new boolean[n+1][n];
+			transitionBroken = new boolean[n+1][n];
+			transitionQuality = new double[n+1][n];
+			transitionDuration = new double[n+1][n];
+			boolean deadlines = false;
+			for(int i=0;i<n;i++)
+			{
+				List<Method> unit = units.get(i);
+				Method last = unit.get(unit.size()-1);
+				exitPositions[i] = new Vector2D(last.x, last.y);
+				for(Method m : unit)
+				{
+					if (m.getDeadline()!=0) hasDeadline[i] = true;
+				}
+				deadlines |= hasDeadline[i];
+			}
+			anyDeadline = deadlines;
+			exitPositions[n] = entry.position;
+		}
+
+		abstract int[] Solve();
+
+		//Walks unit "to" starting at the exit of unit "from", whose last step took the given duration. Returns
+		//false, leaving the state as it was, if the unit would break a deadline. Otherwise the state is updated with
+		//the resulting quality and duration. Routes without deadlines do not depend on the previous duration, so
+		//their travel cost is memoized
+		protected boolean Transition(int from, int to, RouteState state)
+		{
+			if (!hasDeadline[to])
+			{
+				if (!transitionKnown[from][to])
+				{
+					RouteState s = new RouteState(exitPositions[from], 0);
+					s.Advance(units.get(to));
+					transitionBroken[from][to] = s.broken;
+					transitionQuality[from][to] = s.quality;
+					transitionDuration[from][to] = s.duration;
+					transitionKnown[from][to] = true;
+				}
+				if (transitionBroken[from][to]) return false;
+				state.quality += transitionQuality[from][to];
+				state.duration = transitionDuration[from][to];
+			}
+			else
+			{
+				RouteState s = new RouteState(exitPositions[from], state.duration);
+				s.Advance(units.get(to));
+				if (s.broken) return false;
+				state.quality += s.quality;
+				state.duration = s.duration;
+			}
+			state.position = exitPositions[to];
+			return true;
+		}
+
+		//Walks the units in the given order, leaving out those that would break a deadline where they come.
+		//Returns the units kept, in order, with the state of the walk in the given state
+		protected int[] Walk(int[] order, RouteState state)
+		{
+			int[] kept = new int[order.length];
+			int count = 0;
+			int previous = n;
+			for(int i=0;i<order.length;i++)
+			{
+				if (Transition(previous, order[i], state))
+				{
+					previous = order[i];
+					kept[count++] = order[i];
+				}
+			}
+			int[] result = new int[count];
+			System.arraycopy(kept, 0, result, 0, count);
+			return result;
+		}
+	}
+
+	//Held-Karp style dynamic program over (visited set, last unit) states. The states of a set only hold routes
+	//that meet every deadline, and the largest set reached is taken, so subtasks are only left out when no
+	//ordering can fit them in
+	private class ExactOrdering extends Ordering
+	{
+		ExactOrdering(List<List<Method>> units, RouteState entry)
+		{
+			super(units, entry);
+		}
+
+		@Override
+		int[] Solve()
+		{
+			if (n==0) return new int[0];
+			int[] order = anyDeadline ? SolveWithDurations() : SolveByQuality();
+			Main.Message(debugFlag, "[ScheduleSolver] Exact ordering kept " + order.length + " of " + n + " subtasks");
+			return order;
+		}
+
+		//Without deadlines the duration of the last leg does not matter, so each state keeps its best quality
+		private int[] SolveByQuality()
+		{
+			int full = (1<<n)-1;
+			double[][] quality = new double[full+1][n];
+			double[][] duration = new double[full+1][n];
+			int[][] parent = new int[full+1][n];
+			boolean[][] reached = new boolean[full+1][n];
+			RouteState state = new RouteState(entry);
+			for(int j=0;j<n;j++)
+			{
+				state.quality = 0;
+				state.duration = entry.duration;
+				if (!Transition(n, j, state)) continue;
+				quality[1<<j][j] = state.quality;
+				duration[1<<j][j] = state.duration;
+				parent[1<<j][j] = -1;
+				reached[1<<j][j] = true;
+			}
+			int bestMask = 0;
+			int bestLast = -1;
+			for(int mask=1;mask<=full;mask++)
+			{
+				for(int last=0;last<n;last++)
+				{
+					if (!reached[mask][last]) continue;
+					int count = Integer.bitCount(mask);
+					int bestCount = Integer.bitCount(bestMask);
+					if (bestLast<0 || count>bestCount || (count==bestCount && quality[mask][last]>quality[bestMask][bestLast]))
+					{
+						bestMask = mask;
+						bestLast = last;
+					}
+					for(int next=0;next<n;next++)
+					{
+						if ((mask & (1<<next))!=0) continue;
+						int nextMask = mask | (1<<next);
+						state.quality = quality[mask][last];
+						state.duration = duration[mask][last];
+						if (!Transition(last, next, state)) continue;
+						if (!reached[nextMask][next] || state.quality>quality[nextMask][next])
+						{
+							quality[nextMask][next] = state.quality;
+							duration[nextMask][next] = state.duration;
+							parent[nextMask][next] = last;
+							reached[nextMask][next] = true;
+						}
+					}
+				}
+			}
+			if (bestLast<0) return new int[0];
+			int[] order = new int[Integer.bitCount(bestMask)];
+			int mask = bestMask;
+			int last = bestLast;
+			for(int i=order.length-1;i>=0;i--)
+			{
+				order[i] = last;
+				int previous = parent[mask][last];
+				mask &= ~(1<<last);
+				last = previous;
+			}
+			return order;
+		}
+
+		//A route reaching a state with less quality may still be the only one to meet a later deadline, if its
+		//last leg was shorter. So each state keeps every route no other route beats on both quality and duration
+		private int[] SolveWithDurations()
+		{
+			int full = (1<<n)-1;
+			Label[][] labels = new Label[full+1][n];
+			RouteState state = new RouteState(entry);
+			for(int j=0;j<n;j++)
+			{
+				state.quality = 0;
+				state.duration = entry.duration;
+				if (!Transition(n, j, state)) continue;
+				labels[1<<j][j] = new Label(state.quality, state.duration, j, null);
+			}
+			Label best = null;
+			int bestCount = 0;
+			for(int mask=1;mask<=full;mask++)
+			{
+				int count = Integer.bitCount(mask);
+				for(int last=0;last<n;last++)
+				{
+					for(Label label = labels[mask][last]; label!=null; label = label.next)
+					{
+						if (best==null || count>bestCount || (count==bestCount && label.quality>best.quality))
+						{
+							best = label;
+							bestCount = count;
+						}
+						for(int next=0;next<n;next++)
+						{
+							if ((mask & (1<<next))!=0) continue;
+							state.quality = label.quality;
+							state.duration = label.duration;
+							if (!Transition(last, next, state)) continue;
+							int nextMask = mask | (1<<next);
+							labels[nextMask][next] = Insert(labels[nextMask][next], new Label(state.quality, state.duration, next, label));
+						}
+					}
+				}
+			}
+			int[] order = new int[bestCount];
+			Label label = best;
+			for(int i=bestCount-1;i>=0;i--)
+			{
+				order[i] = label.unit;
+				label = label.parent;
+			}
+			return order;
+		}
+
+		//Adds the label to the list unless a label in it is at least as good on both counts, dropping the labels
+		//the new one is at least as good as. Returns the head of the list
+		private Label Insert(Label head, Label label)
+		{
+			for(Label l = head; l!=null; l = l.next)
+			{
+				if (l.quality>=label.quality && l.duration<=label.duration) return head;
+			}
+			Label newHead = label;
+			Label tail = label;
+			for(Label l = head; l!=null; l = l.next)
+			{
+				if (label.quality>=l.quality && label.duration<=l.duration) continue;
+				tail.next = l;
+				tail = l;
+			}
+			tail.next = null;
+			return newHead;
+		}
+	}
+
+	//A route through some of the units, ending at the given unit, held by a state of the exact program
+	private static class Label
+	{
+		final double quality;
+		final double duration;
+		final int unit;
+		final Label parent;
+		Label next;
+
+		Label(double quality, double duration, int unit, Label parent)
+		{
+			this.quality = quality;
+			this.duration = duration;
+			this.unit = unit;
+			this.parent = parent;
+		}
+	}
+
+	//Nearest insertion followed by 2-opt improvement, used when there are too many subtasks for the exact program.
+	//Tours are compared by how many units they keep, then by quality
+	private class HeuristicOrdering extends Ordering
+	{
+		HeuristicOrdering(List<List<Method>> units, RouteState entry)
+		{
+			super(units, entry);
+		}
+
+		private Vector2D EntryPosition(int unit)
+		{
+			Method first = units.get(unit).get(0);
+			return new Vector2D(first.x, first.y);
+		}
+
+		//Number of units kept by the tour, and its quality, in the given state
+		private int Evaluate(int[] order, RouteState state)
+		{
+			state.quality = 0;
+			state.duration = entry.duration;
+			return Walk(order, state).length;
+		}
+
+		@Override
+		int[] Solve()
+		{
+			RouteState state = new RouteState(entry);
+			List<Integer> tour = new ArrayList<Integer>();
+			List<Integer> remaining = new ArrayList<Integer>();
+			for(int i=0;i<n;i++) remaining.add(i);
+			List<Vector2D> tourPositions = new ArrayList<Vector2D>();
+			tourPositions.add(entry.position);
+			while(!remaining.isEmpty())
+			{
+				//Pick the remaining unit nearest to any point already on the tour
+				int nearest = 0;
+				double nearestDistance = Double.MAX_VALUE;
+				for(int r=0;r<remaining.size();r++)
+				{
+					Vector2D candidate = EntryPosition(remaining.get(r));
+					for(Vector2D p : tourPositions)
+					{
+						double distance = p.distance(candidate);
+						if (distance<nearestDistance)
+						{
+							nearestDistance = distance;
+							nearest = r;
+						}
+					}
+				}
+				int unit = remaining.remove(nearest);
+				//Insert it where it reduces the tour the least
+				int bestPosition = 0;
+				int bestKept = -1;
+				double bestQuality = Double.NEGATIVE_INFINITY;
+				for(int pos=0;pos<=tour.size();pos++)
+				{
+					tour.add(pos, unit);
+					int kept = Evaluate(ToArray(tour), state);
+					if (kept>bestKept || (kept==bestKept && state.quality>bestQuality))
+					{
+						bestKept = kept;
+						bestQuality = state.quality;
+						bestPosition = pos;
+					}
+					tour.remove(pos);
+				}
+				tour.add(bestPosition, unit);
+				Method last = units.get(unit).get(units.get(unit).size()-1);
+				tourPositions.add(new Vector2D(last.x, last.y));
+			}
+			int[] order = ToArray(tour);
+			int kept = Evaluate(order, state);
+			double quality = state.quality;
+			boolean improved = true;
+			for(int pass=0;pass<maximumTwoOptPasses && improved;pass++)
+			{
+				improved = false;
+				for(int i=0;i<n-1;i++)
+				{
+					for(int k=i+1;k<n;k++)
+					{
+						Reverse(order, i, k);
+						int k2 = Evaluate(order, state);
+						if (k2>kept || (k2==kept && state.quality>quality))
+						{
+							kept = k2;
+							quality = state.quality;
+							improved = true;
+						}
+						else
+						{
+							Reverse(order, i, k);
+						}
+					}
+				}
+			}
+			state.quality = 0;
+			state.duration = entry.duration;
+			order = Walk(order, state);
+			Main.Message(debugFlag, "[ScheduleSolver] Heuristic ordering kept " + order.length + " of " + n + " subtasks with quality " + quality);
+			return order;
+		}
+
+		private void Reverse(int[] order, int i, int k)
+		{
+			while(i<k)
+			{
+				int t = order[i];
+				order[i] = order[k];
+				order[k] = t;
+				i++;
+				k--;
+			}
+		}
+
+		private int[] ToArray(List<Integer> list)
+		{
+			int[] result = new int[list.size()];
+			for(int i=0;i<result.length;i++) result[i] = list.get(i);
+			return result;
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import masSim.taems.*;
+import masSim.world.Agent;
 import masSim.world.MqttMessagingProvider;
 import masSim.world.TaskRepository;
 
@@ -25,10 +26,17 @@ public class Scheduler implements Runnable {
 	
 	
 	private IAgent agent;
+	private ScheduleSolver solver;
 	
 	public Scheduler(IAgent agent)
+	{
+		this(agent, new ScheduleSolver());
+	}
+	
+	public Scheduler(IAgent agent, ScheduleSolver solver)
 	{
 		this.agent = agent;
+		this.solver = solver;
 	}
 	
 	//This is the main method of the scheduler, which implements runnable interface of java thread
@@ -67,31 +75,56 @@ public class Scheduler implements Runnable {
 				debugMessage += " > " + newTask.label;
 				this.agent.getPendingTasks().remove(0);
 				if (newTask.agent.equals(agent)){
-					synchronized(Task.Lock)
-					{
-						agent.GetCurrentTasks().addTask(newTask);
-					}
+					agent.GetCurrentTasks().addTask(newTask);
 				}
 			}
 			//Remove completed tasks
-			synchronized(Task.Lock){
-			agent.GetCurrentTasks().Cleanup(MqttMessagingProvider.GetMqttProvider());}
+			agent.GetCurrentTasks().Cleanup(MqttMessagingProvider.GetMqttProvider());
 			if(agent.GetCurrentTasks().hasChildren())
 			{
 				Schedule schedule = CalculateScheduleFromTaems(agent.GetCurrentTasks());
 				return schedule;
 			}
-			Thread.sleep(10000);
+			//Event driven agents are signalled when tasks arrive, so there is nothing to wait for
+			if (!Agent.EventDrivenExecution) Thread.sleep(10000);
 		} catch (InterruptedException e) {
 			Main.Message(debugFlag, "[Schedular 109]" + e.toString());
 		}
 		return null;
 	}
 	
+	//Method takes a Teams structure as input and calculates the optimum schedule for it. The order of execution
+	//is found by the schedule solver, after which the methods are walked once from the agent's position to
+	//determine the quality of each step
+	public Schedule CalculateScheduleFromTaems(Task topLevelTask)
+	{
+		Schedule schedule = new Schedule();
+		startTime = new Date();
+		Vector2D agentPos = topLevelTask.agent.getPosition();
+		Method initialMethod = new Method(Method.StartingPoint,0,agentPos.x,agentPos.y);
+		schedule.addItem(new masSim.taems.ScheduleElement(initialMethod));
+		DijkstraDistance previousStep = new DijkstraDistance(initialMethod.getOutcome().getQuality(), initialMethod.getOutcome().getDuration(), initialMethod.x, initialMethod.y, initialMethod.label);
+		int totalquality = 0;
+		totalquality += initialMethod.getOutcome().getQuality();
+		for (Method m : solver.Solve(topLevelTask, agentPos))
+		{
+			Method step = new Method(m);
+			previousStep = step.getPathUtilityRepresentedAsDistance(previousStep, agentPos);
+			totalquality += step.getOutcome().getQuality();
+			schedule.addItem(new masSim.taems.ScheduleElement(step));
+		}
+		//End with the final point, as the path through the graph did, since merging schedules relies on it
+		Method finalMethod = new Method(Method.FinalPoint,0,agentPos.x,agentPos.y);
+		schedule.addItem(new masSim.taems.ScheduleElement(finalMethod));
+		schedule.TotalQuality = totalquality;
+		return schedule;
+	}
+	
 	//Method takes a Teams structure as input and outputs all the possible schedules resulting from that
 	//task structure. This output is then fed to a generic Dijkstra's algorithm to calculate the optimum schedule
-	//corresponding to the optimum path from the starting task to the ending task
-	public Schedule CalculateScheduleFromTaems(Task topLevelTask)
+	//corresponding to the optimum path from the starting task to the ending task. Kept for comparison with the
+	//schedule solver, as the number of permutations grows factorially with the number of subtasks
+	public Schedule CalculateScheduleFromTaemsGraph(Task topLevelTask)
 	{
 		Iterator ii = topLevelTask.getSubtasks();
 		//Reinitialize the schedule item
@@ -121,12 +154,7 @@ public class Scheduler implements Runnable {
 		}
 		
 		//Create a Graph of these methods and run Dijkstra Algorithm on it
-		Graph graph = new Graph(nodes, edges);
-		if (debugFlag) graph.Print();
-	    DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(graph);
-	    dijkstra.execute(initialMethod);
-	    dijkstra.getGraph().Print();
-	    LinkedList<Method> path = dijkstra.getPath(finalMethod);
+		LinkedList<Method> path = FindPath(nodes, edges, initialMethod, finalMethod);
 	    //Print the determined schedule
 	    int totalquality = 0;
 	    if (path!=null)
@@ -141,6 +169,18 @@ public class Scheduler implements Runnable {
 		return schedule;
 	}
 	
+	//Finds the path of highest utility through the graph of possible schedules. Tests override it to check other
+	//searches against this one
+	protected LinkedList<Method> FindPath(List<Method> nodes, List<MethodTransition> edges, Method initialMethod, Method finalMethod)
+	{
+		Graph graph = new Graph(nodes, edges);
+		if (debugFlag) graph.Print();
+	    DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(graph);
+	    dijkstra.execute(initialMethod);
+	    if (debugFlag) dijkstra.getGraph().Print();
+	    return dijkstra.getPath(finalMethod);
+	}
+	
 	//A helper method used internally by CalculateScheduleFromTaems method
 	private void Permute(Node[] inputArray, int start, int end, ArrayList<Node[]> permutations)
 	{
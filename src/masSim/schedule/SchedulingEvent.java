@@ -11,9 +11,15 @@ public class SchedulingEvent {
 	public SchedulingCommandType commandType;
 	public SchedulingEventParams params;
 	public String rawMessage;
-	public List<MultipleTaskScheduleQualities> taskQualities;//Not serialized yet
-	public List<Task> tasks;//Not yet serialized
-	public List<Integer> assignedTasks;//Not yet serialized
+	public List<MultipleTaskScheduleQualities> taskQualities;
+	public List<Task> tasks;//Serialized as task ids
+	//Ids of the tasks of an event received over the wire, to be resolved against the receiver's task repository
+	public List<Integer> taskIds;
+	public List<Integer> assignedTasks;
+	
+	//Used by SchedulingEventCodec, which fills in the fields itself
+	SchedulingEvent() {
+	}
 	
 	public SchedulingEvent(String agentName, String commandType, String paramsRaw) {
 		this(agentName,SchedulingCommandType.valueOf(commandType),paramsRaw);
@@ -41,6 +47,7 @@ public class SchedulingEvent {
 	@Override
 	public String toString()
 	{
+		if (rawMessage==null) rawMessage = agentName + "," + commandType + "," + params;
 		return rawMessage;
 	}
 }
@@ -0,0 +1,336 @@
+package masSim.schedule;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import masSim.taems.Task;
+
+//Binary wire format for scheduling events, used for mqtt payloads in place of the comma and colon separated
+//string, which can not carry task qualities, tasks or assigned tasks. A payload is laid out as
+//
+//  magic, version, command, agent name, params presence bits, present params, task qualities, task ids, assigned task ids
+//
+//Integers are written as varints, signed ones zigzag encoded. Strings are a varint of their UTF-8 length plus one
+//followed by the bytes, and lists a varint of their size plus one followed by the items, so that zero stands for
+//null. Tasks are referenced by their integer id, and resolved by the receiving agent from its task repository.
+//The magic byte can not start a UTF-8 string, so payloads of the string format are still told apart. Several
+//encoded events can be sent as one batch payload, which has its own magic byte, the version, a varint count and
+//each event length prefixed.
+public class SchedulingEventCodec {
+
+	public static final byte Magic = (byte)0xB5;
+	public static final byte BatchMagic = (byte)0xB6;
+	public static final byte Version = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final SchedulingCommandType[] CommandTypes = SchedulingCommandType.values();
+
+	public static boolean IsBinary(byte[] payload)
+	{
+		return payload!=null && payload.length>=2 && payload[0]==Magic;
+	}
+
+	public static boolean IsBatch(byte[] payload)
+	{
+		return payload!=null && payload.length>=2 && payload[0]==BatchMagic;
+	}
+
+	//Wraps already encoded events into one payload
+	public static byte[] EncodeBatch(List<byte[]> encodedEvents)
+	{
+		Writer out = new Writer();
+		out.WriteByte(BatchMagic);
+		out.WriteByte(Version);
+		out.WriteVarInt(encodedEvents.size());
+		for(byte[] encoded : encodedEvents)
+		{
+			out.WriteVarInt(encoded.length);
+			out.WriteBytes(encoded, 0, encoded.length);
+		}
+		return out.ToArray();
+	}
+
+	public static List<SchedulingEvent> DecodeBatch(byte[] payload)
+	{
+		if (!IsBatch(payload))
+			throw new IllegalArgumentException("Payload is not a batch of scheduling events");
+		Reader in = new Reader(payload);
+		in.ReadByte();
+		int version = in.ReadByte();
+		if (version!=Version)
+			throw new IllegalArgumentException("Unsupported scheduling event version " + version);
+		int count = in.ReadVarInt();
+		if (count<0 || count>payload.length)
+			throw new IllegalArgumentException("Truncated scheduling event");
+		List<SchedulingEvent> events = new ArrayList<SchedulingEvent>(count);
+		for(int i=0;i<count;i++)
+		{
+			events.add(Decode(in.ReadBytes(in.ReadVarInt())));
+		}
+		return events;
+	}
+
+	public static byte[] Encode(SchedulingEvent event)
+	{
+		Writer out = new Writer();
+		out.WriteByte(Magic);
+		out.WriteByte(Version);
+		out.WriteVarInt(event.commandType.ordinal());
+		out.WriteString(event.agentName);
+		SchedulingEventParams params = event.params;
+		if (params==null)
+		{
+			out.WriteVarInt(0);
+		}
+		else
+		{
+			String[] fields = ParamFields(params);
+			int present = 1;
+			for(int i=0;i<fields.length;i++)
+			{
+				if (fields[i]!=null) present |= 2 << i;
+			}
+			out.WriteVarInt(present);
+			for(String field : fields)
+			{
+				if (field!=null) out.WriteString(field);
+			}
+		}
+		if (event.taskQualities==null)
+		{
+			out.WriteVarInt(0);
+		}
+		else
+		{
+			out.WriteVarInt(event.taskQualities.size()+1);
+			for(MultipleTaskScheduleQualities q : event.taskQualities)
+			{
+				out.WriteIntList(q.TaskIds);
+				out.WriteSignedVarInt(q.base);
+				out.WriteSignedVarInt(q.incremental);
+			}
+		}
+		List<Integer> taskIds = event.taskIds;
+		if (event.tasks!=null)
+		{
+			taskIds = new ArrayList<Integer>(event.tasks.size());
+			for(Task t : event.tasks)
+			{
+				taskIds.add(t.GetIntId());
+			}
+		}
+		out.WriteIntList(taskIds);
+		out.WriteIntList(event.assignedTasks);
+		return out.ToArray();
+	}
+
+	public static SchedulingEvent Decode(byte[] payload)
+	{
+		if (!IsBinary(payload))
+			throw new IllegalArgumentException("Payload is not a binary scheduling event");
+		Reader in = new Reader(payload);
+		in.ReadByte();
+		int version = in.ReadByte();
+		if (version!=Version)
+			throw new IllegalArgumentException("Unsupported scheduling event version " + version);
+		SchedulingEvent event = new SchedulingEvent();
+		int command = in.ReadVarInt();
+		if (command>=CommandTypes.length)
+			throw new IllegalArgumentException("Unknown scheduling command " + command);
+		event.commandType = CommandTypes[command];
+		event.agentName = in.ReadString();
+		int present = in.ReadVarInt();
+		if (present!=0)
+		{
+			String[] fields = new String[ParamFieldCount];
+			for(int i=0;i<fields.length;i++)
+			{
+				if ((present & (2 << i))!=0) fields[i] = in.ReadString();
+			}
+			event.params = ParamsFromFields(fields);
+		}
+		int qualities = in.ReadVarInt();
+		if (qualities>0)
+		{
+			event.taskQualities = new ArrayList<MultipleTaskScheduleQualities>(qualities-1);
+			for(int i=0;i<qualities-1;i++)
+			{
+				List<Integer> ids = in.ReadIntList();
+				int base = in.ReadSignedVarInt();
+				int incremental = in.ReadSignedVarInt();
+				event.taskQualities.add(new MultipleTaskScheduleQualities(ids, base, incremental));
+			}
+		}
+		event.taskIds = in.ReadIntList();
+		event.assignedTasks = in.ReadIntList();
+		return event;
+	}
+
+	private static final int ParamFieldCount = 8;
+
+	//Same field order as SchedulingEventParams.toString
+	private static String[] ParamFields(SchedulingEventParams params)
+	{
+		return new String[]{params.XCoordinate, params.YCoordinate, params.AgentId, params.MethodId,
+				params.TaskName, params.BaseCost, params.IncrementalCost, params.OriginatingAgent};
+	}
+
+	private static SchedulingEventParams ParamsFromFields(String[] fields)
+	{
+		SchedulingEventParams params = new SchedulingEventParams();
+		params.XCoordinate = fields[0];
+		params.YCoordinate = fields[1];
+		params.AgentId = fields[2];
+		params.MethodId = fields[3];
+		params.TaskName = fields[4];
+		params.BaseCost = fields[5];
+		params.IncrementalCost = fields[6];
+		params.OriginatingAgent = fields[7];
+		return params;
+	}
+
+	private static class Writer
+	{
+		private byte[] buffer = new byte[64];
+		private int size = 0;
+
+		private void Ensure(int extra)
+		{
+			if (size+extra>buffer.length)
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length*2, size+extra));
+		}
+
+		void WriteByte(byte b)
+		{
+			Ensure(1);
+			buffer[size++] = b;
+		}
+
+		void WriteVarInt(int value)
+		{
+			Ensure(5);
+			while ((value & ~0x7F)!=0)
+			{
+				buffer[size++] = (byte)((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[size++] = (byte)value;
+		}
+
+		void WriteSignedVarInt(int value)
+		{
+			WriteVarInt((value << 1) ^ (value >> 31));
+		}
+
+		void WriteString(String value)
+		{
+			if (value==null)
+			{
+				WriteVarInt(0);
+				return;
+			}
+			byte[] bytes = value.getBytes(UTF8);
+			WriteVarInt(bytes.length+1);
+			WriteBytes(bytes, 0, bytes.length);
+		}
+
+		void WriteBytes(byte[] bytes, int offset, int length)
+		{
+			Ensure(length);
+			System.arraycopy(bytes, offset, buffer, size, length);
+			size += length;
+		}
+
+		void WriteIntList(List<Integer> values)
+		{
+			if (values==null)
+			{
+				WriteVarInt(0);
+				return;
+			}
+			WriteVarInt(values.size()+1);
+			for(Integer value : values)
+			{
+				WriteSignedVarInt(value);
+			}
+		}
+
+		byte[] ToArray()
+		{
+			return Arrays.copyOf(buffer, size);
+		}
+	}
+
+	private static class Reader
+	{
+		private final byte[] buffer;
+		private int position = 0;
+
+		Reader(byte[] buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		int ReadByte()
+		{
+			if (position>=buffer.length)
+				throw new IllegalArgumentException("Truncated scheduling event");
+			return buffer[position++];
+		}
+
+		int ReadVarInt()
+		{
+			int value = 0;
+			for(int shift=0; shift<35; shift+=7)
+			{
+				int b = ReadByte();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80)==0) return value;
+			}
+			throw new IllegalArgumentException("Malformed varint in scheduling event");
+		}
+
+		int ReadSignedVarInt()
+		{
+			int value = ReadVarInt();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		String ReadString()
+		{
+			int length = ReadVarInt();
+			if (length==0) return null;
+			length--;
+			if (length<0 || position+length>buffer.length)
+				throw new IllegalArgumentException("Truncated scheduling event");
+			String value = new String(buffer, position, length, UTF8);
+			position += length;
+			return value;
+		}
+
+		byte[] ReadBytes(int length)
+		{
+			if (length<0 || position+length>buffer.length)
+				throw new IllegalArgumentException("Truncated scheduling event");
+			byte[] bytes = Arrays.copyOfRange(buffer, position, position+length);
+			position += length;
+			return bytes;
+		}
+
+		List<Integer> ReadIntList()
+		{
+			int count = ReadVarInt();
+			if (count==0) return null;
+			count--;
+			if (count<0 || count>buffer.length-position)
+				throw new IllegalArgumentException("Truncated scheduling event");
+			List<Integer> values = new ArrayList<Integer>(count);
+			for(int i=0;i<count;i++)
+			{
+				values.add(ReadSignedVarInt());
+			}
+			return values;
+		}
+	}
+}
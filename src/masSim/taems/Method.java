@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.Observable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import raven.Main;
 import raven.math.Vector2D;
@@ -14,7 +15,8 @@ import masSim.world.WorldState;
 public class Method extends Node implements IMethod {
 
 	private boolean debugFlag = false;
-	private static int Index = 3;
+	//Atomic because schedules are costed on several threads at once, each copying methods
+	private static AtomicInteger Index = new AtomicInteger(3);
 	private int index;
 	private Outcome outcome;//Change to Vector
 	public int deadline = 0;
@@ -36,7 +38,7 @@ public class Method extends Node implements IMethod {
 		outcome = new Outcome(outcomeQuality, outcomeDuration, 0);
 		if (nm == StartingPoint) index = 1;
 		else if (nm == FinalPoint) index = 2;
-		else index = Index++;
+		else index = Index.getAndIncrement();
 		deadline = dl;
 		this.x = x2;
 		this.y = y2;
@@ -56,7 +58,7 @@ public class Method extends Node implements IMethod {
 	
 	public Method(String nm, double outcomeQuality, double outcomeDuration, double x2, double y2, int dl)
 	{
-		this(nm,outcomeQuality, outcomeDuration, x2, y2, 0, null);
+		this(nm,outcomeQuality, outcomeDuration, x2, y2, dl, null);
 	}
 	public Method(Method m){
 		this(m.label,m.outcome.getQuality(), m.outcome.getDuration(), m.x, m.y, m.deadline, m.Interrelationships);
@@ -75,10 +77,27 @@ public class Method extends Node implements IMethod {
 	public synchronized void MarkCompleted()
 	{
 		super.MarkCompleted();
-		WorldState.CompletedMethods.add(this);
+		WorldState.MethodCompleted(this);
 	}
 	
 	public DijkstraDistance getPathUtilityRepresentedAsDistance(DijkstraDistance distanceTillPreviousNode, Vector2D agentPos)
+	{
+		DijkstraDistance d = getStepUtility(distanceTillPreviousNode.position, distanceTillPreviousNode.duration);
+		//Outcome quality is only updated when the deadline is met, to keep the previous behaviour of this method
+		if (this.label!=Method.FinalPoint && !IsDeadlineBroken(distanceTillPreviousNode.duration))
+			this.outcome.quality = d.quality;
+		return d;
+	}
+	
+	//Returns true if executing this method after a step of the given duration would break its deadline
+	public boolean IsDeadlineBroken(double previousDuration)
+	{
+		return (previousDuration+this.outcome.duration)>deadline && deadline!=0;
+	}
+	
+	//Calculates the utility of moving to this method from the given position, without modifying the outcome of
+	//this method. Used by the schedule solver which needs to evaluate many candidate routes before picking one
+	public DijkstraDistance getStepUtility(Vector2D previousPosition, double previousDuration)
 	{
 		//This is distance calculation for this step only. Previous distance used for calculation, but not appended
 		DijkstraDistance d = new DijkstraDistance(1,0,this.x, this.y, this.label);
@@ -88,16 +107,14 @@ public class Method extends Node implements IMethod {
 		}
 		//If task can be performed, return utility value through the function. But if its deadline has passed
 		//then return an abnormally large negative utility value to force Dijkstra to reject it.
-		double totalDurationTillNow = distanceTillPreviousNode.duration+this.outcome.duration;
-		if ((totalDurationTillNow)>deadline && deadline!=0) 
+		if (IsDeadlineBroken(previousDuration)) 
 		{
 			d.quality = Long.MIN_VALUE;
-			Main.Message(debugFlag, "[Method 54] Using infinitely negative utility because of " + deadline + " deadline breakage by duration " + totalDurationTillNow);
+			Main.Message(debugFlag, "[Method 54] Using infinitely negative utility because of " + deadline + " deadline breakage by duration " + (previousDuration+this.outcome.duration));
 		}
 		else
 		{
-			//Main.Message(debugFlag, "[Method 54] Deadline " + deadline + " will be met by " + totalDurationTillNow);
-			double distance = Math.round(distanceTillPreviousNode.position.distance(new Vector2D(this.x, this.y)));
+			double distance = Math.round(previousPosition.distance(new Vector2D(this.x, this.y)));
 			d.quality = this.outcome.quality - distance;
 			Main.Message(false, "task distance = " + distance + " total quality = " + d.quality);
 			if (d.quality>heuristicQuality)
@@ -106,8 +123,7 @@ public class Method extends Node implements IMethod {
 				d.quality = Long.MIN_VALUE;
 			}
 			d.duration = distance;
-			this.outcome.quality = d.quality;
-			Main.Message(false, "[Method 57] Distance from (" + distanceTillPreviousNode.position.x + ","+distanceTillPreviousNode.position.y+ ") to " + this.label + " ("+this.x+","+this.y+") ");
+			Main.Message(false, "[Method 57] Distance from (" + previousPosition.x + ","+previousPosition.y+ ") to " + this.label + " ("+this.x+","+this.y+") ");
 		}
 		Main.Message(debugFlag, "[Method 66] Quality determined for " + this.label + " is " + d.quality );
 		return d;
@@ -1,13 +1,14 @@
 package masSim.taems;
 
-import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.Iterator;
+import java.util.Set;
 
 import raven.Main;
 
@@ -38,101 +39,72 @@ public class Schedule {
 	public Iterator<ScheduleElement> getItems() {
 		return items.iterator();
 	}
-	public synchronized void Merge(Schedule sch, ConcurrentHashMap<String,String> completedMethods)
+	public int size() {
+		return items.size();
+	}
+	//Returns a new schedule with the elements of the given one, keeping the elements of this schedule which are
+	//not in it. Start and end of the given schedule take priority over those of this one, completed methods are
+	//left out, and this schedule's remaining elements come before the new ones. Neither schedule is changed, so
+	//the merged schedule can be published in one step while others still iterate this one. Runs in time linear
+	//in the length of both schedules, as methods are looked up by label
+	public Schedule Merge(Schedule sch, Map<String,String> completedMethods)
 	{
-		Main.Message(debugFlag, "Old Schedule " + this.hashCode() + " : " + this.toString());
-		Main.Message(debugFlag, "Merge Candidate " + sch.hashCode() + " : " + sch.toString());
+		if (debugFlag)
+		{
+			Main.Message(debugFlag, "Old Schedule " + this.hashCode() + " : " + this.toString());
+			Main.Message(debugFlag, "Merge Candidate " + sch.hashCode() + " : " + sch.toString());
+		}
 		ScheduleElement first = null;
 		ScheduleElement last = null;
-		Queue<ScheduleElement> mergedList = new ConcurrentLinkedQueue<ScheduleElement>();
-		List<ScheduleElement> oldElementsList = new ArrayList<ScheduleElement>();
-		List<ScheduleElement> cachedNewList = new ArrayList<ScheduleElement>();
-		List<ScheduleElement> removedList = new ArrayList<ScheduleElement>();
-		//First, loop through all elements of new schedule
+		List<ScheduleElement> newElements = new ArrayList<ScheduleElement>();
+		Set<String> newLabels = new HashSet<String>();
+		//Start and end of the new schedule are kept, and so are its other methods which are not completed yet
 		for(ScheduleElement el : sch.items)
 		{
-			//Save its first and last methods, as these will be given priority over first and last methods of
-			//old schedule
 			if (el.getMethod().isStartMethod())
-			{
 				first = el;
-			}
 			else if (el.getMethod().isEndMethod())
-			{
 				last = el;
-			}
-			else
-			{
-				//Cache these new elements
-				if (!completedMethods.containsKey(el.getMethod().getLabel()))
-					cachedNewList.add(el);
-			}
-			//Remove all those elements from the old schedule, which are also present in new one 
-			//since they'd be the updated versions of those same methods
-			if (ContainsSameMethod(this.items,el))
-			{
-				//this.items.remove(el);Remove is not guaranteed to work in concurrent queue, so using custom mechanism
-				removedList.add(el);
-			}
+			else if (!completedMethods.containsKey(el.getMethod().getLabel()))
+				newElements.add(el);
+			newLabels.add(el.getName());
 		}
-		//Now we have a pruned over schedule containing only those elements which were not present in new
-		//one and thus need to be brought in. Loop through old schedule and bring them in
+		//Elements of this schedule which are also in the new one are replaced by their updated versions
+		List<ScheduleElement> oldElements = new ArrayList<ScheduleElement>();
 		for(ScheduleElement el : this.items)
 		{
-			if (!ContainsSameMethod(removedList,el))
+			if (newLabels.contains(el.getName())) continue;
+			if (el.getMethod().isStartMethod())
 			{
-				if (el.getMethod().isStartMethod())//If first was not found in new schedule
-				{
-					if (first==null)
-						first = el;
-					//By this time we should have a first method, so add it to new merged schedule now
-					mergedList.add(first);
-				}
-				else if (el.getMethod().isEndMethod())//If last was not found in new schedule
-				{
-					if (last==null)
-						last = el;//By this time, we should have a last, but don't add it yet to schedule
-				}
-				else
-				{
-					if (!completedMethods.containsKey(el.getMethod().getLabel()))
-						oldElementsList.add(el);//Add all elements of old schedule
-				}
+				if (first==null) first = el;
 			}
+			else if (el.getMethod().isEndMethod())
+			{
+				if (last==null) last = el;
+			}
+			else if (!completedMethods.containsKey(el.getMethod().getLabel()))
+				oldElements.add(el);
 		}
-		//If old schedule was empty, first did not get added, so check and add now
-		if (!ContainsSameMethod(mergedList,first))
-		{
-			mergedList.add(first);
-		}
-		//Now add old elements core items
-		for(ScheduleElement el : oldElementsList)
-		{
-			mergedList.add(el);
-		}
-		//Now that we are done adding all elements of old schedule, along with a first, add new elements and last
-		for(ScheduleElement el : cachedNewList)
-		{
-			mergedList.add(el);
-		}
-		//Finally add the last method
-		mergedList.add(last);
-		this.items = mergedList;
-		Main.Message(false, "New Schedule " + this.hashCode() + " : " + this.toString());
+		Schedule merged = new Schedule();
+		merged.TotalQuality = this.TotalQuality;
+		if (first!=null) merged.items.add(first);
+		merged.items.addAll(oldElements);
+		merged.items.addAll(newElements);
+		if (last!=null) merged.items.add(last);
+		if (debugFlag) Main.Message(debugFlag, "New Schedule " + merged.hashCode() + " : " + merged.toString());
+		return merged;
 	}
 	
-	private boolean ContainsSameMethod(Collection<ScheduleElement> one, ScheduleElement two)
+	//Returns a new schedule without the elements of the given method, leaving this one unchanged
+	public Schedule Without(String methodLabel)
 	{
-		//Different from equals() because it will check name rather than id
-		for(ScheduleElement el : one)
+		Schedule remaining = new Schedule();
+		remaining.TotalQuality = this.TotalQuality;
+		for(ScheduleElement el : this.items)
 		{
-			//if (el.getName().equals(two.getName()))
-			if (el.getName().equals(two.getName()))
-			{
-				return true;
-			}
+			if (!el.getMethod().label.equals(methodLabel)) remaining.items.add(el);
 		}
-		return false;
+		return remaining;
 	}
 	
 	@Override
@@ -4,9 +4,11 @@ package masSim.taems;
 import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Observable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -25,7 +27,6 @@ public class Task extends Node {
 	public Date earliest_start_time;
 	public Date deadline;
 	public boolean isComplete = false;
-	public static Object Lock = new Object();
 	
 	public int GetIntId()
 	{
@@ -47,12 +48,11 @@ public class Task extends Node {
 	public ArrayList<Method> GetMethods()
 	{
 		ArrayList<Method> methods = new ArrayList<Method>();
-		synchronized(Task.Lock){
 		for(Node n: children)
 		{
 			if (!n.IsTask())
 				methods.add((Method)n);
-		}}
+		}
 		return methods;
 	}
 	
@@ -60,37 +60,36 @@ public class Task extends Node {
 	{
 		Main.Message(this, false, "Assigning " + this.label + " to " + ag.getName());
 		this.agent=ag;
-		synchronized(Task.Lock){
 		for(Node n: children)
 		{
 			if (n.agent==null)
 				n.agent=ag;
-		}}
+		}
 	}
 	
 	public boolean IsFullyAssigned()
 	{
 		if (this.agent==null) return false;
-		synchronized(Task.Lock){for(Node n: children)
+		for(Node n: children)
 		{
 			if (n.agent==null)
 				return false;
-		}}
+		}
 		return true;
 	}
 		
 	// Constructor
 	public Task(String label, QAF qaf, Date earliest_start, Date deadline, IAgent agent, Node[] m, boolean recurring){
 		this.label = label;
-		children = new ArrayList<Node>();
+		//Every task has its own copy on write child list, so readers, such as schedule calculations, iterate a
+		//consistent snapshot without locking, while agents add and clean up tasks of their own trees
+		children = new CopyOnWriteArrayList<Node>();
 		this.qaf = qaf;
 		this.earliest_start_time = earliest_start;
 		this.deadline = deadline;
 		if (m!=null)
 		{
-			for(Node mm : m){
-				this.children.add(mm);
-			}
+			this.children.addAll(Arrays.asList(m));
 		}
 		this.agent = agent;
 		this.recurring = recurring;
@@ -117,9 +116,29 @@ public class Task extends Node {
 	}
 	
 	
+	//Returns a copy of this task tree, without completed tasks and methods, that can be read while the original
+	//keeps changing. Methods are shared with the original, as schedule calculations only read them
+	public Task Snapshot()
+	{
+		Task copy = new Task(this.label, this.qaf, this.earliest_start_time, this.deadline, this.agent, null, this.recurring);
+		List<Node> copied = new ArrayList<Node>();
+		for(Node n : children)
+		{
+			if (n==null || n.IsComplete()) continue;
+			if (n.IsTask())
+			{
+				copied.add(((Task)n).Snapshot());
+			}
+			else
+				copied.add(n);
+		}
+		copy.children.addAll(copied);
+		copy.status = this.status;
+		return copy;
+	}
+	
 	public void addTask(Node task){
-		synchronized(Task.Lock){
-		this.children.add(task);}
+		this.children.add(task);
 	}
 	
 	public QAF getQAF(){
@@ -132,7 +151,7 @@ public class Task extends Node {
 	{
 		super.MarkCompleted();
 		Main.Message(debugFlag, "[Task 63] Task " + label + " completed.");
-		WorldState.CompletedTasks.add(this);
+		WorldState.TaskCompleted(this);
 		//ReIssueIfNecessary();
 	}
 	
@@ -146,34 +165,25 @@ public class Task extends Node {
 		}
 	}
 	
+	//Removes completed children, reporting each removed one as completed. Iterating the copy on write list walks
+	//a snapshot, so children can be removed on the way, and only the call that actually removes a child reports it
 	@Override
 	public synchronized void Cleanup(MqttMessagingProvider mq)
 	{
 		if (this.hasChildren())
 		{
-			synchronized(Task.Lock)
+			for(Node n : children)
 			{
-				for(Node n : children)
+				if (n!=null)
 				{
-					if (n!=null)
+					if (n.IsTask() && !n.IsComplete())
+					{
+						n.Cleanup(mq);
+					}
+					//Recheck after cleanup
+					if (n.IsComplete() && children.remove(n))
 					{
-						if (n.IsComplete())
-						{
-							children.remove(n);
-							mq.PublishMessage(new SchedulingEvent(TaskIssuer.TaskIssuerName,SchedulingCommandType.TASKCOMPLETED,new SchedulingEventParams().AddTaskName(n.getLabel())));
-						}
-						else
-						{
-							if (n.IsTask())
-							{
-								n.Cleanup(mq);
-								if (n.IsComplete())//Recheck after cleanup
-								{
-									children.remove(n);
-									mq.PublishMessage(new SchedulingEvent(TaskIssuer.TaskIssuerName,SchedulingCommandType.TASKCOMPLETED,new SchedulingEventParams().AddTaskName(n.getLabel())));
-								}
-							}
-						}
+						mq.PublishMessage(new SchedulingEvent(TaskIssuer.TaskIssuerName,SchedulingCommandType.TASKCOMPLETED,new SchedulingEventParams().AddTaskName(n.getLabel())));
 					}
 				}
 			}
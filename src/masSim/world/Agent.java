@@ -2,10 +2,12 @@ package masSim.world;
 
 import masSim.schedule.AgentScheduleQualities;
 import masSim.schedule.BooleanOptimizationCalculator;
+import masSim.schedule.BranchAndBoundCalculator;
 import masSim.schedule.IScheduleUpdateEventListener;
+import masSim.schedule.IncrementalAssignmentSolver;
 import masSim.schedule.MaxSumCalculator;
 import masSim.schedule.MultipleTaskScheduleQualities;
-import masSim.schedule.PlainCalculator;
+import masSim.schedule.ScheduleCostCache;
 import masSim.schedule.ScheduleUpdateEvent;
 import masSim.schedule.Scheduler;
 import masSim.schedule.SchedulingCommandType;
@@ -24,10 +26,19 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import raven.Main;
@@ -43,12 +54,16 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 	private boolean errorFlag = false;
 	private static int GloballyUniqueAgentId = 1;
 	private int code;
-	private Schedule currentSchedule = new Schedule();
+	//Replaced as a whole on every change, so that it is never seen half merged. Changes are made holding scheduleLock
+	private volatile Schedule currentSchedule = new Schedule();
+	private final Object scheduleLock = new Object();
 	private int taskInd;
 	private boolean resetScheduleExecutionFlag = false;
 	private ArrayList<IAgent> agentsUnderManagement = null;
 	//ArrayList<MaxSumCalculator> negotiations = new ArrayList<MaxSumCalculator>();
 	BooleanOptimizationCalculator negotiations = new BooleanOptimizationCalculator("singleton",0,0);
+	//Kept across negotiation rounds so that the solver can reuse its learned clauses and previous optimum
+	private IncrementalAssignmentSolver negotiationSolver = new IncrementalAssignmentSolver();
 	private ConcurrentHashMap<String,String> completedMethods = new ConcurrentHashMap<String,String>();
 	private AgentMode mode;
 	public double x;
@@ -64,10 +79,63 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 	private MqttMessagingProvider mq;
 	private TaskRepository taskRepository = new TaskRepository();
 	private ExecutorService schedulerPool;
+	//Shared by all agents to cost task combinations in parallel during negotiations
+	private static final ForkJoinPool costingPool = new ForkJoinPool();
+	//Schedule qualities already calculated for candidate task sets, dropped whenever tasks or schedule change
+	private ScheduleCostCache scheduleCostCache = new ScheduleCostCache();
 	private Scheduler localScheduler;
 	private Method currentMethod = null;
 	//Represents the current final optimum schedule calculated for the taskGroup member
 	private Schedule schedule;
+	//When set, agents do not poll on a thread of their own. Instead an agent is stepped on a shared pool whenever
+	//its schedule changes, its current method completes or an enabler it waits for completes
+	public static boolean EventDrivenExecution = true;
+	//Idle threads time out, as a headless run loads these classes afresh for every scenario
+	private static final ThreadPoolExecutor executionPool = new ThreadPoolExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()),
+			Math.max(2, Runtime.getRuntime().availableProcessors()), 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "AgentExecution-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	static
+	{
+		executionPool.allowCoreThreadTimeOut(true);
+	}
+	//Steps and schedule calculations of all agents that are queued or running, and how many have been queued so
+	//far, so that a simulation driven from its own clock can wait for the agents to settle before moving it on
+	private static final AtomicInteger busy = new AtomicInteger();
+	private static final AtomicLong submitted = new AtomicLong();
+	//A step is requested by every signal, and at most one step of an agent runs at a time
+	private final AtomicBoolean stepRequested = new AtomicBoolean();
+	private final AtomicBoolean stepScheduled = new AtomicBoolean();
+	private final Runnable stepper = new Runnable() {
+		@Override
+		public void run() {
+			try
+			{
+				while (stepRequested.getAndSet(false))
+				{
+					Step();
+				}
+			}
+			finally
+			{
+				stepScheduled.set(false);
+				//A signal arriving after the last check, but before the flag was cleared, still gets its step
+				if (stepRequested.get() && stepScheduled.compareAndSet(false, true)) Execute(executionPool, this);
+			}
+		}
+	};
+	private final Runnable enablerWaiter = new Runnable() {
+		@Override
+		public void run() {
+			Signal();
+		}
+	};
 	
 	public static void main(String[] args) {
 		//Agent to be run via this method in its own jvm
@@ -84,6 +152,16 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 		return agentsUnderManagement;
 	}
 	
+	public ScheduleCostCache getScheduleCostCache()
+	{
+		return scheduleCostCache;
+	}
+	
+	public IncrementalAssignmentSolver getNegotiationSolver()
+	{
+		return negotiationSolver;
+	}
+	
 	private enum Status {
 		IDLE, PROCESSNG, EMPTY, AWAITINGTASKCOMPLETION
 	}
@@ -100,7 +178,7 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 	}
 	
 	/** alive, dead or spawning? */
-	private Status status;
+	private volatile Status status;
 	
 	public Agent(int newCode){
 		this(newCode,"Agent"+newCode,false,0,0);
@@ -133,6 +211,13 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 	
 	//A public method to feed new tasks to the scheduler
 	public void AssignTask(String taskName)
+	{
+		AddPendingTask(taskName);
+		RunSchedular();
+	}
+	
+	//Queues the task for the next schedule calculation
+	private void AddPendingTask(String taskName)
 	{
 		Main.Message(this, debugFlag, "[Scheduler 62] Added Pending task " + taskName + " to Scheduler " + this.label);
 		Task task = this.taskRepository.GetTask(taskName);
@@ -140,7 +225,7 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 		task.AssignAgent(this);
 		RegisterChildrenWithUI(task);
 		this.pendingTasks.add(task);
-		schedulerPool.execute(localScheduler);
+		scheduleCostCache.Invalidate();
 	}
 	
 	private boolean IsManagingAgent()
@@ -177,7 +262,7 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 	{
 		if (IsManagingAgent())
 		{
-			this.negotiations = new BooleanOptimizationCalculator(negotiationInstance,this.agentsUnderManagement.size()+1, tasks.size());//One additional for managing agent
+			this.negotiations = new BooleanOptimizationCalculator(negotiationInstance,this.agentsUnderManagement.size()+1, tasks.size(), negotiationSolver);//One additional for managing agent
 			List<MultipleTaskScheduleQualities> costs = CalculateIncrementalQualitiesForTask(tasks);
 			AgentScheduleQualities aql = new AgentScheduleQualities(this.getAgentId(this.label));
 			aql.TaskQualities = costs;
@@ -220,8 +305,9 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 			{
 				List<List<Integer>> bestAgentsForTasks = calc.GetBestAgent();
 				
-				//Calculate plain for comparison
-				PlainCalculator calcPlain = new PlainCalculator(calc);
+				//Calculate exact assignment for comparison. Gives the same result as PlainCalculator without
+				//enumerating every combination
+				BranchAndBoundCalculator calcPlain = new BranchAndBoundCalculator(calc);
 				List<List<Integer>> bestAgentsForTasksPlain = calcPlain.GetBestAgent();
 				
 				String pl = calcPlain.ToString(bestAgentsForTasksPlain);
@@ -270,33 +356,60 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 		{
 			ScenarioGenerator gen = new ScenarioGenerator();
 			Map<Integer, Task> idToTaskDictionary = new HashMap<Integer,Task>();
-			int base = 0;
-			try
-			{
-				base = GetScheduleCostSync(null, this).TotalQuality;
-			}
-			catch(Exception ex){}
-			IAgent previousAgent = tasks.get(0).agent;//Save previous agent, because assignment of agent will change while calculating costs and need to be reset
 			List<Integer> taskIdsList = ConvertTaskListToTaskIdList(tasks, idToTaskDictionary);
 			List<List<Integer>> combs = gen.GetArrayCombinations(taskIdsList);
+			//Snapshots are taken once, so that every combination is costed against the same task tree, and none of
+			//the costing changes the tasks themselves. Cache keys are taken along with the snapshot
+			Vector2D position = getPosition();
+			String baseKey = scheduleCostCache.Key(position, null);
+			Task currentTasks = this.GetCurrentTasks().Snapshot();
+			//Base cost is costed along with the combinations, as the entry before them
+			int[] costs = new int[combs.size()+1];
+			List<String> keys = new ArrayList<String>();
+			keys.add(baseKey);
 			for(List<Integer> taskIdList : combs)
-			{	
-				List<Task> incrementalTaskcombinations = new ArrayList<Task>();
-				for(Integer i : taskIdList)
+			{
+				keys.add(scheduleCostCache.Key(position, taskIdList));
+			}
+			List<List<Task>> incrementalTaskCombinations = new ArrayList<List<Task>>();
+			List<Integer> missingCosts = new ArrayList<Integer>();
+			for(int c=0;c<keys.size();c++)
+			{
+				Integer cached = scheduleCostCache.Get(keys.get(c));
+				if (cached!=null)
+				{
+					costs[c] = cached;
+					continue;
+				}
+				List<Task> incrementalTaskcombinations = null;
+				if (c>0)
 				{
-					Task t = idToTaskDictionary.get(i);
-					if (t==null) throw new Exception ("Calculate Incremental Qualities called for a null task");
-					t.agent = this;
-					incrementalTaskcombinations.add(t);
+					incrementalTaskcombinations = new ArrayList<Task>();
+					for(Integer i : combs.get(c-1))
+					{
+						Task t = idToTaskDictionary.get(i);
+						if (t==null) throw new Exception ("Calculate Incremental Qualities called for a null task");
+						incrementalTaskcombinations.add(t.Snapshot());
+					}
 				}
-				int incremental = GetScheduleCostSync(incrementalTaskcombinations, this).TotalQuality;
-				Main.Message(debugFlag, getName() + " for " + incrementalTaskcombinations.size() + " tasks Base " + base + " Incremental " + incremental);
-				ql.add(new MultipleTaskScheduleQualities(taskIdList,base,incremental));
+				incrementalTaskCombinations.add(incrementalTaskcombinations);
+				missingCosts.add(c);
 			}
-			for(Task t : tasks)
+			int[] calculatedCosts = new int[incrementalTaskCombinations.size()];
+			costingPool.invoke(new ScheduleCostTask(currentTasks, incrementalTaskCombinations, calculatedCosts, 0, calculatedCosts.length));
+			for(int m=0;m<missingCosts.size();m++)
 			{
-				//Reset agent change for done for calculation
-				t.agent = previousAgent;
+				int c = missingCosts.get(m);
+				costs[c] = calculatedCosts[m];
+				scheduleCostCache.Put(keys.get(c), calculatedCosts[m]);
+			}
+			Main.Message(debugFlag, getName() + " " + scheduleCostCache.toString());
+			int base = costs[0];
+			for(int c=0;c<combs.size();c++)
+			{
+				int incremental = costs[c+1];
+				Main.Message(debugFlag, getName() + " for " + combs.get(c).size() + " tasks Base " + base + " Incremental " + incremental);
+				ql.add(new MultipleTaskScheduleQualities(combs.get(c),base,incremental));
 			}
 		}
 		catch(Exception e)
@@ -306,24 +419,76 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 		return ql;
 	}
 	
-	public Schedule GetScheduleCostSync(List<Task> tasks, IAgent taskAgent)
+	//Costs a range of task combinations, splitting it in half until single combinations are left, which are then
+	//costed in parallel on the pool. Costs are written to the position of their combination
+	private class ScheduleCostTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private final Task currentTasks;
+		private final List<List<Task>> combinations;
+		private final int[] costs;
+		private final int from;
+		private final int to;
+		
+		ScheduleCostTask(Task currentTasks, List<List<Task>> combinations, int[] costs, int from, int to)
+		{
+			this.currentTasks = currentTasks;
+			this.combinations = combinations;
+			this.costs = costs;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (to-from<=1)
+			{
+				//A failure is left to complete the task exceptionally, so that invoke rethrows it before any of the
+				//costs are cached or negotiated with
+				if (to>from) costs[from] = CalculateScheduleCost(currentTasks, combinations.get(from)).TotalQuality;
+				return;
+			}
+			int middle = (from+to)/2;
+			invokeAll(new ScheduleCostTask(currentTasks, combinations, costs, from, middle),
+					new ScheduleCostTask(currentTasks, combinations, costs, middle, to));
+		}
+	}
+	
+	//Calculates the schedule for the given snapshot of current tasks along with the additional tasks, without
+	//changing either of them, so that it can be called from several threads at once
+	private Schedule CalculateScheduleCost(Task currentTasks, List<Task> tasks)
 	{
-		//Make a copy
-		Task tempTaskGroup = new Task("Task Group",new SumAllQAF(), taskAgent);
-		Iterator<Node> copyTasks = this.GetCurrentTasks().getSubtasks();
+		Task tempTaskGroup = new Task("Task Group",new SumAllQAF(), this);
+		Iterator<Node> copyTasks = currentTasks.getSubtasks();
 		while(copyTasks.hasNext())
 		{
 			tempTaskGroup.addTask(copyTasks.next());
 		}
-		for(Task t : tasks)
+		if (tasks!=null)
+		{
+			for(Task t : tasks)
+			{
+				if (t!=null) tempTaskGroup.addTask(t);
+			}
+		}
+		return this.localScheduler.CalculateScheduleFromTaems(tempTaskGroup);
+	}
+	
+	public Schedule GetScheduleCostSync(List<Task> tasks, IAgent taskAgent)
+	{
+		List<Task> snapshots = null;
+		if (tasks!=null)
 		{
-			if (t!=null) taskAgent = t.agent;
 			//Sometimes we want to calculate base cost of executing existing tasks, without assigning a new one, where this
 			//method will be called with a null value. So this check is necessary
-			tempTaskGroup.addTask(t);
+			snapshots = new ArrayList<Task>();
+			for(Task t : tasks)
+			{
+				if (t!=null) snapshots.add(t.Snapshot());
+			}
 		}
-		tempTaskGroup.Cleanup(MqttMessagingProvider.GetMqttProvider());
-		this.schedule = this.localScheduler.CalculateScheduleFromTaems(tempTaskGroup);
+		this.schedule = CalculateScheduleCost(this.GetCurrentTasks().Snapshot(), snapshots);
 		//send schedule quality back to mqtt
 		//this.mq.PublishMessage(RavenUI.schedulingEventListenerName,SchedulingCommandType.PUBLISHCOST, new SchedulingEventParams().AddMethodId(currentMethod.label).AddXCoord(currentMethod.x).AddYCoord(currentMethod.y).toString());
 		return schedule;
@@ -337,41 +502,72 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 	
 	public void RunSchedular()
 	{
-		schedulerPool.execute(localScheduler);
+		Execute(schedulerPool, localScheduler);
 	}
 	
-	public synchronized boolean AreEnablersInPlace(Method m)
+	//Lets the threads calculating this agent's schedule go once they are done, so a finished simulation does not
+	//keep them around
+	public void Shutdown()
 	{
-		boolean methodEnablersCompleted = false;
-		if (m.Interrelationships.size()>0)
-		{
-			for(Interrelationship ir: m.Interrelationships)
-			{
-				if (!ir.from.IsTask())
+		schedulerPool.shutdown();
+	}
+	
+	//Stops the pools all agents step and cost combinations on. No agent can run after this, so it is only for
+	//the end of a simulation whose classes are not used again, such as a headless scenario
+	public static void ShutdownSharedPools()
+	{
+		executionPool.shutdown();
+		costingPool.shutdown();
+	}
+	
+	//Runs the work on the pool, counting it as busy until it has run
+	private static void Execute(ExecutorService pool, final Runnable work)
+	{
+		busy.incrementAndGet();
+		submitted.incrementAndGet();
+		pool.execute(new Runnable() {
+			@Override
+			public void run() {
+				try
 				{
-					Method from = (Method)ir.from;
-					for(Method mc : WorldState.CompletedMethods)
-					{
-						if (mc.label==from.label)
-							methodEnablersCompleted = true;
-					}
+					work.run();
 				}
-				else
+				finally
 				{
-					Task from = (Task)ir.from;
-					for(Task mc : WorldState.CompletedTasks)
-					{
-						if (mc.label==from.label)
-							methodEnablersCompleted = true;
-					}
+					busy.decrementAndGet();
 				}
-			}	
+			}
+		});
+	}
+	
+	//Waits until no agent has a step or schedule calculation queued or running, or the timeout runs out. Returns
+	//whether the agents went idle
+	public static boolean AwaitIdle(long timeoutMs)
+	{
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+		while (System.nanoTime() < deadline)
+		{
+			if (busy.get()==0) return true;
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
 		}
-		else
+		return busy.get()==0;
+	}
+	
+	//Number of steps and schedule calculations queued so far, by all agents
+	public static long getSubmitted()
+	{
+		return submitted.get();
+	}
+	
+	//Enablers are in place once any of the method's enabling methods or tasks has completed in its current epoch
+	public boolean AreEnablersInPlace(Method m)
+	{
+		if (m.Interrelationships.size()==0) return true;
+		for(Interrelationship ir: m.Interrelationships)
 		{
-			methodEnablersCompleted = true;
+			if (WorldState.For(ir.from).IsCompleted(ir.from.label)) return true;
 		}
-		return methodEnablersCompleted;
+		return false;
 	}
 	
 	public void ExecuteTask(Method m) throws InterruptedException
@@ -381,6 +577,32 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 			Main.Message(debugFlag, "[Agent 88] " + m.label + " enabler not in place. Waiting...");
 			Thread.sleep(1000);
 		}
+		StartExecution(m);
+	}
+	
+	//Starts the method if its enablers are in place. Otherwise the agent is stepped again when one of them
+	//completes, and false is returned
+	public boolean TryExecuteTask(Method m)
+	{
+		if (!AreEnablersInPlace(m))
+		{
+			for(Interrelationship ir: m.Interrelationships)
+			{
+				WorldState.For(ir.from).AwaitCompletion(ir.from.label, enablerWaiter);
+			}
+			//The enabler may have completed before the waiter was registered
+			if (!AreEnablersInPlace(m))
+			{
+				Main.Message(debugFlag, "[Agent 88] " + m.label + " enabler not in place. Waiting...");
+				return false;
+			}
+		}
+		StartExecution(m);
+		return true;
+	}
+	
+	private void StartExecution(Method m)
+	{
 		Main.Message(this, debugFlag, "Agent " + this.label + " executing " + m.label);
 		if (m.x!=0 && m.y!=0)
 		{
@@ -398,33 +620,25 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 		{
 			//schedule.get().RemoveElement(e);Does this need to be done?
 			currentMethod.MarkCompleted();
-			WorldState.CompletedMethods.add(currentMethod);
 			this.completedMethods.put(methodName, methodName);
+			scheduleCostCache.Invalidate();
 			Main.Message(debugFlag, "[Agent 130] " + currentMethod.label + " marked completed");
-			if (currentSchedule!=null)
+			synchronized (scheduleLock)
 			{
-				Iterator<ScheduleElement> el = currentSchedule.getItems();
-				boolean successfullyRemovedCompletedMethod = false;
-				while(el.hasNext())
+				if (currentSchedule!=null)
 				{
-					ScheduleElement e = el.next();
-					if (e.getMethod().label.equals(Method.StartingPoint) && el.hasNext())
-						e = el.next();
-					if (currentMethod.label.equals(e.getMethod().label))
-					{
-						currentSchedule.RemoveElement(e);
-						Main.Message(debugFlag, "[Agent 135] Removed " + e.getName() + e.hashCode() + " from schedule " + currentSchedule.hashCode());
-						successfullyRemovedCompletedMethod = true;
-					}	
-				}
-				if (!successfullyRemovedCompletedMethod)
-				{
-					Main.Message(debugFlag, "[Agent 136] Could not remove " + currentMethod.label + " from schedule " + currentSchedule.hashCode());
+					Schedule remaining = currentSchedule.Without(currentMethod.label);
+					if (remaining.size()<currentSchedule.size())
+						Main.Message(debugFlag, "[Agent 135] Removed " + currentMethod.label + " from schedule " + currentSchedule.hashCode());
+					else
+						Main.Message(debugFlag, "[Agent 136] Could not remove " + currentMethod.label + " from schedule " + currentSchedule.hashCode());
+					currentSchedule = remaining;
 				}
 			}
 			this.mq.PublishMessage(RavenUI.schedulingEventListenerName,SchedulingCommandType.DISPLAYREMOVEMETHOD, new SchedulingEventParams().AddMethodId(currentMethod.label).AddXCoord(currentMethod.x).AddYCoord(currentMethod.y).toString());
 			flagScheduleRecalculateRequired = true;
 			status=Status.PROCESSNG;
+			Signal();
 		}
 		//TODO Get siblings for exactly one methods
 		//for(String m : this.taskRepository.GetSiblingTasks(methodName))
@@ -447,35 +661,60 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 	
 	public void UpdateSchedule(Schedule newSchedule)
 	{
-		this.currentSchedule.Merge(newSchedule, this.completedMethods);
-		Main.Message(this.debugFlag, this.label + " updated schedule: " + this.currentSchedule.toString());
+		synchronized (scheduleLock)
+		{
+			this.currentSchedule = this.currentSchedule.Merge(newSchedule, this.completedMethods);
+		}
+		scheduleCostCache.Invalidate();
+		if (debugFlag) Main.Message(this.debugFlag, this.label + " updated schedule: " + this.currentSchedule.toString());
+		Signal();
+	}
+	
+	//Returns the method following the starting point of the current schedule, or null if there is none
+	private Method NextScheduledMethod()
+	{
+		Schedule schedule = currentSchedule;
+		if (schedule==null) return null;
+		Iterator<ScheduleElement> el = schedule.getItems();
+		if (!el.hasNext()) return null;
+		ScheduleElement e = el.next();
+		if (e.getMethod().label.equals(Method.StartingPoint) && el.hasNext())
+			e = el.next();
+		else
+			return null;
+		Main.Message(this, this.debugFlag, this.label +  " picked next task " + e.getName() + " " + e.hashCode() + " from schedule " + schedule.hashCode());
+		return e.getMethod();
 	}
 	
 	private void executeNextTask() {
 		try
 		{
-			if (currentSchedule!=null)
-			{
-				Iterator<ScheduleElement> el = currentSchedule.getItems();
-				if(el.hasNext())
-				{
-					ScheduleElement e = el.next();
-					if (e.getMethod().label.equals(Method.StartingPoint) && el.hasNext())
-						e = el.next();
-					else
-						return;
-					Main.Message(this, this.debugFlag, this.label +  " picked next task " + e.getName() + " " + e.hashCode() + " from schedule " + currentSchedule.hashCode());
-					Method m = e.getMethod();
-					ExecuteTask(m);
-				}
-			}
+			Method m = NextScheduledMethod();
+			if (m!=null) ExecuteTask(m);
 		} catch (InterruptedException ex) {
 			ex.printStackTrace();
 		}
 	}
 	
+	//Requests a step of this agent on the shared execution pool. Does nothing unless execution is event driven
+	public void Signal()
+	{
+		if (!EventDrivenExecution) return;
+		stepRequested.set(true);
+		if (stepScheduled.compareAndSet(false, true)) Execute(executionPool, stepper);
+	}
+	
+	//Does what one iteration of the polling loop did, without waiting for anything
+	private void Step()
+	{
+		if (status!=Status.PROCESSNG) return;
+		Method m = NextScheduledMethod();
+		if (m!=null) TryExecuteTask(m);
+	}
+	
 	public void RegisterChildrenWithUI(Node node)
 	{
+		WorldState.Issued(node);
 		if (!node.IsTask())
 		{
 			Method method = (Method)node;
@@ -514,6 +753,12 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 		fireSchedulingEvent(RavenUI.schedulingEventListenerName, SchedulingCommandType.DISPLAYADDAGENT, this.getName(), null, x, y);
 		RunSchedular();
 		status=Status.PROCESSNG;
+		if (EventDrivenExecution)
+		{
+			//Returns the thread, the agent is stepped whenever it is signalled from now on
+			Signal();
+			return;
+		}
 		//TODO Introduce step to fetch commands from mqtt to govern execution and status
 		while(true)
 		{
@@ -531,11 +776,16 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 
 	@Override
 	public void HandleScheduleEvent(ScheduleUpdateEvent scheduleUpdateEvent) {
-		if (currentSchedule!=null)
-			currentSchedule.Merge(scheduleUpdateEvent.Schedule, this.completedMethods);
-		else
-			currentSchedule = scheduleUpdateEvent.Schedule;
-		Main.Message(this, this.debugFlag, this.label + " schedule updated with tasks " + currentSchedule.toString());
+		synchronized (scheduleLock)
+		{
+			if (currentSchedule!=null)
+				currentSchedule = currentSchedule.Merge(scheduleUpdateEvent.Schedule, this.completedMethods);
+			else
+				currentSchedule = scheduleUpdateEvent.Schedule;
+		}
+		scheduleCostCache.Invalidate();
+		if (debugFlag) Main.Message(this, this.debugFlag, this.label + " schedule updated with tasks " + currentSchedule.toString());
+		Signal();
 	}
 
 	@Override
@@ -570,10 +820,13 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 	public SchedulingEvent ProcessSchedulingEvent(SchedulingEvent event) {
 		if (event.commandType==SchedulingCommandType.ASSIGNTASK && event.agentName.equalsIgnoreCase(this.getName()))
 		{
+			//All the tasks of an assignment are scheduled together, rather than by however many calculations get
+			//going before the last of them is added
 			for(int i=0;i<event.assignedTasks.size();i++)
 			{
-				AssignTask("T" + event.assignedTasks.get(i));
+				AddPendingTask("T" + event.assignedTasks.get(i));
 			}
+			RunSchedular();
 		}
 		if (event.commandType==SchedulingCommandType.METHODCOMPLETED && event.agentName.equalsIgnoreCase(this.getName()))
 		{
@@ -598,7 +851,17 @@ public class Agent extends BaseElement implements IAgent, IScheduleUpdateEventLi
 		if (event.commandType==SchedulingCommandType.CALCULATECOST && event.agentName.equalsIgnoreCase(this.getName()))
 		{
 			//Task task = this.taskRepository.GetTask(event.params.TaskName);
-			CalculateCost(event.tasks, event.params.OriginatingAgent);
+			List<Task> tasks = event.tasks;
+			if (tasks==null && event.taskIds!=null)
+			{
+				//Events received over mqtt only carry the ids of the tasks
+				tasks = new ArrayList<Task>();
+				for(Integer id : event.taskIds)
+				{
+					tasks.add(this.taskRepository.GetTask(id));
+				}
+			}
+			CalculateCost(tasks, event.params.OriginatingAgent);
 		}
 		if (event.commandType==SchedulingCommandType.COSTBROADCAST && event.agentName.equalsIgnoreCase(this.getName()))
 		{
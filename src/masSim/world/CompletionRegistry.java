@@ -0,0 +1,127 @@
+package masSim.world;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Records which methods or tasks have completed, by label. Every issuance of a label starts a new epoch of it, and
+//a label only counts as completed once it has completed in its current epoch, so that a recurring task which is
+//issued again has to be done again before what it enables can start. Only the current epoch of a label is kept,
+//so the registry holds one entry per label however long the simulation runs.
+public class CompletionRegistry {
+
+	//Epoch and completion of a label, replaced as a whole whenever either of them changes
+	private static class State
+	{
+		final long epoch;
+		final boolean completed;
+
+		State(long epoch, boolean completed)
+		{
+			this.epoch = epoch;
+			this.completed = completed;
+		}
+	}
+
+	private final ConcurrentHashMap<String, State> states = new ConcurrentHashMap<String, State>();
+	//Run once when the label completes in its current epoch
+	private final ConcurrentHashMap<String, Set<Runnable>> waiters = new ConcurrentHashMap<String, Set<Runnable>>();
+	private final AtomicLong completions = new AtomicLong();
+
+	//Starts a new epoch of the label, in which it has not completed yet, and returns it
+	public long Issue(String label)
+	{
+		while (true)
+		{
+			State current = states.get(label);
+			if (current==null)
+			{
+				if (states.putIfAbsent(label, new State(1, false))==null) return 1;
+			}
+			else
+			{
+				State next = new State(current.epoch+1, false);
+				if (states.replace(label, current, next)) return next.epoch;
+			}
+		}
+	}
+
+	//Marks the label completed in its current epoch, and runs whatever waits for it. Labels that were never
+	//issued complete in epoch 0
+	public void Complete(String label)
+	{
+		while (true)
+		{
+			State current = states.get(label);
+			if (current==null)
+			{
+				if (states.putIfAbsent(label, new State(0, true))==null) break;
+			}
+			else
+			{
+				if (current.completed) return;
+				if (states.replace(label, current, new State(current.epoch, true))) break;
+			}
+		}
+		completions.incrementAndGet();
+		Set<Runnable> waiting = waiters.get(label);
+		if (waiting==null) return;
+		for(Runnable waiter : waiting)
+		{
+			if (waiting.remove(waiter)) waiter.run();
+		}
+	}
+
+	public boolean IsCompleted(String label)
+	{
+		State state = states.get(label);
+		return state!=null && state.completed;
+	}
+
+	//Epoch the label is in, 0 if it was never issued
+	public long GetEpoch(String label)
+	{
+		State state = states.get(label);
+		return state==null ? 0 : state.epoch;
+	}
+
+	//Runs the waiter once the label has completed in its current epoch, right away if it already has. A waiter
+	//registered again for the same label before it ran is only run once
+	public void AwaitCompletion(String label, Runnable waiter)
+	{
+		Set<Runnable> waiting = waiters.get(label);
+		if (waiting==null)
+		{
+			Set<Runnable> created = Collections.newSetFromMap(new ConcurrentHashMap<Runnable, Boolean>());
+			waiting = waiters.putIfAbsent(label, created);
+			if (waiting==null) waiting = created;
+		}
+		waiting.add(waiter);
+		//The label may have completed before the waiter was added
+		if (IsCompleted(label) && waiting.remove(waiter)) waiter.run();
+	}
+
+	//Number of labels known, which is what the registry holds on to
+	public int size()
+	{
+		return states.size();
+	}
+
+	public long getCompletions()
+	{
+		return completions.get();
+	}
+
+	public void Clear()
+	{
+		states.clear();
+		waiters.clear();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Completion registry labels " + states.size() + " completions " + completions.get();
+	}
+}
@@ -0,0 +1,275 @@
+package masSim.world;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import raven.Main;
+import masSim.schedule.SchedulingEvent;
+import masSim.schedule.SchedulingEventListener;
+
+//In process replacement for the mqtt broker, used by MqttMessagingProvider in simulation mode. Listeners are
+//indexed by their name, so publishing an event only touches the listeners of the agent it is addressed to and
+//the global listeners. Every listener has its own bounded mailbox, which is drained on the listener's executor
+//by at most one thread at a time, so a listener still handles its events one after the other and in the order
+//they were published, while different listeners handle theirs concurrently and publishers never run handlers
+//on their own stack.
+public class LocalEventBus {
+
+	private boolean debugFlag = false;
+	public static int DefaultMailboxCapacity = 1024;
+	//Events handled in one go before a mailbox hands its thread back to the executor
+	public static int DrainBatchSize = 32;
+	//How long a publisher waits for room in a full mailbox. After that the event is queued anyway, because a
+	//listener publishing to another listener with a full mailbox that is in turn publishing back to it would
+	//otherwise never make progress
+	public static long FullMailboxWaitMs = 100;
+	private final int mailboxCapacity;
+	private final ConcurrentHashMap<String, CopyOnWriteArrayList<Mailbox>> mailboxesByName = new ConcurrentHashMap<String, CopyOnWriteArrayList<Mailbox>>();
+	private final CopyOnWriteArrayList<Mailbox> globalMailboxes = new CopyOnWriteArrayList<Mailbox>();
+	private final ConcurrentHashMap<SchedulingEventListener, Mailbox> mailboxes = new ConcurrentHashMap<SchedulingEventListener, Mailbox>();
+	private final ExecutorService defaultExecutor;
+	private final AtomicLong published = new AtomicLong();
+	private final AtomicLong delivered = new AtomicLong();
+	private final AtomicLong overflows = new AtomicLong();
+
+	public LocalEventBus()
+	{
+		this(DefaultMailboxCapacity, Runtime.getRuntime().availableProcessors());
+	}
+
+	public LocalEventBus(int mailboxCapacity, int dispatcherThreads)
+	{
+		this.mailboxCapacity = mailboxCapacity;
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.defaultExecutor = Executors.newFixedThreadPool(Math.max(1, dispatcherThreads), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "EventBus-" + threadCount.incrementAndGet());
+				//Dispatcher threads should not keep the simulation alive on their own
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	//Subscribes the listener on the shared dispatcher threads
+	public void Subscribe(SchedulingEventListener listener)
+	{
+		Subscribe(listener, defaultExecutor);
+	}
+
+	//Subscribes the listener, delivering its events on the given executor. Subscribing a listener again has no
+	//effect, as with MqttMessagingProvider.AddListener
+	public void Subscribe(SchedulingEventListener listener, Executor executor)
+	{
+		Mailbox mailbox = new Mailbox(listener, executor);
+		if (mailboxes.putIfAbsent(listener, mailbox)!=null) return;
+		if (listener.IsGlobalListener())
+		{
+			globalMailboxes.add(mailbox);
+		}
+		else
+		{
+			CopyOnWriteArrayList<Mailbox> named = new CopyOnWriteArrayList<Mailbox>();
+			CopyOnWriteArrayList<Mailbox> existing = mailboxesByName.putIfAbsent(listener.getName(), named);
+			(existing==null ? named : existing).add(mailbox);
+		}
+	}
+
+	public void Unsubscribe(SchedulingEventListener listener)
+	{
+		Mailbox mailbox = mailboxes.remove(listener);
+		if (mailbox==null) return;
+		globalMailboxes.remove(mailbox);
+		List<Mailbox> named = mailboxesByName.get(listener.getName());
+		if (named!=null) named.remove(mailbox);
+	}
+
+	//Queues the event for every listener of the agent it is addressed to and for every global listener, and
+	//returns without waiting for any of them to handle it
+	public void Publish(SchedulingEvent event)
+	{
+		published.incrementAndGet();
+		List<Mailbox> named = mailboxesByName.get(event.agentName);
+		if (named!=null)
+		{
+			for(Mailbox mailbox : named)
+			{
+				mailbox.Offer(event);
+			}
+		}
+		for(Mailbox mailbox : globalMailboxes)
+		{
+			mailbox.Offer(event);
+		}
+	}
+
+	//Hands the event to the same listeners as Publish, but on the publishing thread, as the provider used to
+	public void PublishSynchronously(SchedulingEvent event)
+	{
+		published.incrementAndGet();
+		List<Mailbox> named = mailboxesByName.get(event.agentName);
+		if (named!=null)
+		{
+			for(Mailbox mailbox : named)
+			{
+				mailbox.Handle(event);
+			}
+		}
+		for(Mailbox mailbox : globalMailboxes)
+		{
+			mailbox.Handle(event);
+		}
+	}
+
+	//Waits until every mailbox is empty and no listener is handling an event, or the timeout runs out. Returns
+	//whether the bus went quiet. Handlers publishing further events keep the bus busy until those are handled too
+	public boolean AwaitQuiescence(long timeoutMs)
+	{
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+		while (System.nanoTime() < deadline)
+		{
+			if (IsQuiet()) return true;
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		return IsQuiet();
+	}
+
+	private boolean IsQuiet()
+	{
+		for(Mailbox mailbox : mailboxes.values())
+		{
+			if (mailbox.pending.get()>0) return false;
+		}
+		return true;
+	}
+
+	public void Shutdown()
+	{
+		defaultExecutor.shutdown();
+	}
+
+	public long getPublished()
+	{
+		return published.get();
+	}
+
+	public long getDelivered()
+	{
+		return delivered.get();
+	}
+
+	//Number of events queued into a mailbox that stayed full for longer than FullMailboxWaitMs
+	public long getOverflows()
+	{
+		return overflows.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Local event bus listeners " + mailboxes.size() + " published " + published.get() + " delivered " + delivered.get() + " overflows " + overflows.get();
+	}
+
+	//Mailbox of a single listener. The queue and counters are lock free. The scheduled flag makes sure only one
+	//drain of the mailbox is submitted to the executor at any time
+	private class Mailbox implements Runnable
+	{
+		private final SchedulingEventListener listener;
+		private final Executor executor;
+		private final ConcurrentLinkedQueue<SchedulingEvent> queue = new ConcurrentLinkedQueue<SchedulingEvent>();
+		//Events queued or being handled
+		private final AtomicInteger pending = new AtomicInteger();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private volatile Thread drainingThread;
+
+		Mailbox(SchedulingEventListener listener, Executor executor)
+		{
+			this.listener = listener;
+			this.executor = executor;
+		}
+
+		void Offer(SchedulingEvent event)
+		{
+			//A listener publishing to itself must not wait for its own mailbox to drain
+			if (pending.get()>=mailboxCapacity && drainingThread!=Thread.currentThread())
+			{
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FullMailboxWaitMs);
+				while (pending.get()>=mailboxCapacity && System.nanoTime()<deadline)
+				{
+					LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+				}
+				if (pending.get()>=mailboxCapacity)
+				{
+					overflows.incrementAndGet();
+					Main.Message(debugFlag, "[LocalEventBus] Mailbox of " + listener.getName() + " is full, queueing " + event.commandType + " anyway");
+				}
+			}
+			pending.incrementAndGet();
+			queue.offer(event);
+			Schedule();
+		}
+
+		private void Schedule()
+		{
+			if (scheduled.compareAndSet(false, true))
+			{
+				executor.execute(this);
+			}
+		}
+
+		void Handle(SchedulingEvent event)
+		{
+			try
+			{
+				listener.ProcessSchedulingEvent(event);
+			}
+			catch(Exception e)
+			{
+				Main.Message(true, "[LocalEventBus] " + listener.getName() + " failed to handle " + event + " " + e);
+				e.printStackTrace();
+			}
+			delivered.incrementAndGet();
+		}
+
+		@Override
+		public void run()
+		{
+			drainingThread = Thread.currentThread();
+			try
+			{
+				for(int i=0; i<DrainBatchSize; i++)
+				{
+					SchedulingEvent event = queue.poll();
+					if (event==null) break;
+					try
+					{
+						Handle(event);
+					}
+					finally
+					{
+						pending.decrementAndGet();
+					}
+				}
+			}
+			finally
+			{
+				drainingThread = null;
+				scheduled.set(false);
+				//Events offered after the last poll, but before the flag was cleared, would otherwise wait for the next offer
+				if (!queue.isEmpty()) Schedule();
+			}
+		}
+	}
+}
@@ -2,19 +2,22 @@ package masSim.world;
 import java.io.UnsupportedEncodingException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.List;
+import java.util.concurrent.Executor;
 
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
-import org.eclipse.paho.client.sample.MQTTAgent;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
 import raven.Main;
 import masSim.schedule.SchedulingCommandType;
 import masSim.schedule.SchedulingEvent;
+import masSim.schedule.SchedulingEventCodec;
 import masSim.schedule.SchedulingEventListener;
 import masSim.taems.IAgent;
 import masSim.taems.Task;
@@ -41,12 +44,17 @@ public class MqttMessagingProvider implements MqttCallback {
 	private boolean debugFlag = false;
 	private boolean simulationMode = true;
 	private String baseTopic;
-	private int qos;
+	//QoS of negotiation traffic. Display traffic is always sent at QoS 0
+	private int qos = 1;
 	private String broker;
 	//private MemoryPersistence persistence;
-	private MQTTAgent client;
+	private MqttAsyncClient client;
+	private OutboundMessagePipeline outbound;
 	private static MqttMessagingProvider provider;
-	private List<SchedulingEventListener> schedulingEventListeners = new ArrayList<SchedulingEventListener>();
+	//In simulation mode, events are passed to listeners through an in process bus instead of the broker
+	private final LocalEventBus localBus = new LocalEventBus();
+	//When false, listeners handle events in simulation mode on the publishing thread, before PublishMessage returns
+	public static boolean AsynchronousLocalDelivery = true;
 	
 	public static synchronized MqttMessagingProvider GetMqttProvider()
 	{
@@ -64,8 +72,36 @@ public class MqttMessagingProvider implements MqttCallback {
 	
 	public void AddListener(SchedulingEventListener listener)
 	{
-		if(!schedulingEventListeners.contains(listener))
-			schedulingEventListeners.add(listener);
+		localBus.Subscribe(listener);
+	}
+	
+	//Adds a listener whose events are handled on the given executor rather than the shared dispatcher threads
+	public void AddListener(SchedulingEventListener listener, Executor executor)
+	{
+		localBus.Subscribe(listener, executor);
+	}
+	
+	public void RemoveListener(SchedulingEventListener listener)
+	{
+		localBus.Unsubscribe(listener);
+	}
+	
+	//Outbound pipeline of the broker connection, which is null in simulation mode
+	public OutboundMessagePipeline getOutbound()
+	{
+		return outbound;
+	}
+	
+	public LocalEventBus getLocalBus()
+	{
+		return localBus;
+	}
+	
+	//Stops the dispatcher threads of the local bus and the outbound pipeline, at the end of a simulation
+	public void Shutdown()
+	{
+		localBus.Shutdown();
+		if (outbound!=null) outbound.Shutdown();
 	}
 	
 	private MqttMessagingProvider() throws MqttException
@@ -84,8 +120,18 @@ public class MqttMessagingProvider implements MqttCallback {
 					
 					String publishMessage = "Node: " + nodeID + " Time: " + dateFormat.format(cal.getTime());
 					
-					client = new MQTTAgent(url,nodeID,false, true, null, null);
-					client.setCallBack(this);
+					baseTopic = topic;
+					client = new MqttAsyncClient(url, nodeID, new MemoryPersistence());
+					client.setCallback(this);
+					MqttConnectOptions options = new MqttConnectOptions();
+					options.setCleanSession(false);
+					client.connect(options).waitForCompletion();
+					outbound = new OutboundMessagePipeline(new MqttTransport() {
+						@Override
+						public void PublishAsync(String topic, byte[] payload, int qos, IMqttActionListener listener) throws MqttException {
+							client.publish(topic, payload, qos, false, null, listener);
+						}
+					}, qos);
 					
 					//QoS (0-means FireAndForget which is fastest; 1- means StoreAndForwardWithDuplicate which is bit slow; 2- means StoreAndForwardWithoutDuplciate which is slowest
 					
@@ -115,7 +161,7 @@ public class MqttMessagingProvider implements MqttCallback {
 		if (!this.simulationMode)
 		{
 			try {
-				client.subscribe(GetAgentSpecificTopic(agentName), 1);
+				client.subscribe(GetAgentSpecificTopic(agentName), qos);
 			} catch(MqttException me) {
 	        	DisplayMqttException(me);
 	        }
@@ -163,7 +209,7 @@ public class MqttMessagingProvider implements MqttCallback {
 	{
 		if (!simulationMode)
 		{
-			PublishMessage(event.agentName, event.commandType, event.params.toString());	
+			outbound.Submit(GetAgentSpecificTopic(event.agentName), event);
 		}
 		else
 		{
@@ -175,16 +221,7 @@ public class MqttMessagingProvider implements MqttCallback {
 	{
 		if (!simulationMode)
 		{
-			try {
-				String agentName = messageString.substring(0, messageString.indexOf(","));
-		        MqttMessage message = new MqttMessage();
-		        message.setPayload(messageString.getBytes());
-		        message.setQos(qos);
-		        String topicForAgent = baseTopic + agentName;
-		        client.publish(topicForAgent, 1, messageString.getBytes());
-		    } catch (MqttException e) {
-		        e.printStackTrace();
-		    }
+			PublishMessage(SchedulingEvent.Parse(messageString));
 		}
 		else
 		{
@@ -223,7 +260,16 @@ public class MqttMessagingProvider implements MqttCallback {
 	@Override
 	public void messageArrived(String topic, MqttMessage message) {
 		try {
-			ProcessArrivedMessage(new String(message.getPayload(), "UTF-8"));
+			byte[] payload = message.getPayload();
+			if (SchedulingEventCodec.IsBatch(payload))
+			{
+				for(SchedulingEvent event : SchedulingEventCodec.DecodeBatch(payload))
+					ProcessArrivedMessage(event);
+			}
+			else if (SchedulingEventCodec.IsBinary(payload))
+				ProcessArrivedMessage(SchedulingEventCodec.Decode(payload));
+			else
+				ProcessArrivedMessage(new String(payload, "UTF-8"));
 		} catch (UnsupportedEncodingException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -242,11 +288,11 @@ public class MqttMessagingProvider implements MqttCallback {
 		//System.out.println("Message Recieved :" + event);
 		//Passing of events to individual listeners selectively is done because on a single machine, we cannot simulate
 		//the running of separate mqtt listeners in each agent thread, because the same TCP port number gets tied down.
-		//However, the logic expects that not all events go to all listeners, hence a filtering is being done here
-		for(SchedulingEventListener listener : schedulingEventListeners)
-		{
-			if (event.agentName.equals(listener.getName()) || listener.IsGlobalListener())
-				listener.ProcessSchedulingEvent(event);
-		}
+		//However, the logic expects that not all events go to all listeners, so the bus only hands the event to the
+		//listeners of the agent it is addressed to, and to global listeners
+		if (AsynchronousLocalDelivery)
+			localBus.Publish(event);
+		else
+			localBus.PublishSynchronously(event);
 	}
 }
@@ -0,0 +1,11 @@
+package masSim.world;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+//Connection the outbound pipeline publishes through. Publishing must not wait for the broker, the listener is
+//told once the broker has acknowledged the payload, or once it has been written for QoS 0
+public interface MqttTransport {
+
+	public void PublishAsync(String topic, byte[] payload, int qos, IMqttActionListener listener) throws MqttException;
+}
@@ -0,0 +1,346 @@
+package masSim.world;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import raven.Main;
+import masSim.schedule.SchedulingCommandType;
+import masSim.schedule.SchedulingEvent;
+import masSim.schedule.SchedulingEventCodec;
+
+//Outbound side of MqttMessagingProvider. Events are collected per topic and QoS for a short window and then
+//published as a single batch payload, without waiting for the broker to acknowledge it. Display traffic for the
+//UI is sent at QoS 0, and a later task execution of the same agent, a repeated display update, or the removal of
+//a waypoint whose addition has not been sent yet, supersedes what is still waiting in the batch. Negotiation traffic is sent at the configured QoS,
+//and is never coalesced. The number of unacknowledged batches is bounded, so a slow broker slows publishers
+//down rather than letting batches pile up.
+public class OutboundMessagePipeline {
+
+	private boolean debugFlag = false;
+	public static long DefaultBatchWindowMs = 5;
+	public static int DefaultMaximumBatchSize = 64;
+	//Paho allows 10 unacknowledged messages per connection
+	public static int DefaultMaximumInflight = 10;
+	public static final int DisplayQos = 0;
+	private final MqttTransport transport;
+	private final int negotiationQos;
+	private final long batchWindowMs;
+	private final int maximumBatchSize;
+	private final Semaphore inflight;
+	private final int maximumInflight;
+	private final ScheduledExecutorService flusher;
+	//Batches waiting for their window to close, by topic and QoS
+	private final Map<String, Batch> batches = new HashMap<String, Batch>();
+	private final AtomicLong eventsSubmitted = new AtomicLong();
+	private final AtomicLong eventsCoalesced = new AtomicLong();
+	private final AtomicLong batchesPublished = new AtomicLong();
+	private final AtomicLong batchesFailed = new AtomicLong();
+
+	public OutboundMessagePipeline(MqttTransport transport, int negotiationQos)
+	{
+		this(transport, negotiationQos, DefaultBatchWindowMs, DefaultMaximumBatchSize, DefaultMaximumInflight);
+	}
+
+	public OutboundMessagePipeline(MqttTransport transport, int negotiationQos, long batchWindowMs, int maximumBatchSize, int maximumInflight)
+	{
+		this.transport = transport;
+		this.negotiationQos = negotiationQos;
+		this.batchWindowMs = batchWindowMs;
+		this.maximumBatchSize = maximumBatchSize;
+		this.maximumInflight = maximumInflight;
+		this.inflight = new Semaphore(maximumInflight);
+		this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "MqttOutbound");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	public static boolean IsDisplayTraffic(SchedulingCommandType commandType)
+	{
+		return commandType==SchedulingCommandType.DISPLAYADDMETHOD
+				|| commandType==SchedulingCommandType.DISPLAYREMOVEMETHOD
+				|| commandType==SchedulingCommandType.DISPLAYADDAGENT
+				|| commandType==SchedulingCommandType.DISPLAYTASKEXECUTION;
+	}
+
+	public int QosFor(SchedulingCommandType commandType)
+	{
+		return IsDisplayTraffic(commandType) ? DisplayQos : negotiationQos;
+	}
+
+	//Queues the event for the topic, and returns without waiting for it to be sent
+	public void Submit(String topic, SchedulingEvent event)
+	{
+		eventsSubmitted.incrementAndGet();
+		int qos = QosFor(event.commandType);
+		String batchKey = qos + "|" + topic;
+		Batch full = null;
+		synchronized (batches)
+		{
+			Batch batch = batches.get(batchKey);
+			if (batch==null)
+			{
+				batch = new Batch(topic, qos);
+				batches.put(batchKey, batch);
+				final Batch scheduled = batch;
+				flusher.schedule(new Runnable() {
+					@Override
+					public void run() {
+						Flush(scheduled);
+					}
+				}, batchWindowMs, TimeUnit.MILLISECONDS);
+			}
+			eventsCoalesced.addAndGet(batch.Add(event));
+			if (batch.size()>=maximumBatchSize)
+			{
+				batches.remove(batchKey);
+				full = batch;
+			}
+		}
+		if (full!=null)
+		{
+			final Batch toSend = full;
+			flusher.execute(new Runnable() {
+				@Override
+				public void run() {
+					Send(toSend);
+				}
+			});
+		}
+	}
+
+	//Sends every batch still waiting, and waits for the broker to acknowledge all of them or for the timeout
+	public boolean Flush(long timeoutMs) throws InterruptedException
+	{
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+		final List<Batch> waiting = new ArrayList<Batch>();
+		synchronized (batches)
+		{
+			waiting.addAll(batches.values());
+			batches.clear();
+		}
+		//Sends queued on the flusher before this one, including full batches, are done once it has run
+		Future<?> sent = flusher.submit(new Runnable() {
+			@Override
+			public void run() {
+				for(Batch batch : waiting) Send(batch);
+			}
+		});
+		try
+		{
+			sent.get(timeoutMs, TimeUnit.MILLISECONDS);
+		}
+		catch (ExecutionException e)
+		{
+			Main.Message(true, "[OutboundMessagePipeline] Flush failed " + e.getCause());
+			return false;
+		}
+		catch (TimeoutException e)
+		{
+			return false;
+		}
+		long left = Math.max(0, deadline - System.nanoTime());
+		if (!inflight.tryAcquire(maximumInflight, left, TimeUnit.NANOSECONDS)) return false;
+		inflight.release(maximumInflight);
+		return true;
+	}
+
+	//Called when the window of a batch closes. The batch may have been sent already for being full
+	private void Flush(Batch batch)
+	{
+		synchronized (batches)
+		{
+			String batchKey = batch.qos + "|" + batch.topic;
+			if (batches.get(batchKey)!=batch) return;
+			batches.remove(batchKey);
+		}
+		Send(batch);
+	}
+
+	//Runs on the flusher thread only, so batches of a topic leave in the order they were closed
+	private void Send(Batch batch)
+	{
+		List<byte[]> encoded = batch.Encode();
+		if (encoded.isEmpty()) return;
+		byte[] payload = encoded.size()==1 ? encoded.get(0) : SchedulingEventCodec.EncodeBatch(encoded);
+		try
+		{
+			inflight.acquire();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return;
+		}
+		final int events = encoded.size();
+		try
+		{
+			transport.PublishAsync(batch.topic, payload, batch.qos, new IMqttActionListener() {
+				@Override
+				public void onSuccess(IMqttToken token) {
+					//Counted before the permit is released, so a Flush returning sees the count
+					batchesPublished.incrementAndGet();
+					inflight.release();
+				}
+
+				@Override
+				public void onFailure(IMqttToken token, Throwable exception) {
+					batchesFailed.incrementAndGet();
+					inflight.release();
+					Main.Message(true, "[OutboundMessagePipeline] Publishing " + events + " events failed " + exception);
+				}
+			});
+		}
+		catch (MqttException e)
+		{
+			batchesFailed.incrementAndGet();
+			inflight.release();
+			Main.Message(true, "[OutboundMessagePipeline] Publishing " + events + " events failed " + e);
+		}
+		Main.Message(debugFlag, "[OutboundMessagePipeline] Sent " + events + " events to " + batch.topic + " at QoS " + batch.qos);
+	}
+
+	public void Shutdown()
+	{
+		flusher.shutdown();
+	}
+
+	public long getEventsSubmitted()
+	{
+		return eventsSubmitted.get();
+	}
+
+	//Display updates dropped for being superseded by a later one in the same batch
+	public long getEventsCoalesced()
+	{
+		return eventsCoalesced.get();
+	}
+
+	public long getBatchesPublished()
+	{
+		return batchesPublished.get();
+	}
+
+	public long getBatchesFailed()
+	{
+		return batchesFailed.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Outbound pipeline events " + eventsSubmitted.get() + " coalesced " + eventsCoalesced.get() + " batches " + batchesPublished.get() + " failed " + batchesFailed.get();
+	}
+
+	//Events bound for one topic at one QoS. Entries superseded later in the window are left as null
+	private static class Batch
+	{
+		final String topic;
+		final int qos;
+		private final List<SchedulingEvent> events = new ArrayList<SchedulingEvent>();
+		//Position of display updates by what they show, so superseded ones can be found
+		private final Map<String, Integer> displayPositions = new HashMap<String, Integer>();
+		private final Map<String, Integer> pendingAdditions = new HashMap<String, Integer>();
+		private int size = 0;
+
+		Batch(String topic, int qos)
+		{
+			this.topic = topic;
+			this.qos = qos;
+		}
+
+		//Returns the number of events dropped for being superseded, including earlier ones in the batch
+		int Add(SchedulingEvent event)
+		{
+			if (!IsDisplayTraffic(event.commandType))
+			{
+				events.add(event);
+				size++;
+				return 0;
+			}
+			if (event.commandType==SchedulingCommandType.DISPLAYREMOVEMETHOD)
+			{
+				//Removing a waypoint that has not been shown yet leaves nothing to show
+				Integer added = pendingAdditions.remove(WaypointKey(event));
+				if (added!=null)
+				{
+					Drop(added);
+					return 2;
+				}
+			}
+			//The last update of what is shown wins, and takes the place of the earlier one in the order of the batch
+			int dropped = 0;
+			String key = DisplayKey(event);
+			Integer earlier = displayPositions.get(key);
+			if (earlier!=null)
+			{
+				Drop(earlier);
+				dropped = 1;
+			}
+			if (event.commandType==SchedulingCommandType.DISPLAYADDMETHOD)
+			{
+				pendingAdditions.put(WaypointKey(event), events.size());
+			}
+			displayPositions.put(key, events.size());
+			events.add(event);
+			size++;
+			return dropped;
+		}
+
+		private void Drop(int position)
+		{
+			displayPositions.values().remove(position);
+			events.set(position, null);
+			size--;
+		}
+
+		//An agent executes one task at a time, so only its latest task execution needs to be shown. Other display
+		//updates only supersede identical ones
+		private String DisplayKey(SchedulingEvent event)
+		{
+			if (event.commandType==SchedulingCommandType.DISPLAYTASKEXECUTION)
+				return event.commandType + "|" + event.params.AgentId;
+			return event.commandType + "|" + event.params;
+		}
+
+		//Additions and removals of a waypoint carry different params, but the same method and position
+		private String WaypointKey(SchedulingEvent event)
+		{
+			return event.params.MethodId + "|" + event.params.XCoordinate + "|" + event.params.YCoordinate;
+		}
+
+		int size()
+		{
+			return size;
+		}
+
+		List<byte[]> Encode()
+		{
+			List<byte[]> encoded = new ArrayList<byte[]>(size);
+			for(SchedulingEvent event : events)
+			{
+				if (event!=null) encoded.add(SchedulingEventCodec.Encode(event));
+			}
+			return encoded;
+		}
+	}
+}
@@ -8,11 +8,13 @@ import java.util.concurrent.ExecutorService;
 
 import raven.Main;
 import raven.TaskIssuer;
+import raven.math.RandUtils;
 import raven.math.Vector2D;
 import raven.ui.RavenUI;
 import masSim.world.*;
 import masSim.schedule.SchedulingCommandType;
 import masSim.schedule.SchedulingEvent;
+import masSim.schedule.SchedulingEventListener;
 import masSim.taems.*;
 
 public class SimWorld {
@@ -22,13 +24,15 @@ public class SimWorld {
 	private MqttMessagingProvider mq;
 	private ExecutorService agentPool;
 	
-	public SimWorld(RavenUI ui, ExecutorService threadPool)
+	//The display is told about agents and methods, and moves the agents' bots. It is the RavenUI, or a listener of
+	//the same name when running without one
+	public SimWorld(SchedulingEventListener display, ExecutorService threadPool)
 	{
 		this.agentPool = threadPool;
 		agents = new ArrayList<IAgent>();
 		tasks = new ArrayList<Task>();
 		mq = MqttMessagingProvider.GetMqttProvider();
-		mq.AddListener(ui);
+		mq.AddListener(display);
 	}
 	
 	public static ArrayList<IAgent> CreateAgents(MqttMessagingProvider mq)
@@ -40,10 +44,10 @@ public class SimWorld {
 		
 		for(int i=1;i<=Main.NumberOfAgents;i++)
 		{
-			int x = Main.AgentLocations[i-1];
+			int x = i<=Main.AgentLocations.length ? Main.AgentLocations[i-1] : 0;
 			if (x==0)//Generate random if not over ridden to a fixed value in main class
 			{
-				x = (int)(Math.random() * (max - min) + min);
+				x = (int)RandUtils.RandInRange(min, max);
 				System.out.println("A"+i + " location " + x);
 			}
 			IAgent agent = new Agent("A" + i, true, x, 500, mq);//right, down from top
@@ -66,5 +70,17 @@ public class SimWorld {
 			agentPool.execute((Runnable) ag);	
 		}	
 	}
+	
+	//Stops the threads of the agents and of the messaging between them, once the simulation is over. The agents'
+	//shared pools are stopped too, so no other simulation can run on these classes afterwards
+	public void Shutdown()
+	{
+		for(IAgent ag : this.agents)
+		{
+			if (ag instanceof Agent) ((Agent)ag).Shutdown();
+		}
+		Agent.ShutdownSharedPools();
+		mq.Shutdown();
+	}
     
 }
@@ -1,37 +1,21 @@
 package masSim.world;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Dictionary;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import raven.Main;
-import masSim.taems.ExactlyOneQAF;
-import masSim.taems.Method;
-import masSim.taems.QAF;
-import masSim.taems.SeqSumQAF;
-import masSim.taems.SumAllQAF;
 import masSim.taems.Task;
+import masSim.world.TaskTemplateLibrary.TaskTemplate;
 
+//Task descriptions an agent can be assigned. Descriptions are read into a TaskTemplateLibrary shared by all
+//repositories reading the same file, and every task handed out is a fresh copy of its template.
 public class TaskRepository {
 	
 	boolean debugFlag = false;
 	public String repositoryFolderPath = "";
-	public Map<String,Task> taskDefinitions;
+	private TaskTemplateLibrary library;
 	
 	public TaskRepository()
 	{
@@ -41,23 +25,21 @@ public class TaskRepository {
 	public TaskRepository(String repositoryFolderPath)
 	{
 		this.repositoryFolderPath = repositoryFolderPath;
-		this.taskDefinitions= new HashMap<String,Task>();
 	}
 	
 	public String[] GetSiblingTasks(String methodName)
 	{
-		String[] result = null;
-		for(Task t: this.taskDefinitions.values())
+		if (library==null) return null;
+		for(TaskTemplate t: library.GetTemplates())
 		{
-			if (t.getQAF() instanceof ExactlyOneQAF)
+			if (t.isTask && t.qaf==TaskTemplateLibrary.QafExactlyOne)
 			{
-				ArrayList<Method> methods = t.GetMethods();
-				int i = 0;
-				for(Method m : methods)
+				List<String> result = new ArrayList<String>();
+				for(TaskTemplate child : t.getChildren())
 				{
-					result[i++] = m.label;
+					if (!child.isTask) result.add(child.label);
 				}
-				return result;
+				return result.toArray(new String[result.size()]);
 			}
 		}
 		return null;
@@ -66,95 +48,47 @@ public class TaskRepository {
 	public Task ReadTaskDescriptions(String fileName)
 	{
 		try {
-			File file = new File(repositoryFolderPath + "\\" + fileName);
+			File file = new File(repositoryFolderPath, fileName);
 			Main.Message(false, file.getAbsolutePath());
-			FileInputStream fis = null;
-			fis = new FileInputStream(file);
-			//Get the DOM Builder Factory
-			DocumentBuilderFactory factory =  DocumentBuilderFactory.newInstance();
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			Document document = builder.parse(fis);
-			Task tasks;
-			NodeList nodeList = document.getDocumentElement().getChildNodes();
-			for (int i = 0; i < nodeList.getLength(); i++) {
-				//We have encountered a <Taems> tag.
-				Node node = nodeList.item(i);
-				if (node instanceof Element) {
-					Task t = ParseTask(node);
-					this.taskDefinitions.put(t.getLabel(), t);
-					Main.Message(this, debugFlag, "Task " + t.label + " added to repository");
-				}
-			}
+			this.library = TaskTemplateLibrary.Get(file);
+			Main.Message(this, debugFlag, library.size() + " tasks available in repository" + (library.IsLoadedFromSnapshot() ? " from snapshot" : ""));
 		} 
 		catch (IOException e) {System.out.print(e);}
-		catch(ParserConfigurationException e){System.out.print(e);}
-		catch(SAXException e){System.out.print(e);}
 		return null;	
 	}
 	
-	public Task GetTask(String name)
+	//Labels of every task in the repository, in the order they were described
+	public List<String> GetTaskLabels()
 	{
-		if (!this.taskDefinitions.containsKey(name))
+		List<String> labels = new ArrayList<String>();
+		if (library!=null)
 		{
-			Main.Message(this.debugFlag, "Possible Error: Task " + name + " not found in repository");
+			for(TaskTemplate t : library.GetTemplates()) labels.add(t.label);
 		}
-		return this.taskDefinitions.get(name);
+		return labels;
 	}
 	
-	private Task ParseTask(Node node)
+	//Returns a new copy of the task, which the caller is free to assign
+	public Task GetTask(String name)
 	{
-		String taskId;
-		String taskName;
-		String qafStringValue;
-		QAF qaf = null;
-		boolean recurring = false;
-		boolean isTask = node.getNodeName()=="Task";
-		taskId = node.getAttributes().getNamedItem("id").getNodeValue();
-		taskName = node.getAttributes().getNamedItem("name").getNodeValue();
-		if (isTask) {
-			Node recurringNode = node.getAttributes().getNamedItem("recurring");
-			if (recurringNode!=null)
-				recurring = recurringNode.getNodeValue().toString().toLowerCase().equalsIgnoreCase("true");
-			qafStringValue = node.getAttributes().getNamedItem("qaf").getNodeValue().toString().toLowerCase();
-			if (qafStringValue.equalsIgnoreCase("sumall"))
-			{
-				qaf = new SumAllQAF();
-			}
-			else if (qafStringValue.equalsIgnoreCase("exactlyone"))
-			{
-				qaf = new ExactlyOneQAF();
-			} 
-			else if (qafStringValue.equalsIgnoreCase("seqsum"))
-			{
-				qaf = new SeqSumQAF();
-			}
-		}
-		Task task = new Task(taskName, qaf, null, recurring);
-		NodeList children = node.getChildNodes();
-		for (int i = 0; i < children.getLength(); i++) {
-			Node childNode = children.item(i);
-			if (childNode.getNodeName().equalsIgnoreCase("Method"))
-			{
-				Method childMethod = ParseMethod(childNode);
-				task.addTask(childMethod);
-			}
-			else if (childNode.getNodeName().equalsIgnoreCase("Task"))
-			{
-				Task childTask = ParseTask(childNode);
-				task.addTask(childTask);
-			}
+		TaskTemplate template = library==null ? null : library.GetTemplate(name);
+		if (template==null || !template.isTask)
+		{
+			Main.Message(this.debugFlag, "Possible Error: Task " + name + " not found in repository");
+			return null;
 		}
-		return task;
+		return (Task)template.Instantiate();
 	}
 	
-	private Method ParseMethod(Node node)
+	//Returns a new copy of the task whose label is T followed by the id, as in Task.GetIntId
+	public Task GetTask(int id)
 	{
-		String methodName = node.getAttributes().getNamedItem("name").getNodeValue();
-		int quality = Integer.parseInt(node.getAttributes().getNamedItem("Quality").getNodeValue());
-		int duration = Integer.parseInt(node.getAttributes().getNamedItem("Duration").getNodeValue());
-		int xCoord = Integer.parseInt(node.getAttributes().getNamedItem("XCoord").getNodeValue());
-		int yCoord = Integer.parseInt(node.getAttributes().getNamedItem("YCoord").getNodeValue());
-		Method method = new Method(methodName,quality,duration,xCoord,yCoord,0,null);
-		return method;
+		TaskTemplate template = library==null ? null : library.GetTemplate(id);
+		if (template==null || !template.isTask)
+		{
+			Main.Message(this.debugFlag, "Possible Error: Task " + id + " not found in repository");
+			return null;
+		}
+		return (Task)template.Instantiate();
 	}
 }
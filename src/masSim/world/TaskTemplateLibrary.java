@@ -0,0 +1,457 @@
+package masSim.world;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import raven.Main;
+import masSim.taems.ExactlyOneQAF;
+import masSim.taems.Method;
+import masSim.taems.Node;
+import masSim.taems.QAF;
+import masSim.taems.SeqSumQAF;
+import masSim.taems.SumAllQAF;
+import masSim.taems.Task;
+
+//Immutable task templates read from a task description file, shared by every TaskRepository reading the same
+//file. The file is parsed once per JVM, with a streaming parser, and a binary snapshot of the templates is kept
+//next to it, which later runs memory map instead of parsing the xml, as long as the file has not changed since.
+//Labels are interned, and templates are indexed by label and by integer task id. Task trees handed out by
+//Instantiate are fresh copies, so agents can assign and complete them without affecting each other.
+public class TaskTemplateLibrary {
+
+	private static boolean debugFlag = false;
+	//Folder snapshots are written to. Null keeps them next to the file they were made from
+	public static String SnapshotFolderPath = null;
+	public static final String SnapshotExtension = ".snapshot";
+	private static final int SnapshotMagic = 0x54414D53;
+	private static final int SnapshotVersion = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	static final byte QafNone = 0, QafSumAll = 1, QafExactlyOne = 2, QafSeqSum = 3;
+	private static final byte KindTask = 0, KindMethod = 1;
+	private static final Map<String, TaskTemplateLibrary> libraries = new HashMap<String, TaskTemplateLibrary>();
+
+	private final Map<String, TaskTemplate> templatesByLabel;
+	private final Map<Integer, TaskTemplate> templatesById;
+	private final boolean loadedFromSnapshot;
+
+	//Template of a task or method. Methods have no children and no qaf
+	public static final class TaskTemplate
+	{
+		public final String label;
+		public final boolean isTask;
+		public final int id;
+		final byte qaf;
+		final boolean recurring;
+		final double quality;
+		final double duration;
+		final double x;
+		final double y;
+		final List<TaskTemplate> children;
+
+		TaskTemplate(String label, byte qaf, boolean recurring, List<TaskTemplate> children)
+		{
+			this.label = label.intern();
+			this.isTask = true;
+			this.id = ParseId(this.label);
+			this.qaf = qaf;
+			this.recurring = recurring;
+			this.quality = 0;
+			this.duration = 0;
+			this.x = 0;
+			this.y = 0;
+			this.children = Collections.unmodifiableList(children);
+		}
+
+		TaskTemplate(String label, double quality, double duration, double x, double y)
+		{
+			this.label = label.intern();
+			this.isTask = false;
+			this.id = -1;
+			this.qaf = QafNone;
+			this.recurring = false;
+			this.quality = quality;
+			this.duration = duration;
+			this.x = x;
+			this.y = y;
+			this.children = Collections.emptyList();
+		}
+
+		public List<TaskTemplate> getChildren()
+		{
+			return children;
+		}
+
+		//Builds a new task tree, or method, from the template
+		public Node Instantiate()
+		{
+			if (!isTask) return new Method(label, quality, duration, x, y, 0, null);
+			Task task = new Task(label, CreateQaf(qaf), null, recurring);
+			for(TaskTemplate child : children)
+			{
+				task.addTask(child.Instantiate());
+			}
+			return task;
+		}
+
+		//Same id as Task.GetIntId, or -1 for labels that are not of the form T<number>
+		private static int ParseId(String label)
+		{
+			try
+			{
+				return Integer.parseInt(label.replaceAll("T", ""));
+			}
+			catch (NumberFormatException e)
+			{
+				return -1;
+			}
+		}
+	}
+
+	private TaskTemplateLibrary(List<TaskTemplate> templates, boolean loadedFromSnapshot)
+	{
+		Map<String, TaskTemplate> byLabel = new LinkedHashMap<String, TaskTemplate>();
+		Map<Integer, TaskTemplate> byId = new HashMap<Integer, TaskTemplate>();
+		for(TaskTemplate t : templates)
+		{
+			byLabel.put(t.label, t);
+			if (t.id>=0) byId.put(t.id, t);
+		}
+		this.templatesByLabel = Collections.unmodifiableMap(byLabel);
+		this.templatesById = Collections.unmodifiableMap(byId);
+		this.loadedFromSnapshot = loadedFromSnapshot;
+	}
+
+	//Returns the library for the file, reading it only if no repository has read it yet
+	public static TaskTemplateLibrary Get(File file) throws IOException
+	{
+		String key = file.getCanonicalPath();
+		synchronized (libraries)
+		{
+			TaskTemplateLibrary library = libraries.get(key);
+			if (library==null)
+			{
+				library = Load(file);
+				libraries.put(key, library);
+			}
+			return library;
+		}
+	}
+
+	//Forgets every library read so far, so that files are read again
+	public static void Clear()
+	{
+		synchronized (libraries)
+		{
+			libraries.clear();
+		}
+	}
+
+	public TaskTemplate GetTemplate(String label)
+	{
+		return templatesByLabel.get(label);
+	}
+
+	public TaskTemplate GetTemplate(int id)
+	{
+		return templatesById.get(id);
+	}
+
+	public java.util.Collection<TaskTemplate> GetTemplates()
+	{
+		return templatesByLabel.values();
+	}
+
+	public int size()
+	{
+		return templatesByLabel.size();
+	}
+
+	public boolean IsLoadedFromSnapshot()
+	{
+		return loadedFromSnapshot;
+	}
+
+	public static File SnapshotFile(File file)
+	{
+		File folder = SnapshotFolderPath==null ? file.getAbsoluteFile().getParentFile() : new File(SnapshotFolderPath);
+		return new File(folder, file.getName() + SnapshotExtension);
+	}
+
+	private static TaskTemplateLibrary Load(File file) throws IOException
+	{
+		File snapshot = SnapshotFile(file);
+		if (snapshot.exists())
+		{
+			try
+			{
+				List<TaskTemplate> templates = ReadSnapshot(snapshot, file);
+				if (templates!=null)
+				{
+					Main.Message(debugFlag, "[TaskTemplateLibrary] Read " + templates.size() + " templates from " + snapshot.getPath());
+					return new TaskTemplateLibrary(templates, true);
+				}
+			}
+			catch (IOException e)
+			{
+				Main.Message(true, "[TaskTemplateLibrary] Ignoring unreadable snapshot " + snapshot.getPath() + " " + e);
+			}
+			catch (RuntimeException e)
+			{
+				Main.Message(true, "[TaskTemplateLibrary] Ignoring corrupt snapshot " + snapshot.getPath() + " " + e);
+			}
+		}
+		List<TaskTemplate> templates;
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try
+		{
+			templates = Parse(in);
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException("Could not parse " + file.getPath(), e);
+		}
+		finally
+		{
+			in.close();
+		}
+		Main.Message(debugFlag, "[TaskTemplateLibrary] Parsed " + templates.size() + " templates from " + file.getPath());
+		try
+		{
+			WriteSnapshot(snapshot, file, templates);
+		}
+		catch (IOException e)
+		{
+			Main.Message(true, "[TaskTemplateLibrary] Could not write snapshot " + snapshot.getPath() + " " + e);
+		}
+		return new TaskTemplateLibrary(templates, false);
+	}
+
+	//Reads the top level tasks under the root element, with the same attributes TaskRepository used to read
+	static List<TaskTemplate> Parse(InputStream in) throws XMLStreamException
+	{
+		XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+		List<TaskTemplate> templates = new ArrayList<TaskTemplate>();
+		try
+		{
+			int depth = 0;
+			while (reader.hasNext())
+			{
+				if (reader.next()!=XMLStreamConstants.START_ELEMENT) {
+					if (reader.getEventType()==XMLStreamConstants.END_ELEMENT) depth--;
+					continue;
+				}
+				depth++;
+				if (depth==2)
+				{
+					templates.add(ParseElement(reader));
+					depth--;
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		return templates;
+	}
+
+	//Parses the element the reader is on, leaving the reader on its end element
+	private static TaskTemplate ParseElement(XMLStreamReader reader) throws XMLStreamException
+	{
+		String name = reader.getAttributeValue(null, "name");
+		if (reader.getLocalName().equalsIgnoreCase("Method"))
+		{
+			TaskTemplate method = new TaskTemplate(name,
+					Integer.parseInt(reader.getAttributeValue(null, "Quality")),
+					Integer.parseInt(reader.getAttributeValue(null, "Duration")),
+					Integer.parseInt(reader.getAttributeValue(null, "XCoord")),
+					Integer.parseInt(reader.getAttributeValue(null, "YCoord")));
+			SkipElement(reader);
+			return method;
+		}
+		boolean isTask = reader.getLocalName().equals("Task");
+		byte qaf = QafNone;
+		boolean recurring = false;
+		if (isTask)
+		{
+			String recurringValue = reader.getAttributeValue(null, "recurring");
+			recurring = recurringValue!=null && recurringValue.equalsIgnoreCase("true");
+			qaf = QafCode(reader.getAttributeValue(null, "qaf"));
+		}
+		List<TaskTemplate> children = new ArrayList<TaskTemplate>();
+		while (reader.hasNext())
+		{
+			int event = reader.next();
+			if (event==XMLStreamConstants.END_ELEMENT) break;
+			if (event!=XMLStreamConstants.START_ELEMENT) continue;
+			String childName = reader.getLocalName();
+			if (childName.equalsIgnoreCase("Method") || childName.equalsIgnoreCase("Task"))
+				children.add(ParseElement(reader));
+			else
+				SkipElement(reader);
+		}
+		return new TaskTemplate(name, qaf, recurring, children);
+	}
+
+	private static void SkipElement(XMLStreamReader reader) throws XMLStreamException
+	{
+		int depth = 1;
+		while (depth>0 && reader.hasNext())
+		{
+			int event = reader.next();
+			if (event==XMLStreamConstants.START_ELEMENT) depth++;
+			else if (event==XMLStreamConstants.END_ELEMENT) depth--;
+		}
+	}
+
+	private static byte QafCode(String value)
+	{
+		if (value==null) return QafNone;
+		if (value.equalsIgnoreCase("sumall")) return QafSumAll;
+		if (value.equalsIgnoreCase("exactlyone")) return QafExactlyOne;
+		if (value.equalsIgnoreCase("seqsum")) return QafSeqSum;
+		return QafNone;
+	}
+
+	private static QAF CreateQaf(byte code)
+	{
+		switch (code)
+		{
+		case QafSumAll: return new SumAllQAF();
+		case QafExactlyOne: return new ExactlyOneQAF();
+		case QafSeqSum: return new SeqSumQAF();
+		default: return null;
+		}
+	}
+
+	//Snapshot layout: magic, version, length and modification time of the source file, template count, and each
+	//template depth first as a kind byte, label, then qaf, recurring and children for tasks, or quality, duration
+	//and position for methods
+	static void WriteSnapshot(File snapshot, File source, List<TaskTemplate> templates) throws IOException
+	{
+		File temporary = new File(snapshot.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+		try
+		{
+			out.writeInt(SnapshotMagic);
+			out.writeInt(SnapshotVersion);
+			out.writeLong(source.length());
+			out.writeLong(source.lastModified());
+			out.writeInt(templates.size());
+			for(TaskTemplate t : templates)
+			{
+				WriteTemplate(out, t);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+		//Readers never see a partly written snapshot
+		if (snapshot.exists() && !snapshot.delete() || !temporary.renameTo(snapshot))
+		{
+			temporary.delete();
+			throw new IOException("Could not replace " + snapshot.getPath());
+		}
+	}
+
+	private static void WriteTemplate(DataOutputStream out, TaskTemplate t) throws IOException
+	{
+		out.writeByte(t.isTask ? KindTask : KindMethod);
+		byte[] label = t.label.getBytes(UTF8);
+		out.writeInt(label.length);
+		out.write(label);
+		if (t.isTask)
+		{
+			out.writeByte(t.qaf);
+			out.writeBoolean(t.recurring);
+			out.writeInt(t.children.size());
+			for(TaskTemplate child : t.children)
+			{
+				WriteTemplate(out, child);
+			}
+		}
+		else
+		{
+			out.writeDouble(t.quality);
+			out.writeDouble(t.duration);
+			out.writeDouble(t.x);
+			out.writeDouble(t.y);
+		}
+	}
+
+	//Returns null when the snapshot was made from a different version of the source file
+	static List<TaskTemplate> ReadSnapshot(File snapshot, File source) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(snapshot, "r");
+		try
+		{
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt()!=SnapshotMagic || buffer.getInt()!=SnapshotVersion) return null;
+			if (buffer.getLong()!=source.length() || buffer.getLong()!=source.lastModified()) return null;
+			int count = buffer.getInt();
+			List<TaskTemplate> templates = new ArrayList<TaskTemplate>();
+			for(int i=0;i<count;i++)
+			{
+				templates.add(ReadTemplate(buffer));
+			}
+			return templates;
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new IOException("Truncated snapshot " + snapshot.getPath());
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	private static TaskTemplate ReadTemplate(MappedByteBuffer buffer) throws IOException
+	{
+		byte kind = buffer.get();
+		int length = buffer.getInt();
+		if (length<0 || length>buffer.remaining()) throw new IOException("Corrupt snapshot label");
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		String label = new String(bytes, UTF8);
+		if (kind==KindMethod)
+		{
+			return new TaskTemplate(label, buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+		}
+		if (kind!=KindTask) throw new IOException("Corrupt snapshot node kind " + kind);
+		byte qaf = buffer.get();
+		boolean recurring = buffer.get()!=0;
+		int childCount = buffer.getInt();
+		if (childCount<0 || childCount>buffer.remaining()) throw new IOException("Corrupt snapshot child count");
+		List<TaskTemplate> children = new ArrayList<TaskTemplate>(childCount);
+		for(int i=0;i<childCount;i++)
+		{
+			children.add(ReadTemplate(buffer));
+		}
+		return new TaskTemplate(label, qaf, recurring, children);
+	}
+}
@@ -1,10 +1,32 @@
 package masSim.world;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import masSim.taems.*;
 
 public class WorldState {
-	public static List<Method> CompletedMethods = new CopyOnWriteArrayList<Method>();
-	public static List<Task> CompletedTasks = new CopyOnWriteArrayList<Task>();
+	//Completions of methods and tasks by label, which enablers are checked against
+	public static final CompletionRegistry Methods = new CompletionRegistry();
+	public static final CompletionRegistry Tasks = new CompletionRegistry();
+	
+	public static void MethodCompleted(Method method)
+	{
+		Methods.Complete(method.label);
+	}
+	
+	public static void TaskCompleted(Task task)
+	{
+		Tasks.Complete(task.label);
+	}
+	
+	//Called when a method or task is handed out, so that an earlier completion of the same label no longer counts
+	public static void Issued(Node node)
+	{
+		if (node.IsTask()) Tasks.Issue(node.label);
+		else Methods.Issue(node.label);
+	}
+	
+	//Returns the registry a node's completion is recorded in
+	public static CompletionRegistry For(Node node)
+	{
+		return node.IsTask() ? Tasks : Methods;
+	}
 }
@@ -0,0 +1,105 @@
+package raven;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs scenarios of the game and the agents without a window, as fast as
+ * they go, a number of them at a time in the same JVM. Each scenario is a
+ * HeadlessScenario loaded by a class loader of its own, so the statics the
+ * game and the agents keep - the message provider, the entity manager, the
+ * completion registries - are its own too. Scenarios differ by seed.
+ *
+ * Arguments are name=value pairs:
+ * scenarios (8), threads (number of processors), seed of the first
+ * scenario (1), agents (6), step in simulated seconds (0.005) and maxTime
+ * in simulated seconds (600). Bots update at most once per step, at up to
+ * 200 times a simulated second, so steps longer than 5 ms slow them down.
+ */
+public class HeadlessRunner {
+
+	public static void main(String args[]) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		int scenarios = 8;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = 1;
+		int agents = 6;
+		double step = 0.005;
+		double maxTime = 600;
+		for (String arg : args) {
+			String[] pair = arg.split("=", 2);
+			if (pair.length != 2) {
+				throw new IllegalArgumentException("HeadlessRunner: expected name=value, got " + arg);
+			}
+			if (pair[0].equals("scenarios")) scenarios = Integer.parseInt(pair[1]);
+			else if (pair[0].equals("threads")) threads = Integer.parseInt(pair[1]);
+			else if (pair[0].equals("seed")) seed = Long.parseLong(pair[1]);
+			else if (pair[0].equals("agents")) agents = Integer.parseInt(pair[1]);
+			else if (pair[0].equals("step")) step = Double.parseDouble(pair[1]);
+			else if (pair[0].equals("maxTime")) maxTime = Double.parseDouble(pair[1]);
+			else throw new IllegalArgumentException("HeadlessRunner: unknown argument " + pair[0]);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, scenarios)));
+		List<Future<String>> results = new ArrayList<Future<String>>();
+		for (int i = 0; i < scenarios; i++) {
+			results.add(pool.submit(isolated(seed + i, agents, step, maxTime)));
+		}
+		int failed = 0;
+		for (Future<String> result : results) {
+			try {
+				System.out.println(result.get());
+			} catch (Exception e) {
+				failed++;
+				System.out.println("scenario failed: " + e.getCause());
+				if (e.getCause() != null) e.getCause().printStackTrace();
+			}
+		}
+		pool.shutdown();
+		System.exit(failed == 0 ? 0 : 1);
+	}
+
+	/** the class path this was started with */
+	private static URL[] classPath() throws MalformedURLException {
+		String[] entries = System.getProperty("java.class.path").split(File.pathSeparator);
+		URL[] urls = new URL[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			urls[i] = new File(entries[i]).toURI().toURL();
+		}
+		return urls;
+	}
+
+	/** a scenario loaded from the class path this was started with by a
+	 * loader that does not look at the classes already loaded, run with that
+	 * loader as its thread's. The arguments are those of HeadlessScenario */
+	public static Callable<String> isolated(final long seed, final int agents,
+			final double step, final double maxTime) {
+		return new Callable<String>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public String call() throws Exception {
+				URLClassLoader loader = new URLClassLoader(classPath(), ClassLoader.getSystemClassLoader().getParent());
+				Thread thread = Thread.currentThread();
+				ClassLoader previous = thread.getContextClassLoader();
+				thread.setContextClassLoader(loader);
+				try {
+					Callable<String> scenario = (Callable<String>)loader.loadClass(HeadlessScenario.class.getName())
+							.getConstructor(long.class, int.class, double.class, double.class)
+							.newInstance(seed, agents, step, maxTime);
+					return scenario.call();
+				} finally {
+					thread.setContextClassLoader(previous);
+					loader.close();
+				}
+			}
+		};
+	}
+}
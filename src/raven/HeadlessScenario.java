@@ -0,0 +1,244 @@
+package raven;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import masSim.schedule.SchedulingCommandType;
+import masSim.schedule.SchedulingEvent;
+import masSim.schedule.SchedulingEventListener;
+import masSim.world.Agent;
+import masSim.world.LocalEventBus;
+import masSim.world.MqttMessagingProvider;
+import masSim.world.SimWorld;
+import masSim.world.TaskRepository;
+import raven.game.RavenGame;
+import raven.game.RoverBot;
+import raven.game.Waypoints;
+import raven.game.interfaces.IRavenBot;
+import raven.goals.GoalComposite;
+import raven.math.RandUtils;
+import raven.math.Vector2D;
+import raven.ui.RavenUI;
+import raven.utils.Level;
+import raven.utils.Log;
+import raven.utils.SchedulingLog;
+
+/**
+ * One run of the game and the agents without a window, on a clock of its
+ * own. The game is updated in fixed steps as fast as it goes, and after each
+ * step the agents are left to handle whatever the step set off before the
+ * clock moves on, so deciding takes them no simulated time however busy the
+ * machine is. What the agents tell the display - bots to add, methods to
+ * show and bots to send off - is applied to the game at the start of the
+ * next step, on the thread updating it. The run ends once every method
+ * handed out has been carried out, or the time limit is reached.
+ *
+ * The game and the agents keep much of their state in statics, so a
+ * scenario has the classes to itself only when HeadlessRunner loads it.
+ */
+public class HeadlessScenario implements Callable<String>, SchedulingEventListener {
+	/** the longest the agents may take to settle after a step, in
+	 * milliseconds, before the run is given up */
+	public static long SettleTimeoutMs = 60000;
+
+	private final long seed;
+	private final int numAgents;
+	private final double step;
+	private final double maxTime;
+
+	private RavenGame game;
+	private final ConcurrentLinkedQueue<SchedulingEvent> displayEvents = new ConcurrentLinkedQueue<SchedulingEvent>();
+	/** the methods handed out and not carried out yet */
+	private final Set<String> outstanding = new HashSet<String>();
+	private int methodsIssued;
+	private int methodsDone;
+
+	/**
+	 * @param seed the seed of everything random in the run, not 0, which
+	 * would seed the game from the clock
+	 * @param numAgents the number of agents, each with a rover bot
+	 * @param step the simulated seconds per game update
+	 * @param maxTime the simulated seconds after which the run stops
+	 */
+	public HeadlessScenario(long seed, int numAgents, double step, double maxTime) {
+		if (seed == 0) {
+			throw new IllegalArgumentException("HeadlessScenario: a seed of 0 would seed the game from the clock");
+		}
+		this.seed = seed;
+		this.numAgents = numAgents;
+		this.step = step;
+		this.maxTime = maxTime;
+	}
+
+	@Override
+	public String call() throws Exception {
+		long start = System.nanoTime();
+		Random previous = RandUtils.use(new Random(seed));
+		Log.setLevel(Level.WARN);
+		SchedulingLog.setLevel(Level.WARN);
+		Main.NumberOfAgents = numAgents;
+		Main.AgentLocations = new int[numAgents];
+
+		ExecutorService agentPool = Executors.newFixedThreadPool(numAgents);
+		SimWorld world = null;
+		try {
+			// seeded, the game also runs path searches on this thread, so
+			// their results reach the bots on the same step every run
+			game = new RavenGame(seed);
+			if (game.isPaused()) {
+				game.togglePause();
+			}
+			MqttMessagingProvider mq = MqttMessagingProvider.GetMqttProvider();
+			LocalEventBus bus = mq.getLocalBus();
+			world = new SimWorld(this, agentPool);
+			world.InitializeAndRun();
+			settle(bus);
+			applyDisplayEvents();
+
+			// hand all the tasks to the first agent to share out, as the
+			// TaskIssuer does
+			TaskRepository repository = new TaskRepository();
+			repository.ReadTaskDescriptions("TasksDetails.xml");
+			String tasks = "-";
+			for (String label : repository.GetTaskLabels()) {
+				tasks += label + "-";
+			}
+			mq.PublishMessage("A1,NEGOTIATE,::::" + tasks);
+			settle(bus);
+
+			double time = 0;
+			long steps = 0;
+			boolean done = false;
+			while (time < maxTime && !done) {
+				applyDisplayEvents();
+				game.update(step);
+				time += step;
+				steps++;
+				settle(bus);
+				done = methodsIssued > 0 && outstanding.isEmpty() && displayEvents.isEmpty();
+			}
+
+			long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			return String.format("seed %d: %s after %.2f simulated s in %d steps, %d of %d methods done, %d ms",
+					seed, done ? "completed" : "timed out", time, steps, methodsDone, methodsIssued, wallMs);
+		} finally {
+			if (game != null) {
+				game.shutdown();
+			}
+			if (world != null) {
+				world.Shutdown();
+			}
+			agentPool.shutdownNow();
+			RandUtils.use(previous);
+		}
+	}
+
+	/** waits for the agents to handle everything, until nothing more was
+	 * published or queued while looking */
+	private void settle(LocalEventBus bus) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SettleTimeoutMs);
+		while (true) {
+			long published = bus.getPublished();
+			long submitted = Agent.getSubmitted();
+			long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			if (left <= 0) {
+				throw new IllegalStateException("HeadlessScenario: the agents did not settle within " + SettleTimeoutMs + " ms");
+			}
+			boolean quiet = bus.AwaitQuiescence(left) & Agent.AwaitIdle(left);
+			if (quiet && bus.getPublished() == published && Agent.getSubmitted() == submitted) {
+				return;
+			}
+		}
+	}
+
+	/** does on the game thread what the RavenUI would have done. The agents
+	 * tell the display things in an order that depends on their threads, so
+	 * the events since the last step are applied in an order of their own */
+	private void applyDisplayEvents() {
+		List<SchedulingEvent> events = new ArrayList<SchedulingEvent>();
+		SchedulingEvent polled;
+		while ((polled = displayEvents.poll()) != null) {
+			events.add(polled);
+		}
+		Collections.sort(events, DISPLAY_ORDER);
+		for (SchedulingEvent event : events) {
+			Vector2D loc = new Vector2D(event.params.XCoordinate, event.params.YCoordinate);
+			if (event.commandType == SchedulingCommandType.DISPLAYADDMETHOD) {
+				game.addWpt(loc, event.params.MethodId);
+				if (outstanding.add(event.params.MethodId)) {
+					methodsIssued++;
+				}
+			} else if (event.commandType == SchedulingCommandType.DISPLAYREMOVEMETHOD) {
+				game.removeWpt(loc, event.params.MethodId);
+				if (outstanding.remove(event.params.MethodId)) {
+					methodsDone++;
+				}
+			} else if (event.commandType == SchedulingCommandType.DISPLAYADDAGENT) {
+				game.addRoverBotAt(loc, event.params.AgentId);
+			} else if (event.commandType == SchedulingCommandType.DISPLAYTASKEXECUTION) {
+				IRavenBot bot = game.getBotByName(event.params.AgentId);
+				if (bot instanceof RoverBot) {
+					RoverBot rover = (RoverBot)bot;
+					Waypoints matched = game.getWptsForMethodExecution(event.params.MethodId, rover);
+					GoalComposite<RoverBot> goal = rover.addWptsGoal(matched, event.params.MethodId);
+					if (goal != null) {
+						goal.LaunchedByMasSim = true;
+					}
+				}
+			}
+		}
+	}
+
+	/** bots before methods, methods before they are carried out, then by
+	 * agent and method. The sort is stable, so the events of one agent about
+	 * the same method keep the order they were told in */
+	private static final Comparator<SchedulingEvent> DISPLAY_ORDER = new Comparator<SchedulingEvent>() {
+		@Override
+		public int compare(SchedulingEvent a, SchedulingEvent b) {
+			int byType = rank(a.commandType) - rank(b.commandType);
+			if (byType != 0) {
+				return byType;
+			}
+			int byAgent = String.valueOf(a.params.AgentId).compareTo(String.valueOf(b.params.AgentId));
+			if (byAgent != 0) {
+				return byAgent;
+			}
+			return String.valueOf(a.params.MethodId).compareTo(String.valueOf(b.params.MethodId));
+		}
+
+		private int rank(SchedulingCommandType type) {
+			switch (type) {
+			case DISPLAYADDAGENT: return 0;
+			case DISPLAYADDMETHOD: return 1;
+			case DISPLAYREMOVEMETHOD: return 2;
+			default: return 3;
+			}
+		}
+	};
+
+	@Override
+	public SchedulingEvent ProcessSchedulingEvent(SchedulingEvent event) {
+		displayEvents.add(event);
+		return null;
+	}
+
+	@Override
+	public String getName() {
+		return RavenUI.schedulingEventListenerName;
+	}
+
+	@Override
+	public boolean IsGlobalListener() {
+		return false;
+	}
+}
@@ -1,5 +1,6 @@
 package raven;
 
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -32,7 +33,12 @@ public class Main {
 		if (debug && flag) System.out.println(message);
 	}
 	
-    public static void main(String args[]) {
+    public static void main(String args[]) throws Exception {
+    	//--headless runs scenarios without a window as fast as they go, see HeadlessRunner for the rest of the arguments
+    	if (args.length > 0 && args[0].equals("--headless")) {
+    		HeadlessRunner.main(Arrays.copyOfRange(args, 1, args.length));
+    		return;
+    	}
     	
     	ScenarioGenerator gen = new ScenarioGenerator();
     	gen.CreateTestTasks(NumberOfTasks);
@@ -9,7 +9,6 @@ import java.util.List;
 import masSim.schedule.SchedulingCommandType;
 import masSim.schedule.SchedulingEvent;
 import masSim.schedule.SchedulingEventListener;
-import masSim.taems.Task;
 import masSim.world.MqttMessagingProvider;
 import masSim.world.TaskRepository;
 
@@ -31,9 +30,9 @@ public class TaskIssuer implements Runnable, SchedulingEventListener {
 		repository.repositoryFolderPath = "E:\\EclipseWorkspace\\RoverSim\\TaskRepository\\";
 		repository.ReadTaskDescriptions("TasksDetails.xml");
 		String tasks = "-";
-		for(Task t : repository.taskDefinitions.values())
+		for(String label : repository.GetTaskLabels())
 		{
-			tasks += t.label + "-";
+			tasks += label + "-";
 		}
 		MasterTaskList.add("A1,NEGOTIATE,::::" + tasks);
 	}
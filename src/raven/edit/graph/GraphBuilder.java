@@ -1,7 +1,6 @@
 package raven.edit.graph;
 
 import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import raven.game.RavenBot;
@@ -11,8 +10,8 @@ import raven.game.navigation.NavGraphEdge;
 import raven.game.navigation.NavGraphNode;
 import raven.game.triggers.Trigger;
 import raven.math.Vector2D;
-import raven.math.Wall2D;
 import raven.math.WallIntersectionTest;
+import raven.math.WallTree;
 import raven.math.graph.GraphNode;
 import raven.math.graph.SparseGraph;
 import raven.script.RavenScript;
@@ -41,7 +40,7 @@ public class GraphBuilder {
 				Vector2D to = graph.getNode(j).pos();
 				double distanceSq = from.distanceSq(to);
 				// It must be within range and it must not be obstructed by a wall
-				if (distanceSq < maxEdgeLength * maxEdgeLength && !WallIntersectionTest.doWallsObstructLineSegment(from, to, level.getWalls())) {
+				if (distanceSq < maxEdgeLength * maxEdgeLength && !WallIntersectionTest.doWallsObstructLineSegment(from, to, level.getWallTree())) {
 					graph.addEdge(new NavGraphEdge(i, j, Math.sqrt(distanceSq)));
 				}
 			}
@@ -51,7 +50,7 @@ public class GraphBuilder {
 	public double getMaxEdgeLength() { return maxEdgeLength; }
 	public void setMaxEdgeLength(double maxEdgeLength) { this.maxEdgeLength = maxEdgeLength; }
 
-	protected boolean isValidNodeLocation(Vector2D position, List<Wall2D> walls) {
+	protected boolean isValidNodeLocation(Vector2D position, WallTree walls) {
 		return (position.x > 0 && position.x < level.getSizeX() && position.y > 0 && position.y < level.getSizeY() &&
 				!WallIntersectionTest.doWallsIntersectCircle(walls, position, nodeMargin));
 	}
@@ -86,14 +85,14 @@ public class GraphBuilder {
 			
 			// Rewind up to the highest point
 			Vector2D cursor = location.add(new Vector2D(0, -nodeSpacing));
-			while (isValidNodeLocation(cursor, level.getWalls()) && !WallIntersectionTest.doWallsObstructLineSegment(location, cursor, level.getWalls()))
+			while (isValidNodeLocation(cursor, level.getWallTree()) && !WallIntersectionTest.doWallsObstructLineSegment(location, cursor, level.getWallTree()))
 				cursor = cursor.add(new Vector2D(0, -nodeSpacing));
 			
 			// Go forward and start building
 			cursor = cursor.add(new Vector2D(0, nodeSpacing));
 			
 			// Add nodes going right until we hit a boundary
-			while (isValidNodeLocation(cursor, level.getWalls()) && !WallIntersectionTest.doWallsObstructLineSegment(location, cursor, level.getWalls())) {
+			while (isValidNodeLocation(cursor, level.getWallTree()) && !WallIntersectionTest.doWallsObstructLineSegment(location, cursor, level.getWallTree())) {
 				Vector2D down = cursor.add(new Vector2D(0, nodeSpacing));
 				Vector2D left = cursor.add(new Vector2D(-nodeSpacing, 0));
 				Vector2D right = cursor.add(new Vector2D(nodeSpacing, 0));
@@ -101,20 +100,20 @@ public class GraphBuilder {
 				graph.addNode(new NavGraphNode<Trigger<IRavenBot>>(graph.getNextFreeNodeIndex(), cursor));
 				processed.add(cursor);
 				
-				if (!spanLeft && isValidNodeLocation(left, level.getWalls()) && !WallIntersectionTest.doWallsObstructLineSegment(location, left, level.getWalls()) && !processed.contains(left)) {
+				if (!spanLeft && isValidNodeLocation(left, level.getWallTree()) && !WallIntersectionTest.doWallsObstructLineSegment(location, left, level.getWallTree()) && !processed.contains(left)) {
 					// Span left if we aren't already spanning, the location is valid, and there are no obstructions
 					spanLeft = true;
 					queue.add(left);
-				} else if (spanLeft && (!isValidNodeLocation(left, level.getWalls()) || WallIntersectionTest.doWallsObstructLineSegment(location, left, level.getWalls()))) {
+				} else if (spanLeft && (!isValidNodeLocation(left, level.getWallTree()) || WallIntersectionTest.doWallsObstructLineSegment(location, left, level.getWallTree()))) {
 					// Stop spanning left if we hit an invalid location or a wall
 					spanLeft = false;
 				}
 
-				if (!spanRight && isValidNodeLocation(right, level.getWalls()) && !WallIntersectionTest.doWallsObstructLineSegment(location, right, level.getWalls()) && !processed.contains(right)) {
+				if (!spanRight && isValidNodeLocation(right, level.getWallTree()) && !WallIntersectionTest.doWallsObstructLineSegment(location, right, level.getWallTree()) && !processed.contains(right)) {
 					// Span right if we aren't already spanning, the location is valid, and there are no obstructions
 					spanRight = true;
 					queue.add(right);
-				} else if (spanRight && (!isValidNodeLocation(right, level.getWalls()) || WallIntersectionTest.doWallsObstructLineSegment(location, right, level.getWalls()))) {
+				} else if (spanRight && (!isValidNodeLocation(right, level.getWallTree()) || WallIntersectionTest.doWallsObstructLineSegment(location, right, level.getWallTree()))) {
 					// Stop spanning right if we hit an invalid location or a wall
 					spanRight = false;
 				}
@@ -0,0 +1,158 @@
+package raven.game;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import raven.game.interfaces.IRavenBot;
+import raven.math.RandUtils;
+import raven.utils.DeferredEffects;
+
+/**
+ * Updates the bots in two phases. First every bot thinks - picks its goals,
+ * plans and works out its steering - looking at the game as it was at the
+ * start of the update. This is the expensive part and the bots do it at the
+ * same time on a fork/join pool. Then, one bot after another in the order of
+ * the list, each moves and the effects it had on the rest of the game while
+ * thinking (messages, shots, sounds, path requests) are run.
+ *
+ * Each bot draws its random numbers from a generator of its own, seeded
+ * from the updater's seed in the order the bots first turn up, so a game
+ * started from the same seed plays out the same with any number of threads.
+ */
+public class BotUpdater {
+	/** the most bots a task thinks for without splitting in two */
+	private static final int BOTS_PER_TASK = 4;
+
+	/** null when the bots think on the calling thread */
+	private ForkJoinPool pool;
+
+	private final Random seeds;
+	private final Map<IRavenBot, Random> streams = new IdentityHashMap<IRavenBot, Random>();
+
+	/** the bots being updated and what each did to the rest of the game */
+	private IRavenBot[] snapshot = new IRavenBot[0];
+	private List<List<Runnable>> effects = new ArrayList<List<Runnable>>();
+
+	/**
+	 * @param threads the number of threads the bots think on, 0 to think on
+	 * the thread calling update
+	 * @param seed the seed the bots' random numbers come from
+	 */
+	public BotUpdater(int threads, long seed) {
+		if (threads > 0) {
+			pool = new ForkJoinPool(threads);
+		}
+		seeds = new Random(seed);
+	}
+
+	/** the random numbers the bot draws, from the next seed for a new bot */
+	private Random streamOf(IRavenBot bot) {
+		Random stream = streams.get(bot);
+		if (stream == null) {
+			stream = new Random(seeds.nextLong());
+			streams.put(bot, stream);
+		}
+		return stream;
+	}
+
+	/**
+	 * lets all the bots think and then act
+	 * @param bots the bots to update, in the order they act in
+	 * @param delta the time since the last update in seconds
+	 */
+	public void update(List<? extends IRavenBot> bots, double delta) {
+		int count = bots.size();
+		snapshot = bots.toArray(snapshot.length >= count ? snapshot : new IRavenBot[count]);
+		while (effects.size() < count) {
+			effects.add(new ArrayList<Runnable>());
+		}
+		// new bots get their generators here, in order, rather than on
+		// whichever thread gets to them first
+		Random[] botStreams = new Random[count];
+		for (int i = 0; i < count; i++) {
+			botStreams[i] = streamOf(snapshot[i]);
+			effects.get(i).clear();
+		}
+
+		Think think = new Think(botStreams, 0, count, delta);
+		if (pool == null) {
+			think.compute();
+		} else {
+			pool.invoke(think);
+		}
+
+		for (int i = 0; i < count; i++) {
+			Random previous = RandUtils.use(botStreams[i]);
+			try {
+				snapshot[i].act(delta);
+				List<Runnable> botEffects = effects.get(i);
+				for (Runnable effect : botEffects) {
+					effect.run();
+				}
+				botEffects.clear();
+			} finally {
+				RandUtils.use(previous);
+			}
+			snapshot[i] = null;
+		}
+	}
+
+	/** forgets the bot's generator */
+	public void removeBot(IRavenBot bot) {
+		streams.remove(bot);
+	}
+
+	/** forgets all the bots */
+	public void clear() {
+		streams.clear();
+	}
+
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/** lets the bots from start to end-1 think, splitting the range between
+	 * tasks while it is large */
+	private class Think extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Random[] botStreams;
+		private final int start;
+		private final int end;
+		private final double delta;
+
+		Think(Random[] botStreams, int start, int end, double delta) {
+			this.botStreams = botStreams;
+			this.start = start;
+			this.end = end;
+			this.delta = delta;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > BOTS_PER_TASK) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new Think(botStreams, start, middle, delta),
+						new Think(botStreams, middle, end, delta));
+				return;
+			}
+			for (int i = start; i < end; i++) {
+				Random previous = RandUtils.use(botStreams[i]);
+				DeferredEffects.hold(effects.get(i));
+				try {
+					snapshot[i].think(delta);
+				} finally {
+					DeferredEffects.stopHolding();
+					RandUtils.use(previous);
+				}
+			}
+		}
+	}
+}
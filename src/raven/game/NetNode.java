@@ -60,7 +60,7 @@ public class NetNode extends RavenBot implements INetNode, Comparator<INetNode>
 	*/
 	
 	@Override
-	public void update(double delta) {
+	public void think(double delta) {
 		// Moved from render() since this is time dependent!
 		numSecondsHitPersistant -= delta;
 
@@ -71,9 +71,8 @@ public class NetNode extends RavenBot implements INetNode, Comparator<INetNode>
 		//brain.process(delta);
 		reason.process(delta);
 
-		// Calculate the steering force and update the bot's velocity and
-		// position
-		updateMovement(delta);
+		// Calculate the steering force. The node moves by it in act
+		calculateSteering(delta);
 
 		// if the bot is under AI control but not scripted
 		if (!isPossessed()) {
@@ -110,6 +109,11 @@ public class NetNode extends RavenBot implements INetNode, Comparator<INetNode>
 			//weaponSys.takeAimAndShoot(delta);
 		}
 	}
+	/** network nodes do not keep a sensory memory up to date */
+	@Override
+	public boolean usesVision() {
+		return false;
+	}
 	@Override
 	public void render() {
 		super.render();
@@ -120,12 +120,20 @@ public class RavenBot extends MovingEntity implements IRavenBot {
 	transient protected ArrayList<Vector2D> vecBotVBTrans;
 
 	/**
-	 * this method is called from the update method. It calculates and applies
-	 * the steering force for this time-step.
+	 * this method is called from think. It calculates the steering force for
+	 * this time-step.
 	 */
-	protected void updateMovement(double delta) {
+	protected void calculateSteering(double delta) {
 		//calculate the combined steering force
-		Vector2D force = steering.calculate();
+		steering.calculate();
+	}
+
+	/**
+	 * this method is called from act. It applies the steering force
+	 * calculated for this time-step.
+	 */
+	protected void updateMovement(double delta) {
+		Vector2D force = steering.force();
 
 		//if no steering force is produced decelerate the player by applying a
 		//braking force
@@ -420,6 +428,17 @@ public class RavenBot extends MovingEntity implements IRavenBot {
 
 	@Override
 	public void update(double delta) {
+		think(delta);
+		act(delta);
+	}
+
+	/**
+	 * Everything the bot decides in an update: its goals, targets, aim and
+	 * the steering force it will move by. This only changes the bot itself;
+	 * what other bots could notice goes through DeferredEffects, so the game
+	 * can let many bots think at once.
+	 */
+	public void think(double delta) {
 		// Moved from render() since this is time dependent!
 		numSecondsHitPersistant -= delta;
 
@@ -429,9 +448,9 @@ public class RavenBot extends MovingEntity implements IRavenBot {
 		// path planning request.
 		brain.process(delta);
 
-		// Calculate the steering force and update the bot's velocity and
-		// position
-		updateMovement(delta);
+		// Calculate the steering force. The bot moves by it in act, once
+		// every bot has thought
+		calculateSteering(delta);
 
 		// if the bot is under AI control but not scripted
 		if (!isPossessed()) {
@@ -451,8 +470,8 @@ public class RavenBot extends MovingEntity implements IRavenBot {
 				brain.Arbitrate();
 			}
 
-			// update the sensory memory with any visual stimulus
-			sensoryMem.updateVision(delta);
+			// the sensory memory is updated with any visual stimulus by the
+			// game's VisionSystem, for all the bots at once
 
 			// select the appropriate weapon to use from the weapons currently
 			// in the inventory
@@ -467,6 +486,11 @@ public class RavenBot extends MovingEntity implements IRavenBot {
 
 	}
 
+	/** updates the bot's velocity and position by what it decided in think */
+	public void act(double delta) {
+		updateMovement(delta);
+	}
+
 	@Override
 	public boolean handleMessage(Telegram msg) {
 		// first see if the current goal accepts the message
@@ -617,6 +641,12 @@ public class RavenBot extends MovingEntity implements IRavenBot {
 		return possessed;
 	}
 
+	/** true if the game should update the sensory memory with what the bot
+	 * sees. A possessed bot sees through the player's eyes */
+	public boolean usesVision() {
+		return !isPossessed();
+	}
+
 	public boolean isDead() {
 		return status == Status.DEAD;
 	}
@@ -17,6 +17,14 @@ public class RavenDoor extends BaseGameEntity {
 	
 	protected Status status;
 	
+	/** told when the door opens or closes, so that paths worked out with the
+	 * door the other way can be dropped */
+	public interface StateListener {
+		void doorStateChanged(RavenDoor door);
+	}
+	
+	transient protected StateListener stateListener;
+	
 	/** a sliding door is created from two walls, back to back. These walls
 	 * must be added to a map's geometry in order for an agent to detect them.
 	 */
@@ -41,7 +49,7 @@ public class RavenDoor extends BaseGameEntity {
 	protected void open() {
 		if (status == Status.OPENING) {
 			if (currentSize < 2) {
-				status = Status.OPEN;
+				setStatus(Status.OPEN);
 				
 				numSecondsCurrentlyOpen = numSecondsStayOpen;
 				
@@ -59,7 +67,7 @@ public class RavenDoor extends BaseGameEntity {
 	
 	protected void close() {
 		if (status == Status.CLOSING) {
-			status = Status.CLOSED;
+			setStatus(Status.CLOSED);
 			return;
 		}
 		
@@ -71,6 +79,21 @@ public class RavenDoor extends BaseGameEntity {
 		changePosition(p1, p1.add(vectorToP2Norm).mul(currentSize));
 	}
 	
+	protected void setStatus(Status newStatus) {
+		if (status == newStatus) return;
+		status = newStatus;
+		if (stateListener != null) stateListener.doorStateChanged(this);
+	}
+	
+	public void setStateListener(StateListener listener) {
+		stateListener = listener;
+	}
+	
+	/** the two ends of the door when it is closed */
+	public Vector2D getP1() { return p1; }
+	
+	public Vector2D getP2() { return p2; }
+	
 	protected void changePosition(Vector2D newP1, Vector2D newP2) {
 		// TODO
 	}
@@ -81,6 +104,9 @@ public class RavenDoor extends BaseGameEntity {
 		status = Status.CLOSED;
 		numSecondsStayOpen = timeout;
 		
+		p1 = pos1;
+		p2 = pos2;
+		
 		vectorToP2Norm = pos2.sub(pos1);
 		vectorToP2Norm.normalize();
 		currentSize = size = pos2.distance(pos1);
@@ -28,11 +28,15 @@ import raven.game.messaging.RavenMessage;
 import raven.game.navigation.PathManager;
 import raven.game.navigation.RavenPathPlanner;
 import raven.goals.Goal;
+import raven.math.CellSpacePartition;
+import raven.math.RandUtils;
 import raven.math.Vector2D;
 import raven.math.WallIntersectionTest;
+import raven.math.WallTree;
 import raven.script.RavenScript;
 import raven.ui.GameCanvas;
 import raven.ui.RavenUI;
+import raven.utils.DeferredEffects;
 import raven.utils.Log;
 import raven.utils.MapSerializer;
 import raven.utils.Regulator;
@@ -46,6 +50,15 @@ public class RavenGame {
 	/** bots that inhabit the current map */
 	private ArrayList<IRavenBot> bots = new ArrayList<IRavenBot>();
 
+	/** the bots partitioned by position, built for the current map on first
+	 * use, and the largest bounding radius among them */
+	private CellSpacePartition<IRavenBot> botPartition;
+	private RavenMap botPartitionMap;
+	private double largestBotRadius;
+
+	/** the bots tagged by the last call to tagRavenBotsWithinViewRange */
+	private List<IRavenBot> taggedBots = new ArrayList<IRavenBot>();
+
 	/** A user may control a bot manually. This is that bot */
 	private IRavenBot selectedBot;
 
@@ -53,7 +66,16 @@ public class RavenGame {
 	private ArrayList<RavenProjectile> projectiles = new ArrayList<RavenProjectile>();
 
 	/** manages all the path planning requests */
-	PathManager pathManager = new PathManager(RavenScript.getInt("MaxSearchCyclesPerUpdateStep"));;
+	PathManager pathManager;
+
+	/** updates what all the bots can see, once per bot update */
+	private VisionSystem visionSystem = new VisionSystem(RavenScript.getDouble("Bot_VisionRange"));
+
+	/** lets the bots think at the same time, then moves them one by one */
+	private BotUpdater botUpdater;
+
+	/** the seed of everything random in the game, 0 to seed from the clock */
+	private final long randomSeed;
 
 	/** true if the game is paused */
 	boolean paused;
@@ -77,6 +99,8 @@ public class RavenGame {
 	private void clear() {
 		// delete the bots
 		bots.clear();
+		if (botUpdater != null)
+			botUpdater.clear();
 		// delete any active projectiles
 		projectiles.clear();
 	}
@@ -123,7 +147,20 @@ public class RavenGame {
 	// /////////////////
 	// Public methods
 
+	/** a game seeded from RandomSeed */
 	public RavenGame() {
+		this((long)RavenScript.getDouble("RandomSeed"));
+	}
+
+	/**
+	 * @param randomSeed the seed of everything random in the game, 0 to seed
+	 * from the clock. A seeded game runs its path searches on the game thread
+	 */
+	public RavenGame(long randomSeed) {
+		this.randomSeed = randomSeed;
+		if (randomSeed != 0) {
+			RandUtils.setSeed(randomSeed);
+		}
 		EntityManager.reset();
 		
 		try {
@@ -234,14 +271,17 @@ public class RavenGame {
 		if (newMapPath != null) {
 			try {
 				loadMap(newMapPath);
-				int width = getMap().getSizeX();
-				int height = getMap().getSizeY();
-				GameCanvas.getInstance().setNewSize(width, height);
-				Main.getUI().setTitle(getMap().getName());
-				//Main.getUI().validate();
-				((JPanel)Main.getUI().getContentPane()).setPreferredSize(new Dimension(width, height));
-				//Main.getUI().getContentPane().setSize(width, height);
-				Main.getUI().pack();
+				// there is no window to fit when running headless
+				if (Main.getUI() != null) {
+					int width = getMap().getSizeX();
+					int height = getMap().getSizeY();
+					GameCanvas.getInstance().setNewSize(width, height);
+					Main.getUI().setTitle(getMap().getName());
+					//Main.getUI().validate();
+					((JPanel)Main.getUI().getContentPane()).setPreferredSize(new Dimension(width, height));
+					//Main.getUI().getContentPane().setSize(width, height);
+					Main.getUI().pack();
+				}
 				
 			} catch (IOException e) {
 				Log.warn("game", "Failed to load map " + newMapPath + ".");
@@ -304,8 +344,13 @@ public class RavenGame {
 		if(botUpdateRegulator.isReady()) {
 			double itsDelta = botUpdateRegulator.getItsDelta();
 			//System.out.println("Bot Delta = " + itsDelta);
+			visionSystem.update(bots, getBotPartition(), map.getWallTree(), itsDelta);
+			botUpdater.update(bots, itsDelta);
+
+			// move the bots that have crossed into another cell
+			CellSpacePartition<IRavenBot> partition = getBotPartition();
 			for (IRavenBot bot : bots) {
-				bot.update(itsDelta);
+				partition.updateEntity(bot);
 			}
 		}
 		
@@ -372,6 +417,15 @@ public class RavenGame {
 		botsToAdd += count;
 	}
 
+	/** stops the threads bots think and search for paths on, once the game
+	 * is over */
+	public void shutdown() {
+		if (pathManager != null)
+			pathManager.shutdown();
+		if (botUpdater != null)
+			botUpdater.shutdown();
+	}
+
 	/** Loads an environment from a file 
 	 * @throws IOException */
 	public boolean loadMap(String fileName) throws IOException {
@@ -382,11 +436,15 @@ public class RavenGame {
 		map = null;
 		newMapPath = null;
 		graveMarkers = null;
+		if (pathManager != null)
+			pathManager.shutdown();
 		pathManager = null;
+		if (botUpdater != null)
+			botUpdater.shutdown();
+		botUpdater = newBotUpdater();
 
 		graveMarkers = new GraveMarkers(RavenScript.getDouble("GraveLifetime"));
-		pathManager = new PathManager(
-				RavenScript.getInt("MaxSearchCyclesPerUpdateStep"));
+		pathManager = newPathManager();
 		map = MapSerializer.deserializeMapFromPath(fileName);
 		map.setName(fileName);
 		EntityManager.reset();
@@ -407,6 +465,7 @@ public class RavenGame {
 			bot.getSteering().wallAvoidanceOn();
 			bot.getSteering().separationOn();
 			bots.add(bot);
+			botAdded(bot);
 			
 			// register the bot with the entity manager
 			EntityManager.registerEntity(bot);
@@ -423,6 +482,7 @@ public class RavenGame {
 		bot.getSteering().wallAvoidanceOn();
 		bot.getSteering().separationOn();
 		bots.add(bot);
+		botAdded(bot);
 		// register the bot with the entity manager
 		EntityManager.registerEntity(bot);
 	}
@@ -432,28 +492,47 @@ public class RavenGame {
 		addNetNode(mobNode);
 	}
 	
-	public void addRocket(IRavenBot shooter, Vector2D target) {
-		Log.trace("game", "Added rocket");
-		RavenProjectile rocket = new Rocket(shooter, target);	
-		projectiles.add(rocket);
+	public void addRocket(final IRavenBot shooter, final Vector2D target) {
+		// made once the shooter has finished thinking, so projectiles and
+		// their ids come in the same order however the bots are updated.
+		// The same goes for the other kinds of projectile below
+		DeferredEffects.run(new Runnable() {
+			@Override
+			public void run() {
+				Log.trace("game", "Added rocket");
+				projectiles.add(new Rocket(shooter, target));
+			}
+		});
 	}
 
-	public void addRailGunSlug(IRavenBot shooter, Vector2D target) {
-		Log.trace("game", "Added slug");
-		RavenProjectile slug = new Slug(shooter, target);
-		projectiles.add(slug);
+	public void addRailGunSlug(final IRavenBot shooter, final Vector2D target) {
+		DeferredEffects.run(new Runnable() {
+			@Override
+			public void run() {
+				Log.trace("game", "Added slug");
+				projectiles.add(new Slug(shooter, target));
+			}
+		});
 	}
 
-	public void addShotGunPellet(IRavenBot shooter, Vector2D target) {
-		Log.trace("game", "Added pellet");
-		RavenProjectile pellet = new Pellet(shooter, target);		
-		projectiles.add(pellet);
+	public void addShotGunPellet(final IRavenBot shooter, final Vector2D target) {
+		DeferredEffects.run(new Runnable() {
+			@Override
+			public void run() {
+				Log.trace("game", "Added pellet");
+				projectiles.add(new Pellet(shooter, target));
+			}
+		});
 	}
 
-	public void addBolt(IRavenBot shooter, Vector2D target) {
-		Log.trace("game", "Added bolt");
-		RavenProjectile bolt = new Bolt(shooter, target);
-		projectiles.add(bolt);
+	public void addBolt(final IRavenBot shooter, final Vector2D target) {
+		DeferredEffects.run(new Runnable() {
+			@Override
+			public void run() {
+				Log.trace("game", "Added bolt");
+				projectiles.add(new Bolt(shooter, target));
+			}
+		});
 	}
 
 	/** removes the last bot to be added */
@@ -472,12 +551,13 @@ public class RavenGame {
 		toB.normalize();
 		
 		Vector2D curPos = a;
+		WallTree walls = map.getWallTree();
 		
 		while (curPos.distanceSq(b) > boundingRadius * boundingRadius) {
 			// advance curPos one step
 			curPos = curPos.add(toB.mul(0.5).mul(boundingRadius));
 			
-			if (WallIntersectionTest.doWallsIntersectCircle(map.getWalls(), curPos, boundingRadius)) {
+			if (WallIntersectionTest.doWallsIntersectCircle(walls, curPos, boundingRadius)) {
 				return true;
 			}
 		}
@@ -487,9 +567,18 @@ public class RavenGame {
 
 	/** returns of bots in the FOV of the given bot */
 	public List<IRavenBot> getAllBotsInFOV(final IRavenBot bot) {
+		// the field of view reaches across the whole map
+		double diagonal = Math.sqrt((double)map.getSizeX() * map.getSizeX() + (double)map.getSizeY() * map.getSizeY());
+		return getAllBotsInFOV(bot, diagonal);
+	}
+
+	/** returns the bots in the FOV of the given bot that are within range */
+	public List<IRavenBot> getAllBotsInFOV(final IRavenBot bot, double range) {
 		ArrayList<IRavenBot> visibleBots = new ArrayList<IRavenBot>();
+		List<IRavenBot> nearbyBots = new ArrayList<IRavenBot>();
+		getBotPartition().query(bot.pos(), range, nearbyBots);
 		
-		for (IRavenBot other : bots) {
+		for (IRavenBot other : nearbyBots) {
 			// make sure time is not wasted checking against the same bot or
 			// against a bot that is dead or re-spawning
 			if (bot.equals(other) || !other.isAlive())
@@ -499,7 +588,7 @@ public class RavenGame {
 			if (Vector2D.isSecondInFOVOfFirst(bot.pos(), bot.facing(), other.pos(), bot.fieldOfView())) {
 				// cast a ray from between the bots to test visibility. If the
 				// bot is visible add it to the vector
-				if (!WallIntersectionTest.doWallsObstructLineSegment(bot.pos(), other.pos(), map.getWalls())) {
+				if (!WallIntersectionTest.doWallsObstructLineSegment(bot.pos(), other.pos(), map.getWallTree())) {
 					visibleBots.add(other);
 				}	
 			}
@@ -516,7 +605,7 @@ public class RavenGame {
 		// false
 		if (!first.equals(second) && second.isAlive()) {
 			if (Vector2D.isSecondInFOVOfFirst(first.pos(), first.facing(), second.pos(), second.fieldOfView())) {
-				if (!WallIntersectionTest.doWallsObstructLineSegment(first.pos(), second.pos(), map.getWalls())) {
+				if (!WallIntersectionTest.doWallsObstructLineSegment(first.pos(), second.pos(), map.getWallTree())) {
 					return true;
 				}
 			}
@@ -527,7 +616,7 @@ public class RavenGame {
 
 	/** returns true if the ray between A and B is unobstructed. */
 	public boolean isLOSOkay(final Vector2D A, final Vector2D B) {
-		return !WallIntersectionTest.doWallsObstructLineSegment(A, B, map.getWalls());
+		return !WallIntersectionTest.doWallsObstructLineSegment(A, B, map.getWallTree());
 	}
 
 	/**
@@ -537,7 +626,8 @@ public class RavenGame {
 	 * Note: This function is not implemented in the C++ version!
 	 */
 	public double getDistanceToClosestWall(Vector2D origin, Vector2D heading) {
-		return 0;
+		// returns Double.MAX_VALUE when no wall lies in that direction
+		return map.getWallTree().distanceToClosestWall(origin, heading, Double.MAX_VALUE);
 	}
 
 	/**
@@ -737,6 +827,20 @@ public class RavenGame {
 		return bots;
 	}
 
+	/** A* searches run on worker threads unless PathSearchThreads is 0, or
+	 * the game is seeded, since a worker may finish a search on any update */
+	private PathManager newPathManager() {
+		return new PathManager(RavenScript.getInt("MaxSearchCyclesPerUpdateStep"),
+				randomSeed != 0 ? 0 : RavenScript.getInt("PathSearchThreads"),
+				RavenScript.getDouble("PathSearchSliceMs"));
+	}
+
+	/** bots think on BotUpdateThreads threads, or on the game thread if it
+	 * is 0, from the game's seed, or from the clock if that is 0 */
+	private BotUpdater newBotUpdater() {
+		return new BotUpdater(RavenScript.getInt("BotUpdateThreads"), randomSeed != 0 ? randomSeed : System.nanoTime());
+	}
+
 	public PathManager getPathManager() {
 		return pathManager;
 	}
@@ -748,10 +852,35 @@ public class RavenGame {
 	/** Some weird helper method */
 	public void tagRavenBotsWithinViewRange(IRavenBot ravenBot,
 			double viewDistance) {
-		//iterate through all entities checking for range
-		for (IRavenBot bot : bots) {
+		tagRavenBotsWithinViewRange(ravenBot, viewDistance, new ArrayList<IRavenBot>());
+	}
+
+	/** tags the bots within view range of the given bot, untagging the ones
+	 * tagged before, and adds them to the list */
+	public void tagRavenBotsWithinViewRange(IRavenBot ravenBot,
+			double viewDistance, List<IRavenBot> tagged) {
+		for (IRavenBot bot : taggedBots) {
 			bot.unTag();
+		}
+		taggedBots.clear();
+
+		int first = tagged.size();
+		getBotsWithinViewRange(ravenBot, viewDistance, tagged);
+		for (int i = first; i < tagged.size(); i++) {
+			tagged.get(i).tag();
+			taggedBots.add(tagged.get(i));
+		}
+	}
 
+	/** adds the other bots within view range of the given bot to the list,
+	 * without tagging them, so any number of bots may look at once */
+	public void getBotsWithinViewRange(IRavenBot ravenBot,
+			double viewDistance, List<IRavenBot> found) {
+		//only the bots in the cells within reach of the largest bot need
+		//checking
+		List<IRavenBot> nearbyBots = new ArrayList<IRavenBot>();
+		getBotPartition().query(ravenBot.pos(), viewDistance + largestBotRadius, nearbyBots);
+		for (IRavenBot bot : nearbyBots) {
 			//work in distance squared to avoid sqrts
 			Vector2D to = bot.pos().sub(ravenBot.pos());
 			
@@ -759,11 +888,36 @@ public class RavenGame {
 		    //to the range
 			double range = viewDistance + bot.getBRadius();
 			
-			//if entity within range, tag for further consideration
-			if (!bot.equals(ravenBot) && to.lengthSq() < range * range)
-				bot.tag();
+			//if entity within range, add it for further consideration
+			if (!bot.equals(ravenBot) && to.lengthSq() < range * range) {
+				found.add(bot);
+			}
 		}//next entity
 	}
+
+	/** the bots partitioned by position, for finding the ones near a point
+	 * without going through all of them */
+	public synchronized CellSpacePartition<IRavenBot> getBotPartition() {
+		if (botPartition == null || botPartitionMap != map) {
+			botPartition = new CellSpacePartition<IRavenBot>(map.getSizeX(), map.getSizeY(),
+					RavenScript.getInt("NumCellsX"), RavenScript.getInt("NumCellsY"), bots.size());
+			botPartitionMap = map;
+			for (IRavenBot bot : bots) {
+				botPartition.addEntity(bot);
+			}
+		}
+		return botPartition;
+	}
+
+	public VisionSystem getVisionSystem() {
+		return visionSystem;
+	}
+
+	private void botAdded(IRavenBot bot) {
+		largestBotRadius = Math.max(largestBotRadius, bot.getBRadius());
+		if (botPartition != null)
+			botPartition.addEntity(bot);
+	}
 	public boolean isPaused(){return paused;}
 	public void addWpt(Vector2D pos){
 		wpts.addWpt(pos);
@@ -823,6 +977,7 @@ public class RavenGame {
 		bot.getSteering().wallAvoidanceOn();
 		bot.getSteering().separationOn();
 		bots.add(bot);
+		botAdded(bot);
 					
 		// register the bot with the entity manager
 		EntityManager.registerEntity(bot);
@@ -835,5 +990,8 @@ public class RavenGame {
 	public void removeBot(IRavenBot bot){
 		bot.getBrain().removeAllSubgoals();
 		bots.remove(bot);
+		botUpdater.removeBot(bot);
+		if (botPartition != null)
+			botPartition.removeEntity(bot);
 	}
 }
@@ -2,7 +2,6 @@ package raven.game;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 
@@ -10,6 +9,7 @@ import raven.game.interfaces.IRavenBot;
 import raven.game.messaging.RavenMessage;
 import raven.game.navigation.NavGraphEdge;
 import raven.game.navigation.NavGraphNode;
+import raven.game.navigation.PathCache;
 import raven.game.triggers.Trigger;
 import raven.game.triggers.TriggerHealthGiver;
 import raven.game.triggers.TriggerOnButtonSendMsg;
@@ -17,14 +17,17 @@ import raven.game.triggers.TriggerSoundNotify;
 import raven.game.triggers.TriggerSystem;
 import raven.game.triggers.TriggerWeaponGiver;
 import raven.math.CellSpacePartition;
+import raven.math.RandUtils;
 import raven.math.Vector2D;
 import raven.math.Wall2D;
+import raven.math.WallTree;
 import raven.math.graph.GraphNode;
+import raven.math.graph.PathCostTable;
 import raven.math.graph.SparseGraph;
 import raven.script.RavenScript;
 import raven.ui.GameCanvas;
+import raven.utils.DeferredEffects;
 import raven.utils.Log;
-import raven.utils.Pair;
 
 @XStreamAlias("RavenMap")
 public class RavenMap {
@@ -32,6 +35,12 @@ public class RavenMap {
 	/** the walls that comprise the current map's architecture. */
 	private ArrayList<Wall2D> walls;
 	
+	/** the walls in a tree for intersection tests, rebuilt on first use
+	 * after the walls change */
+	transient private volatile WallTree wallTree;
+	transient private volatile int wallsVersion;
+	transient private volatile int wallTreeVersion;
+	
 	/** trigger are objects that define a region of space. When a raven bot
 	 * enters that area, it 'triggers' an event. That event may be anything
 	 * from increasing a bot's health to opening a door or requesting a lift.
@@ -60,7 +69,10 @@ public class RavenMap {
 	
 	/* this will hold a pre-calculated lookup table of the cost to travel
 	 * from */
-	transient private Map<Pair<Integer, Integer>, Double> pathCosts;
+	transient private PathCostTable pathCosts;
+
+	/** paths and closest nodes already found on this map's graph */
+	transient private volatile PathCache pathCache;
 
 	/** the path this file was loaded from. null if unsaved. */
 	transient private String path;
@@ -123,6 +135,7 @@ public class RavenMap {
 		RavenDoor door = new RavenDoor(id, pos1, pos2, timeout);
 		
 		doors.add(door);
+		watchDoor(door);
 		Trigger t = addDoorTrigger(pos1, pos2, RavenMessage.MSG_OPEN_SESAME, id);
 		door.addSwitch(t.ID());
 		// register the entity
@@ -145,6 +158,7 @@ public class RavenMap {
 		doors.clear();
 		
 		walls.clear();
+		wallsChanged();
 		
 		spawnPoints.clear();
 		
@@ -171,11 +185,34 @@ public class RavenMap {
 		
 		partitionNavGraph();
 		
-		pathCosts = navGraph.createAllPairsCostsTable();
+		// freeze the graph for the path searches now, rather than on the first search
+		navGraph.compact();
+		
+		pathCosts = new PathCostTable(navGraph);
+		
+		// likewise the walls, for the intersection tests
+		getWallTree();
+		
+		if (doors != null) {
+			for (RavenDoor door : doors) {
+				watchDoor(door);
+			}
+		}
 		
 		return this;
 	}
 	
+	/** drops the cached paths around a door whenever it opens or closes */
+	private void watchDoor(RavenDoor door) {
+		door.setStateListener(new RavenDoor.StateListener() {
+			@Override
+			public void doorStateChanged(RavenDoor door) {
+				if (pathCache != null && door.getP1() != null && door.getP2() != null)
+					pathCache.invalidateRegion(door.getP1(), door.getP2());
+			}
+		});
+	}
+	
 
 	
 	/**
@@ -188,29 +225,33 @@ public class RavenMap {
 	public Wall2D addWall(Vector2D from, Vector2D to) {
 		Wall2D wall = new Wall2D(from, to);
 		walls.add(wall);
+		wallsChanged();
 		return wall;
 	}
 	
-	public void addSoundTrigger(IRavenBot soundSource, double range) {
-		triggerSystem.register(new TriggerSoundNotify(soundSource, range));
+	public void addSoundTrigger(final IRavenBot soundSource, final double range) {
+		DeferredEffects.run(new Runnable() {
+			@Override
+			public void run() {
+				triggerSystem.register(new TriggerSoundNotify(soundSource, range));
+			}
+		});
 	}
 	
 	public double calculateCostToTravelBetweenNodes(int node1, int node2) {
 		if (node1 < 0 || node2 < 0 || node1 >= navGraph.numNodes() || node2 >= navGraph.numNodes())
 			throw new IndexOutOfBoundsException("Invalid node index: " + node1 + " to " + node2);
 		
-		double cost = 100.0;
-		try{
-			cost =  pathCosts.get(new Pair<Integer,Integer>(node1, node2));
-		} catch (NullPointerException e) {
-			Log.error("RavenMap", "pathCosts threw a NPE getting cost from " + node1 + " to " + node2);
+		if (pathCosts == null) {
+			Log.error("RavenMap", "No path costs to get the cost from " + node1 + " to " + node2);
+			return 100.0;
 		}
-		return cost;
+		return pathCosts.cost(node1, node2);
 	}
 	
 	/** returns the position of a graph node selected at random */
 	public Vector2D getRandomNodeLocation() {
-		int randIndex = (int)(Math.random() * navGraph.numActiveNodes());
+		int randIndex = (int)(RandUtils.nextDouble() * navGraph.numActiveNodes());
 		
 		GraphNode node = null;
 		for (int i = 0; i < navGraph.numNodes(); i++) {
@@ -241,6 +282,29 @@ public class RavenMap {
 		return walls;
 	}
 	
+	/** the walls in a tree, for intersection and line of sight tests that
+	 * only look at the walls near them */
+	public WallTree getWallTree() {
+		// the size is checked too, for walls added to the list directly
+		WallTree tree = wallTree;
+		if (tree != null && wallTreeVersion == wallsVersion && tree.size() == walls.size())
+			return tree;
+		synchronized (this) {
+			if (wallTree == null || wallTreeVersion != wallsVersion || wallTree.size() != walls.size()) {
+				int version = wallsVersion;
+				wallTree = new WallTree(walls);
+				wallTreeVersion = version;
+			}
+			return wallTree;
+		}
+	}
+	
+	/** to be called when walls are moved, such as by a sliding door, so that
+	 * the wall tree is rebuilt */
+	public synchronized void wallsChanged() {
+		wallsVersion++;
+	}
+	
 	public SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> getNavGraph() {
 		return navGraph;
 	}
@@ -258,7 +322,7 @@ public class RavenMap {
 	}
 	
 	public Vector2D getRandomSpawnPoint() {
-		return spawnPoints.get((int)(Math.random() * spawnPoints.size()));
+		return spawnPoints.get((int)(RandUtils.nextDouble() * spawnPoints.size()));
 	}
 	
 	public int getSizeX() { 
@@ -273,6 +337,17 @@ public class RavenMap {
 		return Math.max(sizeX, sizeY);
 	}
 	
+	/** the cache of paths and closest nodes for the current graph. Closest
+	 * nodes are kept for cells a quarter of the average edge long, so the
+	 * positions sharing a cell are close together compared to the nodes.
+	 * Bots thinking at the same time may be the first to ask for it */
+	public synchronized PathCache getPathCache() {
+		if (pathCache == null || pathCache.getGraph() != navGraph) {
+			pathCache = new PathCache(navGraph, Math.max(1.0, cellSpaceNeighborhoodRange / 4));
+		}
+		return pathCache;
+	}
+	
 	public double getCellSpaceNeighborhoodRange() {
 		return cellSpaceNeighborhoodRange;
 	}
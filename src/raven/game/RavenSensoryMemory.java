@@ -1,72 +1,159 @@
 package raven.game;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import raven.game.interfaces.IRavenBot;
 import raven.math.Vector2D;
+import raven.math.WallTree;
 import raven.ui.GameCanvas;
 
+/**
+ * A bot's memory of the opponents it has seen or heard. The records are kept
+ * in an array indexed by the opponent's entity id, so looking one up is an
+ * array access rather than a hash. Times are stamped with the memory's own
+ * clock, which moves on by the time step at every vision update, so records
+ * of opponents that are out of sight are not touched at all as time passes.
+ *
+ * The vision of all the bots is normally updated at once by the
+ * VisionSystem; updateVision does the same for a single bot.
+ */
 public class RavenSensoryMemory {
 	protected class MemoryRecord {
+		/** the opponent this record is about */
+		public final IRavenBot opponent;
+		/** where the record is in the list of recorded ids */
+		int slot;
 		/** records the time the opponent was last sensed (seen or heard).
 		 * This is used to determine if a bot can 'remember' this record or
-		 * not. (if System.nanoTime() - timeLastSensed is greater than the
+		 * not. (if the current time - timeLastSensed is greater than the
 		 * bot's memory span, the data in this record is made unavailable
 		 * to clients) */
-		public double timeSinceLastSensed;
+		public double timeLastSensed = -Double.MAX_VALUE;
 		/** it can be useful to know how long an opponent has been visible.
-		 * This variable is tagged with the current time whenever an opponent 
+		 * This variable is tagged with the current time whenever an opponent
 		 * first becomes visible. It's then a simple matter to calculate how
 		 * long the opponent has been in view
 		 * (currentTime - timeBecameVisible) */
-		public double timeSinceBecameVisible;
+		public double timeBecameVisible = -Double.MAX_VALUE;
 		/** it can be useful to know the last time an opponent was seen */
-		public double timeSinceLastVisible;
-		/** a vector marking the position where the opponent was last sensed.
-		 * This can be used to help hunt down an opponent if it goes out of
-		 * view */
-		public Vector2D lastSensedPosition;
-		/** true if opponent is within the field of view of the owner */
-		public boolean withinFOV;
+		public double timeLastVisible = -Double.MAX_VALUE;
+		/** the position where the opponent was last sensed. This can be used
+		 * to help hunt down an opponent if it goes out of view */
+		public double lastSensedX;
+		public double lastSensedY;
+		public boolean positionSensed;
+		/** the last vision update in which the opponent was in the field of
+		 * view of the owner with nothing in between */
+		public long visibleTick = -2;
 		/** set to true if there is no obstruction between the opponent and
-		 * the owner, permitting a shot. */
+		 * the owner, permitting a shot. Only good for the update it was
+		 * worked out in */
 		public boolean shootable;
+		public long shootableTick = -1;
 
-		public MemoryRecord() {
-			timeSinceLastSensed = timeSinceBecameVisible = -999;
-			timeSinceLastVisible = 0;
-			withinFOV = shootable = false;			
+		public MemoryRecord(IRavenBot opponent) {
+			this.opponent = opponent;
 		}
 	}
 
 	/** the owner of this instance */
-	private RavenBot owner;
+	private IRavenBot owner;
 
 	/** this container is used to simulate memory of sensory events. A
-	 * MemoryRecord is created for each opponent in the environment. Each
-	 * record is updated whenever the opponent is encountered. (when it is
-	 * seen or heard) */
-	private Map<IRavenBot, MemoryRecord> memoryMap;
+	 * MemoryRecord is created for each opponent when it is first encountered
+	 * and is updated whenever the opponent is encountered. (when it is seen
+	 * or heard). Indexed by the entity id of the opponent */
+	private MemoryRecord[] records = new MemoryRecord[0];
+	/** the ids that have a record, for going through all of them */
+	private int[] recordedIds = new int[0];
+	private int numRecorded;
 
 	/** a bot has a memory span equivalent to this value. When a bot requests
 	 * a list of all recently sensed opponents this value is used to determine
 	 * if the bot is able to remember an opponent or not. */
 	private double memorySpan;
 
-	private void makeNewRecordIfNotAlreadyPresent(IRavenBot bot) {
-		if (!memoryMap.containsKey(bot)) {
-			memoryMap.put(bot, new MemoryRecord());
-		}
-	}
+	/** the time in seconds and the number of vision updates so far */
+	private double time;
+	private long tick;
+	/** the walls the last vision update looked through, for working out
+	 * whether an opponent no update looked at is shootable */
+	private WallTree walls;
+	/** the last VisionSystem pass this memory took part in */
+	long visionPass = -1;
 
-	public RavenSensoryMemory(RavenBot owner, double memorySpan) {
+	public RavenSensoryMemory(IRavenBot owner, double memorySpan) {
 		this.owner = owner;
 		// Store memory length in seconds
 		this.memorySpan = memorySpan;
-		this.memoryMap = new HashMap<IRavenBot, MemoryRecord>();
+	}
+
+	/** the record of the bot, null if there is none or no bot was given, as
+	 * when a bot has no target */
+	private MemoryRecord getRecord(IRavenBot bot) {
+		if (bot == null) {
+			return null;
+		}
+		int id = bot.ID();
+		return id >= 0 && id < records.length ? records[id] : null;
+	}
+
+	MemoryRecord makeNewRecordIfNotAlreadyPresent(IRavenBot bot) {
+		int id = bot.ID();
+		if (id >= records.length) {
+			records = Arrays.copyOf(records, Math.max(id + 1, records.length * 2));
+		}
+		MemoryRecord info = records[id];
+		if (info == null) {
+			info = new MemoryRecord(bot);
+			records[id] = info;
+			if (numRecorded == recordedIds.length) {
+				recordedIds = Arrays.copyOf(recordedIds, Math.max(16, numRecorded * 2));
+			}
+			info.slot = numRecorded;
+			recordedIds[numRecorded++] = id;
+		}
+		return info;
+	}
+
+	/** moves the clock on at the start of a vision update */
+	void beginUpdate(double delta, WallTree walls) {
+		time += delta;
+		tick++;
+		this.walls = walls;
+	}
+
+	/** records that the opponent is in the field of view with nothing in
+	 * between */
+	void sighted(MemoryRecord info) {
+		Vector2D pos = info.opponent.pos();
+		info.shootable = true;
+		info.shootableTick = tick;
+		info.timeLastSensed = time;
+		info.lastSensedX = pos.x;
+		info.lastSensedY = pos.y;
+		info.positionSensed = true;
+		if (info.visibleTick != tick - 1) {
+			info.timeBecameVisible = time;
+		}
+		info.visibleTick = tick;
+		info.timeLastVisible = time;
+	}
+
+	/** records whether there is a clear line between the owner and the
+	 * opponent in this update, as worked out by someone else */
+	void setShootable(MemoryRecord info, boolean shootable) {
+		info.shootable = shootable;
+		info.shootableTick = tick;
+	}
+
+	/** the record of the opponent if it has already been found shootable or
+	 * not in this update, otherwise null */
+	MemoryRecord getShootableThisUpdate(IRavenBot opponent) {
+		MemoryRecord info = getRecord(opponent);
+		return info != null && info.shootableTick == tick ? info : null;
 	}
 
 	/**
@@ -76,19 +163,19 @@ public class RavenSensoryMemory {
 	 */
 	public void updateWithSoundSource(IRavenBot noiseMaker) {
 		if (!owner.equals(noiseMaker)) {
-			makeNewRecordIfNotAlreadyPresent(noiseMaker);
-
-			MemoryRecord info = memoryMap.get(noiseMaker);
+			MemoryRecord info = makeNewRecordIfNotAlreadyPresent(noiseMaker);
 
 			if (owner.getWorld().isLOSOkay(owner.pos(), noiseMaker.pos())) {
-				info.shootable = true;
+				setShootable(info, true);
 
-				info.lastSensedPosition = noiseMaker.pos();
+				info.lastSensedX = noiseMaker.pos().x;
+				info.lastSensedY = noiseMaker.pos().y;
+				info.positionSensed = true;
 			} else {
-				info.shootable = false;
+				setShootable(info, false);
 			}
 
-			info.timeSinceLastSensed = 0;
+			info.timeLastSensed = time;
 		}
 	}
 
@@ -97,49 +184,37 @@ public class RavenSensoryMemory {
 	 * @param removedBot the bot to forget about
 	 */
 	public void removeBotFromMemory(IRavenBot removedBot) {
-		memoryMap.remove(removedBot);
+		MemoryRecord info = getRecord(removedBot);
+		if (info == null) {
+			return;
+		}
+		records[removedBot.ID()] = null;
+		int last = recordedIds[--numRecorded];
+		recordedIds[info.slot] = last;
+		if (records[last] != null) {
+			records[last].slot = info.slot;
+		}
 	}
 
 	/** this method iterates through all the opponents in the game world and
-	 * updates the records of those that are in the owner's FOV */
+	 * updates the records of those that are in the owner's FOV. The game
+	 * does this for all the bots at once with a VisionSystem */
 	public void updateVision(double delta) {
-		// for each bot in the world test to see if it is visible to the owner of
-		// this class
-		List<IRavenBot> bots = owner.getWorld().getBots();
-
-		for (IRavenBot bot : bots) {
-			// make sure the bot being examined is not this bot
-			if (!bot.equals(owner)) {
-				// make sure it is part of the memory map
-				makeNewRecordIfNotAlreadyPresent(bot);
-
-				// get a reference to this bot's data
-				MemoryRecord info = memoryMap.get(bot);
-
-				// test if there is LOS between bots
-				if (owner.getWorld().isLOSOkay(owner.pos(), bot.pos())) {
-					info.shootable = true;
-
-					// test if the bot is within FOV
-					if (Vector2D.isSecondInFOVOfFirst(owner.pos(), owner.facing(), bot.pos(), owner.fieldOfView())) {
-						info.timeSinceLastSensed = 0;
-						info.lastSensedPosition = new Vector2D(bot.pos());
-						info.timeSinceLastVisible = 0;
-						info.timeSinceBecameVisible += delta;
-
-						if (info.withinFOV == false) {
-							info.withinFOV = true;
-							info.timeSinceBecameVisible = delta;
-						}
-					} else {
-						info.withinFOV = false;
-						info.timeSinceLastVisible += delta;
-						info.timeSinceLastSensed += delta;
-					}
-				} else {
-					info.shootable = false;
-					info.withinFOV = false;
-				}
+		WallTree walls = owner.getWorld().getMap().getWallTree();
+		beginUpdate(delta, walls);
+
+		for (IRavenBot bot : owner.getWorld().getBots()) {
+			// make sure the bot being examined is not this bot, and that it
+			// is within the FOV before looking for walls in between
+			if (bot.equals(owner)
+					|| !Vector2D.isSecondInFOVOfFirst(owner.pos(), owner.facing(), bot.pos(), owner.fieldOfView())) {
+				continue;
+			}
+			MemoryRecord info = makeNewRecordIfNotAlreadyPresent(bot);
+			if (walls.obstructsSegment(owner.pos(), bot.pos())) {
+				setShootable(info, false);
+			} else {
+				sighted(info);
 			}
 		}
 	}
@@ -147,46 +222,54 @@ public class RavenSensoryMemory {
 	// Queries
 
 	public boolean isOpponentShootable(IRavenBot opponent) {
-		MemoryRecord info = memoryMap.get(opponent);
-		return (info == null) ? false : info.shootable;
+		MemoryRecord info = getRecord(opponent);
+		if (info == null) {
+			return false;
+		}
+		// opponents outside the field of view were not looked at by the last
+		// update, so look now
+		if (info.shootableTick != tick && walls != null) {
+			setShootable(info, !walls.obstructsSegment(owner.pos(), opponent.pos()));
+		}
+		return info.shootable;
 	}
 
 	public boolean isOpponentWithinFOV(IRavenBot currentTarget) {
-		MemoryRecord info = memoryMap.get(currentTarget);
-		return (info == null) ? false : info.withinFOV;
+		MemoryRecord info = getRecord(currentTarget);
+		return (info == null) ? false : info.visibleTick == tick;
 	}
 
 	public Vector2D getLastRecordedPositionOfOpponent(IRavenBot opponent) {
-		MemoryRecord info = memoryMap.get(opponent);
+		MemoryRecord info = getRecord(opponent);
 		if (info == null) {
 			throw new RuntimeException("RavenSensoryMemory#getLastRecordedPositionOfOpponent: Attempting to get position of unrecorded bot");
 		} else {
-			return info.lastSensedPosition;
+			return info.positionSensed ? new Vector2D(info.lastSensedX, info.lastSensedY) : null;
 		}
 	}
 
 	public double getTimeOpponentHasBeenVisible(IRavenBot opponent) {
-		MemoryRecord info = memoryMap.get(opponent);
-		return (info == null) ? 0 : info.timeSinceBecameVisible;		
+		MemoryRecord info = getRecord(opponent);
+		return (info == null || info.visibleTick != tick) ? 0 : time - info.timeBecameVisible;
 	}
 
 	public double getTimeSinceLastSensed(IRavenBot opponent) {
-		MemoryRecord info = memoryMap.get(opponent);
-		return (info == null) ? 0 : info.timeSinceLastSensed;		
+		MemoryRecord info = getRecord(opponent);
+		return (info == null) ? 0 : time - info.timeLastSensed;
 	}
 
 	public double getTimeOpponentHasBeenOutOfView(IRavenBot opponent) {
-		MemoryRecord info = memoryMap.get(opponent);
-		return (info == null) ? Double.MAX_VALUE : info.timeSinceLastVisible;
-
+		MemoryRecord info = getRecord(opponent);
+		return (info == null) ? Double.MAX_VALUE : time - info.timeLastVisible;
 	}
 
 	public List<IRavenBot> getListOfRecentlySensedOpponents() {
 		List<IRavenBot> opponents = new ArrayList<IRavenBot>();
 
-		for (IRavenBot bot : memoryMap.keySet()) {
-			if (memoryMap.get(bot).timeSinceLastSensed < memorySpan) {
-				opponents.add(bot);
+		for (int i = 0; i < numRecorded; i++) {
+			MemoryRecord info = records[recordedIds[i]];
+			if (time - info.timeLastSensed < memorySpan) {
+				opponents.add(info.opponent);
 			}
 		}
 
@@ -1,11 +1,12 @@
 package raven.game;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 import java.util.Vector;
 
 import raven.game.interfaces.IRavenBot;
 import raven.math.Geometry;
+import raven.math.RandUtils;
 import raven.math.Transformations;
 import raven.math.Vector2D;
 import raven.math.Wall2D;
@@ -93,6 +94,9 @@ public class RavenSteering {
 	/** how far the agent can 'see' */
 	private double        viewDistance;
 
+	/** the bots within view distance, found for separation */
+	private List<IRavenBot> neighbors = new ArrayList<IRavenBot>();
+
 	/** binary flags to indicate whether or not a behavior should be active */
 	private int flags;
 
@@ -246,8 +250,8 @@ public class RavenSteering {
 	private Vector2D wander() {
 
 		//first, add a small random vector to the target's position
-		wanderTarget = wanderTarget.add(new Vector2D( new Random().nextDouble()* wanderJitter,
-				new Random().nextDouble() * wanderJitter));
+		wanderTarget = wanderTarget.add(new Vector2D( RandUtils.nextDouble()* wanderJitter,
+				RandUtils.nextDouble() * wanderJitter));
 
 		//reproject this new vector back on to a unit circle
 		wanderTarget.normalize();
@@ -356,10 +360,9 @@ public class RavenSteering {
 		Vector2D steeringForce = new Vector2D();
 		for( IRavenBot agent : agents) {
 
-			//make sure this agent isn't included in the calculations and that
-			//the agent being examined is close enough. ***also make sure it doesn't
-			//include the evade target ***
-			if(ravenBot.isTagged() && agent != targetAgent1) {
+			//the neighbors are close enough and do not include this agent.
+			//***also make sure it doesn't include the evade target ***
+			if(agent != targetAgent1) {
 				Vector2D toAgent = ravenBot.pos().sub(agent.pos());
 				toAgent.normalize();
 
@@ -397,9 +400,12 @@ public class RavenSteering {
 		//also a good behavior to add into this mix)
 		if (On(BehaviorType.SEPARATION))
 		{
-			// HAve to tag bots that are in danger of being hit
-			world.tagRavenBotsWithinViewRange(ravenBot, viewDistance);
-			force = separation(world.getBots()).mul(weightSeparation);
+			// the bots that are in danger of being hit. They are collected
+			// rather than tagged, as other bots may be looking at the same
+			// time
+			neighbors.clear();
+			world.getBotsWithinViewRange(ravenBot, viewDistance, neighbors);
+			force = separation(neighbors).mul(weightSeparation);
 			if (!accumulateForce(steeringForce, force)) return steeringForce;
 		}
 
@@ -453,7 +459,7 @@ public class RavenSteering {
 		summingMethod				= SummingMethod.PRIORITIZED;
 
 		//stuff for the wander behavior
-		double theta = Math.random() * (2* Math.PI);
+		double theta = RandUtils.nextDouble() * (2* Math.PI);
 
 		//create a vector to a target position on the wander circle
 		wanderTarget = new Vector2D(wanderRadius * Math.cos(theta), wanderRadius * Math.sin(theta));
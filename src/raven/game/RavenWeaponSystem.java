@@ -10,6 +10,7 @@ import raven.game.armory.RavenWeapon;
 import raven.game.armory.RocketLauncher;
 import raven.game.armory.Shotgun;
 import raven.game.interfaces.IRavenBot;
+import raven.math.RandUtils;
 import raven.math.Transformations;
 import raven.math.Vector2D;
 import raven.ui.GameCanvas;
@@ -65,7 +66,7 @@ public class RavenWeaponSystem {
 	private void addNoiseToAim(Vector2D aimingPos) {
 		Vector2D toPos = aimingPos.sub(owner.pos());
 		
-		Transformations.Vec2DRotateAroundOrigin(toPos, Math.random() * 2.0 * aimAccuracy - aimAccuracy);
+		Transformations.Vec2DRotateAroundOrigin(toPos, RandUtils.nextDouble() * 2.0 * aimAccuracy - aimAccuracy);
 		
 		aimingPos = toPos.add(owner.pos());
 	}
@@ -36,6 +36,12 @@ public class RoverBot extends RavenBot {
 	private double frictForceMag = weight*frictCoeff;
 	private double speed = 0;
 	private boolean doPID = false;
+	/** the heading and distance noise calculateSteering worked out, and
+	 * whether the rover moves by them this time-step */
+	private boolean moving;
+	private double nextHeadingX;
+	private double nextHeadingY;
+	private double nextDistNoise;
 	protected PIDcontroller pid = new PIDcontroller(0.7f, 0.8f, 0.1f);
 	
 	public void setAgent(IAgent agent){this.agent = agent;}
@@ -91,16 +97,17 @@ public class RoverBot extends RavenBot {
 	}
 	
 	/**
-	 * this method is called from the update method. It calculates and applies
-	 * the steering force for this time-step.
+	 * this method is called from think. It works out the noisy, PID steered
+	 * heading and the distance to move for this time-step, which
+	 * updateMovement then applies.
 	 * delta is in seconds
 	 */
 	@Override
-	protected void updateMovement(double delta) { // delta in seconds
+	protected void calculateSteering(double delta) { // delta in seconds
 		
 		
 		// (2do) pid control, acceleration, deceleration depending on doPID value
-		
+		moving = false;
 		if(!doPID && speed == 0) return;
 		// apply steering noise and drift
 		double steerAngle = Math.atan2(velocity.y, velocity.x);
@@ -131,8 +138,24 @@ public class RoverBot extends RavenBot {
 			}
 		}
 		double noiseSteerAngle = Math.toRadians(noiseSteerAngleDeg);
-		heading.x = Math.cos(noiseSteerAngle);
-		heading.y = Math.sin(noiseSteerAngle);
+		nextHeadingX = Math.cos(noiseSteerAngle);
+		nextHeadingY = Math.sin(noiseSteerAngle);
+		
+		// calculate delta distance due to distance noise
+		nextDistNoise = RandUtils.nextGaussian(0, distanceNoise);
+		moving = true;
+	}
+
+	/**
+	 * this method is called from act. It moves the rover along the heading
+	 * worked out in calculateSteering.
+	 * delta is in seconds
+	 */
+	@Override
+	protected void updateMovement(double delta) { // delta in seconds
+		if (!moving) return;
+		heading.x = nextHeadingX;
+		heading.y = nextHeadingY;
 		side = heading.perp();
 		//double velX = Math.cos(noiseSteerAngle)*speed;
 		//double velY = Math.sin(noiseSteerAngle)*speed;
@@ -140,15 +163,13 @@ public class RoverBot extends RavenBot {
 		double velX = heading.x*speed;
 		double velY = heading.y*speed;
 		
-		// calculate delta distance due to distance noise
-		double distNoise = RandUtils.nextGaussian(0, distanceNoise);
 		//double distNoiseX = distNoise*Math.cos(noiseSteerAngle);
 		//double distNoiseY = distNoise*Math.sin(noiseSteerAngle);
 				
 		velocity.x = velX;
 		velocity.y = velY;
-		position.x += velX*delta + distNoise*heading.x;
-		position.y += velY*delta + distNoise*heading.y;
+		position.x += velX*delta + nextDistNoise*heading.x;
+		position.y += velY*delta + nextDistNoise*heading.y;
 		//TODO see if this is really needed or not. this.agent.setPosition(position);
 		//if the vehicle has a non zero velocity the heading and side vectors must 
 		//be updated
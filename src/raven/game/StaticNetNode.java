@@ -12,7 +12,7 @@ public class StaticNetNode extends NetNode {
 		super(name, world, position, rad);
 	}
 	@Override
-	public void update(double delta) {
+	public void think(double delta) {
 		// Moved from render() since this is time dependent!
 		numSecondsHitPersistant -= delta;
 
@@ -62,6 +62,10 @@ public class StaticNetNode extends NetNode {
 
 	}
 	@Override
+	public void act(double delta) {
+		// no need to move, it's a static node
+	}
+	@Override
 	public void render() {
 		super.render();
 		//GameCanvas.bluePen();
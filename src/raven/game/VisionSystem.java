@@ -0,0 +1,110 @@
+package raven.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import raven.game.RavenSensoryMemory.MemoryRecord;
+import raven.game.interfaces.IRavenBot;
+import raven.math.CellSpacePartition;
+import raven.math.Vector2D;
+import raven.math.WallTree;
+
+/**
+ * Updates the sensory memory of every bot from what it can see, once per
+ * bot update for all of them. Each bot only looks at the bots the partition
+ * finds within its vision range, and only those in its field of view get a
+ * line of sight test. The answer is the same both ways, so it is handed to
+ * the other bot's memory too, which saves the second test when the two bots
+ * can see each other.
+ */
+public class VisionSystem {
+	/** how far a bot can see */
+	private double visionRange;
+
+	/** the bots taking part in the current pass */
+	private final List<IRavenBot> observers = new ArrayList<IRavenBot>();
+	/** the bots within range of the bot being looked through */
+	private final List<IRavenBot> nearby = new ArrayList<IRavenBot>();
+	private long pass;
+
+	/** line of sight tests made, and answers the other bot had already
+	 * worked out */
+	private long losTests;
+	private long losShared;
+
+	public VisionSystem(double visionRange) {
+		this.visionRange = visionRange;
+	}
+
+	public double getVisionRange() { return visionRange; }
+	public long getLOSTests() { return losTests; }
+	public long getLOSShared() { return losShared; }
+
+	/**
+	 * updates the sensory memory of all the bots that use vision with the
+	 * bots they can see
+	 * @param bots all the bots in the game
+	 * @param partition the same bots, partitioned by position
+	 * @param walls the walls of the map
+	 * @param delta the time since the last update in seconds
+	 */
+	public void update(List<? extends IRavenBot> bots, CellSpacePartition<IRavenBot> partition, WallTree walls, double delta) {
+		pass++;
+		observers.clear();
+		for (IRavenBot bot : bots) {
+			RavenSensoryMemory memory = bot.getSensoryMem();
+			if (memory != null && bot.usesVision()) {
+				memory.beginUpdate(delta, walls);
+				memory.visionPass = pass;
+				observers.add(bot);
+			}
+		}
+
+		for (IRavenBot bot : observers) {
+			RavenSensoryMemory memory = bot.getSensoryMem();
+			Vector2D pos = bot.pos();
+			Vector2D facing = bot.facing();
+			double cosHalfFOV = Math.cos(bot.fieldOfView() / 2.0);
+			nearby.clear();
+			partition.query(pos, visionRange, nearby);
+
+			for (IRavenBot other : nearby) {
+				if (other == bot) {
+					continue;
+				}
+				// the same test as Vector2D.isSecondInFOVOfFirst, without
+				// making a vector for each bot looked at
+				Vector2D otherPos = other.pos();
+				double toX = otherPos.x - pos.x;
+				double toY = otherPos.y - pos.y;
+				double distance = Math.sqrt(toX * toX + toY * toY);
+				if (distance > Double.MIN_VALUE) {
+					toX /= distance;
+					toY /= distance;
+				}
+				if (facing.x * toX + facing.y * toY < cosHalfFOV) {
+					continue;
+				}
+
+				// the other bot may already have looked this way
+				MemoryRecord info = memory.getShootableThisUpdate(other);
+				if (info == null) {
+					info = memory.makeNewRecordIfNotAlreadyPresent(other);
+					boolean clear = !walls.obstructsSegment(pos, otherPos);
+					losTests++;
+					memory.setShootable(info, clear);
+
+					RavenSensoryMemory otherMemory = other.getSensoryMem();
+					if (otherMemory != null && otherMemory.visionPass == pass) {
+						otherMemory.setShootable(otherMemory.makeNewRecordIfNotAlreadyPresent(bot), clear);
+					}
+				} else {
+					losShared++;
+				}
+				if (info.shootable) {
+					memory.sighted(info);
+				}
+			}
+		}
+	}
+}
@@ -8,9 +8,10 @@ import raven.game.RavenSteering;
 import raven.game.RavenTargetingSystem;
 import raven.game.RavenWeaponSystem;
 import raven.goals.GoalThink;
+import raven.math.Locatable;
 import raven.math.Vector2D;
 
-public interface IRavenBot {
+public interface IRavenBot extends Locatable {
 
 	public boolean isAlive();
 	public boolean isReadyForTriggerUpdate();
@@ -29,6 +30,7 @@ public interface IRavenBot {
 	public boolean rotateFacingTowardPosition(Vector2D clientCursorPosition,
 			double delta);
 	public boolean isPossessed();
+	public boolean usesVision();
 	public void exorcise();
 	public void fireWeapon(Vector2D p);
 	public GoalThink getBrain();
@@ -39,6 +41,8 @@ public interface IRavenBot {
 	public RavenSensoryMemory getSensoryMem();
 	public RavenSteering getSteering();
 	public void update(double delta);
+	public void think(double delta);
+	public void act(double delta);
 	public void setSpawning();
 	public boolean isDead();
 	public boolean isSpawning();
@@ -5,6 +5,7 @@ import java.util.TreeSet;
 
 import raven.game.BaseGameEntity;
 import raven.game.EntityManager;
+import raven.utils.DeferredEffects;
 import raven.utils.Log;
 
 public class Dispatcher {
@@ -43,12 +44,23 @@ public class Dispatcher {
 	 * @param msg the type of the message to send
 	 * @param extraInfo optional object to attach to the message
 	 */
-	public static void dispatchMsg(double delay,
-							int senderID,
-							int receiverID,
-							RavenMessage msg,
-							Object extraInfo) {
-		
+	public static void dispatchMsg(final double delay,
+							final int senderID,
+							final int receiverID,
+							final RavenMessage msg,
+							final Object extraInfo) {
+		// a bot thinking alongside others sends its messages once they have
+		// all finished
+		if (DeferredEffects.isHolding()) {
+			DeferredEffects.run(new Runnable() {
+				@Override
+				public void run() {
+					dispatchMsg(delay, senderID, receiverID, msg, extraInfo);
+				}
+			});
+			return;
+		}
+
 		// get the receiver
 		BaseGameEntity receiver = EntityManager.getEntityFromID(receiverID);
 		
@@ -4,63 +4,44 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
-import raven.game.RavenBot;
 import raven.game.interfaces.IRavenBot;
 import raven.game.triggers.Trigger;
-import raven.math.graph.EuclideanHeuristic;
+import raven.math.graph.CompactGraph;
 import raven.math.graph.GraphSearchStatus;
 import raven.math.graph.GraphSearchType;
-import raven.math.graph.Heuristic;
 import raven.math.graph.SparseGraph;
-import raven.utils.IndexedPriorityQueue;
 
 public class GraphSearchAStarTS<T extends SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>> extends GraphSearchTimeSliced<NavGraphEdge> {
 
 	private T graph;
 
-	private Heuristic<T> heuristic;
+	/** the graph in flat arrays, which is what the search expands nodes on */
+	private CompactGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> compact;
 
-	/** indexed into my node. Contains the 'real' accumulative cost to that node */
-	private List<Double> gCosts;
-
-	/** indexed into by node. Contains the cost from adding gCosts[n] to the
-	 * heuristic cost from n to the target node. */
-	private List<Double> fCosts;
-
-	private List<NavGraphEdge> shortestPathTree;
-	private List<NavGraphEdge> searchFrontier;
+	/** holds the 'real' accumulative cost to each node (G), and the cost from
+	 * adding it to the heuristic cost from the node to the target (F), which
+	 * orders the queue. Taken on the first cycle and given back once the search
+	 * terminates. */
+	private SearchWorkspace space;
 
 	private int source;
 	private int target;
 
-	private IndexedPriorityQueue<Double> queue;
+	/** how the search terminated, or SEARCH_INCOMPLETE while it runs */
+	private GraphSearchStatus status = GraphSearchStatus.SEARCH_INCOMPLETE;
+
+	/** the edge slots of the path found, from the source to the target */
+	private int[] pathSlots;
+	private double costToTarget;
 
 	public GraphSearchAStarTS(T graph, int source, int target) {
 		super(GraphSearchType.AStar);
 
 		this.graph = graph;
-		this.heuristic = new EuclideanHeuristic<T>();
-
-		shortestPathTree = new ArrayList<NavGraphEdge>(graph.numNodes());
-		searchFrontier = new ArrayList<NavGraphEdge>(graph.numNodes());
-
-		gCosts = new ArrayList<Double>(graph.numNodes());
-		fCosts = new ArrayList<Double>(graph.numNodes());
-		// Cost arrays need to be filled
-		for (int i = 0; i < graph.numNodes(); i++) {
-			gCosts.add(0.0);
-			fCosts.add(0.0);
-			shortestPathTree.add(null);
-			searchFrontier.add(null);
-		}
+		this.compact = graph.compact();
 
 		this.source = source;
 		this.target = target;
-
-		// TreeMap functions as a priority queue
-		queue = new IndexedPriorityQueue<Double>(fCosts, graph.numNodes());
-
-		queue.insert(source);
 	}
 
 	/** When called, this method pops the next node off the PQ and examines
@@ -69,50 +50,52 @@ public class GraphSearchAStarTS<T extends SparseGraph<NavGraphNode<Trigger<IRave
 	 * search */
 	@Override
 	public GraphSearchStatus cycleOnce() {
+		if (status != GraphSearchStatus.SEARCH_INCOMPLETE) {
+			return status;
+		}
+
+		//the workspace comes from the pool of whichever thread runs the search
+		if (space == null) {
+			space = SearchWorkspace.acquire(compact.numNodes());
+			space.open(source, 0, 0, source, -1);
+		}
+
 		//if the PQ is empty the target has not been found
-		if (queue.isEmpty()) {
-			return GraphSearchStatus.TARGET_NOT_FOUND;
+		if (space.isEmpty()) {
+			return terminate(GraphSearchStatus.TARGET_NOT_FOUND);
 		}
 
 		//get lowest cost node from the queue
-		int nextClosestNode = queue.pop();
+		int nextClosestNode = space.pop();
 
 		//put the node on the SPT
-		shortestPathTree.set(nextClosestNode, searchFrontier.get(nextClosestNode));
+		space.close(nextClosestNode);
 
 		//if the target has been found exit
 		if (nextClosestNode == target) {
-			return GraphSearchStatus.TARGET_FOUND;
+			return terminate(GraphSearchStatus.TARGET_FOUND);
 		}
 
 		//now to test all the edges attached to this node
-		for (NavGraphEdge edge : graph.getEdges(nextClosestNode)) {
+		for (int slot = compact.firstEdge(nextClosestNode); slot < compact.endEdge(nextClosestNode); slot++) {
+			int to = compact.target(slot);
+
 			// calculate the heuristic cost from this node to the target (H)
-			double hCost = heuristic.Calculate(graph, target, edge.to());
+			double hCost = compact.distance(target, to);
 
 			// calculate the 'real' cost to this node from the source (G)
-			double gCost = gCosts.get(nextClosestNode) + edge.cost();
+			double gCost = space.costs[nextClosestNode] + compact.cost(slot);
 
 			// if the node has not been added to the frontier, add it and
 			// update the G and F costs
-			if (searchFrontier.get(edge.to()) == null) {
-				fCosts.set(edge.to(), gCost + hCost);
-				gCosts.set(edge.to(), gCost);
-
-				queue.insert(edge.to());
-
-				searchFrontier.set(edge.to(), edge);
+			if (!space.isSeen(to)) {
+				space.open(to, gCost, gCost + hCost, nextClosestNode, slot);
 			}
 			//if this node is already on the frontier but the cost to get here
 			//is cheaper than has been found previously, update the node
 			//costs and frontier accordingly.
-			else if (gCost < gCosts.get(edge.to()) && shortestPathTree.get(edge.to()) == null) {
-				fCosts.set(edge.to(), gCost + hCost);
-				gCosts.set(edge.to(), gCost);
-
-				queue.changePriority(edge.to());
-
-				searchFrontier.set(edge.to(), edge);
+			else if (gCost < space.costs[to] && !space.isClosed(to)) {
+				space.update(to, gCost, gCost + hCost, nextClosestNode, slot);
 			}
 		}
 
@@ -120,16 +103,59 @@ public class GraphSearchAStarTS<T extends SparseGraph<NavGraphNode<Trigger<IRave
 		return GraphSearchStatus.SEARCH_INCOMPLETE;
 	}
 
-	/** returns the vector of edges that the algorithm has examined */
+	/** keeps what is needed of the result, and gives the workspace back */
+	private GraphSearchStatus terminate(GraphSearchStatus result) {
+		status = result;
+		if (result == GraphSearchStatus.TARGET_FOUND) {
+			costToTarget = space.costs[target];
+			int length = 0;
+			for (int node = target; node != source; node = space.parentNodes[node]) {
+				length++;
+			}
+			pathSlots = new int[length];
+			for (int node = target; node != source; node = space.parentNodes[node]) {
+				pathSlots[--length] = space.parentSlots[node];
+			}
+		}
+		release();
+		return result;
+	}
+
+	@Override
+	public void release() {
+		if (space != null) {
+			space.release();
+			space = null;
+		}
+	}
+
+	/** returns the vector of edges that the algorithm has examined, indexed
+	 * by the node they lead to. Once the search has terminated only the edges
+	 * of the path found are left */
 	@Override
 	public List<NavGraphEdge> getSPT() {
+		List<NavGraphEdge> shortestPathTree = new ArrayList<NavGraphEdge>(compact.numNodes());
+		for (int i = 0; i < compact.numNodes(); i++) {
+			shortestPathTree.add(null);
+		}
+		if (space != null) {
+			for (int node = 0; node < compact.numNodes(); node++) {
+				if (space.isClosed(node) && node != source) {
+					shortestPathTree.set(node, compact.edge(space.parentSlots[node]));
+				}
+			}
+		} else if (pathSlots != null) {
+			for (int slot : pathSlots) {
+				shortestPathTree.set(compact.target(slot), compact.edge(slot));
+			}
+		}
 		return shortestPathTree;
 	}
 
 	/** returns the total cost to the target */
 	@Override
 	public double getCostToTarget() {
-		return gCosts.get(target);
+		return costToTarget;
 	}
 
 	/** returns a vector of node indexes that comprise the shortest path from
@@ -142,16 +168,15 @@ public class GraphSearchAStarTS<T extends SparseGraph<NavGraphNode<Trigger<IRave
 			return path;
 		}
 
-		int node = target;
-
-		path.add(node);
-
-		while(node != source && shortestPathTree.get(node) != null) {
-			node = shortestPathTree.get(node).from();
-			
-			path.add(0, node);
+		if (pathSlots != null) {
+			path.add(source);
+			for (int slot : pathSlots) {
+				path.add(compact.target(slot));
+			}
+		} else {
+			path.add(target);
 		}
-		
+
 		return path;
 	}
 
@@ -159,23 +184,20 @@ public class GraphSearchAStarTS<T extends SparseGraph<NavGraphNode<Trigger<IRave
 	@Override
 	public List<PathEdge> getPathAsPathEdges() {
 		List<PathEdge> path = new LinkedList<PathEdge>();
-		
-		if (target < 0) {
+
+		if (target < 0 || pathSlots == null) {
 			return path;
 		}
-		
-		int node = target;
-		
-		while (node != source && shortestPathTree.get(node) != null) {
-			path.add(0, new PathEdge(
-					graph.getNode(shortestPathTree.get(node).from()).pos(),
-					graph.getNode(shortestPathTree.get(node).to()).pos(),
-					shortestPathTree.get(node).flags(),
-					shortestPathTree.get(node).IDOfIntersectingEntity()));
-			
-			node = shortestPathTree.get(node).from();
+
+		for (int slot : pathSlots) {
+			NavGraphEdge edge = compact.edge(slot);
+			path.add(new PathEdge(
+					graph.getNode(edge.from()).pos(),
+					graph.getNode(edge.to()).pos(),
+					edge.flags(),
+					edge.IDOfIntersectingEntity()));
 		}
-		
+
 		return path;
 	}
 
@@ -4,61 +4,46 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
-import raven.game.RavenBot;
 import raven.game.RavenObject;
 import raven.game.interfaces.IRavenBot;
 import raven.game.triggers.Trigger;
-import raven.math.graph.EuclideanHeuristic;
+import raven.math.graph.CompactGraph;
 import raven.math.graph.GraphNode;
 import raven.math.graph.GraphSearchStatus;
 import raven.math.graph.GraphSearchType;
-import raven.math.graph.Heuristic;
 import raven.math.graph.SparseGraph;
-import raven.utils.IndexedPriorityQueue;
 
 public class GraphSearchDijkstraTS<T extends SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>> extends GraphSearchTimeSliced<NavGraphEdge> {
 
 	private T graph;
 
-	/** indexed into my node. Contains the accumulative cost to that node */
-	private List<Double> costToThisNode;
+	/** the graph in flat arrays, which is what the search expands nodes on */
+	private CompactGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> compact;
 
-
-	private List<NavGraphEdge> shortestPathTree;
-	private List<NavGraphEdge> searchFrontier;
+	/** holds the accumulative cost to each node, which also orders the queue.
+	 * Taken on the first cycle and given back once the search terminates. */
+	private SearchWorkspace space;
 
 	private int source;
 	private int targetNode;
 	private RavenObject target;
 
-	private IndexedPriorityQueue<Double> queue;
+	/** how the search terminated, or SEARCH_INCOMPLETE while it runs */
+	private GraphSearchStatus status = GraphSearchStatus.SEARCH_INCOMPLETE;
 
-	private GraphSearchTermination<SparseGraph<NavGraphNode<Trigger<?>>, NavGraphEdge>> termination;
+	/** the edge slots of the path found, from the source to the target */
+	private int[] pathSlots;
+	private double costToTarget;
 
 	public GraphSearchDijkstraTS(T graph, int source, RavenObject target) {
 		super(GraphSearchType.Dijkstra);
 
 		this.graph = graph;
-
-		costToThisNode = new ArrayList<Double>(graph.numNodes());
-		shortestPathTree = new ArrayList<NavGraphEdge>(graph.numNodes());
-		searchFrontier = new ArrayList<NavGraphEdge>(graph.numNodes());
-
-		// Cost arrays need to be filled
-		for (int i = 0; i < graph.numNodes(); i++) {
-			costToThisNode.add(0.0);
-			shortestPathTree.add(null);
-			searchFrontier.add(null);
-		}
+		this.compact = graph.compact();
 
 		this.source = source;
 		this.target = target;
 		this.targetNode = GraphNode.INVALID_NODE_INDEX;
-
-		// TreeMap functions as a priority queue
-		queue = new IndexedPriorityQueue<Double>(costToThisNode, graph.numNodes());
-
-		queue.insert(source);
 	}
 
 	/** When called, this method pops the next node off the PQ and examines
@@ -67,48 +52,52 @@ public class GraphSearchDijkstraTS<T extends SparseGraph<NavGraphNode<Trigger<IR
 	 * search */
 	@Override
 	public GraphSearchStatus cycleOnce() {
+		if (status != GraphSearchStatus.SEARCH_INCOMPLETE) {
+			return status;
+		}
+
+		//the workspace comes from the pool of whichever thread runs the search
+		if (space == null) {
+			space = SearchWorkspace.acquire(compact.numNodes());
+			space.open(source, 0, 0, source, -1);
+		}
+
 		//if the PQ is empty the target has not been found
-		if (queue.isEmpty()) {
-			return GraphSearchStatus.TARGET_NOT_FOUND;
+		if (space.isEmpty()) {
+			return terminate(GraphSearchStatus.TARGET_NOT_FOUND);
 		}
 
 		//get lowest cost node from the queue
-		int nextClosestNode = queue.pop();
+		int nextClosestNode = space.pop();
 
 		//move this node from the frontier to the spanning tree
-		shortestPathTree.set(nextClosestNode, searchFrontier.get(nextClosestNode));
+		space.close(nextClosestNode);
 
 		//if the target has been found exit
 		NavGraphNode<Trigger<IRavenBot>> node = graph.getNode(nextClosestNode);
 		if (node.extraInfo() != null && node.extraInfo().isActive() && node.extraInfo().entityType() == target) {
 			targetNode = nextClosestNode;
 			
-			return GraphSearchStatus.TARGET_FOUND;
+			return terminate(GraphSearchStatus.TARGET_FOUND);
 		}
 
 		//now to test all the edges attached to this node
-		for (NavGraphEdge edge : graph.getEdges(nextClosestNode)) {
-			// calculate the heuristic cost from this node to the target (H)
-			double newCost = costToThisNode.get(nextClosestNode) + edge.cost();
+		for (int slot = compact.firstEdge(nextClosestNode); slot < compact.endEdge(nextClosestNode); slot++) {
+			int to = compact.target(slot);
 
-			// if the node has not been added to the frontier, add it and
-			// update the G and F costs
-			if (searchFrontier.get(edge.to()) == null) {
-				costToThisNode.set(edge.to(), newCost);
-				
-				queue.insert(edge.to());
+			// calculate the cost to this node from the source
+			double newCost = space.costs[nextClosestNode] + compact.cost(slot);
 
-				searchFrontier.set(edge.to(), edge);
+			// if the node has not been added to the frontier, add it and
+			// update its cost
+			if (!space.isSeen(to)) {
+				space.open(to, newCost, newCost, nextClosestNode, slot);
 			}
 			//if this node is already on the frontier but the cost to get here
 			//is cheaper than has been found previously, update the node
 			//costs and frontier accordingly.
-			else if (newCost < costToThisNode.get(edge.to()) && shortestPathTree.get(edge.to()) == null) {
-				costToThisNode.set(edge.to(), newCost);
-
-				queue.changePriority(edge.to());
-
-				searchFrontier.set(edge.to(), edge);
+			else if (newCost < space.costs[to] && !space.isClosed(to)) {
+				space.update(to, newCost, newCost, nextClosestNode, slot);
 			}
 		}
 
@@ -116,16 +105,59 @@ public class GraphSearchDijkstraTS<T extends SparseGraph<NavGraphNode<Trigger<IR
 		return GraphSearchStatus.SEARCH_INCOMPLETE;
 	}
 
-	/** returns the vector of edges that the algorithm has examined */
+	/** keeps what is needed of the result, and gives the workspace back */
+	private GraphSearchStatus terminate(GraphSearchStatus result) {
+		status = result;
+		if (result == GraphSearchStatus.TARGET_FOUND) {
+			costToTarget = space.costs[targetNode];
+			int length = 0;
+			for (int node = targetNode; node != source; node = space.parentNodes[node]) {
+				length++;
+			}
+			pathSlots = new int[length];
+			for (int node = targetNode; node != source; node = space.parentNodes[node]) {
+				pathSlots[--length] = space.parentSlots[node];
+			}
+		}
+		release();
+		return result;
+	}
+
+	@Override
+	public void release() {
+		if (space != null) {
+			space.release();
+			space = null;
+		}
+	}
+
+	/** returns the vector of edges that the algorithm has examined, indexed
+	 * by the node they lead to. Once the search has terminated only the edges
+	 * of the path found are left */
 	@Override
 	public List<NavGraphEdge> getSPT() {
+		List<NavGraphEdge> shortestPathTree = new ArrayList<NavGraphEdge>(compact.numNodes());
+		for (int i = 0; i < compact.numNodes(); i++) {
+			shortestPathTree.add(null);
+		}
+		if (space != null) {
+			for (int node = 0; node < compact.numNodes(); node++) {
+				if (space.isClosed(node) && node != source) {
+					shortestPathTree.set(node, compact.edge(space.parentSlots[node]));
+				}
+			}
+		} else if (pathSlots != null) {
+			for (int slot : pathSlots) {
+				shortestPathTree.set(compact.target(slot), compact.edge(slot));
+			}
+		}
 		return shortestPathTree;
 	}
 
 	/** returns the total cost to the target */
 	@Override
 	public double getCostToTarget() {
-		return costToThisNode.get(targetNode);
+		return costToTarget;
 	}
 
 	/** returns a vector of node indexes that comprise the shortest path from
@@ -138,14 +170,9 @@ public class GraphSearchDijkstraTS<T extends SparseGraph<NavGraphNode<Trigger<IR
 			return path;
 		}
 
-		int node = targetNode;
-
-		path.add(node);
-
-		while(node != source && shortestPathTree.get(node) != null) {
-			node = shortestPathTree.get(node).from();
-			
-			path.add(0, node);
+		path.add(source);
+		for (int slot : pathSlots) {
+			path.add(compact.target(slot));
 		}
 		
 		return path;
@@ -160,16 +187,13 @@ public class GraphSearchDijkstraTS<T extends SparseGraph<NavGraphNode<Trigger<IR
 			return path;
 		}
 		
-		int node = targetNode;
-		
-		while (node != source && shortestPathTree.get(node) != null) {
-			path.add(0, new PathEdge(
-					graph.getNode(shortestPathTree.get(node).from()).pos(),
-					graph.getNode(shortestPathTree.get(node).to()).pos(),
-					shortestPathTree.get(node).flags(),
-					shortestPathTree.get(node).IDOfIntersectingEntity()));
-			
-			node = shortestPathTree.get(node).from();
+		for (int slot : pathSlots) {
+			NavGraphEdge edge = compact.edge(slot);
+			path.add(new PathEdge(
+					graph.getNode(edge.from()).pos(),
+					graph.getNode(edge.to()).pos(),
+					edge.flags(),
+					edge.IDOfIntersectingEntity()));
 		}
 		
 		return path;
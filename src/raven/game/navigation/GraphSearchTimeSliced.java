@@ -32,5 +32,10 @@ public abstract class GraphSearchTimeSliced<NavGraphEdge>  {
 	/** returns the path as a list of PathEdges */
 	public abstract List<PathEdge> getPathAsPathEdges();
 
+	/** gives back what the search holds on to while it runs, when it is
+	 * abandoned before terminating. Searches give it back themselves once
+	 * they terminate */
+	public void release() {}
+
 	public GraphSearchType getType(){ return searchType; }
 }
@@ -0,0 +1,262 @@
+package raven.game.navigation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import raven.game.interfaces.IRavenBot;
+import raven.game.triggers.Trigger;
+import raven.math.Vector2D;
+import raven.math.graph.GraphNode;
+import raven.math.graph.GraphSearchStatus;
+import raven.math.graph.SparseGraph;
+import raven.utils.DeferredEffects;
+
+/**
+ * Remembers the searches between pairs of graph nodes, and the closest node
+ * found from each small cell of the map, so that bots going back and forth
+ * between the same places do not search again. Both are kept least recently
+ * used first and trimmed to a fixed size.
+ *
+ * A terminated A* search holds nothing but its path, so the search itself is
+ * what is kept, and handed to any planner asking for the same pair of nodes.
+ *
+ * Bots may look things up while thinking at the same time, so a lookup
+ * does not move what it found to the back straight away; that, and keeping
+ * new entries, are effects run once the bots have finished thinking, in the
+ * order of the bots, so what gets trimmed does not depend on timing.
+ *
+ * Everything is dropped once the graph is edited. When a door opens or
+ * closes only what lies around it is dropped: the paths whose nodes span the
+ * door, the searches that found no path, and the cells near the door.
+ */
+public class PathCache {
+	/** number of searches and of cells kept */
+	public static int CachedPaths = 1024;
+	public static int CachedCells = 4096;
+
+	private final SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph;
+	private final double cellSize;
+	private int graphVersion;
+
+	private final LinkedHashMap<Long, CachedPath> paths;
+	private final LinkedHashMap<Long, Integer> closestNodes;
+
+	private long hits;
+	private long misses;
+
+	public PathCache(SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph, double cellSize) {
+		this(graph, cellSize, CachedPaths, CachedCells);
+	}
+
+	public PathCache(SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph, double cellSize, final int maxPaths, final int maxCells) {
+		this.graph = graph;
+		this.cellSize = cellSize;
+		this.graphVersion = graph.version();
+		paths = new LinkedHashMap<Long, CachedPath>() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, CachedPath> eldest) {
+				return size() > maxPaths;
+			}
+		};
+		closestNodes = new LinkedHashMap<Long, Integer>() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+				return size() > maxCells;
+			}
+		};
+	}
+
+	/** the graph the cache was built for */
+	public SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> getGraph() { return graph; }
+
+	private static long key(int a, int b) {
+		return ((long)a << 32) | (b & 0xffffffffL);
+	}
+
+	private long cellKey(Vector2D pos) {
+		return key((int)Math.floor(pos.x / cellSize), (int)Math.floor(pos.y / cellSize));
+	}
+
+	/** drops everything if the graph has changed since it was last looked at */
+	private void checkVersion() {
+		int version = graph.version();
+		if (version != graphVersion) {
+			clear();
+			graphVersion = version;
+		}
+	}
+
+	/** the terminated search from one node to the other, or null */
+	public synchronized GraphSearchTimeSliced<NavGraphEdge> getPath(int source, int target) {
+		checkVersion();
+		final long key = key(source, target);
+		CachedPath cached = paths.get(key);
+		if (cached == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		DeferredEffects.run(new Runnable() {
+			@Override
+			public void run() {
+				touchPath(key);
+			}
+		});
+		return cached.search;
+	}
+
+	/** moves a search to the back of the queue to be trimmed */
+	private synchronized void touchPath(long key) {
+		CachedPath cached = paths.remove(key);
+		if (cached != null) {
+			paths.put(key, cached);
+		}
+	}
+
+	/** keeps a search that has terminated, for the next request between the
+	 * same nodes */
+	public void putPath(final int source, final int target, final GraphSearchTimeSliced<NavGraphEdge> search, final GraphSearchStatus result) {
+		if (result == GraphSearchStatus.SEARCH_INCOMPLETE)
+			throw new IllegalArgumentException("PathCache#putPath: the search has not terminated");
+		DeferredEffects.run(new Runnable() {
+			@Override
+			public void run() {
+				keepPath(source, target, search, result);
+			}
+		});
+	}
+
+	private synchronized void keepPath(int source, int target, GraphSearchTimeSliced<NavGraphEdge> search, GraphSearchStatus result) {
+		checkVersion();
+		CachedPath cached = new CachedPath(search);
+		if (result == GraphSearchStatus.TARGET_FOUND) {
+			List<Integer> nodes = search.getPathToTarget();
+			cached.minX = cached.minY = Double.MAX_VALUE;
+			cached.maxX = cached.maxY = -Double.MAX_VALUE;
+			for (int node : nodes) {
+				Vector2D pos = graph.getNode(node).pos();
+				cached.minX = Math.min(cached.minX, pos.x);
+				cached.minY = Math.min(cached.minY, pos.y);
+				cached.maxX = Math.max(cached.maxX, pos.x);
+				cached.maxY = Math.max(cached.maxY, pos.y);
+			}
+		}
+		long key = key(source, target);
+		paths.remove(key);
+		paths.put(key, cached);
+	}
+
+	/** the closest node found before from the cell holding the position, or
+	 * GraphNode.INVALID_NODE_INDEX. It was visible from somewhere in the
+	 * cell, not necessarily from the position itself */
+	public synchronized int getClosestNode(Vector2D pos) {
+		checkVersion();
+		final long cell = cellKey(pos);
+		Integer node = closestNodes.get(cell);
+		if (node == null) {
+			misses++;
+			return GraphNode.INVALID_NODE_INDEX;
+		}
+		hits++;
+		DeferredEffects.run(new Runnable() {
+			@Override
+			public void run() {
+				keepClosestNode(cell, null);
+			}
+		});
+		return node;
+	}
+
+	public void putClosestNode(Vector2D pos, final int node) {
+		final long cell = cellKey(pos);
+		DeferredEffects.run(new Runnable() {
+			@Override
+			public void run() {
+				keepClosestNode(cell, node);
+			}
+		});
+	}
+
+	/** puts the node at the back of the queue to be trimmed, or the node
+	 * already kept for the cell if node is null */
+	private synchronized void keepClosestNode(long cell, Integer node) {
+		checkVersion();
+		Integer kept = closestNodes.remove(cell);
+		if (node == null) {
+			node = kept;
+		}
+		if (node != null) {
+			closestNodes.put(cell, node);
+		}
+	}
+
+	/** drops what may have changed with something between the two points,
+	 * such as a door that opened or closed */
+	public synchronized void invalidateRegion(Vector2D a, Vector2D b) {
+		checkVersion();
+		double minX = Math.min(a.x, b.x) - cellSize;
+		double minY = Math.min(a.y, b.y) - cellSize;
+		double maxX = Math.max(a.x, b.x) + cellSize;
+		double maxY = Math.max(a.y, b.y) + cellSize;
+
+		for (Iterator<CachedPath> it = paths.values().iterator(); it.hasNext(); ) {
+			CachedPath cached = it.next();
+			if (cached.minX <= maxX && cached.maxX >= minX && cached.minY <= maxY && cached.maxY >= minY) {
+				it.remove();
+			}
+		}
+
+		int firstCellX = (int)Math.floor(minX / cellSize);
+		int lastCellX = (int)Math.floor(maxX / cellSize);
+		int firstCellY = (int)Math.floor(minY / cellSize);
+		int lastCellY = (int)Math.floor(maxY / cellSize);
+		if ((long)(lastCellX - firstCellX + 1) * (lastCellY - firstCellY + 1) > closestNodes.size()) {
+			for (Iterator<Long> it = closestNodes.keySet().iterator(); it.hasNext(); ) {
+				long cell = it.next();
+				int cellX = (int)(cell >> 32);
+				int cellY = (int)cell;
+				if (cellX >= firstCellX && cellX <= lastCellX && cellY >= firstCellY && cellY <= lastCellY) {
+					it.remove();
+				}
+			}
+		} else {
+			for (int cellX = firstCellX; cellX <= lastCellX; cellX++) {
+				for (int cellY = firstCellY; cellY <= lastCellY; cellY++) {
+					closestNodes.remove(key(cellX, cellY));
+				}
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		paths.clear();
+		closestNodes.clear();
+	}
+
+	public synchronized int numPaths() { return paths.size(); }
+
+	public synchronized int numCells() { return closestNodes.size(); }
+
+	public synchronized long getHits() { return hits; }
+
+	public synchronized long getMisses() { return misses; }
+
+	/** a terminated search, and the box around the nodes of its path. A
+	 * search that found no path has a box covering everything, as any door
+	 * may be what was in the way */
+	private static class CachedPath {
+		final GraphSearchTimeSliced<NavGraphEdge> search;
+		double minX = -Double.MAX_VALUE;
+		double minY = -Double.MAX_VALUE;
+		double maxX = Double.MAX_VALUE;
+		double maxY = Double.MAX_VALUE;
+
+		CachedPath(GraphSearchTimeSliced<NavGraphEdge> search) {
+			this.search = search;
+		}
+	}
+}
@@ -1,64 +1,197 @@
 package raven.game.navigation;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import raven.math.graph.GraphSearchStatus;
+import raven.math.graph.GraphSearchType;
 
+/**
+ * Keeps the path planning requests of the bots going. Searches on the game
+ * thread are cycled there, sharing a fixed number of search cycles per
+ * update. With worker threads, A* searches for positions are handed to a
+ * PathSearchService instead, and each update delivers the ones that have
+ * terminated since the last. Those only read the compact copy of the nav
+ * graph taken when they were made. Searches for items read the triggers as
+ * they are now, which only the game thread may do, so they stay on it.
+ *
+ * Either way bots hear about their paths by Telegram, sent from the game
+ * thread while it updates the searches.
+ */
 public class PathManager {
+	/** planners searching on the game thread, with when they registered */
 	private List<RavenPathPlanner> searchRequests;
+	private List<Long> registeredNanos;
 	private int numSearchCyclesPerUpdate;
 
+	/** searches that terminated this round, told to their bots once the
+	 * round is over because bots may register new searches when told */
+	private List<RavenPathPlanner> pendingNotifications = new ArrayList<RavenPathPlanner>();
+	private List<GraphSearchStatus> pendingResults = new ArrayList<GraphSearchStatus>();
+
+	/** the worker pool and the planners with a search on it, or null when
+	 * every search runs on the game thread */
+	private PathSearchService service;
+	private Map<RavenPathPlanner, PathSearchService.Request> inFlight;
+
+	private long searchesCompleted;
+	private long totalLatencyNanos;
+	private long maxLatencyNanos;
+
 	public PathManager(int numCyclesPerUpdate) {
+		this(numCyclesPerUpdate, 0, 0);
+	}
+
+	/** searches on the game thread share numCyclesPerUpdate cycles per
+	 * update. With worker threads each A* search runs on a worker for up to
+	 * sliceMs before letting the others have a turn */
+	public PathManager(int numCyclesPerUpdate, int numWorkerThreads, double sliceMs) {
 		this.numSearchCyclesPerUpdate = numCyclesPerUpdate;
-		searchRequests = new LinkedList<RavenPathPlanner>();
+		searchRequests = new ArrayList<RavenPathPlanner>();
+		registeredNanos = new ArrayList<Long>();
+		if (numWorkerThreads > 0) {
+			service = new PathSearchService(numWorkerThreads, sliceMs);
+			inFlight = new HashMap<RavenPathPlanner, PathSearchService.Request>();
+		}
+	}
+
+	public void Register(final RavenPathPlanner pathPlanner){
+		if (!runsOnWorker(pathPlanner.getCurrentSearch())) {
+			//make sure the bot does not already have a current search in the queue
+			if (!searchRequests.contains(pathPlanner)) {
+				searchRequests.add(pathPlanner);
+				registeredNanos.add(System.nanoTime());
+			}
+			return;
+		}
+
+		if (inFlight.containsKey(pathPlanner))
+			return;
+		inFlight.put(pathPlanner, service.submit(pathPlanner.getCurrentSearch(), new PathSearchService.Client() {
+			@Override
+			public void searchTerminated(PathSearchService.Request request) {
+				inFlight.remove(pathPlanner);
+				recordLatency(request.getSubmittedNanos());
+				pathPlanner.notifyOwner(request.getResult());
+			}
+		}));
 	}
 
-	public void Register(RavenPathPlanner pathPlanner){
-		//make sure the bot does not already have a current search in the queue
-		if (!searchRequests.contains(pathPlanner))
-			searchRequests.add(pathPlanner);
+	/** returns true if the planner's search was on a worker, in which case
+	 * the worker gives it back and the planner must not release it */
+	public boolean UnRegister(RavenPathPlanner pathPlanner){
+		int index = searchRequests.indexOf(pathPlanner);
+		if (index >= 0) {
+			searchRequests.remove(index);
+			registeredNanos.remove(index);
+			return false;
+		}
+		if (service == null)
+			return false;
+
+		PathSearchService.Request request = inFlight.remove(pathPlanner);
+		if (request == null)
+			return false;
+		request.cancel();
+		return true;
 	}
 
-	public void UnRegister(RavenPathPlanner pathPlanner){
-		searchRequests.remove(pathPlanner);
+	/** returns true if the search is handed to a worker. Only A* searches
+	 * are, as they read nothing the game changes while they run */
+	private boolean runsOnWorker(GraphSearchTimeSliced<NavGraphEdge> search) {
+		return service != null && search.getType() == GraphSearchType.AStar;
 	}
 
 	//returns the amount of path requests currently active.
-	public int  GetNumActiveSearches(){ return searchRequests.size(); }
+	public int  GetNumActiveSearches(){
+		return searchRequests.size() + (service == null ? 0 : inFlight.size());
+	}
+
+	/** number of searches that have not terminated yet. On workers this
+	 * leaves out the terminated searches waiting to be delivered */
+	public int getQueueDepth() {
+		return searchRequests.size() + (service == null ? 0 : service.getQueueDepth());
+	}
+
+	public long getSearchesCompleted() { return searchesCompleted; }
+
+	/** average time from a search being registered to its bot being told
+	 * the result, in milliseconds */
+	public double getAverageLatencyMs() {
+		return searchesCompleted == 0 ? 0 : totalLatencyNanos / 1e6 / searchesCompleted;
+	}
+
+	public double getMaxLatencyMs() { return maxLatencyNanos / 1e6; }
+
+	private void recordLatency(long registered) {
+		long latency = System.nanoTime() - registered;
+		searchesCompleted++;
+		totalLatencyNanos += latency;
+		maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+	}
+
+	/** stops the worker threads, if there are any */
+	public void shutdown() {
+		if (service != null)
+			service.shutdown();
+	}
 
 	/** This method iterates through all the active path planning requests
-	 * updating their searches until the user specified total number of search
-	 * cycles has been satisfied.
-	 * 
+	 * on the game thread updating their searches until the user specified
+	 * total number of search cycles has been satisfied. With worker threads
+	 * it first delivers the searches that have terminated on them.
+	 *
 	 * If a path is found or the search is unsuccessful the relevant agent is
 	 * notified accordingly by Telegram */
 	public void updateSearches()
 	{
+		if (service != null) {
+			service.deliverFinished();
+		}
+
 		int NumCyclesRemaining = numSearchCyclesPerUpdate;
 
 		//iterate through the search requests until either all requests have been
 		//fulfilled or there are no search cycles remaining for this update-step.
-		while (NumCyclesRemaining-- > 0) {
-			if (searchRequests.isEmpty())
-				break;
-
-			// make one search cycle of this path request
-			List<RavenPathPlanner> toRemove = new ArrayList<RavenPathPlanner>();
-			for (RavenPathPlanner planner : searchRequests) {
-				GraphSearchStatus result = planner.cycleOnce();
+		while (NumCyclesRemaining > 0 && !searchRequests.isEmpty()) {
+			// make one search cycle of each path request, keeping the ones that
+			// have not terminated at the front of the list
+			int kept = 0;
+			int i = 0;
+			for (; i < searchRequests.size() && NumCyclesRemaining > 0; i++) {
+				RavenPathPlanner planner = searchRequests.get(i);
+				Long registered = registeredNanos.get(i);
+				NumCyclesRemaining--;
 
-				// if the search has terminated remove from the list
+				GraphSearchStatus result = planner.getCurrentSearch().cycleOnce();
 				if (result == GraphSearchStatus.TARGET_FOUND || result == GraphSearchStatus.TARGET_NOT_FOUND) {
-					toRemove.add(planner);
+					recordLatency(registered);
+					pendingNotifications.add(planner);
+					pendingResults.add(result);
+				} else {
+					searchRequests.set(kept, planner);
+					registeredNanos.set(kept, registered);
+					kept++;
 				}
-
-				if (NumCyclesRemaining-- <= 0)
-					break;
 			}
-			searchRequests.removeAll(toRemove);
+			// requests not reached this time round stay where they are
+			for (; i < searchRequests.size(); i++) {
+				searchRequests.set(kept, searchRequests.get(i));
+				registeredNanos.set(kept, registeredNanos.get(i));
+				kept++;
+			}
+			while (searchRequests.size() > kept) {
+				searchRequests.remove(searchRequests.size() - 1);
+				registeredNanos.remove(registeredNanos.size() - 1);
+			}
 
+			for (int n = 0; n < pendingNotifications.size(); n++) {
+				pendingNotifications.get(n).notifyOwner(pendingResults.get(n));
+			}
+			pendingNotifications.clear();
+			pendingResults.clear();
 		}
 	}
 }
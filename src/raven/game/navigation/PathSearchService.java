@@ -0,0 +1,154 @@
+package raven.game.navigation;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import raven.math.graph.GraphSearchStatus;
+
+/**
+ * Runs time-sliced searches on a pool of worker threads. A worker cycles a
+ * search until it terminates or its slice of time is used up, and in the
+ * latter case puts it at the back of the queue so the other searches get a
+ * turn. Searches only read the nav graph, through its compact copy, so
+ * nothing is locked while they run.
+ *
+ * Terminated searches wait until the thread that owns the game calls
+ * deliverFinished, which hands them to their clients on that thread. That is
+ * where the Telegrams telling bots about their paths can be sent from.
+ */
+public class PathSearchService {
+	/** the clock is read once every this many cycles of a search */
+	private static final int CYCLES_PER_CLOCK_CHECK = 32;
+
+	/** told on the thread calling deliverFinished that a search terminated */
+	public interface Client {
+		void searchTerminated(Request request);
+	}
+
+	private final ExecutorService workers;
+	private final long sliceNanos;
+
+	/** terminated searches, waiting to be delivered */
+	private final ConcurrentLinkedQueue<Request> finished = new ConcurrentLinkedQueue<Request>();
+
+	/** searches submitted that have neither terminated nor been cancelled */
+	private final AtomicInteger queueDepth = new AtomicInteger();
+
+	public PathSearchService(int numThreads, double sliceMs) {
+		this.sliceNanos = (long)(sliceMs * 1000000);
+		final AtomicInteger threadCount = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "PathSearch-" + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/** queues the search, which must not have been cycled yet. The client
+	 * hears back once it terminates, unless the request is cancelled first */
+	public Request submit(GraphSearchTimeSliced<NavGraphEdge> search, Client client) {
+		Request request = new Request(search, client);
+		queueDepth.incrementAndGet();
+		try {
+			workers.execute(request);
+		} catch (RejectedExecutionException e) {
+			queueDepth.decrementAndGet();
+			throw e;
+		}
+		return request;
+	}
+
+	/** hands every search that has terminated since the last call to its
+	 * client, on the calling thread. Returns the number delivered */
+	public int deliverFinished() {
+		int delivered = 0;
+		Request request;
+		while ((request = finished.poll()) != null) {
+			if (!request.cancelled) {
+				request.client.searchTerminated(request);
+				delivered++;
+			}
+		}
+		return delivered;
+	}
+
+	/** number of searches waiting for a worker or being run by one */
+	public int getQueueDepth() { return queueDepth.get(); }
+
+	/** stops the workers. Searches still queued are dropped */
+	public void shutdown() {
+		workers.shutdownNow();
+	}
+
+	/** a search handed to the service, and the client to tell about it */
+	public class Request implements Runnable {
+		private final GraphSearchTimeSliced<NavGraphEdge> search;
+		private final Client client;
+		private final long submittedNanos = System.nanoTime();
+		private volatile boolean cancelled;
+
+		/** written by the worker before the request is put on the finished
+		 * queue, which makes it visible to the delivering thread */
+		private GraphSearchStatus result = GraphSearchStatus.SEARCH_INCOMPLETE;
+
+		private Request(GraphSearchTimeSliced<NavGraphEdge> search, Client client) {
+			this.search = search;
+			this.client = client;
+		}
+
+		public GraphSearchTimeSliced<NavGraphEdge> getSearch() { return search; }
+
+		public GraphSearchStatus getResult() { return result; }
+
+		/** System.nanoTime() when the search was submitted */
+		public long getSubmittedNanos() { return submittedNanos; }
+
+		/** stops the search and keeps it from being delivered. The search is
+		 * given back by the worker that holds it, so the caller must not
+		 * release it */
+		public void cancel() {
+			cancelled = true;
+		}
+
+		@Override
+		public void run() {
+			GraphSearchStatus status = GraphSearchStatus.SEARCH_INCOMPLETE;
+			long deadline = System.nanoTime() + sliceNanos;
+			while (!cancelled) {
+				for (int i = 0; i < CYCLES_PER_CLOCK_CHECK && status == GraphSearchStatus.SEARCH_INCOMPLETE; i++) {
+					status = search.cycleOnce();
+				}
+				if (status != GraphSearchStatus.SEARCH_INCOMPLETE || System.nanoTime() >= deadline) {
+					break;
+				}
+			}
+
+			if (status != GraphSearchStatus.SEARCH_INCOMPLETE) {
+				result = status;
+				queueDepth.decrementAndGet();
+				finished.add(this);
+			} else if (cancelled) {
+				abandon();
+			} else {
+				//out of time, let the searches queued behind this one run
+				try {
+					workers.execute(this);
+				} catch (RejectedExecutionException e) {
+					abandon();
+				}
+			}
+		}
+
+		private void abandon() {
+			search.release();
+			queueDepth.decrementAndGet();
+		}
+	}
+}
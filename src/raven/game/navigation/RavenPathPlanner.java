@@ -10,7 +10,6 @@ import raven.game.interfaces.IRavenBot;
 import raven.game.RavenGame;
 import raven.game.RavenMap;
 import raven.game.RavenObject;
-import raven.math.CellSpacePartition;
 import raven.math.Vector2D;
 import raven.math.graph.GraphEdge;
 import raven.math.graph.GraphNode;
@@ -30,6 +29,7 @@ import raven.math.C2DMatrix;
 import raven.math.Transformations;
 import raven.script.RavenScript;
 import raven.ui.GameCanvas;
+import raven.utils.DeferredEffects;
 import raven.utils.Log;
 import raven.utils.Regulator;
 
@@ -47,6 +47,13 @@ public class RavenPathPlanner {
 	// The destination position
 	private Vector2D destinationPos;
 
+	// The graph nodes near the position being looked up
+	private List<NavGraphNode<Trigger<IRavenBot>>> neighboringNodes = new ArrayList<NavGraphNode<Trigger<IRavenBot>>>();
+
+	// The nodes an A* search runs between, for caching its result
+	private int searchSource = GraphNode.INVALID_NODE_INDEX;
+	private int searchTarget = GraphNode.INVALID_NODE_INDEX;
+
 	public RavenPathPlanner() {
 		getReadyForNewSearch();
 	}
@@ -60,6 +67,13 @@ public class RavenPathPlanner {
 	/** returns the index of the closest visible graph node to the given position */
 	private int getClosestNodeToPosition(Vector2D pos)
 	{
+		//a node found from the same small cell before only needs checking
+		//for visibility from this exact position
+		PathCache cache = owner.getWorld().getMap().getPathCache();
+		int cached = cache.getClosestNode(pos);
+		if (cached != GraphNode.INVALID_NODE_INDEX && owner.canWalkBetween(pos, navGraph.getNode(cached).pos()))
+			return cached;
+
 		double closestSoFar = Double.MAX_VALUE;
 		int closestNode = GraphNode.INVALID_NODE_INDEX;
 
@@ -68,12 +82,13 @@ public class RavenPathPlanner {
 		//navigation graph (less dense = bigger values)
 		double range = owner.getWorld().getMap().getCellSpaceNeighborhoodRange();
 
-		//calculate the graph nodes that are neighboring this position
-		owner.getWorld().getMap().getCellSpace().calculateNeighbors(pos, range);
+		//calculate the graph nodes that are neighboring this position, into a
+		//list of this planner's own so that planners may run at the same time
+		neighboringNodes.clear();
+		owner.getWorld().getMap().getCellSpace().query(pos, range, neighboringNodes);
 
 		//iterate through the neighbors and sum up all the position vectors
-		CellSpacePartition<NavGraphNode<Trigger<IRavenBot>>> nodes= owner.getWorld().getMap().getCellSpace();
-		for (NavGraphNode<Trigger<IRavenBot>> node : nodes)
+		for (NavGraphNode<Trigger<IRavenBot>> node : neighboringNodes)
 		{
 			//if the path between this node and pos is unobstructed calculate the
 			//distance
@@ -90,6 +105,9 @@ public class RavenPathPlanner {
 			}
 		}
 
+		if (closestNode != GraphNode.INVALID_NODE_INDEX)
+			cache.putClosestNode(pos, closestNode);
+
 		return closestNode;
 	}
 
@@ -161,13 +179,37 @@ public class RavenPathPlanner {
 
 	private void getReadyForNewSearch()
 	{
-		//unregister any existing search with the path manager
-		owner.getWorld().getPathManager().UnRegister(this);
-
-		//clean up memory used by any existing search
+		//unregister any existing search with the path manager, which gives it
+		//back itself if a worker thread is running it, once the owner has
+		//finished thinking
+		final GraphSearchTimeSliced<NavGraphEdge> search = currentSearch;
+		DeferredEffects.run(new Runnable() {
+			@Override
+			public void run() {
+				boolean handedBack = owner.getWorld().getPathManager().UnRegister(RavenPathPlanner.this);
+
+				//clean up memory used by any existing search
+				if (search != null && !handedBack)
+					search.release();
+			}
+		});
 		currentSearch = null;
 	}
 
+	/** registers the current search with the path manager once the owner
+	 * has finished thinking, unless it has asked for another one since */
+	private void register()
+	{
+		final GraphSearchTimeSliced<NavGraphEdge> search = currentSearch;
+		DeferredEffects.run(new Runnable() {
+			@Override
+			public void run() {
+				if (currentSearch == search)
+					owner.getWorld().getPathManager().Register(RavenPathPlanner.this);
+			}
+		});
+	}
+
 	/** Given an item type, this method determines the closest reachable graph
 	 * node to the bot's position and then creates a instance of the time-
 	 * sliced Dijkstra's algorithm, which it registers with the search manager */
@@ -192,7 +234,7 @@ public class RavenPathPlanner {
 		searchType = GraphSearchType.Dijkstra;
 		
 		//register the search with the path manager
-		owner.getWorld().getPathManager().Register(this);
+		register();
 		
 		return true;
 	}
@@ -248,12 +290,19 @@ public class RavenPathPlanner {
 			Log.trace("PathPlanner", "Closest node to target is " + ClosestNodeToTarget);
 		}
 		
-		//create an instance of a the distributed A* search class
-		currentSearch = new GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>,NavGraphEdge>>(navGraph, ClosestNodeToBot, ClosestNodeToTarget);
+		//reuse the search between these nodes if it has been made before, or
+		//create an instance of a the distributed A* search class. A reused
+		//search has terminated already, so the path manager passes its result
+		//on at the next update
+		currentSearch = owner.getWorld().getMap().getPathCache().getPath(ClosestNodeToBot, ClosestNodeToTarget);
+		if (currentSearch == null)
+			currentSearch = new GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>,NavGraphEdge>>(navGraph, ClosestNodeToBot, ClosestNodeToTarget);
 		searchType = GraphSearchType.AStar;
+		searchSource = ClosestNodeToBot;
+		searchTarget = ClosestNodeToTarget;
 		
 		//and register the search with the path manager
-		owner.getWorld().getPathManager().Register(this);
+		register();
 		return true;
 	}
 	
@@ -354,6 +403,27 @@ public class RavenPathPlanner {
 			throw new RuntimeException("<Raven_PathPlanner::CycleOnce>: No search object instantiated");
 
 		GraphSearchStatus result = currentSearch.cycleOnce();
+		notifyOwner(result);
+		return result;
+	}
+
+	/** the search the path manager runs for this planner */
+	GraphSearchTimeSliced<NavGraphEdge> getCurrentSearch()
+	{
+		if (currentSearch == null)
+			throw new RuntimeException("RavenPathPlanner#getCurrentSearch called without a search!");
+		return currentSearch;
+	}
+
+	/** messages the owner with either the msg_NoPathAvailable or
+	 * msg_PathReady messages once the current search has terminated, and
+	 * caches the result of an A* search. This must be called on the game
+	 * thread, wherever the search ran */
+	void notifyOwner(GraphSearchStatus result)
+	{
+		//searches between two nodes give the same result until the map changes
+		if (searchType == GraphSearchType.AStar && result != GraphSearchStatus.SEARCH_INCOMPLETE)
+			owner.getWorld().getMap().getPathCache().putPath(searchSource, searchTarget, currentSearch, result);
 
 		//let the bot know of the failure to find a path
 		if (result == GraphSearchStatus.TARGET_NOT_FOUND) {
@@ -372,9 +442,8 @@ public class RavenPathPlanner {
 			//represent a giver trigger. Consequently, it's worth passing the pointer
 			//to the trigger in the extra info field of the message. (The pointer
 			//will just be NULL if no trigger)
-
-
-			Trigger<IRavenBot> trigger = navGraph.getNode(currentSearch.getPathToTarget().get(currentSearch.getPathToTarget().size() - 1)).extraInfo();
+			List<Integer> pathToTarget = currentSearch.getPathToTarget();
+			Trigger<IRavenBot> trigger = navGraph.getNode(pathToTarget.get(pathToTarget.size() - 1)).extraInfo();
 
 			Dispatcher.dispatchMsg(Dispatcher.SEND_MSG_IMMEDIATELY,
 					Dispatcher.SENDER_ID_IRRELEVANT,
@@ -382,8 +451,6 @@ public class RavenPathPlanner {
 					RavenMessage.MSG_PATH_READY,
 					trigger);
 		}
-
-		return result;
 	}
 
 	/** used to retrieve the position of a graph node from its index. (takes
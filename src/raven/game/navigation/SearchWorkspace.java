@@ -0,0 +1,165 @@
+package raven.game.navigation;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * The per node arrays a time-sliced search works in, kept between searches so
+ * starting one allocates nothing however big the graph is. Instead of being
+ * cleared, the arrays are stamped with the generation of the search that
+ * wrote them, and anything stamped by an earlier search counts as unset.
+ *
+ * Workspaces are pooled per thread. A search takes one when it starts and
+ * gives it back once it terminates or is abandoned.
+ */
+class SearchWorkspace {
+	/** workspaces a thread keeps for its next searches */
+	private static final int POOLED_PER_THREAD = 16;
+
+	private static final ThreadLocal<ArrayDeque<SearchWorkspace>> pool = new ThreadLocal<ArrayDeque<SearchWorkspace>>() {
+		@Override
+		protected ArrayDeque<SearchWorkspace> initialValue() {
+			return new ArrayDeque<SearchWorkspace>();
+		}
+	};
+
+	/** cost from the source to each node (G) */
+	double[] costs;
+	/** cost the queue is ordered by, G plus the heuristic for A* */
+	double[] keys;
+	/** node and edge slot each node was reached through, on the frontier or
+	 * the shortest path tree */
+	int[] parentNodes;
+	int[] parentSlots;
+
+	/** generation in which each node was put on the frontier */
+	private int[] seen;
+	/** generation in which each node was moved to the shortest path tree */
+	private int[] closed;
+	private int generation;
+
+	/** binary heap of node indexes, 1 based, ordered by keys */
+	private int[] heap;
+	/** position of each node in the heap */
+	private int[] heapPositions;
+	private int heapSize;
+
+	private SearchWorkspace() {
+		allocate(0);
+	}
+
+	/** takes a workspace from this thread's pool, ready for a search of a
+	 * graph with the given number of nodes */
+	static SearchWorkspace acquire(int numNodes) {
+		SearchWorkspace space = pool.get().poll();
+		if (space == null) {
+			space = new SearchWorkspace();
+		}
+		space.begin(numNodes);
+		return space;
+	}
+
+	/** gives the workspace back to the pool of the calling thread. It must
+	 * not be used afterwards */
+	void release() {
+		ArrayDeque<SearchWorkspace> spaces = pool.get();
+		if (spaces.size() < POOLED_PER_THREAD) {
+			spaces.push(this);
+		}
+	}
+
+	private void allocate(int numNodes) {
+		costs = new double[numNodes];
+		keys = new double[numNodes];
+		parentNodes = new int[numNodes];
+		parentSlots = new int[numNodes];
+		seen = new int[numNodes];
+		closed = new int[numNodes];
+		heap = new int[numNodes + 1];
+		heapPositions = new int[numNodes];
+		generation = 0;
+	}
+
+	private void begin(int numNodes) {
+		if (costs.length < numNodes) {
+			allocate(numNodes);
+		}
+		generation++;
+		if (generation == Integer.MAX_VALUE) {
+			// stamps would start repeating, so clear them once in a long while
+			Arrays.fill(seen, 0);
+			Arrays.fill(closed, 0);
+			generation = 1;
+		}
+		heapSize = 0;
+	}
+
+	boolean isSeen(int node) { return seen[node] == generation; }
+
+	boolean isClosed(int node) { return closed[node] == generation; }
+
+	void close(int node) { closed[node] = generation; }
+
+	/** puts a node on the frontier, reached through the given edge */
+	void open(int node, double cost, double key, int parentNode, int parentSlot) {
+		seen[node] = generation;
+		costs[node] = cost;
+		keys[node] = key;
+		parentNodes[node] = parentNode;
+		parentSlots[node] = parentSlot;
+		heapSize++;
+		heap[heapSize] = node;
+		heapPositions[node] = heapSize;
+		reorderUpwards(heapSize);
+	}
+
+	/** lowers the cost of a node already on the frontier */
+	void update(int node, double cost, double key, int parentNode, int parentSlot) {
+		costs[node] = cost;
+		keys[node] = key;
+		parentNodes[node] = parentNode;
+		parentSlots[node] = parentSlot;
+		reorderUpwards(heapPositions[node]);
+	}
+
+	boolean isEmpty() { return heapSize == 0; }
+
+	/** removes and returns the node with the lowest key */
+	int pop() {
+		int node = heap[1];
+		swap(1, heapSize);
+		heapSize--;
+		reorderDownwards(1);
+		return node;
+	}
+
+	private void swap(int a, int b) {
+		int temp = heap[a];
+		heap[a] = heap[b];
+		heap[b] = temp;
+		heapPositions[heap[a]] = a;
+		heapPositions[heap[b]] = b;
+	}
+
+	private void reorderUpwards(int position) {
+		while (position > 1 && keys[heap[position / 2]] > keys[heap[position]]) {
+			swap(position / 2, position);
+			position /= 2;
+		}
+	}
+
+	private void reorderDownwards(int position) {
+		while (2 * position <= heapSize) {
+			int child = 2 * position;
+			if (child < heapSize && keys[heap[child]] > keys[heap[child + 1]]) {
+				child++;
+			}
+			if (keys[heap[position]] > keys[heap[child]]) {
+				swap(child, position);
+				position = child;
+			} else {
+				break;
+			}
+		}
+	}
+}
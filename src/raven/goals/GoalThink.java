@@ -8,6 +8,7 @@ import masSim.schedule.SchedulingEventParams;
 import masSim.world.MqttMessagingProvider;
 import raven.game.RavenBot;
 import raven.game.RavenObject;
+import raven.math.RandUtils;
 import raven.math.Vector2D;
 import raven.utils.Log;
 
@@ -24,12 +25,12 @@ public class GoalThink extends GoalComposite<RavenBot> {
 		super(ravenBot, Goal.GoalType.goal_think);
 
 		// random values are between 0.5 and 1.5
-		HealthBias = Math.random() + 0.5;
-		ShotgunBias = Math.random() + 0.5;
-		RocketLauncherBias = Math.random() + 0.5;
-		RailgunBias = Math.random() + 0.5;
-		ExploreBias = Math.random() + 0.5;
-		AttackBias  = Math.random() + 0.5;
+		HealthBias = RandUtils.nextDouble() + 0.5;
+		ShotgunBias = RandUtils.nextDouble() + 0.5;
+		RocketLauncherBias = RandUtils.nextDouble() + 0.5;
+		RailgunBias = RandUtils.nextDouble() + 0.5;
+		ExploreBias = RandUtils.nextDouble() + 0.5;
+		AttackBias  = RandUtils.nextDouble() + 0.5;
 
 		m_Evaluators.add(new GetHealthGoal_Evaluator(HealthBias));
 		m_Evaluators.add(new ExploreGoal_Evaluator(ExploreBias));
@@ -52,12 +53,12 @@ public class GoalThink extends GoalComposite<RavenBot> {
 		super(ravenBot, mode);
 		if(mode != Goal.GoalType.goal_roverthink) {
 			// random values are between 0.5 and 1.5
-			HealthBias = Math.random() + 0.5;
-			ShotgunBias = Math.random() + 0.5;
-			RocketLauncherBias = Math.random() + 0.5;
-			RailgunBias = Math.random() + 0.5;
-			ExploreBias = Math.random() + 0.5;
-			AttackBias  = Math.random() + 0.5;
+			HealthBias = RandUtils.nextDouble() + 0.5;
+			ShotgunBias = RandUtils.nextDouble() + 0.5;
+			RocketLauncherBias = RandUtils.nextDouble() + 0.5;
+			RailgunBias = RandUtils.nextDouble() + 0.5;
+			ExploreBias = RandUtils.nextDouble() + 0.5;
+			AttackBias  = RandUtils.nextDouble() + 0.5;
 
 			m_Evaluators.add(new GetHealthGoal_Evaluator(HealthBias));
 			m_Evaluators.add(new ExploreGoal_Evaluator(ExploreBias));
@@ -3,6 +3,7 @@ package raven.goals;
 import java.util.Random;
 
 import raven.game.RavenBot;
+import raven.math.RandUtils;
 import raven.math.Vector2D;
 import raven.ui.GameCanvas;
 import raven.utils.Log;
@@ -14,7 +15,7 @@ public class Goal_DodgeSideToSide extends GoalComposite<RavenBot> {
 
 	public Goal_DodgeSideToSide(RavenBot m_pOwner) {
 		super(m_pOwner, Goal.GoalType.goal_strafe);
-		m_bClockwise = Math.random() > 0.5;
+		m_bClockwise = RandUtils.nextDouble() > 0.5;
 	}
 
 
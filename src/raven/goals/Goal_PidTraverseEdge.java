@@ -10,6 +10,7 @@ import raven.game.navigation.NavGraphEdge;
 import raven.game.navigation.PathEdge;
 import raven.script.RavenScript;
 import raven.ui.GameCanvas;
+import raven.utils.DeferredEffects;
 import raven.math.Vector2D;
 
 public class Goal_PidTraverseEdge extends GoalComposite<RoverBot> {
@@ -108,9 +109,15 @@ public class Goal_PidTraverseEdge extends GoalComposite<RoverBot> {
 				m_iStatus = Goal.CurrentStatus.completed;
 				SchedulingEventParams params = new SchedulingEventParams().AddAgentId(this.m_pOwner.getName())
 						.AddMethodId(m_Edge.MethodRepresentedByEdge()).AddXCoord("0").AddYCoord("0").AddTaskName("");
-				SchedulingEvent event = new SchedulingEvent(this.m_pOwner.getName(), SchedulingCommandType.METHODCOMPLETED, params);
+				final SchedulingEvent event = new SchedulingEvent(this.m_pOwner.getName(), SchedulingCommandType.METHODCOMPLETED, params);
 				LaunchedByMasSim = false;
-				mq.PublishMessage(event);
+				//published once all the bots have thought, in the order of the bots
+				DeferredEffects.run(new Runnable() {
+					@Override
+					public void run() {
+						mq.PublishMessage(event);
+					}
+				});
 			}
 		//}
 		return m_iStatus;
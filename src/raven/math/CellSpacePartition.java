@@ -1,132 +1,257 @@
 package raven.math;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import raven.math.graph.GraphNode;
-
-public class CellSpacePartition<T extends GraphNode> implements Iterable<T> {
-	protected class Cell<E> {
-		/** all the entities inhabiting this cell */
-		public List<E> members = new LinkedList<E>();
-		
-		/** the cell's bounding box (it's inverted because the Window's
-		 * default co-ordinate system has a y axis that increases as it
-		 * descends) */
-		public InvertedAABox2D bbox;
-		
-		public Cell(Vector2D topLeft, Vector2D bottomRight) {
-			bbox = new InvertedAABox2D(topLeft, bottomRight);
-		}
-	}
-	
-	private List<Cell<T>> cells;
-	
+/**
+ * A uniform grid over the game world, for finding the entities near a
+ * position without looking at all of them. Each entity gets a number when it
+ * is added, and each cell holds the numbers of the entities inside it in an
+ * int array. A query works out the range of cells under its circle from the
+ * position and radius, and only looks at those.
+ *
+ * An entity that moves is relocated by updateEntity, which only touches the
+ * two cells involved when it crosses into another one.
+ *
+ * Any number of threads may query at once. Adding, moving and removing
+ * entities waits for the queries running to finish. calculateNeighbors and
+ * iterating over the partition share one list of neighbors, so they are for
+ * a single thread; other threads should call query with their own list.
+ */
+public class CellSpacePartition<T extends Locatable> implements Iterable<T> {
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/** the entities by number. Numbers of removed entities are reused */
+	private final List<T> entities = new ArrayList<T>();
+	private final Map<T, Integer> numbers = new IdentityHashMap<T, Integer>();
+	private int[] freeNumbers = new int[0];
+	private int numFree;
+
+	/** the cell each entity is in, and its position in that cell's members */
+	private int[] entityCells = new int[0];
+	private int[] entitySlots = new int[0];
+
+	/** the numbers of the entities in each cell */
+	private final int[][] members;
+	private final int[] memberCounts;
+
+	/** neighbors found by the last call to calculateNeighbors */
 	private List<T> neighbors;
-	
+
 	private double spaceWidth;
 	private double spaceHeight;
-	
+
 	private int numCellsX;
 	private int numCellsY;
-	
+
 	private double cellSizeX;
 	private double cellSizeY;
-	
-	/** Given a 2D vector representing a position within the game world, this
-	 * method calculates an index into its appropriate cell */
-	private int positionToIndex(Vector2D pos) {
-		int index = (int)(numCellsX * pos.x / spaceWidth) + ((int)(numCellsY * pos.y / spaceHeight) * numCellsX);
-		
-		return Math.min(index, cells.size() - 1);
-	}
-	
+
 	public CellSpacePartition(double width, double height, int cellsX, int cellsY, int maxEntities) {
-		cells = new ArrayList<Cell<T>>();
 		spaceWidth = width;
 		spaceHeight = height;
-		numCellsX = cellsX;
-		numCellsY = cellsY;
+		numCellsX = Math.max(1, cellsX);
+		numCellsY = Math.max(1, cellsY);
 		neighbors = new ArrayList<T>(maxEntities);
-		
-		// Calculate the bounds of each cell
-		cellSizeX = width / cellsX;
-		if(cellSizeX == Double.NaN) cellSizeX = 0;
-		cellSizeY = height / cellsY;
-		if(cellSizeY == Double.NaN) cellSizeY = 0;
-		
-		// Create the cells
-		for (int y = 0; y < numCellsY; y++) {
-			for (int x = 0; x < numCellsX; x++) {
-				double left = x * cellSizeX;
-				double right = left + cellSizeX;
-				double top = y * cellSizeY;
-				double bottom = top + cellSizeY;
-				
-				cells.add(new Cell<T>(new Vector2D(left, top), new Vector2D(right, bottom)));
-			}
+
+		// a partition of no size is a single cell holding everything
+		cellSizeX = width > 0 ? width / numCellsX : 0;
+		cellSizeY = height > 0 ? height / numCellsY : 0;
+
+		members = new int[numCellsX * numCellsY][];
+		memberCounts = new int[members.length];
+		for (int i = 0; i < members.length; i++) {
+			members[i] = new int[4];
 		}
 	}
-	
+
+	/** the column or row holding a coordinate, clamped to the grid */
+	private static int cellOf(double coordinate, double cellSize, int numCells) {
+		if (cellSize <= 0) return 0;
+		int cell = (int)Math.floor(coordinate / cellSize);
+		return Math.max(0, Math.min(cell, numCells - 1));
+	}
+
+	/** Given a 2D vector representing a position within the game world, this
+	 * method calculates an index into its appropriate cell */
+	private int positionToIndex(Vector2D pos) {
+		return cellOf(pos.x, cellSizeX, numCellsX) + cellOf(pos.y, cellSizeY, numCellsY) * numCellsX;
+	}
+
+	private void addToCell(int cell, int number) {
+		if (memberCounts[cell] == members[cell].length) {
+			members[cell] = Arrays.copyOf(members[cell], members[cell].length * 2);
+		}
+		entityCells[number] = cell;
+		entitySlots[number] = memberCounts[cell];
+		members[cell][memberCounts[cell]++] = number;
+	}
+
+	/** takes the entity out of its cell, moving the cell's last member into
+	 * its place */
+	private void removeFromCell(int number) {
+		int cell = entityCells[number];
+		int slot = entitySlots[number];
+		int last = members[cell][--memberCounts[cell]];
+		members[cell][slot] = last;
+		entitySlots[last] = slot;
+	}
+
 	/** Used to add the entitys to the data structure */
 	public void addEntity(T ent) {
 		if (ent == null)
 			throw new NullPointerException();
-		
-		cells.get(positionToIndex(ent.pos())).members.add(ent);
+
+		lock.writeLock().lock();
+		try {
+			if (numbers.containsKey(ent))
+				return;
+			int number;
+			if (numFree > 0) {
+				number = freeNumbers[--numFree];
+				entities.set(number, ent);
+			} else {
+				number = entities.size();
+				entities.add(ent);
+				if (number == entityCells.length) {
+					int capacity = Math.max(16, number * 2);
+					entityCells = Arrays.copyOf(entityCells, capacity);
+					entitySlots = Arrays.copyOf(entitySlots, capacity);
+				}
+			}
+			numbers.put(ent, number);
+			addToCell(positionToIndex(ent.pos()), number);
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
-	
-	public void updateEntity(T ent, Vector2D oldPos) {
-		int oldIndex = positionToIndex(oldPos);
-		int newIndex = positionToIndex(ent.pos());
-		
-		if (newIndex == oldIndex) {
-			return;
+
+	public void removeEntity(T ent) {
+		lock.writeLock().lock();
+		try {
+			Integer number = numbers.remove(ent);
+			if (number == null)
+				return;
+			removeFromCell(number);
+			entities.set(number, null);
+			if (numFree == freeNumbers.length) {
+				freeNumbers = Arrays.copyOf(freeNumbers, Math.max(16, numFree * 2));
+			}
+			freeNumbers[numFree++] = number;
+		} finally {
+			lock.writeLock().unlock();
 		}
-		
-		// the entity has moved into another cell so delete from current cell
-		// and add to new one
-		cells.get(oldIndex).members.remove(ent);
-		cells.get(newIndex).members.remove(ent);
 	}
-	
-	public void calculateNeighbors(Vector2D targetPos, double queryRadius) {
-		// We are finding a new set of neighbors, so get rid of the old ones
-		neighbors.clear();
-		
-		// create the query box that is the bounding box of the target's query
-		// area
-		InvertedAABox2D queryBox = new InvertedAABox2D(targetPos.sub(new Vector2D(queryRadius, queryRadius)), targetPos.add(new Vector2D(queryRadius, queryRadius)));
-		
-		// iterate through each cell and test to see if its bounding box
-		// overlaps with the query box. If it does and it also contains
-		// entities then make further proximity tests.
-		for (Cell<T> cell : cells) {
-			// test to see if this cell contains members and if it overlaps
-			// the query box
-			if (cell.bbox.isOverlappedWith(queryBox) && !cell.members.isEmpty()) {
-				// add any entities found within query radius to the neighbor
-				// list
-				for (T entity : cell.members) {
-					if (entity.pos().distanceSq(targetPos) < queryRadius * queryRadius) {
-						neighbors.add(entity);
+
+	/** moves the entity to the cell of its current position, if it has left
+	 * the cell it was in. Entities not in the partition are added */
+	public void updateEntity(T ent) {
+		// the cell is looked up first without waiting for queries to finish,
+		// as most of the time the entity is still in it
+		lock.readLock().lock();
+		try {
+			Integer number = numbers.get(ent);
+			if (number != null && entityCells[number] == positionToIndex(ent.pos()))
+				return;
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		lock.writeLock().lock();
+		try {
+			Integer number = numbers.get(ent);
+			if (number == null) {
+				addEntity(ent);
+				return;
+			}
+			int newIndex = positionToIndex(ent.pos());
+			if (entityCells[number] != newIndex) {
+				// the entity has moved into another cell so delete from current
+				// cell and add to new one
+				removeFromCell(number);
+				addToCell(newIndex, number);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/** the old position is not needed, as the partition remembers which cell
+	 * each entity is in */
+	public void updateEntity(T ent, Vector2D oldPos) {
+		updateEntity(ent);
+	}
+
+	/** adds the entities closer than the radius to the position to the list,
+	 * which is not cleared first. Safe to call from any number of threads */
+	public void query(Vector2D targetPos, double queryRadius, List<? super T> result) {
+		double radiusSq = queryRadius * queryRadius;
+		int firstX = cellOf(targetPos.x - queryRadius, cellSizeX, numCellsX);
+		int lastX = cellOf(targetPos.x + queryRadius, cellSizeX, numCellsX);
+		int firstY = cellOf(targetPos.y - queryRadius, cellSizeY, numCellsY);
+		int lastY = cellOf(targetPos.y + queryRadius, cellSizeY, numCellsY);
+
+		lock.readLock().lock();
+		try {
+			for (int y = firstY; y <= lastY; y++) {
+				for (int x = firstX; x <= lastX; x++) {
+					int cell = x + y * numCellsX;
+					int[] cellMembers = members[cell];
+					for (int i = 0; i < memberCounts[cell]; i++) {
+						T entity = entities.get(cellMembers[i]);
+						if (entity.pos().distanceSq(targetPos) < radiusSq) {
+							result.add(entity);
+						}
 					}
 				}
 			}
+		} finally {
+			lock.readLock().unlock();
 		}
 	}
-	
+
+	/** finds the neighbors of the position, which are then iterated over by
+	 * iterating over the partition */
+	public void calculateNeighbors(Vector2D targetPos, double queryRadius) {
+		// We are finding a new set of neighbors, so get rid of the old ones
+		neighbors.clear();
+		query(targetPos, queryRadius, neighbors);
+	}
+
 	public void emptyCells() {
-		for (Cell<T> cell : cells) {
-			cell.members.clear();
+		lock.writeLock().lock();
+		try {
+			Arrays.fill(memberCounts, 0);
+			entities.clear();
+			numbers.clear();
+			numFree = 0;
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
-	
+
+	/** number of entities in the partition */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return numbers.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	public void renderCells() {
-		for (Cell<T> cell : cells) {
-			cell.bbox.render(false);
+		for (int y = 0; y < numCellsY; y++) {
+			for (int x = 0; x < numCellsX; x++) {
+				double left = x * cellSizeX;
+				double top = y * cellSizeY;
+				new InvertedAABox2D(new Vector2D(left, top), new Vector2D(left + cellSizeX, top + cellSizeY)).render(false);
+			}
 		}
 	}
 
@@ -134,22 +259,48 @@ public class CellSpacePartition<T extends GraphNode> implements Iterable<T> {
 	public Iterator<T> iterator() {
 		return neighbors.iterator();
 	}
-	
+
+	/** the entities of each cell, in no particular order within the cell */
+	private List<List<T>> cellContents() {
+		List<List<T>> contents = new ArrayList<List<T>>(members.length);
+		lock.readLock().lock();
+		try {
+			for (int cell = 0; cell < members.length; cell++) {
+				List<T> cellEntities = new ArrayList<T>(memberCounts[cell]);
+				for (int i = 0; i < memberCounts[cell]; i++) {
+					cellEntities.add(entities.get(members[cell][i]));
+				}
+				contents.add(cellEntities);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return contents;
+	}
+
 	@Override
 	public boolean equals(Object o){
 		if( this == o ) return true;
 		if(!(o instanceof CellSpacePartition<?>)) return false;
-	
+
 		CellSpacePartition<?> other = (CellSpacePartition<?>) o;
-		return (cells.equals(other.cells) &&
-				neighbors.equals(other.neighbors) &&
-				Double.compare(spaceHeight, other.spaceHeight) == 0 && 
+		if (!(Double.compare(spaceHeight, other.spaceHeight) == 0 &&
 				Double.compare(spaceWidth, other.spaceWidth) == 0 &&
 				numCellsX == other.numCellsX &&
 				numCellsY == other.numCellsY &&
 				Double.compare(cellSizeX, other.cellSizeX) == 0 &&
-				Double.compare(cellSizeY, other.cellSizeY) == 0);
-		
+				Double.compare(cellSizeY, other.cellSizeY) == 0))
+			return false;
+
+		List<? extends List<?>> otherContents = other.cellContents();
+		List<List<T>> contents = cellContents();
+		for (int cell = 0; cell < contents.size(); cell++) {
+			List<?> mine = contents.get(cell);
+			List<?> theirs = otherContents.get(cell);
+			if (mine.size() != theirs.size() || !mine.containsAll(theirs))
+				return false;
+		}
+		return neighbors.equals(other.neighbors);
 	}
-	
+
 }
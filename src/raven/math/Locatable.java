@@ -0,0 +1,7 @@
+package raven.math;
+
+/** anything with a position in the game world, such as a graph node or a
+ * bot, so that it can be kept in a CellSpacePartition */
+public interface Locatable {
+	public Vector2D pos();
+}
@@ -6,11 +6,48 @@ package raven.math;
 import java.util.Random;
 
 /**
+ * Random numbers come from the generator the current thread is using, if it
+ * has been given one, and otherwise from a generator shared by everything.
+ * Giving each bot its own generator while it updates means the numbers it
+ * gets do not depend on what other threads draw at the same time.
+ *
  * @author chester
  *
  */
 public class RandUtils {
 	private static Random rand = new Random();
+	private static final ThreadLocal<Random> streams = new ThreadLocal<Random>();
+
+	private static Random current() {
+		Random stream = streams.get();
+		return stream != null ? stream : rand;
+	}
+
+	/** restarts the shared generator from the seed */
+	public static void setSeed(long seed) {
+		rand.setSeed(seed);
+	}
+
+	/**
+	 * Makes the current thread draw from the given generator, or from the
+	 * shared one again if it is null.
+	 * @return the generator the thread used before
+	 */
+	public static Random use(Random stream) {
+		Random previous = streams.get();
+		if (stream == null) {
+			streams.remove();
+		} else {
+			streams.set(stream);
+		}
+		return previous;
+	}
+
+	/** a random double from 0 to 1, exclusive */
+	public static double nextDouble() {
+		return current().nextDouble();
+	}
+
 	/**
 	 * Generates a random double from the start to the end provided, exclusive.
 	 * @param start
@@ -19,11 +56,11 @@ public class RandUtils {
 	 */
 	public static double RandInRange(double start, double end)
 	{
-		return Math.random() * (end - start) + start;
+		return current().nextDouble() * (end - start) + start;
 	}
 	
 	public static double nextGaussian(double mean, double deviation) {
-		double res = rand.nextGaussian()*deviation + mean;
+		double res = current().nextGaussian()*deviation + mean;
 		return res;
 	}
 }
@@ -24,5 +24,15 @@ public class WallIntersectionTest {
 		return false;
 	}
 
+	/** the same test against a tree of the walls, only looking at the walls
+	 * near the segment */
+	public static boolean doWallsObstructLineSegment(Vector2D from, Vector2D to, WallTree walls) {
+		return walls.obstructsSegment(from, to);
+	}
 
+	/** the same test against a tree of the walls, only looking at the walls
+	 * near the circle */
+	public static boolean doWallsIntersectCircle(WallTree walls, Vector2D pos, double radius) {
+		return walls.intersectsCircle(pos, radius);
+	}
 }
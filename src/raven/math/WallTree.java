@@ -0,0 +1,246 @@
+package raven.math;
+
+import java.util.List;
+
+/**
+ * A bounding box tree over the walls of a map, so that a line of sight or
+ * circle test only looks at the walls near it instead of all of them. The
+ * tree is built once from a list of walls, splitting the walls at the median
+ * of their centres along the longer side of each box, and is not changed
+ * afterwards; a map builds a new one when its walls change. The boxes are
+ * kept in flat arrays, and queries recurse rather than keep a stack, so
+ * querying allocates nothing and is safe from any number of threads.
+ *
+ * The walls themselves are tested with the same Geometry functions as a
+ * plain loop over the list, so the answers are the same.
+ */
+public class WallTree {
+	/** most walls in a leaf */
+	private static final int LEAF_SIZE = 4;
+
+	private final Wall2D[] walls;
+
+	/** the box of each tree node */
+	private final double[] minX;
+	private final double[] minY;
+	private final double[] maxX;
+	private final double[] maxY;
+	/** for a leaf the first of its walls, otherwise its left child. The
+	 * right child of node n is always right after its whole left subtree */
+	private final int[] first;
+	/** the number of walls of a leaf, or 0 for an inner node */
+	private final int[] counts;
+	private final int[] rightChildren;
+	private int numNodes;
+
+	/** the walls sorted into the tree's order while building */
+	private final double[] centreX;
+	private final double[] centreY;
+
+	public WallTree(List<Wall2D> wallList) {
+		walls = wallList.toArray(new Wall2D[wallList.size()]);
+		int maxNodes = Math.max(1, 2 * walls.length);
+		minX = new double[maxNodes];
+		minY = new double[maxNodes];
+		maxX = new double[maxNodes];
+		maxY = new double[maxNodes];
+		first = new int[maxNodes];
+		counts = new int[maxNodes];
+		rightChildren = new int[maxNodes];
+
+		centreX = new double[walls.length];
+		centreY = new double[walls.length];
+		for (int i = 0; i < walls.length; i++) {
+			centreX[i] = (walls[i].from().x + walls[i].to().x) / 2;
+			centreY[i] = (walls[i].from().y + walls[i].to().y) / 2;
+		}
+		if (walls.length > 0) {
+			build(0, walls.length);
+		}
+	}
+
+	/** builds the subtree over walls start to end-1, returning its node */
+	private int build(int start, int end) {
+		int node = numNodes++;
+		double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+		double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+		for (int i = start; i < end; i++) {
+			Wall2D wall = walls[i];
+			x0 = Math.min(x0, Math.min(wall.from().x, wall.to().x));
+			y0 = Math.min(y0, Math.min(wall.from().y, wall.to().y));
+			x1 = Math.max(x1, Math.max(wall.from().x, wall.to().x));
+			y1 = Math.max(y1, Math.max(wall.from().y, wall.to().y));
+		}
+		minX[node] = x0;
+		minY[node] = y0;
+		maxX[node] = x1;
+		maxY[node] = y1;
+
+		if (end - start <= LEAF_SIZE) {
+			first[node] = start;
+			counts[node] = end - start;
+			return node;
+		}
+
+		int middle = (start + end) / 2;
+		select(start, end - 1, middle, x1 - x0 >= y1 - y0 ? centreX : centreY);
+		first[node] = build(start, middle);
+		rightChildren[node] = build(middle, end);
+		return node;
+	}
+
+	/** puts the wall with the k-th smallest key in place k, smaller keys
+	 * before it and larger after (quickselect) */
+	private void select(int left, int right, int k, double[] keys) {
+		while (left < right) {
+			double pivot = keys[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (keys[i] < pivot) i++;
+				while (keys[j] > pivot) j--;
+				if (i <= j) {
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void swap(int a, int b) {
+		Wall2D wall = walls[a];
+		walls[a] = walls[b];
+		walls[b] = wall;
+		double temp = centreX[a];
+		centreX[a] = centreX[b];
+		centreX[b] = temp;
+		temp = centreY[a];
+		centreY[a] = centreY[b];
+		centreY[b] = temp;
+	}
+
+	/** the number of walls in the tree */
+	public int size() { return walls.length; }
+
+	/** true if any wall crosses the segment between the two points */
+	public boolean obstructsSegment(Vector2D from, Vector2D to) {
+		if (walls.length == 0) return false;
+		return obstructsSegment(0, from, to,
+				Math.min(from.x, to.x), Math.min(from.y, to.y), Math.max(from.x, to.x), Math.max(from.y, to.y));
+	}
+
+	private boolean obstructsSegment(int node, Vector2D from, Vector2D to, double x0, double y0, double x1, double y1) {
+		if (x1 < minX[node] || x0 > maxX[node] || y1 < minY[node] || y0 > maxY[node]) {
+			return false;
+		}
+		if (counts[node] > 0) {
+			for (int i = first[node]; i < first[node] + counts[node]; i++) {
+				if (Geometry.lineIntersection2D(from, to, walls[i].from(), walls[i].to())) {
+					return true;
+				}
+			}
+			return false;
+		}
+		return obstructsSegment(first[node], from, to, x0, y0, x1, y1)
+				|| obstructsSegment(rightChildren[node], from, to, x0, y0, x1, y1);
+	}
+
+	/** true if any wall passes closer than the radius to the position */
+	public boolean intersectsCircle(Vector2D pos, double radius) {
+		if (walls.length == 0) return false;
+		return intersectsCircle(0, pos, radius);
+	}
+
+	private boolean intersectsCircle(int node, Vector2D pos, double radius) {
+		double dx = Math.max(0, Math.max(minX[node] - pos.x, pos.x - maxX[node]));
+		double dy = Math.max(0, Math.max(minY[node] - pos.y, pos.y - maxY[node]));
+		if (dx * dx + dy * dy >= radius * radius) {
+			return false;
+		}
+		if (counts[node] > 0) {
+			for (int i = first[node]; i < first[node] + counts[node]; i++) {
+				if (Geometry.lineSegmentCircleIntersection(walls[i].from(), walls[i].to(), pos, radius)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		return intersectsCircle(first[node], pos, radius)
+				|| intersectsCircle(rightChildren[node], pos, radius);
+	}
+
+	/** the distance from the origin, moving along the heading, to the first
+	 * wall crossed within maxDistance, or Double.MAX_VALUE if there is none */
+	public double distanceToClosestWall(Vector2D origin, Vector2D heading, double maxDistance) {
+		double length = Math.sqrt(heading.x * heading.x + heading.y * heading.y);
+		if (walls.length == 0 || length == 0) return Double.MAX_VALUE;
+		double dirX = heading.x / length;
+		double dirY = heading.y / length;
+		double closest = closestHit(0, origin.x, origin.y, dirX, dirY, maxDistance);
+		return closest < maxDistance ? closest : Double.MAX_VALUE;
+	}
+
+	/** the distance to the closest wall hit in the subtree, or limit if it
+	 * is no closer than that */
+	private double closestHit(int node, double ox, double oy, double dirX, double dirY, double limit) {
+		if (rayBoxEntry(node, ox, oy, dirX, dirY) >= limit) {
+			return limit;
+		}
+		if (counts[node] > 0) {
+			for (int i = first[node]; i < first[node] + counts[node]; i++) {
+				limit = Math.min(limit, rayHit(walls[i], ox, oy, dirX, dirY, limit));
+			}
+			return limit;
+		}
+		limit = closestHit(first[node], ox, oy, dirX, dirY, limit);
+		return closestHit(rightChildren[node], ox, oy, dirX, dirY, limit);
+	}
+
+	/** the distance along the ray at which it enters the node's box, or
+	 * Double.MAX_VALUE if it misses the box (slab test) */
+	private double rayBoxEntry(int node, double ox, double oy, double dirX, double dirY) {
+		double near = 0;
+		double far = Double.MAX_VALUE;
+		if (dirX == 0) {
+			if (ox < minX[node] || ox > maxX[node]) return Double.MAX_VALUE;
+		} else {
+			double t0 = (minX[node] - ox) / dirX;
+			double t1 = (maxX[node] - ox) / dirX;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+		}
+		if (dirY == 0) {
+			if (oy < minY[node] || oy > maxY[node]) return Double.MAX_VALUE;
+		} else {
+			double t0 = (minY[node] - oy) / dirY;
+			double t1 = (maxY[node] - oy) / dirY;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+		}
+		return near <= far ? near : Double.MAX_VALUE;
+	}
+
+	/** the distance along the ray to the wall, or limit if the ray does not
+	 * cross it before then */
+	private static double rayHit(Wall2D wall, double ox, double oy, double dirX, double dirY, double limit) {
+		double cx = wall.from().x, cy = wall.from().y;
+		double ex = wall.to().x - cx, ey = wall.to().y - cy;
+		double bot = dirX * ey - dirY * ex;
+		// parallel
+		if (bot == 0) return limit;
+		double t = ((cx - ox) * ey - (cy - oy) * ex) / bot;
+		double s = ((cx - ox) * dirY - (cy - oy) * dirX) / bot;
+		if (t > 0 && t < limit && s >= 0 && s <= 1) {
+			return t;
+		}
+		return limit;
+	}
+}
@@ -0,0 +1,92 @@
+package raven.math.graph;
+
+/**
+ * A frozen copy of a SparseGraph laid out in flat arrays for searching. The
+ * edges leaving node n are the slots offsets[n] to offsets[n+1]-1 of the
+ * targets and costs arrays (compressed sparse row), and node positions are
+ * kept in the x and y arrays, so expanding a node touches no objects at all.
+ * The original edge objects are kept by slot, for the few callers that need
+ * their flags once a path has been found.
+ *
+ * Instances are never changed after being built. Get one from
+ * SparseGraph#compact(), which builds a new one after the graph changes.
+ */
+public class CompactGraph<NodeType extends GraphNode, EdgeType extends GraphEdge> {
+	private final SparseGraph<NodeType, EdgeType> source;
+
+	/** the edges of node n are the slots offsets[n] to offsets[n+1]-1 */
+	private final int[] offsets;
+	private final int[] targets;
+	private final double[] costs;
+	private final Object[] edges;
+
+	private final double[] x;
+	private final double[] y;
+
+	/** builds the compact form of the graph as it is now */
+	public CompactGraph(SparseGraph<NodeType, EdgeType> graph) {
+		source = graph;
+		int numNodes = graph.numNodes();
+		offsets = new int[numNodes + 1];
+		x = new double[numNodes];
+		y = new double[numNodes];
+
+		for (int n = 0; n < numNodes; n++) {
+			offsets[n + 1] = offsets[n] + graph.getEdges(n).size();
+			NodeType node = graph.getNode(n);
+			if (node != null && node.pos() != null) {
+				x[n] = node.pos().x;
+				y[n] = node.pos().y;
+			}
+		}
+
+		targets = new int[offsets[numNodes]];
+		costs = new double[offsets[numNodes]];
+		edges = new Object[offsets[numNodes]];
+		for (int n = 0; n < numNodes; n++) {
+			int slot = offsets[n];
+			for (EdgeType edge : graph.getEdges(n)) {
+				targets[slot] = edge.to();
+				costs[slot] = edge.cost();
+				edges[slot] = edge;
+				slot++;
+			}
+		}
+	}
+
+	/** the graph this was built from */
+	public SparseGraph<NodeType, EdgeType> sparseGraph() { return source; }
+
+	public int numNodes() { return x.length; }
+
+	public int numEdges() { return targets.length; }
+
+	/** first edge slot of the node */
+	public int firstEdge(int node) { return offsets[node]; }
+
+	/** one past the last edge slot of the node */
+	public int endEdge(int node) { return offsets[node + 1]; }
+
+	/** the node the edge in the given slot leads to */
+	public int target(int slot) { return targets[slot]; }
+
+	public double cost(int slot) { return costs[slot]; }
+
+	/** the original edge object in the given slot */
+	@SuppressWarnings("unchecked")
+	public EdgeType edge(int slot) { return (EdgeType)edges[slot]; }
+
+	public double x(int node) { return x[node]; }
+
+	public double y(int node) { return y[node]; }
+
+	/** straight line distance between two nodes */
+	public double distance(int node1, int node2) {
+		double dx = x[node1] - x[node2];
+		double dy = y[node1] - y[node2];
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/** the node object at the given index, from the graph this was built from */
+	public NodeType getNode(int idx) { return source.getNode(idx); }
+}
@@ -2,10 +2,11 @@ package raven.math.graph;
 
 import java.io.Reader;
 
+import raven.math.Locatable;
 import raven.math.Vector2D;
 import raven.utils.StreamUtils;
 
-public abstract class GraphNode {
+public abstract class GraphNode implements Locatable {
 	public static final int INVALID_NODE_INDEX = -1;
 	
 	protected Vector2D position;
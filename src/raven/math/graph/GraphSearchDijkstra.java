@@ -10,6 +10,9 @@ public class GraphSearchDijkstra {
 	
 	private SparseGraph<? extends GraphNode, ? extends GraphEdge> graph;
 	
+	/** the graph in flat arrays, which is what the search expands nodes on */
+	private CompactGraph<? extends GraphNode, ? extends GraphEdge> compact;
+	
 	/** this vector contains the edges that comprise the shortest path tree -
 	 * a directed subtree of the graph that encapsulates the best paths from
 	 * every node on the SPT to the source node */
@@ -59,9 +62,9 @@ public class GraphSearchDijkstra {
 			}
 			
 			// for each edge connected to the next closest node
-			for (int i = 0; i < graph.getEdges(nextClosestNode).size(); i++) {
-				GraphEdge edge = graph.getEdges(nextClosestNode).get(i);
-				double newCost = costToNode.get(nextClosestNode) + edge.cost();
+			for (int slot = compact.firstEdge(nextClosestNode); slot < compact.endEdge(nextClosestNode); slot++) {
+				GraphEdge edge = compact.edge(slot);
+				double newCost = costToNode.get(nextClosestNode) + compact.cost(slot);
 				
 				// if this edge has never been on the frontier make a note of
 				// the cost to get to the node it points to, then add the edge
@@ -97,6 +100,7 @@ public class GraphSearchDijkstra {
 	 */
 	public GraphSearchDijkstra(SparseGraph<? extends GraphNode, ? extends GraphEdge> graph, int source, int target) {
 		this.graph = graph;
+		this.compact = graph.compact();
 		this.source = source;
 		this.target = target;
 		this.shortestPathTree = new ArrayList<GraphEdge>(graph.numNodes());
@@ -0,0 +1,235 @@
+package raven.math.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Cost of the cheapest path between every pair of nodes of a graph, kept in a
+ * flat float array. For an undirected graph the cost from a to b is the cost
+ * from b to a, so only the lower triangle of the matrix is stored. The table
+ * is filled by one Dijkstra search per source node, spread over the
+ * available processors.
+ *
+ * For very large maps the whole table may not be worth its memory, so in lazy
+ * mode nothing is filled up front. A row is searched for the first time it is
+ * asked for, and a bounded number of the most recently used rows are kept.
+ *
+ * As with the table this replaces, nodes that cannot be reached have a cost
+ * of 0.
+ */
+public class PathCostTable {
+	/** maps with more nodes than this get a lazy table */
+	public static int LazyAboveNodes = 4000;
+
+	/** number of rows a lazy table keeps */
+	public static int CachedRows = 512;
+
+	private final CompactGraph<?, ?> graph;
+	private final int numNodes;
+	private final boolean packed;
+
+	/** the whole table, or null in lazy mode */
+	private final float[] costs;
+
+	/** the rows a lazy table has searched, least recently used first */
+	private final LinkedHashMap<Integer, float[]> rows;
+	private final int cachedRows;
+	private final SearchSpace lazySearch;
+
+	/** builds the table for the graph, lazily if it has more than
+	 * LazyAboveNodes nodes */
+	public PathCostTable(SparseGraph<?, ?> graph) {
+		this(graph.compact(), graph.isDigraph(), graph.numNodes() > LazyAboveNodes, CachedRows);
+	}
+
+	public PathCostTable(CompactGraph<?, ?> graph, boolean digraph, boolean lazy, final int cachedRows) {
+		this.graph = graph;
+		this.numNodes = graph.numNodes();
+		this.packed = !digraph;
+		this.cachedRows = cachedRows;
+		if (lazy) {
+			costs = null;
+			rows = new LinkedHashMap<Integer, float[]>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Integer, float[]> eldest) {
+					return size() > PathCostTable.this.cachedRows;
+				}
+			};
+			lazySearch = new SearchSpace(numNodes);
+		} else {
+			long entries = packed ? (long)numNodes * (numNodes + 1) / 2 : (long)numNodes * numNodes;
+			if (entries > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("PathCostTable: " + numNodes + " nodes are too many for a full table, use a lazy one");
+			costs = new float[(int)entries];
+			rows = null;
+			lazySearch = null;
+			fill();
+		}
+	}
+
+	/** position of the cost from one node to another in the full table */
+	private int index(int from, int to) {
+		if (!packed) return from * numNodes + to;
+		if (from < to) {
+			int swap = from;
+			from = to;
+			to = swap;
+		}
+		return (int)((long)from * (from + 1) / 2) + to;
+	}
+
+	/** searches every source node, each thread taking every n-th one so that
+	 * the long and short rows of a packed table are spread evenly */
+	private void fill() {
+		final int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), numNodes));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> parts = new ArrayList<Future<?>>();
+			for (int t = 0; t < threads; t++) {
+				final int first = t;
+				parts.add(pool.submit(new Runnable() {
+					@Override
+					public void run() {
+						SearchSpace search = new SearchSpace(numNodes);
+						for (int source = first; source < numNodes; source += threads) {
+							search.run(graph, source);
+							// a packed table only holds the targets up to the source
+							int last = packed ? source : numNodes - 1;
+							for (int target = 0; target <= last; target++) {
+								costs[index(source, target)] = (float)search.cost[target];
+							}
+						}
+					}
+				}));
+			}
+			for (Future<?> part : parts) {
+				part.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("PathCostTable: interrupted while filling", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("PathCostTable: filling failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/** the cost of the cheapest path between the two nodes */
+	public double cost(int from, int to) {
+		if (from < 0 || to < 0 || from >= numNodes || to >= numNodes)
+			throw new IndexOutOfBoundsException("PathCostTable: invalid node index " + from + " to " + to);
+		if (costs != null) return costs[index(from, to)];
+		synchronized (this) {
+			float[] row = rows.get(from);
+			if (row == null && packed) {
+				// the row of the target holds the same cost
+				float[] reverse = rows.get(to);
+				if (reverse != null) return reverse[from];
+			}
+			if (row == null) {
+				lazySearch.run(graph, from);
+				row = new float[numNodes];
+				for (int target = 0; target < numNodes; target++) {
+					row[target] = (float)lazySearch.cost[target];
+				}
+				rows.put(from, row);
+			}
+			return row[to];
+		}
+	}
+
+	public boolean isLazy() { return costs == null; }
+
+	/** number of costs held in memory */
+	public long size() {
+		if (costs != null) return costs.length;
+		synchronized (this) {
+			return (long)rows.size() * numNodes;
+		}
+	}
+
+	/** arrays for a Dijkstra search over every node of the graph, reused from
+	 * one source to the next. The queue is a binary heap that may hold a node
+	 * more than once, with stale entries skipped as they come off */
+	private static class SearchSpace {
+		final double[] cost;
+		final boolean[] done;
+		private double[] heapCost;
+		private int[] heapNode;
+		private int heapSize;
+
+		SearchSpace(int numNodes) {
+			cost = new double[numNodes];
+			done = new boolean[numNodes];
+			heapCost = new double[Math.max(16, numNodes)];
+			heapNode = new int[heapCost.length];
+		}
+
+		void run(CompactGraph<?, ?> graph, int source) {
+			Arrays.fill(cost, Double.POSITIVE_INFINITY);
+			Arrays.fill(done, false);
+			heapSize = 0;
+			cost[source] = 0;
+			push(0, source);
+			while (heapSize > 0) {
+				int node = heapNode[0];
+				pop();
+				if (done[node]) continue;
+				done[node] = true;
+				for (int slot = graph.firstEdge(node); slot < graph.endEdge(node); slot++) {
+					int to = graph.target(slot);
+					double newCost = cost[node] + graph.cost(slot);
+					if (!done[to] && newCost < cost[to]) {
+						cost[to] = newCost;
+						push(newCost, to);
+					}
+				}
+			}
+			for (int n = 0; n < cost.length; n++) {
+				if (!done[n]) cost[n] = 0;
+			}
+		}
+
+		private void push(double key, int node) {
+			if (heapSize == heapCost.length) {
+				heapCost = Arrays.copyOf(heapCost, heapSize * 2);
+				heapNode = Arrays.copyOf(heapNode, heapSize * 2);
+			}
+			int i = heapSize++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (heapCost[parent] <= key) break;
+				heapCost[i] = heapCost[parent];
+				heapNode[i] = heapNode[parent];
+				i = parent;
+			}
+			heapCost[i] = key;
+			heapNode[i] = node;
+		}
+
+		private void pop() {
+			double key = heapCost[--heapSize];
+			int node = heapNode[heapSize];
+			int i = 0;
+			while (2 * i + 1 < heapSize) {
+				int child = 2 * i + 1;
+				if (child + 1 < heapSize && heapCost[child + 1] < heapCost[child]) child++;
+				if (heapCost[child] >= key) break;
+				heapCost[i] = heapCost[child];
+				heapNode[i] = heapNode[child];
+				i = child;
+			}
+			heapCost[i] = key;
+			heapNode[i] = node;
+		}
+	}
+}
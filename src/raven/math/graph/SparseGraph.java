@@ -1,17 +1,14 @@
 package raven.math.graph;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import raven.ui.GameCanvas;
 import raven.utils.Log;
-import raven.utils.Pair;
 
 public class SparseGraph<NodeType extends GraphNode, EdgeType extends GraphEdge> {
 	/** the nodes that comprise this graph */
@@ -26,6 +23,14 @@ public class SparseGraph<NodeType extends GraphNode, EdgeType extends GraphEdge>
 	
 	/** the index of the next node to be added */
 	private int nextNodeIndex;
+	
+	/** counts changes made through this class, so a stale compact form can
+	 * be told apart */
+	transient private int version;
+	
+	/** compact form of the graph, built on first use after a change */
+	transient private CompactGraph<NodeType, EdgeType> compact;
+	transient private int compactVersion;
 
 	/** returns true if an edge is not already present in the graph. Used when
 	 * adding edges to make sure no duplicates are created. */
@@ -99,6 +104,21 @@ public class SparseGraph<NodeType extends GraphNode, EdgeType extends GraphEdge>
 		throw new IndexOutOfBoundsException("SparseNode#getNode: edge does not exist");
 	}
 	
+	/** returns the graph frozen into flat arrays for searching. The same
+	 * instance is returned until the graph is changed again. Changes made to
+	 * edge objects directly, rather than through this class, are not seen. */
+	public synchronized CompactGraph<NodeType, EdgeType> compact() {
+		if (compact == null || compactVersion != version) {
+			compact = new CompactGraph<NodeType, EdgeType>(this);
+			compactVersion = version;
+		}
+		return compact;
+	}
+	
+	/** the number of changes made through this class so far. Anything worked
+	 * out from the graph is stale once this moves on */
+	public synchronized int version() { return version; }
+	
 	/** retrieves the next free node index */
 	public int getNextFreeNodeIndex() { return nextNodeIndex; }
 	
@@ -111,6 +131,7 @@ public class SparseGraph<NodeType extends GraphNode, EdgeType extends GraphEdge>
 	 * its index matches the next node index before being added to the graph
 	 */
 	public int addNode(NodeType node) {
+		version++;
 		if (node.index() < nodes.size()) {
 			// make sure the client is not trying to add a node with the same
 			// ID as a currently active node
@@ -139,6 +160,7 @@ public class SparseGraph<NodeType extends GraphNode, EdgeType extends GraphEdge>
 		if (node < 0 || node >= nodes.size()) {
 			throw new IndexOutOfBoundsException("SparseGraph#removeNode: invalid node index");
 		}
+		version++;
 		
 		// set this node's index to INVALID_NODE_INDEX
 		nodes.get(node).setIndex(GraphNode.INVALID_NODE_INDEX);
@@ -169,6 +191,7 @@ public class SparseGraph<NodeType extends GraphNode, EdgeType extends GraphEdge>
 		if (edge.from() >= nextNodeIndex || edge.to() >= nextNodeIndex) {
 			throw new IndexOutOfBoundsException("SparseGraph#addEdge: invalid node index");
 		}
+		version++;
 		
 		// make sure both nodes are active before adding the edge
 		if (nodes.get(edge.to()).index() != GraphNode.INVALID_NODE_INDEX &&
@@ -197,6 +220,7 @@ public class SparseGraph<NodeType extends GraphNode, EdgeType extends GraphEdge>
 	 * If a digraph then the edge connecting the nodes in the opposite
 	 * direction will also be removed. */
 	public void removeEdge(int from, int to) {
+		version++;
 		if (!isDigraph) {
 			for (int i = 0; i < edges.get(to).size(); i++) {
 				EdgeType edge = edges.get(to).get(i);
@@ -222,6 +246,7 @@ public class SparseGraph<NodeType extends GraphNode, EdgeType extends GraphEdge>
 		// make sure the nodes given are valid
 		if (from < 0 || to < 0 || from >= edges.size() || to >= edges.size())
 			throw new IndexOutOfBoundsException("SparseGraph#setEdgeCost: invalid index");
+		version++;
 		
 		// visit each neighbor and erase any edges leading to this node
 		for (EdgeType edge : edges.get(from)) {
@@ -282,9 +307,10 @@ public class SparseGraph<NodeType extends GraphNode, EdgeType extends GraphEdge>
 		return false;
 	}
 	
-	public void clear() { nextNodeIndex = 0; nodes.clear(); edges.clear(); }
+	public void clear() { version++; nextNodeIndex = 0; nodes.clear(); edges.clear(); }
 	
 	public void removeEdges() {
+		version++;
 		for (List<EdgeType> edge : edges) {
 			edge.clear();
 		}
@@ -308,25 +334,6 @@ public class SparseGraph<NodeType extends GraphNode, EdgeType extends GraphEdge>
 		return totalLength / numEdgesCounted;
 	}
 
-	// creates a lookup table of the cost associated from traveling from one
-	public Map<Pair<Integer, Integer>, Double> createAllPairsCostsTable() {
-		// Map a graph
-		Map<Pair<Integer, Integer>, Double> pathCosts = new HashMap<Pair<Integer, Integer>, Double>(numNodes() * numNodes() - numNodes());
-		
-		for (int source = 0; source < numNodes(); source++) {
-			// Do the search
-			GraphSearchDijkstra search = new GraphSearchDijkstra(this, source, -1);
-			
-			// iterate through every node in the graph and grab the cost to
-			// travel to that node
-			for (int target = 0; target < numNodes(); target++) {
-				pathCosts.put(new Pair<Integer, Integer>(source, target), search.getCostToNode(target));
-			}
-		}
-		
-		return pathCosts;
-	}
-
 	@Override
 	public boolean equals(Object o){
 		if(this == o) return true;
@@ -0,0 +1,39 @@
+package raven.utils;
+
+import java.util.List;
+
+/**
+ * Holds back the effects a bot has on the rest of the game while it thinks,
+ * so that bots can think at the same time without seeing each other half
+ * way through. Code that changes something shared - sends a message, fires
+ * a shot, makes a sound, asks for a path - passes the change to run. On a
+ * thread that is holding, it is added to that thread's list for the game to
+ * run later; otherwise it is run straight away.
+ */
+public class DeferredEffects {
+	private static final ThreadLocal<List<Runnable>> held = new ThreadLocal<List<Runnable>>();
+
+	/** from now on the effects run on this thread are added to the list */
+	public static void hold(List<Runnable> effects) {
+		held.set(effects);
+	}
+
+	/** effects run on this thread happen straight away again */
+	public static void stopHolding() {
+		held.remove();
+	}
+
+	public static boolean isHolding() {
+		return held.get() != null;
+	}
+
+	/** runs the effect, or keeps it for later if this thread is holding */
+	public static void run(Runnable effect) {
+		List<Runnable> effects = held.get();
+		if (effects == null) {
+			effect.run();
+		} else {
+			effects.add(effect);
+		}
+	}
+}
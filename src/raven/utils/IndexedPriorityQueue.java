@@ -59,6 +59,8 @@ public class IndexedPriorityQueue<K extends Comparable<K>> {
 			// if this node is larger than its child, swap
 			if (keys.get(heap.get(node)).compareTo(keys.get(heap.get(child))) > 0) {
 				swap(child, node);
+				
+				node = child;
 			} else {
 				break;
 			}
@@ -54,7 +54,7 @@ public class Log {
 	 * @param string the string to log
 	 * @return the string written
 	 */
-	private String write(String string) {
+	private synchronized String write(String string) {
 		String buffer = time.format(new Date()) + string + "\n";
 	
 		try {
@@ -1,5 +1,7 @@
 package raven.utils;
 
+import raven.math.RandUtils;
+
 public class Regulator {
 
 	/** updatePeriod in seconds */
@@ -15,7 +17,7 @@ public class Regulator {
 	public Regulator(double updatesPerSecondRequested) {
 		// The original implementation had it randomly wait 1 second too
 		this.updatesPerSecondRequested = updatesPerSecondRequested;
-		nextUpdateTime = Math.random();
+		nextUpdateTime = RandUtils.nextDouble();
 		itsDeltaSec = 1/updatesPerSecondRequested;
 		if (updatesPerSecondRequested > 0) {
 			updatePeriod = 1 / updatesPerSecondRequested;
@@ -49,7 +51,7 @@ public class Regulator {
 		
 		if (nextUpdateTime <= 0) {
 			// Offset is randomly between -1.0 and 1.0
-			//double offset = Math.random() * 2.0 - 1.0;
+			//double offset = RandUtils.nextDouble() * 2.0 - 1.0;
 			//nextUpdateTime = updatePeriod + offset * updatePeriodVariator;
 			nextUpdateTime = updatePeriod;
 			long thisTime = System.currentTimeMillis();
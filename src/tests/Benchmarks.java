@@ -0,0 +1,290 @@
+package tests;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import masSim.schedule.SchedulingEvent;
+import masSim.schedule.SchedulingEventCodec;
+import masSim.taems.Schedule;
+import masSim.world.Agent;
+import raven.game.VisionSystem;
+import raven.game.interfaces.IRavenBot;
+import raven.game.navigation.GraphSearchAStarTS;
+import raven.game.navigation.NavGraphEdge;
+import raven.game.navigation.NavGraphNode;
+import raven.game.navigation.PathSearchService;
+import raven.game.triggers.Trigger;
+import raven.math.CellSpacePartition;
+import raven.math.Vector2D;
+import raven.math.Wall2D;
+import raven.math.WallIntersectionTest;
+import raven.math.WallTree;
+import raven.math.graph.GraphSearchDijkstra;
+import raven.math.graph.PathCostTable;
+import raven.math.graph.SparseGraph;
+
+//Times the optimized paths against what they replaced and prints the results. Timings depend on the machine and
+//on what else it is doing, so they are kept out of the unit tests, which only check that the answers agree.
+//Run it from the root of the project, where the maps are, with the names of the benchmarks to run, or none to
+//run them all
+public class Benchmarks {
+
+	public static void main(String[] args) throws Exception
+	{
+		String[] names = args.length>0 ? args : new String[]{"codec", "merge", "pathcosts", "astar", "pathservice", "lineofsight", "vision", "contention"};
+		for(String name : names)
+		{
+			if (name.equals("codec")) Codec();
+			else if (name.equals("merge")) Merge();
+			else if (name.equals("pathcosts")) PathCosts();
+			else if (name.equals("astar")) AStar();
+			else if (name.equals("pathservice")) PathService();
+			else if (name.equals("lineofsight")) LineOfSight();
+			else if (name.equals("vision")) Vision();
+			else if (name.equals("contention")) Contention();
+			else System.out.println("No benchmark called " + name);
+		}
+	}
+
+	//Bytes allocated so far by the calling thread, or -1 where the JVM does not count them. Looked up by name, as
+	//not every JVM has the com.sun.management extension
+	private static long AllocatedBytes()
+	{
+		try
+		{
+			Class<?> bean = Class.forName("com.sun.management.ThreadMXBean");
+			Object threads = ManagementFactory.getThreadMXBean();
+			if (!bean.isInstance(threads)) return -1;
+			Method allocated = bean.getMethod("getThreadAllocatedBytes", long.class);
+			return (Long)allocated.invoke(threads, Thread.currentThread().getId());
+		}
+		catch(Exception e)
+		{
+			return -1;
+		}
+	}
+
+	//Encoding and decoding against the string format. The string format only carries the params, so it is given
+	//the advantage of leaving out the task qualities
+	private static void Codec() throws Exception
+	{
+		SchedulingEvent event = SchedulingEventCodecTests.costBroadcast();
+		int iterations = 200000;
+		long binaryBytes = 0;
+		long stringBytes = 0;
+		long binaryTime = 0;
+		long stringTime = 0;
+		for(int warmup=0; warmup<2; warmup++)
+		{
+			long start = System.nanoTime();
+			for(int i=0;i<iterations;i++)
+			{
+				byte[] payload = SchedulingEventCodec.Encode(event);
+				binaryBytes = payload.length;
+				SchedulingEventCodec.Decode(payload);
+			}
+			binaryTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			for(int i=0;i<iterations;i++)
+			{
+				byte[] payload = new SchedulingEvent(event.agentName, event.commandType, event.params.toString()).toString().getBytes("UTF-8");
+				stringBytes = payload.length;
+				SchedulingEvent.Parse(new String(payload, "UTF-8"));
+			}
+			stringTime = System.nanoTime() - start;
+		}
+		System.out.println("Binary codec " + (binaryTime/iterations) + " ns per round trip, " + binaryBytes + " bytes with qualities");
+		System.out.println("String format " + (stringTime/iterations) + " ns per round trip, " + stringBytes + " bytes without qualities");
+	}
+
+	private static void Merge()
+	{
+		int n = 20000;
+		String[] oldLabels = new String[n];
+		String[] newLabels = new String[n];
+		for(int i=0;i<n;i++)
+		{
+			oldLabels[i] = "M" + i;
+			newLabels[i] = "M" + (i + n/2);
+		}
+		Schedule old = ScheduleMergeTests.schedule(oldLabels);
+		Schedule update = ScheduleMergeTests.schedule(newLabels);
+		long start = System.nanoTime();
+		Schedule merged = old.Merge(update, new HashMap<String,String>());
+		long ms = (System.nanoTime() - start) / 1000000;
+		System.out.println("Merged schedules of " + n + " methods into " + merged.size() + " in " + ms + " ms");
+	}
+
+	private static void PathCosts()
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = PathCostTableTests.graph(1500, false, 4);
+		long start = System.nanoTime();
+		PathCostTable table = new PathCostTable(graph);
+		long tableMs = (System.nanoTime() - start) / 1000000;
+		start = System.nanoTime();
+		//What building the map of pairs spent its time on, one search per source
+		for(int source=0;source<graph.numNodes();source+=10)
+		{
+			new GraphSearchDijkstra(graph, source, -1);
+		}
+		long searchesMs = (System.nanoTime() - start) * 10 / 1000000;
+		System.out.println("Path cost table for " + graph.numNodes() + " nodes built in " + tableMs + " ms, "
+				+ (table.size() * 4 / 1024) + " KB. Searches of the map of pairs alone took about " + searchesMs + " ms");
+	}
+
+	private static void AStar() throws Exception
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = PathSearchTests.ReadNavGraph("maps/default.raven");
+		int requests = 10000;
+		int[][] pairs = PathSearchTests.Requests(graph, 42, requests);
+		//Warm up
+		for(int i=0;i<3;i++) PathSearchTests.Run(graph, pairs[0], pairs[1]);
+		long bytes = AllocatedBytes();
+		long start = System.nanoTime();
+		double total = PathSearchTests.Run(graph, pairs[0], pairs[1]);
+		long ns = System.nanoTime() - start;
+		bytes = AllocatedBytes() - bytes;
+		//Starting a search and abandoning it, as a path planner does when it is asked for another path
+		long startBytes = AllocatedBytes();
+		for(int r=0;r<requests;r++)
+		{
+			new GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>>(graph, pairs[0][r], pairs[1][r]).release();
+		}
+		startBytes = AllocatedBytes() - startBytes;
+		String allocation = startBytes<0 ? "allocation not counted by this JVM"
+				: (bytes / requests) + " bytes per request, " + (startBytes / requests) + " bytes to start one";
+		System.out.println(requests + " A* requests on " + graph.numNodes() + " nodes: " + (ns / requests) + " ns per request, "
+				+ allocation + ", total cost " + Math.round(total));
+	}
+
+	private static void PathService() throws Exception
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = PathSearchTests.ReadNavGraph("maps/default.raven");
+		int requests = 2000;
+		int[][] pairs = PathSearchTests.Requests(graph, 7, requests);
+		final int[] delivered = new int[1];
+		PathSearchService service = new PathSearchService(4, 0.01);
+		try
+		{
+			long start = System.nanoTime();
+			for(int r=0;r<requests;r++)
+			{
+				service.submit(new GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>>(graph, pairs[0][r], pairs[1][r]), new PathSearchService.Client() {
+					@Override
+					public void searchTerminated(PathSearchService.Request request) {
+						delivered[0]++;
+					}
+				});
+			}
+			while (delivered[0] < requests)
+			{
+				service.deliverFinished();
+				Thread.sleep(1);
+			}
+			double elapsedMs = (System.nanoTime() - start) / 1e6;
+			System.out.println(requests + " searches on 4 workers in " + String.format("%.1f", elapsedMs) + " ms");
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	private static void LineOfSight()
+	{
+		Random random = new Random(19);
+		List<Wall2D> walls = WallTreeTests.RandomWalls(random, 2000);
+		WallTree tree = new WallTree(walls);
+		Vector2D[] from = new Vector2D[20000];
+		Vector2D[] to = new Vector2D[from.length];
+		for(int q=0;q<from.length;q++)
+		{
+			from[q] = WallTreeTests.RandomPoint(random);
+			to[q] = from[q].add(new Vector2D(random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50));
+		}
+		//Warm up both before timing them
+		long linear = 0, treed = 0;
+		for(int round=0;round<3;round++)
+		{
+			long start = System.nanoTime();
+			for(int q=0;q<from.length;q++)
+			{
+				WallIntersectionTest.doWallsObstructLineSegment(from[q], to[q], walls);
+			}
+			linear = System.nanoTime() - start;
+			start = System.nanoTime();
+			for(int q=0;q<from.length;q++)
+			{
+				tree.obstructsSegment(from[q], to[q]);
+			}
+			treed = System.nanoTime() - start;
+		}
+		System.out.println(from.length + " line of sight tests against " + walls.size() + " walls: linear " + linear / from.length + " ns, tree " + treed / from.length + " ns each");
+	}
+
+	private static void Vision()
+	{
+		Random random = new Random(29);
+		CellSpacePartition<IRavenBot> partition = new CellSpacePartition<IRavenBot>(2000, 2000, 20, 20, 500);
+		List<StubBot> bots = VisionSystemTests.RandomBots(random, 500, 2000, partition);
+		List<IRavenBot> botList = VisionSystemTests.Bots(bots);
+		WallTree tree = new WallTree(VisionSystemTests.RandomWalls(random, 1000, 2000));
+		VisionSystem vision = new VisionSystem(400);
+		int ticks = 200;
+		long elapsed = 0;
+		for(int round=0;round<3;round++)
+		{
+			elapsed = 0;
+			for(int tick=0;tick<ticks;tick++)
+			{
+				VisionSystemTests.MoveBots(random, bots, partition);
+				long start = System.nanoTime();
+				vision.update(botList, partition, tree, 0.005);
+				elapsed += System.nanoTime() - start;
+			}
+		}
+		//What updating each bot's vision on its own cost: a line of sight test to every other bot, then a field of
+		//view test
+		long start = System.nanoTime();
+		for(StubBot bot : bots)
+		{
+			for(StubBot other : bots)
+			{
+				if (bot != other && !tree.obstructsSegment(bot.position, other.position))
+					Vector2D.isSecondInFOVOfFirst(bot.position, bot.facing, other.position, Math.PI);
+			}
+		}
+		long perBot = System.nanoTime() - start;
+		System.out.println(bots.size() + " bots: " + elapsed / ticks / 1000 + " us per vision update, "
+				+ vision.getLOSTests() / (3 * ticks) + " line of sight tests and " + vision.getLOSShared() / (3 * ticks) + " answers shared per update; "
+				+ perBot / 1000 + " us testing every pair");
+	}
+
+	//Agents scheduling their own task trees at once, with every round holding one shared monitor as every tree
+	//operation used to hold the global task lock, against each agent locking only its own tree
+	private static void Contention() throws Exception
+	{
+		List<Agent> agents = Collections.synchronizedList(new ArrayList<Agent>());
+		try
+		{
+			//Warm up both variants before timing them
+			TaskTreeContentionTests.Run(new Object(), agents);
+			TaskTreeContentionTests.Run(null, agents);
+			long shared = TaskTreeContentionTests.Run(new Object(), agents);
+			long perTree = TaskTreeContentionTests.Run(null, agents);
+			System.out.println(TaskTreeContentionTests.Agents + " agents, " + TaskTreeContentionTests.Rounds + " rounds each: shared monitor " + shared + " ms, per tree " + perTree + " ms");
+		}
+		finally
+		{
+			for(Agent agent : agents)
+			{
+				agent.Shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+import raven.game.BotUpdater;
+import raven.math.RandUtils;
+import raven.math.Vector2D;
+import raven.utils.DeferredEffects;
+
+import org.junit.Test;
+
+public class BotUpdaterTests {
+
+	//Steers towards the middle of the others with some noise, and tells the
+	//log which bots it is closest to
+	private static class Flocker extends StubBot
+	{
+		final List<Flocker> flock;
+		final List<Integer> log;
+		Vector2D move;
+
+		Flocker(int id, Vector2D position, List<Flocker> flock, List<Integer> log)
+		{
+			super(id, position, new Vector2D(1, 0));
+			this.flock = flock;
+			this.log = log;
+		}
+
+		@Override
+		public void think(double delta)
+		{
+			double x = 0, y = 0;
+			Flocker closest = null;
+			for (Flocker other : flock)
+			{
+				if (other == this) continue;
+				x += other.position.x;
+				y += other.position.y;
+				if (closest == null || position.distanceSq(other.position) < position.distanceSq(closest.position))
+					closest = other;
+			}
+			x = x / (flock.size() - 1) - position.x;
+			y = y / (flock.size() - 1) - position.y;
+			move = new Vector2D(x * delta + RandUtils.RandInRange(-1, 1), y * delta + RandUtils.nextGaussian(0, 1));
+
+			final int seen = closest.id;
+			DeferredEffects.run(new Runnable() {
+				@Override
+				public void run() {
+					log.add(id * 1000 + seen);
+				}
+			});
+		}
+
+		@Override
+		public void act(double delta)
+		{
+			position = position.add(move);
+		}
+	}
+
+	private static List<Flocker> Flock(int count, List<Integer> log)
+	{
+		List<Flocker> flock = new ArrayList<Flocker>();
+		for (int i = 0; i < count; i++)
+		{
+			flock.add(new Flocker(i, new Vector2D(i * 7 % 100, i * 13 % 100), flock, log));
+		}
+		return flock;
+	}
+
+	private static List<Flocker> Run(int threads, long seed, List<Integer> log)
+	{
+		List<Flocker> flock = Flock(60, log);
+		BotUpdater updater = new BotUpdater(threads, seed);
+		try
+		{
+			for (int tick = 0; tick < 100; tick++)
+			{
+				updater.update(flock, 0.005);
+			}
+		}
+		finally
+		{
+			updater.shutdown();
+		}
+		return flock;
+	}
+
+	@Test
+	public void ThreadsPlayOutLikeOneThread()
+	{
+		List<Integer> serialLog = new ArrayList<Integer>();
+		List<Integer> parallelLog = new ArrayList<Integer>();
+		List<Flocker> serial = Run(0, 42, serialLog);
+		List<Flocker> parallel = Run(4, 42, parallelLog);
+
+		for (int i = 0; i < serial.size(); i++)
+		{
+			Assert.assertEquals(Double.doubleToLongBits(serial.get(i).position.x), Double.doubleToLongBits(parallel.get(i).position.x));
+			Assert.assertEquals(Double.doubleToLongBits(serial.get(i).position.y), Double.doubleToLongBits(parallel.get(i).position.y));
+		}
+		Assert.assertEquals(60 * 100, serialLog.size());
+		Assert.assertEquals(serialLog, parallelLog);
+	}
+
+	@Test
+	public void OtherSeedsPlayOutOtherwise()
+	{
+		List<Flocker> first = Run(2, 1, new ArrayList<Integer>());
+		List<Flocker> second = Run(2, 2, new ArrayList<Integer>());
+		Assert.assertFalse(first.get(0).position.x == second.get(0).position.x);
+	}
+
+	@Test
+	public void BotsThinkBeforeAnyMoves()
+	{
+		//Two bots heading for each other see where the other was, not where
+		//it has just moved to
+		List<Integer> log = new ArrayList<Integer>();
+		final List<Vector2D> seen = Collections.synchronizedList(new ArrayList<Vector2D>());
+		List<Flocker> pair = new ArrayList<Flocker>();
+		for (int i = 0; i < 2; i++)
+		{
+			pair.add(new Flocker(i, new Vector2D(i * 10, 0), pair, log) {
+				@Override
+				public void think(double delta)
+				{
+					seen.add(flock.get(1 - id).position);
+					move = new Vector2D(id == 0 ? 1 : -1, 0);
+				}
+			});
+		}
+		BotUpdater updater = new BotUpdater(2, 7);
+		updater.update(pair, 1);
+		updater.shutdown();
+
+		Assert.assertEquals(2, seen.size());
+		Assert.assertTrue(seen.contains(new Vector2D(0, 0)));
+		Assert.assertTrue(seen.contains(new Vector2D(10, 0)));
+		Assert.assertEquals(1.0, pair.get(0).position.x);
+		Assert.assertEquals(9.0, pair.get(1).position.x);
+	}
+}
@@ -0,0 +1,69 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+import masSim.schedule.AgentScheduleQualities;
+import masSim.schedule.BranchAndBoundCalculator;
+import masSim.schedule.MultipleTaskScheduleQualities;
+import masSim.schedule.PlainCalculator;
+import raven.ScenarioGenerator;
+
+import org.junit.Test;
+
+public class BranchAndBoundCalculatorTests {
+
+	private void checkSameAssignment(ArrayList<AgentScheduleQualities> qualities, int numberOfTasks)
+	{
+		PlainCalculator plain = new PlainCalculator("test", qualities.size(), numberOfTasks);
+		for(AgentScheduleQualities aql : qualities)
+		{
+			plain.AddCostData(aql);
+		}
+		BranchAndBoundCalculator branchAndBound = new BranchAndBoundCalculator(plain);
+		List<List<Integer>> expected = plain.GetBestAgent();
+		List<List<Integer>> actual = branchAndBound.GetBestAgent();
+		Assert.assertEquals(expected, actual);
+	}
+
+	@Test
+	public void MatchesPlainCalculatorOnRandomScenarios()
+	{
+		ScenarioGenerator gen = new ScenarioGenerator();
+		for(int agents=1;agents<=4;agents++)
+		{
+			for(int tasks=1;tasks<=3;tasks++)
+			{
+				for(int run=0;run<5;run++)
+				{
+					checkSameAssignment(gen.CreateRamdomScheduleQualities(agents, tasks), tasks);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void MatchesPlainCalculatorWhenQualitiesTie()
+	{
+		//Every agent reports the same qualities, so the first assignment in counting order must be kept
+		ScenarioGenerator gen = new ScenarioGenerator();
+		ArrayList<AgentScheduleQualities> qualities = gen.CreateRamdomScheduleQualities(3, 3);
+		for(AgentScheduleQualities aql : qualities)
+		{
+			for(MultipleTaskScheduleQualities ql : aql.TaskQualities)
+			{
+				ql.base = 10;
+				ql.incremental = 10 + ql.TaskIds.size();
+			}
+		}
+		checkSameAssignment(qualities, 3);
+	}
+
+	@Test
+	public void ReturnsNoAssignmentWhenTasksCanNotBeCovered()
+	{
+		ScenarioGenerator gen = new ScenarioGenerator();
+		checkSameAssignment(gen.CreateRamdomScheduleQualities(2, 2), 3);
+	}
+}
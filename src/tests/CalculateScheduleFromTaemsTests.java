@@ -43,10 +43,12 @@ public class CalculateScheduleFromTaemsTests {
 		Scheduler scheduler = new Scheduler(agentMain);
 		Schedule s = scheduler.CalculateScheduleFromTaems(topLevelTask);
 		s.poll();
-		checkTaskName(s,"Visit Station A2");
+		//A2 takes longer than its deadline allows, so it is left out. The others lie on a line above the agent
+		//and are visited from the nearest up
 		checkTaskName(s,"Visit Station A1");
-		checkTaskName(s,"Visit Station A4");
 		checkTaskName(s,"Visit Station A3");
+		checkTaskName(s,"Visit Station A4");
+		checkTaskName(s,Method.FinalPoint);
 	}
 
 }
@@ -0,0 +1,184 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+import raven.math.CellSpacePartition;
+import raven.math.Locatable;
+import raven.math.Vector2D;
+
+import org.junit.Test;
+
+public class CellSpacePartitionTests {
+
+	private static class Entity implements Locatable
+	{
+		volatile Vector2D position;
+
+		Entity(double x, double y)
+		{
+			position = new Vector2D(x, y);
+		}
+
+		@Override
+		public Vector2D pos()
+		{
+			return position;
+		}
+	}
+
+	private static HashSet<Entity> BruteForce(List<Entity> entities, Vector2D pos, double radius)
+	{
+		HashSet<Entity> found = new HashSet<Entity>();
+		for(Entity e : entities)
+		{
+			if (e.pos().distanceSq(pos) < radius * radius) found.add(e);
+		}
+		return found;
+	}
+
+	private static HashSet<Entity> Query(CellSpacePartition<Entity> partition, Vector2D pos, double radius)
+	{
+		List<Entity> found = new ArrayList<Entity>();
+		partition.query(pos, radius, found);
+		HashSet<Entity> set = new HashSet<Entity>(found);
+		Assert.assertEquals("An entity was found twice", found.size(), set.size());
+		return set;
+	}
+
+	@Test
+	public void QueriesFindTheSameEntitiesAsAFullScan()
+	{
+		Random random = new Random(3);
+		CellSpacePartition<Entity> partition = new CellSpacePartition<Entity>(500, 400, 10, 8, 1000);
+		List<Entity> entities = new ArrayList<Entity>();
+		for(int i=0;i<1000;i++)
+		{
+			Entity e = new Entity(random.nextDouble() * 500, random.nextDouble() * 400);
+			entities.add(e);
+			partition.addEntity(e);
+		}
+		for(int q=0;q<200;q++)
+		{
+			Vector2D pos = new Vector2D(random.nextDouble() * 600 - 50, random.nextDouble() * 500 - 50);
+			double radius = random.nextDouble() * 120;
+			Assert.assertEquals(BruteForce(entities, pos, radius), Query(partition, pos, radius));
+		}
+	}
+
+	@Test
+	public void MovingEntitiesStayInThePartition()
+	{
+		Random random = new Random(5);
+		CellSpacePartition<Entity> partition = new CellSpacePartition<Entity>(100, 100, 10, 10, 50);
+		List<Entity> entities = new ArrayList<Entity>();
+		for(int i=0;i<50;i++)
+		{
+			Entity e = new Entity(random.nextDouble() * 100, random.nextDouble() * 100);
+			entities.add(e);
+			partition.addEntity(e);
+		}
+		for(int step=0;step<100;step++)
+		{
+			for(Entity e : entities)
+			{
+				Vector2D old = e.pos();
+				//Some entities wander off the edge of the world, and are kept in the border cells
+				e.position = new Vector2D(old.x + random.nextDouble() * 20 - 10, old.y + random.nextDouble() * 20 - 10);
+				partition.updateEntity(e, old);
+			}
+			Assert.assertEquals(50, partition.size());
+			Vector2D pos = new Vector2D(random.nextDouble() * 100, random.nextDouble() * 100);
+			Assert.assertEquals(BruteForce(entities, pos, 30), Query(partition, pos, 30));
+		}
+		Assert.assertEquals(new HashSet<Entity>(entities), Query(partition, new Vector2D(50, 50), 10000));
+	}
+
+	@Test
+	public void RemovedEntitiesAreNotFound()
+	{
+		CellSpacePartition<Entity> partition = new CellSpacePartition<Entity>(100, 100, 4, 4, 10);
+		Entity a = new Entity(10, 10);
+		Entity b = new Entity(12, 10);
+		Entity c = new Entity(14, 10);
+		partition.addEntity(a);
+		partition.addEntity(b);
+		partition.addEntity(c);
+		partition.removeEntity(b);
+		Assert.assertEquals(new HashSet<Entity>(java.util.Arrays.asList(a, c)), Query(partition, new Vector2D(12, 10), 5));
+		//The number b had is reused
+		Entity d = new Entity(90, 90);
+		partition.addEntity(d);
+		Assert.assertEquals(3, partition.size());
+		Assert.assertEquals(new HashSet<Entity>(java.util.Arrays.asList(d)), Query(partition, new Vector2D(90, 90), 5));
+		partition.calculateNeighbors(new Vector2D(10, 10), 3);
+		int neighbors = 0;
+		for(Entity e : partition)
+		{
+			Assert.assertSame(a, e);
+			neighbors++;
+		}
+		Assert.assertEquals(1, neighbors);
+	}
+
+	@Test
+	public void QueriesRunWhileEntitiesMove() throws Exception
+	{
+		final CellSpacePartition<Entity> partition = new CellSpacePartition<Entity>(200, 200, 10, 10, 200);
+		final List<Entity> entities = new ArrayList<Entity>();
+		Random random = new Random(9);
+		for(int i=0;i<200;i++)
+		{
+			Entity e = new Entity(random.nextDouble() * 200, random.nextDouble() * 200);
+			entities.add(e);
+			partition.addEntity(e);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+			for(int t=0;t<3;t++)
+			{
+				readers.add(pool.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						//Everything is within reach of the centre of the world
+						int found = 0;
+						for(int q=0;q<2000;q++)
+						{
+							List<Entity> result = new ArrayList<Entity>();
+							partition.query(new Vector2D(100, 100), 1000, result);
+							Assert.assertEquals(200, result.size());
+							found += result.size();
+						}
+						return found;
+					}
+				}));
+			}
+			Random moves = new Random(11);
+			for(int step=0;step<200;step++)
+			{
+				for(Entity e : entities)
+				{
+					e.position = new Vector2D(moves.nextDouble() * 200, moves.nextDouble() * 200);
+					partition.updateEntity(e);
+				}
+			}
+			for(Future<Integer> reader : readers)
+			{
+				Assert.assertEquals(2000 * 200, reader.get().intValue());
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package tests;
+
+import java.util.List;
+
+import junit.framework.Assert;
+import raven.game.interfaces.IRavenBot;
+import raven.game.navigation.GraphSearchAStarTS;
+import raven.game.navigation.NavGraphEdge;
+import raven.game.navigation.NavGraphNode;
+import raven.game.triggers.Trigger;
+import raven.math.Vector2D;
+import raven.math.graph.CompactGraph;
+import raven.math.graph.GraphSearchDijkstra;
+import raven.math.graph.GraphSearchStatus;
+import raven.math.graph.SparseGraph;
+
+import org.junit.Test;
+
+public class CompactGraphTests {
+
+	//A grid of nodes 10 apart, each joined to its right and lower neighbour
+	private SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> grid(int size)
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = new SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>(false);
+		for(int row=0;row<size;row++)
+		{
+			for(int column=0;column<size;column++)
+			{
+				graph.addNode(new NavGraphNode<Trigger<IRavenBot>>(graph.getNextFreeNodeIndex(), new Vector2D(column * 10, row * 10)));
+			}
+		}
+		for(int row=0;row<size;row++)
+		{
+			for(int column=0;column<size;column++)
+			{
+				int node = row * size + column;
+				if (column + 1 < size) graph.addEdge(new NavGraphEdge(node, node + 1, 10));
+				if (row + 1 < size) graph.addEdge(new NavGraphEdge(node, node + size, 10));
+			}
+		}
+		return graph;
+	}
+
+	@Test
+	public void RowsHoldTheEdgesOfEachNode()
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = grid(3);
+		CompactGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> compact = graph.compact();
+		Assert.assertEquals(graph.numNodes(), compact.numNodes());
+		Assert.assertEquals(graph.numEdges(), compact.numEdges());
+		for(int node=0;node<graph.numNodes();node++)
+		{
+			List<NavGraphEdge> edges = graph.getEdges(node);
+			Assert.assertEquals(edges.size(), compact.endEdge(node) - compact.firstEdge(node));
+			int slot = compact.firstEdge(node);
+			for(NavGraphEdge edge : edges)
+			{
+				Assert.assertEquals(edge.to(), compact.target(slot));
+				Assert.assertEquals(edge.cost(), compact.cost(slot));
+				Assert.assertSame(edge, compact.edge(slot));
+				slot++;
+			}
+			Assert.assertEquals(graph.getNode(node).pos().x, compact.x(node));
+			Assert.assertEquals(graph.getNode(node).pos().y, compact.y(node));
+		}
+	}
+
+	@Test
+	public void ChangingTheGraphRebuildsItsCompactForm()
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = grid(3);
+		CompactGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> compact = graph.compact();
+		Assert.assertSame(compact, graph.compact());
+		graph.addEdge(new NavGraphEdge(0, 8, 5));
+		Assert.assertNotSame(compact, graph.compact());
+		Assert.assertEquals(compact.numEdges() + 2, graph.compact().numEdges());
+	}
+
+	@Test
+	public void SearchesFindTheShortestPaths()
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = grid(20);
+		int target = graph.numNodes() - 1;
+		GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>> search =
+				new GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>>(graph, 0, target);
+		GraphSearchStatus status;
+		do
+		{
+			status = search.cycleOnce();
+		} while (status == GraphSearchStatus.SEARCH_INCOMPLETE);
+		Assert.assertEquals(GraphSearchStatus.TARGET_FOUND, status);
+		Assert.assertEquals(380.0, search.getCostToTarget());
+		Assert.assertEquals(39, search.getPathToTarget().size());
+		Assert.assertEquals(380.0, new GraphSearchDijkstra(graph, 0, -1).getCostToNode(target));
+	}
+}
@@ -0,0 +1,105 @@
+package tests;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+import masSim.taems.Interrelationship;
+import masSim.taems.Method;
+import masSim.world.Agent;
+import masSim.world.CompletionRegistry;
+import masSim.world.WorldState;
+
+import org.junit.Test;
+
+public class CompletionRegistryTests {
+
+	private static class CountingWaiter implements Runnable
+	{
+		final AtomicInteger runs = new AtomicInteger();
+
+		@Override
+		public void run() {
+			runs.incrementAndGet();
+		}
+	}
+
+	@Test
+	public void ReissuedLabelHasToCompleteAgain()
+	{
+		CompletionRegistry registry = new CompletionRegistry();
+		Assert.assertFalse(registry.IsCompleted("M1"));
+		Assert.assertEquals(1, registry.Issue("M1"));
+		registry.Complete("M1");
+		Assert.assertTrue(registry.IsCompleted("M1"));
+		Assert.assertEquals(2, registry.Issue("M1"));
+		Assert.assertFalse(registry.IsCompleted("M1"));
+		registry.Complete("M1");
+		Assert.assertTrue(registry.IsCompleted("M1"));
+		Assert.assertEquals(2, registry.getCompletions());
+	}
+
+	@Test
+	public void LabelsNeverIssuedCompleteInEpochZero()
+	{
+		CompletionRegistry registry = new CompletionRegistry();
+		registry.Complete("T1");
+		registry.Complete("T1");
+		Assert.assertTrue(registry.IsCompleted("T1"));
+		Assert.assertEquals(0, registry.GetEpoch("T1"));
+		Assert.assertEquals(1, registry.getCompletions());
+	}
+
+	@Test
+	public void WaitersRunOnceWhenTheirLabelCompletes()
+	{
+		CompletionRegistry registry = new CompletionRegistry();
+		CountingWaiter waiter = new CountingWaiter();
+		registry.Issue("M1");
+		registry.AwaitCompletion("M1", waiter);
+		registry.AwaitCompletion("M1", waiter);
+		registry.Complete("M2");
+		Assert.assertEquals(0, waiter.runs.get());
+		registry.Complete("M1");
+		Assert.assertEquals(1, waiter.runs.get());
+		//Already completed, so the waiter runs right away
+		registry.AwaitCompletion("M1", waiter);
+		Assert.assertEquals(2, waiter.runs.get());
+		registry.Issue("M1");
+		registry.Complete("M1");
+		Assert.assertEquals(2, waiter.runs.get());
+	}
+
+	@Test
+	public void OldEpochsAreNotKept()
+	{
+		CompletionRegistry registry = new CompletionRegistry();
+		for(int round=0;round<10000;round++)
+		{
+			for(int m=0;m<20;m++)
+			{
+				String label = "M" + m;
+				registry.Issue(label);
+				registry.Complete(label);
+			}
+		}
+		Assert.assertEquals(20, registry.size());
+		Assert.assertEquals(10000, registry.GetEpoch("M7"));
+		Assert.assertEquals(200000, registry.getCompletions());
+	}
+
+	@Test
+	public void EnablersAreCheckedAgainstTheCurrentEpoch()
+	{
+		Agent agent = new Agent("Registry1", false, 10, 10, null);
+		Method enabler = new Method("RegistryEnabler", 100, 0, 10, 10, 0, null);
+		Method enabled = new Method("RegistryEnabled", 100, 0, 20, 20, 0, null);
+		enabled.AddInterrelationship(new Interrelationship(enabler, enabled, null));
+		Assert.assertTrue(agent.AreEnablersInPlace(enabler));
+		Assert.assertFalse(agent.AreEnablersInPlace(enabled));
+		enabler.MarkCompleted();
+		Assert.assertTrue(agent.AreEnablersInPlace(enabled));
+		//Issuing the enabler again, as a recurring task would be, leaves the enabled method waiting for it again
+		WorldState.Issued(new Method("RegistryEnabler", 100, 0, 10, 10, 0, null));
+		Assert.assertFalse(agent.AreEnablersInPlace(enabled));
+	}
+}
@@ -0,0 +1,110 @@
+package tests;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+import masSim.schedule.MethodTransition;
+import masSim.schedule.Scheduler;
+import masSim.taems.ExactlyOneQAF;
+import masSim.taems.Method;
+import masSim.taems.Node;
+import masSim.taems.QAF;
+import masSim.taems.Schedule;
+import masSim.taems.ScheduleElement;
+import masSim.taems.SeqSumQAF;
+import masSim.taems.SumAllQAF;
+import masSim.taems.Task;
+import masSim.world.Agent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DijkstraAlgorithmTests {
+
+	Agent agentMain;
+	Scheduler scheduler;
+	Scheduler indexedScheduler;
+
+	//Runs the graph based scheduler with the indexed, heap based search instead of the linear scan search
+	private static class IndexedSearchScheduler extends Scheduler
+	{
+		IndexedSearchScheduler(Agent agent)
+		{
+			super(agent);
+		}
+
+		@Override
+		protected LinkedList<Method> FindPath(List<Method> nodes, List<MethodTransition> edges, Method initialMethod, Method finalMethod)
+		{
+			IndexedDijkstraAlgorithm dijkstra = new IndexedDijkstraAlgorithm(new IndexedGraph(nodes, edges));
+			dijkstra.execute(initialMethod);
+			return dijkstra.getPath(finalMethod);
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		agentMain = new Agent("Helicopter0", true, 10, 10, null);
+		scheduler = new Scheduler(agentMain);
+		indexedScheduler = new IndexedSearchScheduler(agentMain);
+	}
+
+	//Generates the same task tree for the same seed, with fresh method objects every time, because the searches
+	//update the outcomes of the methods they visit
+	private Task generateTaskTree(long seed)
+	{
+		Random random = new Random(seed);
+		Task topLevelTask = new Task("Container Task",new SumAllQAF(), agentMain);
+		int stations = 2 + random.nextInt(3);
+		for(int i=0;i<stations;i++)
+		{
+			QAF qaf;
+			int type = random.nextInt(3);
+			if (type==0) qaf = new SumAllQAF();
+			else if (type==1) qaf = new SeqSumQAF();
+			else qaf = new ExactlyOneQAF();
+			int methods = 1 + random.nextInt(2);
+			Node[] children = new Node[methods];
+			for(int j=0;j<methods;j++)
+			{
+				children[j] = new Method("Visit Station " + i + " " + j, 50 + random.nextInt(100), 0, random.nextInt(400), random.nextInt(400), 0, null);
+			}
+			topLevelTask.addTask(new Task("Station " + i, qaf, agentMain, children));
+		}
+		return topLevelTask;
+	}
+
+	private String describe(Schedule s)
+	{
+		String description = "";
+		for(Iterator<ScheduleElement> it = s.getItems(); it.hasNext(); )
+		{
+			description += " > " + it.next().getName();
+		}
+		return description + " | " + s.TotalQuality;
+	}
+
+	@Test
+	public void IndexedSearchMatchesLinearSearch()
+	{
+		for(long seed=0;seed<50;seed++)
+		{
+			Schedule linear = scheduler.CalculateScheduleFromTaemsGraph(generateTaskTree(seed));
+			Schedule indexed = indexedScheduler.CalculateScheduleFromTaemsGraph(generateTaskTree(seed));
+			Assert.assertEquals("Seed " + seed, describe(linear), describe(indexed));
+		}
+	}
+
+	@Test
+	public void IndexedSearchHandlesEmptyTaskGroup()
+	{
+		Task topLevelTask = new Task("Container Task",new SumAllQAF(), agentMain);
+		Schedule linear = scheduler.CalculateScheduleFromTaemsGraph(topLevelTask);
+		Schedule indexed = indexedScheduler.CalculateScheduleFromTaemsGraph(topLevelTask);
+		Assert.assertEquals(describe(linear), describe(indexed));
+	}
+
+}
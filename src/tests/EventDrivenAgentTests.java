@@ -0,0 +1,121 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+import masSim.schedule.ScheduleUpdateEvent;
+import masSim.schedule.SchedulingCommandType;
+import masSim.schedule.SchedulingEvent;
+import masSim.schedule.SchedulingEventListener;
+import masSim.taems.Interrelationship;
+import masSim.taems.Method;
+import masSim.taems.Schedule;
+import masSim.taems.ScheduleElement;
+import masSim.world.Agent;
+import masSim.world.MqttMessagingProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventDrivenAgentTests {
+
+	//Records the methods agents start executing, as shown to the UI
+	private static class ExecutionRecorder implements SchedulingEventListener
+	{
+		final BlockingQueue<String> executed = new LinkedBlockingQueue<String>();
+
+		@Override
+		public SchedulingEvent ProcessSchedulingEvent(SchedulingEvent event) {
+			if (event.commandType==SchedulingCommandType.DISPLAYTASKEXECUTION)
+				executed.add(event.params.AgentId + ":" + event.params.MethodId);
+			return null;
+		}
+
+		@Override
+		public String getName() {
+			return "ExecutionRecorder";
+		}
+
+		@Override
+		public boolean IsGlobalListener() {
+			return true;
+		}
+	}
+
+	ExecutionRecorder recorder;
+	MqttMessagingProvider mq;
+
+	@Before
+	public void setUp() throws Exception {
+		Agent.EventDrivenExecution = true;
+		recorder = new ExecutionRecorder();
+		mq = MqttMessagingProvider.GetMqttProvider();
+		mq.AddListener(recorder);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		mq.RemoveListener(recorder);
+	}
+
+	private Schedule schedule(Method... methods)
+	{
+		Schedule schedule = new Schedule();
+		schedule.addItem(new ScheduleElement(new Method(Method.StartingPoint, 0, 0, 0)));
+		for(Method m : methods)
+		{
+			schedule.addItem(new ScheduleElement(m));
+		}
+		schedule.addItem(new ScheduleElement(new Method(Method.FinalPoint, 0, 0, 0)));
+		return schedule;
+	}
+
+	@Test
+	public void CompletedMethodStartsTheNextOne() throws InterruptedException
+	{
+		Agent agent = new Agent("EventDriven1", false, 10, 10, null);
+		agent.run();
+		agent.HandleScheduleEvent(new ScheduleUpdateEvent(schedule(
+				new Method("EventDrivenM1", 100, 0, 50, 50, 0, null),
+				new Method("EventDrivenM2", 100, 0, 60, 60, 0, null))));
+		Assert.assertEquals("EventDriven1:EventDrivenM1", recorder.executed.poll(5, TimeUnit.SECONDS));
+		agent.MarkMethodCompleted("EventDrivenM1");
+		Assert.assertEquals("EventDriven1:EventDrivenM2", recorder.executed.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void WaitingMethodStartsWhenItsEnablerCompletes() throws InterruptedException
+	{
+		Method enabler = new Method("EventDrivenEnabler", 100, 0, 70, 70, 0, null);
+		Method enabled = new Method("EventDrivenEnabled", 100, 0, 80, 80, 0, new ArrayList<Interrelationship>());
+		enabled.AddInterrelationship(new Interrelationship(enabler, enabled, null));
+		Agent agent = new Agent("EventDriven2", false, 10, 10, null);
+		agent.run();
+		agent.HandleScheduleEvent(new ScheduleUpdateEvent(schedule(enabled)));
+		Assert.assertNull(recorder.executed.poll(200, TimeUnit.MILLISECONDS));
+		long completed = System.nanoTime();
+		enabler.MarkCompleted();
+		Assert.assertEquals("EventDriven2:EventDrivenEnabled", recorder.executed.poll(5, TimeUnit.SECONDS));
+		//Polling for enablers used to take up to a second
+		long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - completed);
+		Assert.assertTrue(latencyMs<1000);
+	}
+
+	@Test
+	public void AgentsCanBeWaitedForUntilIdle() throws InterruptedException
+	{
+		Agent agent = new Agent("EventDriven3", false, 10, 10, null);
+		long submitted = Agent.getSubmitted();
+		agent.run();
+		agent.HandleScheduleEvent(new ScheduleUpdateEvent(schedule(
+				new Method("EventDrivenM3", 100, 0, 90, 90, 0, null))));
+		Assert.assertTrue(Agent.getSubmitted() > submitted);
+		Assert.assertTrue(Agent.AwaitIdle(5000));
+		//The step that started the method has run by the time the agent is idle
+		Assert.assertEquals("EventDriven3:EventDrivenM3", recorder.executed.poll(5, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,72 @@
+package tests;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.script.ScriptEngineManager;
+
+import junit.framework.Assert;
+import raven.HeadlessRunner;
+import raven.HeadlessScenario;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class HeadlessScenarioTests {
+
+	//The game reads its parameters from params.js, which needs a JavaScript engine
+	private static void assumeScriptEngine()
+	{
+		Assume.assumeNotNull(new ScriptEngineManager().getEngineByExtension("js"));
+	}
+
+	//What the run did, without the wall clock time it took
+	private static String Outcome(String result)
+	{
+		return result.substring(0, result.lastIndexOf(','));
+	}
+
+	private static Set<Thread> StartedSince(Set<Thread> before)
+	{
+		Set<Thread> started = new HashSet<Thread>(Thread.getAllStackTraces().keySet());
+		started.removeAll(before);
+		return started;
+	}
+
+	@Test
+	public void RunsCompleteTheSameFromTheSameSeed() throws Exception
+	{
+		assumeScriptEngine();
+		String first = HeadlessRunner.isolated(2, 6, 0.005, 60).call();
+		String second = HeadlessRunner.isolated(2, 6, 0.005, 60).call();
+		Assert.assertTrue(first, first.startsWith("seed 2: completed"));
+		Assert.assertEquals(Outcome(first), Outcome(second));
+	}
+
+	@Test
+	public void ScenariosLeaveNoThreadsBehind() throws Exception
+	{
+		assumeScriptEngine();
+		//Threads left by earlier tests may end while this one runs, so only threads started here are counted
+		Set<Thread> before = Thread.getAllStackTraces().keySet();
+		for(long seed=1;seed<=3;seed++)
+		{
+			HeadlessRunner.isolated(seed, 4, 0.005, 0.5).call();
+		}
+		//Stopped pools let their threads finish on their own time
+		long deadline = System.currentTimeMillis() + 10000;
+		Set<Thread> started = StartedSince(before);
+		while (!started.isEmpty() && System.currentTimeMillis()<deadline)
+		{
+			Thread.sleep(50);
+			started = StartedSince(before);
+		}
+		Assert.assertTrue(started.toString(), started.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void SeedZeroIsRefused() throws Exception
+	{
+		new HeadlessScenario(0, 4, 0.005, 1);
+	}
+}
@@ -0,0 +1,68 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+import masSim.schedule.AgentScheduleQualities;
+import masSim.schedule.BooleanOptimizationCalculator;
+import masSim.schedule.IncrementalAssignmentSolver;
+import masSim.schedule.MultipleTaskScheduleQualities;
+import raven.ScenarioGenerator;
+
+import org.junit.Test;
+
+public class IncrementalAssignmentSolverTests {
+
+	//Qualities of the non empty task combinations, in the order both solvers number their variables
+	private List<MultipleTaskScheduleQualities> Combinations(List<AgentScheduleQualities> qualities)
+	{
+		List<MultipleTaskScheduleQualities> combinations = new ArrayList<MultipleTaskScheduleQualities>();
+		for(AgentScheduleQualities ql : qualities)
+		{
+			for(MultipleTaskScheduleQualities t : ql.TaskQualities)
+			{
+				if (!t.TaskIds.isEmpty()) combinations.add(t);
+			}
+		}
+		return combinations;
+	}
+
+	private int Objective(int[] model, List<MultipleTaskScheduleQualities> combinations)
+	{
+		int value = 0;
+		for(int lit : model)
+		{
+			if (lit>0) value += combinations.get(lit-1).diff();
+		}
+		return value;
+	}
+
+	@Test
+	public void WarmRoundsMatchFreshSolves()
+	{
+		//Enough rounds with the same structure for the reserved bound selectors to run out in the middle of one
+		ScenarioGenerator gen = new ScenarioGenerator();
+		ArrayList<AgentScheduleQualities> qualities = gen.CreateRamdomScheduleQualities(4, 3);
+		List<MultipleTaskScheduleQualities> combinations = Combinations(qualities);
+		IncrementalAssignmentSolver incremental = new IncrementalAssignmentSolver();
+		Random random = new Random(7);
+		int warmRounds = 0;
+		for(int round=0;round<400;round++)
+		{
+			for(MultipleTaskScheduleQualities t : combinations)
+			{
+				t.base = random.nextInt(100);
+				t.incremental = t.base + random.nextInt(100);
+			}
+			int[] fresh = new BooleanOptimizationCalculator("test", 4, 3).SolveOptimizationProblem(qualities);
+			int[] warm = incremental.Solve(qualities, new ArrayList<List<Integer>>());
+			if (incremental.WasLastRoundWarmStarted()) warmRounds++;
+			Assert.assertEquals(fresh==null, warm==null);
+			if (fresh==null) continue;
+			Assert.assertEquals("round " + round, Objective(fresh, combinations), Objective(warm, combinations));
+		}
+		Assert.assertTrue(warmRounds>0);
+	}
+}
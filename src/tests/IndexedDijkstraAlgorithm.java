@@ -0,0 +1,144 @@
+package tests;
+import masSim.schedule.*;
+import masSim.taems.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import raven.Main;
+import raven.math.Vector2D;
+import raven.utils.IndexedPriorityQueue;
+
+//Same search as DijkstraAlgorithm, but neighbours are taken from the adjacency arrays of an IndexedGraph and
+//the method with the highest utility is taken from an indexed binary heap rather than by scanning all
+//unsettled methods. Utilities of queued methods only ever increase, so the heap only needs to reorder upwards.
+//The final point has no outgoing transitions and is always relaxed, so it is never queued.
+//Schedules are ordered by ScheduleSolver, so this search is only a reference for the graph based scheduler, which
+//DijkstraAlgorithmTests runs it through.
+public class IndexedDijkstraAlgorithm {
+
+  private boolean debugFlag = false;
+  private final IndexedGraph graph;
+  private boolean[] settled;
+  private boolean[] queued;
+  private int[] predecessors;
+  private DijkstraDistance[] distance;
+  private List<UtilityKey> keys;
+  private IndexedPriorityQueue<UtilityKey> queue;
+  private Vector2D agentPos;
+
+  //Key of a method in the heap, which is a min queue, so the highest utility compares lowest. Ties are broken
+  //by method index, as in DijkstraAlgorithm
+  private static class UtilityKey implements Comparable<UtilityKey> {
+    private final int methodIndex;
+    private double utility;
+
+    UtilityKey(int methodIndex) {
+      this.methodIndex = methodIndex;
+    }
+
+    @Override
+    public int compareTo(UtilityKey other) {
+      if (utility > other.utility) return -1;
+      if (other.utility > utility) return 1;
+      return methodIndex < other.methodIndex ? -1 : (methodIndex > other.methodIndex ? 1 : 0);
+    }
+  }
+
+  public IndexedDijkstraAlgorithm(IndexedGraph graph) {
+    this.graph = graph;
+  }
+
+  public Graph getGraph()
+  {
+	  return this.graph;
+  }
+
+  public void execute(Method source) {
+    int n = graph.size();
+    settled = new boolean[n];
+    queued = new boolean[n];
+    predecessors = new int[n];
+    distance = new DijkstraDistance[n];
+    keys = new ArrayList<UtilityKey>(n);
+    for (int i = 0; i < n; i++) {
+      predecessors[i] = -1;
+      keys.add(new UtilityKey(graph.getMethod(i).getIndex()));
+    }
+    queue = new IndexedPriorityQueue<UtilityKey>(keys, n);
+    int start = graph.getPosition(source);
+    distance[start] = new DijkstraDistance(source.getOutcome().getQuality(), source.getOutcome().getDuration(), source.x, source.y, source.label);
+    Enqueue(start, source);
+    while (!queue.isEmpty()) {
+      int node = queue.pop();
+      queued[node] = false;
+      settled[node] = true;
+      findMaximumUtilities(node, source);
+    }
+  }
+
+  private void Enqueue(int position, Method source) {
+    DijkstraDistance d = distance[position];
+    keys.get(position).utility = d.quality - source.getPosition().distance(d.position);
+    if (queued[position]) {
+      queue.changePriority(position);
+    } else {
+      queued[position] = true;
+      queue.insert(position);
+    }
+  }
+
+  private void findMaximumUtilities(int nodePosition, Method source) {
+    Method node = graph.getMethod(nodePosition);
+    int[] adjacent = graph.getAdjacent(nodePosition);
+    for (int i = 0; i < adjacent.length; i++) {
+      int targetPosition = adjacent[i];
+      Method target = graph.getMethod(targetPosition);
+      boolean isFinal = target.label == Method.FinalPoint;
+      if (settled[targetPosition] && !isFinal) continue;
+      DijkstraDistance singleStepDistanceFromNodeToTarget = target.getPathUtilityRepresentedAsDistance(distance[nodePosition], agentPos);
+      DijkstraDistance current = distance[targetPosition];
+      if (current == null) {
+        current = new DijkstraDistance(Long.MIN_VALUE, 0, target.x, target.y, target.label);
+      }
+      if (singleStepDistanceFromNodeToTarget.HasGreaterUtility(current, node) || isFinal) {
+        Main.Message(debugFlag, "[IndexedDijkstraAlgorithm] Adding route " + node.toStringLong() + " to " + target.toStringLong() + " new:" + singleStepDistanceFromNodeToTarget.quality + " old:" + current.quality);
+        target.DijkstraSavedQualityTillThisStep = node.DijkstraSavedQualityTillThisStep + singleStepDistanceFromNodeToTarget.quality;
+        distance[targetPosition] = singleStepDistanceFromNodeToTarget;
+        PutPredecessor(targetPosition, nodePosition);
+        if (!isFinal) Enqueue(targetPosition, source);
+      }
+    }
+  }
+
+  private void PutPredecessor(int target, int node)
+  {
+	  int current = predecessors[target];
+	  if (current == -1 || graph.getMethod(node).DijkstraSavedQualityTillThisStep > graph.getMethod(current).DijkstraSavedQualityTillThisStep)
+	  {
+		  predecessors[target] = node;
+	  }
+  }
+
+  /*
+   * This method returns the path from the source to the selected target and
+   * NULL if no path exists
+   */
+  public LinkedList<Method> getPath(Method target) {
+    LinkedList<Method> path = new LinkedList<Method>();
+    int step = graph.getPosition(target);
+    if (step == -1 || predecessors[step] == -1) {
+      return null;
+    }
+    path.add(target);
+    while (predecessors[step] != -1) {
+      step = predecessors[step];
+      path.add(graph.getMethod(step));
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+}
@@ -0,0 +1,71 @@
+package tests;
+import masSim.schedule.*;
+import masSim.taems.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Graph variant which indexes its transitions once on construction, so that searches can look up the
+//neighbours of a method without scanning every transition of the graph. Methods are numbered densely in
+//the order they were added, and looked up through Method.getIndex()
+public class IndexedGraph extends Graph {
+  private final Method[] methodsByPosition;
+  private final Map<Integer, Integer> positionOfIndex;
+  private final int[][] adjacency;
+
+  public IndexedGraph(List<Method> methods, List<MethodTransition> transitions) {
+    super(methods, transitions);
+    positionOfIndex = new HashMap<Integer, Integer>();
+    List<Method> unique = new ArrayList<Method>();
+    for (Method m : methods) {
+      AddMethod(m, unique);
+    }
+    for (MethodTransition t : transitions) {
+      AddMethod(t.getSource(), unique);
+      AddMethod(t.getDestination(), unique);
+    }
+    methodsByPosition = unique.toArray(new Method[unique.size()]);
+    //Count edges per source first so that adjacency arrays can be sized exactly, keeping transition order
+    int[] degree = new int[methodsByPosition.length];
+    for (MethodTransition t : transitions) {
+      degree[getPosition(t.getSource())]++;
+    }
+    adjacency = new int[methodsByPosition.length][];
+    for (int i = 0; i < adjacency.length; i++) {
+      adjacency[i] = new int[degree[i]];
+      degree[i] = 0;
+    }
+    for (MethodTransition t : transitions) {
+      int source = getPosition(t.getSource());
+      adjacency[source][degree[source]++] = getPosition(t.getDestination());
+    }
+  }
+
+  private void AddMethod(Method m, List<Method> unique) {
+    if (!positionOfIndex.containsKey(m.getIndex())) {
+      positionOfIndex.put(m.getIndex(), unique.size());
+      unique.add(m);
+    }
+  }
+
+  public int size() {
+    return methodsByPosition.length;
+  }
+
+  //Returns the dense position of the method in this graph, or -1 if it is not part of it
+  public int getPosition(Method m) {
+    Integer position = positionOfIndex.get(m.getIndex());
+    return position == null ? -1 : position;
+  }
+
+  public Method getMethod(int position) {
+    return methodsByPosition[position];
+  }
+
+  //Positions of the destinations of all transitions leaving the method at the given position
+  public int[] getAdjacent(int position) {
+    return adjacency[position];
+  }
+}
@@ -0,0 +1,150 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+import masSim.schedule.SchedulingCommandType;
+import masSim.schedule.SchedulingEvent;
+import masSim.schedule.SchedulingEventListener;
+import masSim.schedule.SchedulingEventParams;
+import masSim.world.LocalEventBus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LocalEventBusTests {
+
+	LocalEventBus bus;
+
+	private static class RecordingListener implements SchedulingEventListener
+	{
+		private final String name;
+		private final boolean global;
+		final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+
+		RecordingListener(String name, boolean global)
+		{
+			this.name = name;
+			this.global = global;
+		}
+
+		@Override
+		public SchedulingEvent ProcessSchedulingEvent(SchedulingEvent event) {
+			received.add(event.params.MethodId);
+			return null;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public boolean IsGlobalListener() {
+			return global;
+		}
+	}
+
+	private SchedulingEvent event(String agentName, String methodId)
+	{
+		return new SchedulingEvent(agentName, SchedulingCommandType.METHODCOMPLETED, new SchedulingEventParams().AddMethodId(methodId));
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		bus = new LocalEventBus(16, 4);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		bus.Shutdown();
+	}
+
+	@Test
+	public void EventsOnlyReachAddressedAndGlobalListeners()
+	{
+		RecordingListener a = new RecordingListener("A1", false);
+		RecordingListener b = new RecordingListener("A2", false);
+		RecordingListener global = new RecordingListener("TaskIssuer", true);
+		bus.Subscribe(a);
+		bus.Subscribe(b);
+		bus.Subscribe(global);
+		bus.Subscribe(a);
+		bus.Publish(event("A1", "M1"));
+		bus.Publish(event("A3", "M2"));
+		Assert.assertTrue(bus.AwaitQuiescence(5000));
+		Assert.assertEquals("[M1]", a.received.toString());
+		Assert.assertEquals("[]", b.received.toString());
+		Assert.assertEquals("[M1, M2]", global.received.toString());
+	}
+
+	@Test
+	public void ListenerReceivesEventsInPublishedOrder()
+	{
+		RecordingListener a = new RecordingListener("A1", false);
+		bus.Subscribe(a);
+		List<String> expected = new ArrayList<String>();
+		//More events than the mailbox holds, so the publisher has to wait for the listener to catch up
+		for(int i=0;i<200;i++)
+		{
+			bus.Publish(event("A1", "M" + i));
+			expected.add("M" + i);
+		}
+		Assert.assertTrue(bus.AwaitQuiescence(5000));
+		Assert.assertEquals(expected, a.received);
+		Assert.assertEquals(200, bus.getDelivered());
+	}
+
+	@Test
+	public void PublisherDoesNotRunHandlers() throws InterruptedException
+	{
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch handled = new CountDownLatch(1);
+		SchedulingEventListener blocking = new RecordingListener("A1", false) {
+			@Override
+			public SchedulingEvent ProcessSchedulingEvent(SchedulingEvent event) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+				handled.countDown();
+				return null;
+			}
+		};
+		bus.Subscribe(blocking);
+		//Returns although the handler is still waiting
+		bus.Publish(event("A1", "M1"));
+		Assert.assertEquals(1, handled.getCount());
+		release.countDown();
+		Assert.assertTrue(handled.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void HandlersMayPublishToEachOther()
+	{
+		final RecordingListener b = new RecordingListener("A2", false);
+		RecordingListener a = new RecordingListener("A1", false) {
+			@Override
+			public SchedulingEvent ProcessSchedulingEvent(SchedulingEvent event) {
+				super.ProcessSchedulingEvent(event);
+				bus.Publish(LocalEventBusTests.this.event("A2", event.params.MethodId));
+				return null;
+			}
+		};
+		bus.Subscribe(a);
+		bus.Subscribe(b);
+		for(int i=0;i<50;i++)
+		{
+			bus.Publish(event("A1", "M" + i));
+		}
+		Assert.assertTrue(bus.AwaitQuiescence(5000));
+		Assert.assertEquals(50, a.received.size());
+		Assert.assertEquals(a.received, b.received);
+	}
+
+}
@@ -0,0 +1,194 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+import masSim.schedule.SchedulingCommandType;
+import masSim.schedule.SchedulingEvent;
+import masSim.schedule.SchedulingEventCodec;
+import masSim.schedule.SchedulingEventParams;
+import masSim.world.MqttTransport;
+import masSim.world.OutboundMessagePipeline;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OutboundMessagePipelineTests {
+
+	//Stands in for a broker on the local machine. Payloads are recorded as they are published, and acknowledged
+	//after a delay on another thread, as an asynchronous client would
+	private static class LocalBrokerStandIn implements MqttTransport
+	{
+		final List<String> published = Collections.synchronizedList(new ArrayList<String>());
+		final AtomicInteger unacknowledged = new AtomicInteger();
+		final AtomicInteger mostUnacknowledged = new AtomicInteger();
+		private final ScheduledExecutorService acknowledger = Executors.newSingleThreadScheduledExecutor();
+		private final long acknowledgeDelayMs;
+
+		LocalBrokerStandIn(long acknowledgeDelayMs)
+		{
+			this.acknowledgeDelayMs = acknowledgeDelayMs;
+		}
+
+		@Override
+		public void PublishAsync(String topic, byte[] payload, int qos, final IMqttActionListener listener) throws MqttException {
+			List<SchedulingEvent> events;
+			if (SchedulingEventCodec.IsBatch(payload)) events = SchedulingEventCodec.DecodeBatch(payload);
+			else events = Collections.singletonList(SchedulingEventCodec.Decode(payload));
+			String description = topic + "@" + qos + ":";
+			for(SchedulingEvent e : events)
+			{
+				description += " " + e.commandType + "/" + e.params.MethodId;
+			}
+			published.add(description);
+			int now = unacknowledged.incrementAndGet();
+			if (now>mostUnacknowledged.get()) mostUnacknowledged.set(now);
+			acknowledger.schedule(new Runnable() {
+				@Override
+				public void run() {
+					unacknowledged.decrementAndGet();
+					listener.onSuccess(null);
+				}
+			}, acknowledgeDelayMs, TimeUnit.MILLISECONDS);
+		}
+
+		void Shutdown()
+		{
+			acknowledger.shutdown();
+		}
+	}
+
+	LocalBrokerStandIn broker;
+	OutboundMessagePipeline pipeline;
+
+	private SchedulingEvent event(SchedulingCommandType type, String methodId)
+	{
+		return new SchedulingEvent("A1", type, new SchedulingEventParams().AddMethodId(methodId).AddXCoord(1).AddYCoord(2));
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		broker = new LocalBrokerStandIn(1);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (pipeline!=null) pipeline.Shutdown();
+		broker.Shutdown();
+	}
+
+	@Test
+	public void EventsWithinWindowAreSentAsOneBatch() throws InterruptedException
+	{
+		pipeline = new OutboundMessagePipeline(broker, 1, 1000, 64, 10);
+		pipeline.Submit("masSim/A1", event(SchedulingCommandType.METHODCOMPLETED, "M1"));
+		pipeline.Submit("masSim/A1", event(SchedulingCommandType.METHODCOMPLETED, "M1"));
+		pipeline.Submit("masSim/A1", event(SchedulingCommandType.ASSIGNTASK, "M2"));
+		Assert.assertTrue(pipeline.Flush(5000));
+		//Negotiation traffic is never coalesced, even when repeated
+		Assert.assertEquals("[masSim/A1@1: METHODCOMPLETED/M1 METHODCOMPLETED/M1 ASSIGNTASK/M2]", broker.published.toString());
+		Assert.assertEquals(1, pipeline.getBatchesPublished());
+	}
+
+	@Test
+	public void DisplayTrafficIsCoalescedAtQosZero() throws InterruptedException
+	{
+		pipeline = new OutboundMessagePipeline(broker, 1, 1000, 64, 10);
+		pipeline.Submit("masSim/UI", event(SchedulingCommandType.DISPLAYTASKEXECUTION, "M1"));
+		pipeline.Submit("masSim/UI", event(SchedulingCommandType.DISPLAYTASKEXECUTION, "M1"));
+		pipeline.Submit("masSim/UI", event(SchedulingCommandType.DISPLAYADDMETHOD, "M2"));
+		pipeline.Submit("masSim/UI", event(SchedulingCommandType.DISPLAYADDMETHOD, "M3"));
+		pipeline.Submit("masSim/UI", new SchedulingEvent("UI", SchedulingCommandType.DISPLAYREMOVEMETHOD, new SchedulingEventParams().AddMethodId("M2").AddXCoord(1).AddYCoord(2)));
+		pipeline.Submit("masSim/A1", event(SchedulingCommandType.METHODCOMPLETED, "M1"));
+		Assert.assertTrue(pipeline.Flush(5000));
+		List<String> published = new ArrayList<String>(broker.published);
+		Collections.sort(published);
+		Assert.assertEquals("[masSim/A1@1: METHODCOMPLETED/M1, masSim/UI@0: DISPLAYTASKEXECUTION/M1 DISPLAYADDMETHOD/M3]", published.toString());
+		Assert.assertEquals(3, pipeline.getEventsCoalesced());
+	}
+
+	private SchedulingEvent execution(String agentId, String methodId)
+	{
+		return new SchedulingEvent(agentId, SchedulingCommandType.DISPLAYTASKEXECUTION, new SchedulingEventParams().AddAgentId(agentId).AddMethodId(methodId).AddXCoord(1).AddYCoord(2));
+	}
+
+	@Test
+	public void WaypointRemovedLastStaysRemoved() throws InterruptedException
+	{
+		pipeline = new OutboundMessagePipeline(broker, 1, 1000, 64, 10);
+		pipeline.Submit("masSim/UI", event(SchedulingCommandType.DISPLAYREMOVEMETHOD, "M1"));
+		pipeline.Submit("masSim/UI", event(SchedulingCommandType.DISPLAYADDMETHOD, "M1"));
+		pipeline.Submit("masSim/UI", event(SchedulingCommandType.DISPLAYREMOVEMETHOD, "M1"));
+		Assert.assertTrue(pipeline.Flush(5000));
+		Assert.assertEquals("[masSim/UI@0: DISPLAYREMOVEMETHOD/M1]", broker.published.toString());
+		Assert.assertEquals(2, pipeline.getEventsCoalesced());
+	}
+
+	@Test
+	public void LatestTaskExecutionOfAnAgentIsShown() throws InterruptedException
+	{
+		pipeline = new OutboundMessagePipeline(broker, 1, 1000, 64, 10);
+		pipeline.Submit("masSim/UI", execution("A1", "M1"));
+		pipeline.Submit("masSim/UI", execution("A1", "M2"));
+		pipeline.Submit("masSim/UI", execution("A1", "M1"));
+		Assert.assertTrue(pipeline.Flush(5000));
+		Assert.assertEquals("[masSim/UI@0: DISPLAYTASKEXECUTION/M1]", broker.published.toString());
+		Assert.assertEquals(2, pipeline.getEventsCoalesced());
+	}
+
+	@Test
+	public void SupersededTaskExecutionsAreCoalescedPerAgent() throws InterruptedException
+	{
+		pipeline = new OutboundMessagePipeline(broker, 1, 1000, 64, 10);
+		pipeline.Submit("masSim/UI", execution("A1", "M1"));
+		pipeline.Submit("masSim/UI", execution("A2", "M2"));
+		pipeline.Submit("masSim/UI", execution("A1", "M3"));
+		pipeline.Submit("masSim/UI", execution("A2", "M4"));
+		pipeline.Submit("masSim/UI", execution("A3", "M5"));
+		Assert.assertTrue(pipeline.Flush(5000));
+		//Each latest update is sent where it was submitted
+		Assert.assertEquals("[masSim/UI@0: DISPLAYTASKEXECUTION/M3 DISPLAYTASKEXECUTION/M4 DISPLAYTASKEXECUTION/M5]", broker.published.toString());
+		Assert.assertEquals(2, pipeline.getEventsCoalesced());
+	}
+
+	@Test
+	public void FullBatchIsSentBeforeWindowCloses() throws InterruptedException
+	{
+		pipeline = new OutboundMessagePipeline(broker, 1, 60000, 3, 10);
+		for(int i=0;i<3;i++)
+		{
+			pipeline.Submit("masSim/A1", event(SchedulingCommandType.METHODCOMPLETED, "M" + i));
+		}
+		long deadline = System.currentTimeMillis() + 5000;
+		while (broker.published.isEmpty() && System.currentTimeMillis()<deadline)
+		{
+			Thread.sleep(1);
+		}
+		Assert.assertEquals("[masSim/A1@1: METHODCOMPLETED/M0 METHODCOMPLETED/M1 METHODCOMPLETED/M2]", broker.published.toString());
+	}
+
+	@Test
+	public void UnacknowledgedBatchesAreBounded() throws InterruptedException
+	{
+		broker.Shutdown();
+		broker = new LocalBrokerStandIn(20);
+		pipeline = new OutboundMessagePipeline(broker, 1, 1, 1, 3);
+		for(int i=0;i<30;i++)
+		{
+			pipeline.Submit("masSim/A" + i, event(SchedulingCommandType.METHODCOMPLETED, "M" + i));
+		}
+		Assert.assertTrue(pipeline.Flush(10000));
+		Assert.assertEquals(30, broker.published.size());
+		Assert.assertTrue(broker.mostUnacknowledged.get()<=3);
+		Assert.assertEquals(0, broker.unacknowledged.get());
+	}
+}
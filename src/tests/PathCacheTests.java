@@ -0,0 +1,114 @@
+package tests;
+
+import junit.framework.Assert;
+import raven.game.interfaces.IRavenBot;
+import raven.game.navigation.GraphSearchAStarTS;
+import raven.game.navigation.GraphSearchTimeSliced;
+import raven.game.navigation.NavGraphEdge;
+import raven.game.navigation.NavGraphNode;
+import raven.game.navigation.PathCache;
+import raven.game.triggers.Trigger;
+import raven.math.Vector2D;
+import raven.math.graph.GraphNode;
+import raven.math.graph.GraphSearchStatus;
+import raven.math.graph.SparseGraph;
+
+import org.junit.Test;
+
+public class PathCacheTests {
+
+	//A row of nodes ten apart along the x axis, joined both ways
+	private static SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> Row(int nodes)
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = new SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>(false);
+		for(int i=0;i<nodes;i++)
+		{
+			graph.addNode(new NavGraphNode<Trigger<IRavenBot>>(graph.getNextFreeNodeIndex(), new Vector2D(i * 10, 0)));
+		}
+		for(int i=1;i<nodes;i++)
+		{
+			graph.addEdge(new NavGraphEdge(i - 1, i, 10));
+		}
+		return graph;
+	}
+
+	private static GraphSearchTimeSliced<NavGraphEdge> Search(SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph, int source, int target)
+	{
+		GraphSearchTimeSliced<NavGraphEdge> search = new GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>>(graph, source, target);
+		while (search.cycleOnce() == GraphSearchStatus.SEARCH_INCOMPLETE);
+		return search;
+	}
+
+	@Test
+	public void KeepsTheMostRecentlyUsedPaths()
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = Row(10);
+		PathCache cache = new PathCache(graph, 2.5, 2, 16);
+		GraphSearchTimeSliced<NavGraphEdge> first = Search(graph, 0, 3);
+		cache.putPath(0, 3, first, GraphSearchStatus.TARGET_FOUND);
+		cache.putPath(0, 4, Search(graph, 0, 4), GraphSearchStatus.TARGET_FOUND);
+		//Using the first path makes the second the least recently used
+		Assert.assertSame(first, cache.getPath(0, 3));
+		cache.putPath(0, 5, Search(graph, 0, 5), GraphSearchStatus.TARGET_FOUND);
+		Assert.assertEquals(2, cache.numPaths());
+		Assert.assertNotNull(cache.getPath(0, 3));
+		Assert.assertNull(cache.getPath(0, 4));
+		Assert.assertNotNull(cache.getPath(0, 5));
+		Assert.assertNull(cache.getPath(3, 0));
+		Assert.assertEquals(30.0, cache.getPath(0, 3).getCostToTarget(), 1e-9);
+		Assert.assertEquals(4, cache.getHits());
+	}
+
+	@Test
+	public void EditingTheGraphDropsEverything()
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = Row(10);
+		PathCache cache = new PathCache(graph, 2.5);
+		cache.putPath(0, 9, Search(graph, 0, 9), GraphSearchStatus.TARGET_FOUND);
+		cache.putClosestNode(new Vector2D(11, 1), 1);
+		graph.addEdge(new NavGraphEdge(0, 9, 5));
+		Assert.assertNull(cache.getPath(0, 9));
+		Assert.assertEquals(GraphNode.INVALID_NODE_INDEX, cache.getClosestNode(new Vector2D(11, 1)));
+	}
+
+	@Test
+	public void DoorsDropOnlyWhatIsAroundThem()
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = Row(10);
+		//A node far from the row that nothing leads to
+		graph.addNode(new NavGraphNode<Trigger<IRavenBot>>(graph.getNextFreeNodeIndex(), new Vector2D(500, 500)));
+		PathCache cache = new PathCache(graph, 2.5);
+		cache.putPath(0, 2, Search(graph, 0, 2), GraphSearchStatus.TARGET_FOUND);
+		cache.putPath(6, 9, Search(graph, 6, 9), GraphSearchStatus.TARGET_FOUND);
+		cache.putPath(0, 9, Search(graph, 0, 9), GraphSearchStatus.TARGET_FOUND);
+		cache.putPath(1, 10, Search(graph, 1, 10), GraphSearchStatus.TARGET_NOT_FOUND);
+		cache.putClosestNode(new Vector2D(10, 1), 1);
+		cache.putClosestNode(new Vector2D(70, 1), 7);
+
+		//A door across the row between nodes 7 and 8
+		cache.invalidateRegion(new Vector2D(75, -5), new Vector2D(75, 5));
+		Assert.assertNotNull(cache.getPath(0, 2));
+		Assert.assertNull(cache.getPath(6, 9));
+		Assert.assertNull(cache.getPath(0, 9));
+		Assert.assertNull(cache.getPath(1, 10));
+		Assert.assertEquals(1, cache.getClosestNode(new Vector2D(11, 0.5)));
+		Assert.assertEquals(7, cache.getClosestNode(new Vector2D(70, 1)));
+		cache.invalidateRegion(new Vector2D(71, -5), new Vector2D(71, 5));
+		Assert.assertEquals(GraphNode.INVALID_NODE_INDEX, cache.getClosestNode(new Vector2D(70, 1)));
+	}
+
+	@Test
+	public void ClosestNodesAreKeptPerCell()
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = Row(10);
+		PathCache cache = new PathCache(graph, 2.5, 16, 2);
+		cache.putClosestNode(new Vector2D(10.2, 0.3), 1);
+		Assert.assertEquals(1, cache.getClosestNode(new Vector2D(12.4, 2.4)));
+		Assert.assertEquals(GraphNode.INVALID_NODE_INDEX, cache.getClosestNode(new Vector2D(12.6, 2.4)));
+		Assert.assertEquals(GraphNode.INVALID_NODE_INDEX, cache.getClosestNode(new Vector2D(-0.1, 0.3)));
+		cache.putClosestNode(new Vector2D(20, 0), 2);
+		cache.putClosestNode(new Vector2D(30, 0), 3);
+		Assert.assertEquals(2, cache.numCells());
+		Assert.assertEquals(GraphNode.INVALID_NODE_INDEX, cache.getClosestNode(new Vector2D(10.2, 0.3)));
+	}
+}
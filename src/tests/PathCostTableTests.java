@@ -0,0 +1,117 @@
+package tests;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+import raven.game.interfaces.IRavenBot;
+import raven.game.navigation.NavGraphEdge;
+import raven.game.navigation.NavGraphNode;
+import raven.game.triggers.Trigger;
+import raven.math.Vector2D;
+import raven.math.graph.PathCostTable;
+import raven.math.graph.SparseGraph;
+
+import org.junit.Test;
+
+public class PathCostTableTests {
+
+	//Nodes scattered at random, each joined to a few random others with the distance between them as cost
+	static SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph(int numNodes, boolean digraph, long seed)
+	{
+		Random random = new Random(seed);
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = new SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>(digraph);
+		for(int i=0;i<numNodes;i++)
+		{
+			graph.addNode(new NavGraphNode<Trigger<IRavenBot>>(graph.getNextFreeNodeIndex(), new Vector2D(random.nextInt(1000), random.nextInt(1000))));
+		}
+		for(int i=0;i<numNodes;i++)
+		{
+			for(int e=0;e<3;e++)
+			{
+				int to = random.nextInt(numNodes);
+				if (to == i) continue;
+				graph.addEdge(new NavGraphEdge(i, to, graph.getNode(i).pos().distance(graph.getNode(to).pos())));
+			}
+		}
+		return graph;
+	}
+
+	//Cheapest costs by plain relaxation, to check the table against without relying on either search
+	private double[] bellmanFord(SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph, int source)
+	{
+		double[] cost = new double[graph.numNodes()];
+		java.util.Arrays.fill(cost, Double.POSITIVE_INFINITY);
+		cost[source] = 0;
+		for(int round=0;round<graph.numNodes();round++)
+		{
+			boolean changed = false;
+			for(int n=0;n<graph.numNodes();n++)
+			{
+				if (cost[n] == Double.POSITIVE_INFINITY) continue;
+				for(NavGraphEdge edge : graph.getEdges(n))
+				{
+					if (cost[n] + edge.cost() < cost[edge.to()])
+					{
+						cost[edge.to()] = cost[n] + edge.cost();
+						changed = true;
+					}
+				}
+			}
+			if (!changed) break;
+		}
+		for(int n=0;n<cost.length;n++)
+		{
+			if (cost[n] == Double.POSITIVE_INFINITY) cost[n] = 0;
+		}
+		return cost;
+	}
+
+	private void assertMatches(SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph, PathCostTable table)
+	{
+		for(int source=0;source<graph.numNodes();source++)
+		{
+			double[] expected = bellmanFord(graph, source);
+			for(int target=0;target<graph.numNodes();target++)
+			{
+				Assert.assertEquals(source + " to " + target, expected[target], table.cost(source, target), expected[target] * 1e-6);
+			}
+		}
+	}
+
+	@Test
+	public void UndirectedTableIsPacked()
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = graph(120, false, 1);
+		PathCostTable table = new PathCostTable(graph.compact(), false, false, 0);
+		Assert.assertEquals(120 * 121 / 2, table.size());
+		assertMatches(graph, table);
+	}
+
+	@Test
+	public void DirectedTableHoldsEveryPair()
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = graph(80, true, 2);
+		PathCostTable table = new PathCostTable(graph.compact(), true, false, 0);
+		Assert.assertEquals(80 * 80, table.size());
+		assertMatches(graph, table);
+	}
+
+	@Test
+	public void LazyTableKeepsABoundedNumberOfRows()
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = graph(100, false, 3);
+		PathCostTable table = new PathCostTable(graph.compact(), false, true, 10);
+		Assert.assertTrue(table.isLazy());
+		Assert.assertEquals(0, table.size());
+		assertMatches(graph, table);
+		Assert.assertEquals(10 * 100, table.size());
+	}
+
+	@Test
+	public void LargeMapsGetAFullTable()
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = graph(1500, false, 4);
+		PathCostTable table = new PathCostTable(graph);
+		Assert.assertFalse(table.isLazy());
+	}
+}
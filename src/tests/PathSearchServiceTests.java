@@ -0,0 +1,134 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+import raven.game.interfaces.IRavenBot;
+import raven.game.navigation.GraphSearchAStarTS;
+import raven.game.navigation.NavGraphEdge;
+import raven.game.navigation.NavGraphNode;
+import raven.game.navigation.PathSearchService;
+import raven.game.triggers.Trigger;
+import raven.math.graph.GraphSearchStatus;
+import raven.math.graph.SparseGraph;
+
+import org.junit.Test;
+
+public class PathSearchServiceTests {
+
+	private static final int Requests = 2000;
+
+	private static GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>> NewSearch(SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph, int source, int target)
+	{
+		return new GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>>(graph, source, target);
+	}
+
+	//Records what is delivered, and on which thread
+	private static class Recorder implements PathSearchService.Client
+	{
+		final List<PathSearchService.Request> delivered = new ArrayList<PathSearchService.Request>();
+		final List<Thread> threads = new ArrayList<Thread>();
+
+		@Override
+		public void searchTerminated(PathSearchService.Request request)
+		{
+			delivered.add(request);
+			threads.add(Thread.currentThread());
+		}
+	}
+
+	private static void DeliverUntilIdle(PathSearchService service, Recorder recorder, int expected) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + 30000;
+		while (recorder.delivered.size() < expected || service.getQueueDepth() > 0)
+		{
+			service.deliverFinished();
+			Assert.assertTrue("Searches did not finish in time", System.currentTimeMillis() < deadline);
+			Thread.sleep(1);
+		}
+		service.deliverFinished();
+	}
+
+	@Test
+	public void WorkersFindTheSamePathsAsTheGameThread() throws Exception
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = PathSearchTests.ReadNavGraph("maps/default.raven");
+		Random random = new Random(7);
+		int[] sources = new int[Requests];
+		int[] targets = new int[Requests];
+		double expected = 0;
+		for(int r=0;r<Requests;r++)
+		{
+			sources[r] = random.nextInt(graph.numNodes());
+			targets[r] = random.nextInt(graph.numNodes());
+			GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>> search = NewSearch(graph, sources[r], targets[r]);
+			GraphSearchStatus status;
+			do
+			{
+				status = search.cycleOnce();
+			} while (status == GraphSearchStatus.SEARCH_INCOMPLETE);
+			if (status == GraphSearchStatus.TARGET_FOUND) expected += search.getCostToTarget();
+		}
+
+		//A slice this short makes most searches go round the queue more than once
+		PathSearchService service = new PathSearchService(4, 0.01);
+		try
+		{
+			Recorder recorder = new Recorder();
+			for(int r=0;r<Requests;r++)
+			{
+				service.submit(NewSearch(graph, sources[r], targets[r]), recorder);
+			}
+			DeliverUntilIdle(service, recorder, Requests);
+
+			Assert.assertEquals(Requests, recorder.delivered.size());
+			double total = 0;
+			for(int r=0;r<Requests;r++)
+			{
+				PathSearchService.Request request = recorder.delivered.get(r);
+				Assert.assertSame(Thread.currentThread(), recorder.threads.get(r));
+				Assert.assertTrue(request.getResult() != GraphSearchStatus.SEARCH_INCOMPLETE);
+				if (request.getResult() == GraphSearchStatus.TARGET_FOUND) total += request.getSearch().getCostToTarget();
+			}
+			Assert.assertEquals(expected, total, 1e-6);
+			Assert.assertEquals(0, service.getQueueDepth());
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void CancelledSearchesAreNotDelivered() throws Exception
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = PathSearchTests.ReadNavGraph("maps/default.raven");
+		PathSearchService service = new PathSearchService(2, 0.01);
+		try
+		{
+			Recorder recorder = new Recorder();
+			List<PathSearchService.Request> cancelled = new ArrayList<PathSearchService.Request>();
+			for(int r=0;r<200;r++)
+			{
+				PathSearchService.Request request = service.submit(NewSearch(graph, r % graph.numNodes(), graph.numNodes() - 1 - r % graph.numNodes()), recorder);
+				if (r % 2 == 0)
+				{
+					request.cancel();
+					cancelled.add(request);
+				}
+			}
+			DeliverUntilIdle(service, recorder, 100);
+			Assert.assertEquals(100, recorder.delivered.size());
+			for(PathSearchService.Request request : cancelled)
+			{
+				Assert.assertFalse(recorder.delivered.contains(request));
+			}
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+}
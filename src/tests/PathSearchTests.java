@@ -0,0 +1,123 @@
+package tests;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import junit.framework.Assert;
+import raven.game.interfaces.IRavenBot;
+import raven.game.navigation.GraphSearchAStarTS;
+import raven.game.navigation.NavGraphEdge;
+import raven.game.navigation.NavGraphNode;
+import raven.game.triggers.Trigger;
+import raven.math.Vector2D;
+import raven.math.graph.GraphSearchStatus;
+import raven.math.graph.SparseGraph;
+
+import org.junit.Test;
+
+public class PathSearchTests {
+
+	private static final int Requests = 2000;
+
+	//Reads only the nav graph of a map file. Loading the whole map needs the game script and triggers, which
+	//have nothing to do with searching
+	static SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> ReadNavGraph(String path) throws IOException, XMLStreamException
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = new SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>(false);
+		InputStream in = new FileInputStream(path);
+		try
+		{
+			XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+			double x = 0, y = 0, cost = 0;
+			int from = 0, to = 0;
+			String element = null;
+			while (reader.hasNext())
+			{
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT)
+				{
+					element = reader.getLocalName();
+				}
+				else if (event == XMLStreamConstants.CHARACTERS && element != null && !reader.isWhiteSpace())
+				{
+					String text = reader.getText().trim();
+					if (element.equals("x")) x = Double.parseDouble(text);
+					else if (element.equals("y")) y = Double.parseDouble(text);
+					else if (element.equals("from")) from = Integer.parseInt(text);
+					else if (element.equals("to")) to = Integer.parseInt(text);
+					else if (element.equals("cost")) cost = Double.parseDouble(text);
+				}
+				else if (event == XMLStreamConstants.END_ELEMENT)
+				{
+					element = null;
+					if (reader.getLocalName().equals("NavGraphNode"))
+						graph.addNode(new NavGraphNode<Trigger<IRavenBot>>(graph.getNextFreeNodeIndex(), new Vector2D(x, y)));
+					else if (reader.getLocalName().equals("NavGraphEdge"))
+						graph.addEdge(new NavGraphEdge(from, to, cost));
+				}
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		return graph;
+	}
+
+	//Runs the requests, returning the sum of the costs found so that none of the work can be skipped
+	static double Run(SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph, int[] sources, int[] targets)
+	{
+		double total = 0;
+		for(int r=0;r<sources.length;r++)
+		{
+			GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>> search =
+					new GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>>(graph, sources[r], targets[r]);
+			GraphSearchStatus status;
+			do
+			{
+				status = search.cycleOnce();
+			} while (status == GraphSearchStatus.SEARCH_INCOMPLETE);
+			if (status == GraphSearchStatus.TARGET_FOUND) total += search.getCostToTarget();
+		}
+		return total;
+	}
+
+	//Random requests between nodes of the graph, the same for the same seed
+	static int[][] Requests(SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph, long seed, int count)
+	{
+		Random random = new Random(seed);
+		int[][] requests = new int[2][count];
+		for(int r=0;r<count;r++)
+		{
+			requests[0][r] = random.nextInt(graph.numNodes());
+			requests[1][r] = random.nextInt(graph.numNodes());
+		}
+		return requests;
+	}
+
+	@Test
+	public void PooledSearchesRepeatOnDefaultMap() throws Exception
+	{
+		SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge> graph = ReadNavGraph("maps/default.raven");
+		int[][] requests = Requests(graph, 42, Requests);
+		double total = Run(graph, requests[0], requests[1]);
+		Assert.assertTrue(total > 0);
+		//Starting a search and abandoning it, as a path planner does when it is asked for another path, gives
+		//its workspace back without leaving anything behind for the searches that reuse it
+		for(int r=0;r<Requests;r++)
+		{
+			GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>> search =
+					new GraphSearchAStarTS<SparseGraph<NavGraphNode<Trigger<IRavenBot>>, NavGraphEdge>>(graph, requests[0][r], requests[1][r]);
+			if (r % 2 == 0) search.cycleOnce();
+			search.release();
+		}
+		Assert.assertEquals(total, Run(graph, requests[0], requests[1]), 1e-6);
+	}
+}
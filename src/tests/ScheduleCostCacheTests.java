@@ -0,0 +1,51 @@
+package tests;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+import masSim.schedule.ScheduleCostCache;
+import raven.math.Vector2D;
+
+import org.junit.Test;
+
+public class ScheduleCostCacheTests {
+
+	@Test
+	public void KeyIgnoresTaskOrderAndSmallMoves()
+	{
+		ScheduleCostCache cache = new ScheduleCostCache(4, 10);
+		String key = cache.Key(new Vector2D(12, 13), Arrays.asList(3, 1, 2));
+		Assert.assertEquals(key, cache.Key(new Vector2D(18, 11), Arrays.asList(1, 2, 3)));
+		Assert.assertFalse(key.equals(cache.Key(new Vector2D(22, 13), Arrays.asList(1, 2, 3))));
+	}
+
+	@Test
+	public void EvictsLeastRecentlyUsedEntry()
+	{
+		ScheduleCostCache cache = new ScheduleCostCache(2, 10);
+		Vector2D position = new Vector2D(0, 0);
+		String one = cache.Key(position, Arrays.asList(1));
+		String two = cache.Key(position, Arrays.asList(2));
+		String three = cache.Key(position, Arrays.asList(3));
+		cache.Put(one, 10);
+		cache.Put(two, 20);
+		Assert.assertEquals(Integer.valueOf(10), cache.Get(one));
+		cache.Put(three, 30);
+		Assert.assertNull(cache.Get(two));
+		Assert.assertEquals(Integer.valueOf(10), cache.Get(one));
+		Assert.assertEquals(Integer.valueOf(30), cache.Get(three));
+		Assert.assertEquals(3, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void InvalidateDropsEntriesAndChangesKeys()
+	{
+		ScheduleCostCache cache = new ScheduleCostCache(4, 10);
+		String key = cache.Key(new Vector2D(0, 0), Arrays.asList(1));
+		cache.Put(key, 10);
+		cache.Invalidate();
+		Assert.assertNull(cache.Get(key));
+		Assert.assertFalse(key.equals(cache.Key(new Vector2D(0, 0), Arrays.asList(1))));
+	}
+}
@@ -0,0 +1,92 @@
+package tests;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Assert;
+import masSim.taems.Method;
+import masSim.taems.Schedule;
+import masSim.taems.ScheduleElement;
+
+import org.junit.Test;
+
+public class ScheduleMergeTests {
+
+	static Schedule schedule(String... labels)
+	{
+		Schedule schedule = new Schedule();
+		for(String label : labels)
+		{
+			String interned = label.equals("Start") ? Method.StartingPoint : label.equals("Finish") ? Method.FinalPoint : label;
+			schedule.addItem(new ScheduleElement(new Method(interned, 0, 0, 0)));
+		}
+		return schedule;
+	}
+
+	private String labels(Schedule schedule)
+	{
+		String labels = "";
+		for(java.util.Iterator<ScheduleElement> it = schedule.getItems(); it.hasNext(); )
+		{
+			labels += it.next().getName() + " ";
+		}
+		return labels.trim();
+	}
+
+	@Test
+	public void NewElementsReplaceOldOnesAndFollowThem()
+	{
+		Schedule old = schedule("Start", "M1", "M2", "Finish");
+		Schedule merged = old.Merge(schedule("Start", "M2", "M3", "Finish"), new HashMap<String,String>());
+		Assert.assertEquals("Start M1 M2 M3 Finish", labels(merged));
+		//Start of the new schedule takes priority over the old one
+		Assert.assertNotSame(old.getItems().next(), merged.getItems().next());
+	}
+
+	@Test
+	public void CompletedMethodsAreLeftOut()
+	{
+		Map<String,String> completed = new HashMap<String,String>();
+		completed.put("M1", "M1");
+		completed.put("M3", "M3");
+		Schedule merged = schedule("Start", "M1", "M2", "Finish").Merge(schedule("Start", "M3", "M4", "Finish"), completed);
+		Assert.assertEquals("Start M2 M4 Finish", labels(merged));
+	}
+
+	@Test
+	public void StartAndEndAreKeptFromTheOldScheduleWhenMissing()
+	{
+		Schedule merged = schedule("Start", "M1", "Finish").Merge(schedule("M2"), new HashMap<String,String>());
+		Assert.assertEquals("Start M1 M2 Finish", labels(merged));
+		Assert.assertEquals("Start M2 Finish", labels(new Schedule().Merge(schedule("Start", "M2", "Finish"), new HashMap<String,String>())));
+	}
+
+	@Test
+	public void MergingLeavesBothSchedulesUnchanged()
+	{
+		Schedule old = schedule("Start", "M1", "M2", "Finish");
+		Schedule update = schedule("Start", "M2", "M3", "Finish");
+		old.Merge(update, new HashMap<String,String>());
+		Assert.assertEquals("Start M1 M2 Finish", labels(old));
+		Assert.assertEquals("Start M2 M3 Finish", labels(update));
+		Assert.assertEquals("Start M2 Finish", labels(old.Without("M1")));
+		Assert.assertEquals("Start M1 M2 Finish", labels(old));
+	}
+
+	@Test
+	public void LargeSchedulesMergeWhole()
+	{
+		int n = 20000;
+		String[] oldLabels = new String[n];
+		String[] newLabels = new String[n];
+		for(int i=0;i<n;i++)
+		{
+			oldLabels[i] = "M" + i;
+			newLabels[i] = "M" + (i + n/2);
+		}
+		Schedule old = schedule(oldLabels);
+		Schedule update = schedule(newLabels);
+		Schedule merged = old.Merge(update, new HashMap<String,String>());
+		Assert.assertEquals(n + n/2, merged.size());
+	}
+}
@@ -0,0 +1,180 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Assert;
+import masSim.schedule.ScheduleSolver;
+import masSim.schedule.Scheduler;
+import masSim.taems.DijkstraDistance;
+import masSim.taems.Method;
+import masSim.taems.Schedule;
+import masSim.taems.ScheduleElement;
+import masSim.taems.SumAllQAF;
+import masSim.taems.Task;
+import masSim.world.Agent;
+import raven.math.Vector2D;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScheduleSolverTests {
+
+	Agent agentMain;
+
+	@Before
+	public void setUp() throws Exception {
+		agentMain = new Agent("Helicopter0", true, 10, 10, null);
+	}
+
+	//Builds the same random set of stations every time it is called with the same seed, as the graph search
+	//changes the outcomes of the methods it visits
+	private Task RandomTask(long seed, int stations)
+	{
+		Random random = new Random(seed);
+		Task task = new Task("Container Task",new SumAllQAF(), agentMain);
+		for(int i=0;i<stations;i++)
+		{
+			double quality = 50 + random.nextInt(200);
+			double x = random.nextInt(300);
+			double y = random.nextInt(300);
+			task.addTask(new Task("Station " + i,new SumAllQAF(), agentMain, new Method("Visit Station " + i,quality,x,y)));
+		}
+		return task;
+	}
+
+	//Walks the methods of the schedule in order from the agent's position, with fresh copies of the methods
+	//of the given task, and adds up the quality of each step
+	private double Score(Schedule schedule, Task task)
+	{
+		Map<String,Method> methods = new HashMap<String,Method>();
+		Iterator<?> subtasks = task.getSubtasks();
+		while(subtasks.hasNext())
+		{
+			Method m = (Method)((Task)subtasks.next()).getSubtasks().next();
+			methods.put(m.label, m);
+		}
+		Vector2D position = agentMain.getPosition();
+		double duration = 0;
+		double quality = 0;
+		for(String label : Labels(schedule))
+		{
+			Method m = methods.get(label);
+			if (m==null) continue;
+			DijkstraDistance step = m.getStepUtility(position, duration);
+			quality += step.quality;
+			position = step.position;
+			duration = step.duration;
+		}
+		return quality;
+	}
+
+	private List<String> Labels(Schedule schedule)
+	{
+		List<String> labels = new ArrayList<String>();
+		Iterator<ScheduleElement> items = schedule.getItems();
+		while(items.hasNext())
+		{
+			labels.add(items.next().getName());
+		}
+		return labels;
+	}
+
+	@Test
+	public void SolverMatchesGraphOrdering()
+	{
+		for(long seed=0;seed<40;seed++)
+		{
+			int stations = 2 + (int)(seed % 4);
+			Scheduler scheduler = new Scheduler(agentMain);
+			Schedule solved = scheduler.CalculateScheduleFromTaems(RandomTask(seed, stations));
+			Schedule graph = scheduler.CalculateScheduleFromTaemsGraph(RandomTask(seed, stations));
+
+			List<String> solvedLabels = Labels(solved);
+			List<String> graphLabels = Labels(graph);
+			Assert.assertEquals(stations + 2, solvedLabels.size());
+			Assert.assertEquals(graphLabels.size(), solvedLabels.size());
+			Assert.assertEquals(Method.StartingPoint, solvedLabels.get(0));
+			Assert.assertEquals(Method.FinalPoint, solvedLabels.get(solvedLabels.size()-1));
+			Assert.assertEquals(graphLabels.get(graphLabels.size()-1), solvedLabels.get(solvedLabels.size()-1));
+
+			Task reference = RandomTask(seed, stations);
+			Assert.assertEquals("seed " + seed, Score(graph, reference), Score(solved, reference), 1e-6);
+		}
+	}
+
+	private List<Method> RandomStationsWithDeadlines(Random random, int stations)
+	{
+		List<Method> methods = new ArrayList<Method>();
+		for(int i=0;i<stations;i++)
+		{
+			int deadline = random.nextBoolean() ? 0 : 20 + random.nextInt(50);
+			methods.add(new Method("Visit Station " + i, 50 + random.nextInt(200), random.nextInt(30), random.nextInt(80), random.nextInt(80), deadline));
+		}
+		return methods;
+	}
+
+	//Walks the methods in order from the agent's position, leaving out those that would break their deadline.
+	//Returns the number kept and their quality, the number first so that keeping more always counts for more
+	private double[] Walk(List<Method> order)
+	{
+		Vector2D position = agentMain.getPosition();
+		double duration = 0;
+		double[] result = new double[2];
+		for(Method m : order)
+		{
+			DijkstraDistance step = m.getStepUtility(position, duration);
+			if (step.quality<=Long.MIN_VALUE) continue;
+			result[0]++;
+			result[1] += step.quality;
+			position = step.position;
+			duration = step.duration;
+		}
+		return result;
+	}
+
+	//The best walk over every ordering. Each ordering keeps what it can meet the deadlines of, and the best
+	//subset of stations in its best order is the walk of the ordering that starts with it
+	private double[] BestWalk(List<Method> remaining, List<Method> order)
+	{
+		if (remaining.isEmpty()) return Walk(order);
+		double[] best = null;
+		for(int i=0;i<remaining.size();i++)
+		{
+			List<Method> rest = new ArrayList<Method>(remaining);
+			order.add(rest.remove(i));
+			double[] walk = BestWalk(rest, order);
+			order.remove(order.size()-1);
+			if (best==null || walk[0]>best[0] || (walk[0]==best[0] && walk[1]>best[1])) best = walk;
+		}
+		return best;
+	}
+
+	@Test
+	public void SolverKeepsTheMostStationsThatMeetTheirDeadlines()
+	{
+		Random random = new Random(5);
+		ScheduleSolver solver = new ScheduleSolver();
+		for(int round=0;round<300;round++)
+		{
+			int stations = 2 + random.nextInt(5);
+			List<Method> methods = RandomStationsWithDeadlines(random, stations);
+			Task task = new Task("Container Task",new SumAllQAF(), agentMain);
+			for(int i=0;i<stations;i++)
+			{
+				task.addTask(new Task("Station " + i,new SumAllQAF(), agentMain, methods.get(i)));
+			}
+			List<Method> route = solver.Solve(task, agentMain.getPosition());
+			double[] solved = Walk(route);
+			double[] best = BestWalk(methods, new ArrayList<Method>());
+			//Nothing that breaks a deadline is handed out
+			Assert.assertEquals((double)route.size(), solved[0]);
+			Assert.assertEquals("round " + round, best[0], solved[0]);
+			Assert.assertEquals("round " + round, best[1], solved[1], 1e-6);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+import masSim.schedule.MultipleTaskScheduleQualities;
+import masSim.schedule.SchedulingCommandType;
+import masSim.schedule.SchedulingEvent;
+import masSim.schedule.SchedulingEventCodec;
+import masSim.schedule.SchedulingEventParams;
+import masSim.taems.SumAllQAF;
+import masSim.taems.Task;
+
+import org.junit.Test;
+
+public class SchedulingEventCodecTests {
+
+	static SchedulingEvent costBroadcast()
+	{
+		SchedulingEventParams params = new SchedulingEventParams()
+			.AddTaskName("-T1-T2-T3-")
+			.AddAgentId("A1")
+			.AddOriginatingAgent("A2");
+		SchedulingEvent event = new SchedulingEvent("A1", SchedulingCommandType.COSTBROADCAST, params);
+		event.taskQualities = new ArrayList<MultipleTaskScheduleQualities>();
+		event.taskQualities.add(new MultipleTaskScheduleQualities(Arrays.asList(1), 120, 95));
+		event.taskQualities.add(new MultipleTaskScheduleQualities(Arrays.asList(1, 2), 120, -40000));
+		event.taskQualities.add(new MultipleTaskScheduleQualities(new ArrayList<Integer>(), 0, 0));
+		return event;
+	}
+
+	private String describe(List<MultipleTaskScheduleQualities> qualities)
+	{
+		if (qualities==null) return "null";
+		String description = "";
+		for(MultipleTaskScheduleQualities q : qualities)
+		{
+			description += q.TaskIds + "=" + q.base + "/" + q.incremental + " ";
+		}
+		return description;
+	}
+
+	@Test
+	public void CostBroadcastRoundTrips()
+	{
+		SchedulingEvent event = costBroadcast();
+		SchedulingEvent decoded = SchedulingEventCodec.Decode(SchedulingEventCodec.Encode(event));
+		Assert.assertEquals(event.toString(), decoded.toString());
+		Assert.assertEquals(event.commandType, decoded.commandType);
+		Assert.assertEquals("A2", decoded.params.OriginatingAgent);
+		Assert.assertNull(decoded.params.MethodId);
+		Assert.assertEquals(describe(event.taskQualities), describe(decoded.taskQualities));
+		Assert.assertNull(decoded.taskIds);
+		Assert.assertNull(decoded.assignedTasks);
+	}
+
+	@Test
+	public void TasksAndAssignmentsRoundTripAsIds()
+	{
+		SchedulingEvent event = new SchedulingEvent("A3", SchedulingCommandType.CALCULATECOST, new SchedulingEventParams().AddAgentId("A3").AddOriginatingAgent("A1"));
+		event.tasks = new ArrayList<Task>();
+		event.tasks.add(new Task("T4", new SumAllQAF(), null));
+		event.tasks.add(new Task("T300", new SumAllQAF(), null));
+		event.assignedTasks = Arrays.asList(7, 0, 1000000);
+		SchedulingEvent decoded = SchedulingEventCodec.Decode(SchedulingEventCodec.Encode(event));
+		Assert.assertNull(decoded.tasks);
+		Assert.assertEquals(Arrays.asList(4, 300), decoded.taskIds);
+		Assert.assertEquals(event.assignedTasks, decoded.assignedTasks);
+		Assert.assertNull(decoded.taskQualities);
+	}
+
+	@Test
+	public void StringPayloadsAreNotBinary() throws Exception
+	{
+		Assert.assertFalse(SchedulingEventCodec.IsBinary("A1,NEGOTIATE,::::-T1-".getBytes("UTF-8")));
+		Assert.assertTrue(SchedulingEventCodec.IsBinary(SchedulingEventCodec.Encode(costBroadcast())));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void TruncatedPayloadIsRejected()
+	{
+		byte[] payload = SchedulingEventCodec.Encode(costBroadcast());
+		SchedulingEventCodec.Decode(Arrays.copyOf(payload, payload.length-3));
+	}
+}
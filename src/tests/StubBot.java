@@ -0,0 +1,73 @@
+package tests;
+
+import raven.game.RavenGame;
+import raven.game.RavenObject;
+import raven.game.RavenSensoryMemory;
+import raven.game.RavenSteering;
+import raven.game.RavenTargetingSystem;
+import raven.game.RavenWeaponSystem;
+import raven.game.interfaces.IRavenBot;
+import raven.goals.GoalThink;
+import raven.math.Vector2D;
+
+//Just enough of a bot for the tests that look at bots from outside: a
+//position, a facing, an id and a memory
+public class StubBot implements IRavenBot
+{
+	Vector2D position;
+	Vector2D facing;
+	final int id;
+	boolean vision = true;
+	RavenSensoryMemory memory;
+
+	public StubBot(int id, Vector2D position, Vector2D facing)
+	{
+		this.id = id;
+		this.position = position;
+		this.facing = facing;
+		memory = new RavenSensoryMemory(this, 5);
+	}
+
+	@Override public Vector2D pos() { return position; }
+	@Override public Vector2D facing() { return facing; }
+	@Override public double fieldOfView() { return Math.PI; }
+	@Override public int ID() { return id; }
+	@Override public RavenSensoryMemory getSensoryMem() { return memory; }
+	@Override public boolean usesVision() { return vision; }
+
+	@Override public boolean isAlive() { return true; }
+	@Override public boolean isReadyForTriggerUpdate() { throw new UnsupportedOperationException(); }
+	@Override public double getBRadius() { throw new UnsupportedOperationException(); }
+	@Override public void increaseHealth(int healthGiven) { throw new UnsupportedOperationException(); }
+	@Override public int health() { throw new UnsupportedOperationException(); }
+	@Override public RavenWeaponSystem getWeaponSys() { throw new UnsupportedOperationException(); }
+	@Override public RavenGame getWorld() { throw new UnsupportedOperationException(); }
+	@Override public boolean canWalkBetween(Vector2D pos, Vector2D pos2) { throw new UnsupportedOperationException(); }
+	@Override public boolean canWalkTo(Vector2D targetPos) { throw new UnsupportedOperationException(); }
+	@Override public void tag() { throw new UnsupportedOperationException(); }
+	@Override public void unTag() { throw new UnsupportedOperationException(); }
+	@Override public void changeWeapon(RavenObject weapon) { throw new UnsupportedOperationException(); }
+	@Override public boolean rotateFacingTowardPosition(Vector2D position, double delta) { throw new UnsupportedOperationException(); }
+	@Override public boolean isPossessed() { return false; }
+	@Override public void exorcise() { throw new UnsupportedOperationException(); }
+	@Override public void fireWeapon(Vector2D p) { throw new UnsupportedOperationException(); }
+	@Override public GoalThink getBrain() { throw new UnsupportedOperationException(); }
+	@Override public void takePossession() { throw new UnsupportedOperationException(); }
+	@Override public Vector2D scale() { throw new UnsupportedOperationException(); }
+	@Override public RavenSteering getSteering() { throw new UnsupportedOperationException(); }
+	@Override public void update(double delta) { think(delta); act(delta); }
+	@Override public void think(double delta) { }
+	@Override public void act(double delta) { }
+	@Override public void setSpawning() { throw new UnsupportedOperationException(); }
+	@Override public boolean isDead() { return false; }
+	@Override public boolean isSpawning() { return false; }
+	@Override public void spawn(Vector2D pos) { throw new UnsupportedOperationException(); }
+	@Override public IRavenBot getTargetBot() { throw new UnsupportedOperationException(); }
+	@Override public void render() { throw new UnsupportedOperationException(); }
+	@Override public double getMaxSpeed() { throw new UnsupportedOperationException(); }
+	@Override public Vector2D velocity() { throw new UnsupportedOperationException(); }
+	@Override public RavenObject entityType() { throw new UnsupportedOperationException(); }
+	@Override public RavenTargetingSystem getTargetSys() { throw new UnsupportedOperationException(); }
+	@Override public boolean hasLOSto(Vector2D aimingPos) { throw new UnsupportedOperationException(); }
+	@Override public Vector2D heading() { return facing; }
+}
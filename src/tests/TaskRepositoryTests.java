@@ -0,0 +1,134 @@
+package tests;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Iterator;
+
+import junit.framework.Assert;
+import masSim.taems.ExactlyOneQAF;
+import masSim.taems.Method;
+import masSim.taems.Node;
+import masSim.taems.Task;
+import masSim.world.TaskRepository;
+import masSim.world.TaskTemplateLibrary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TaskRepositoryTests {
+
+	File folder;
+
+	private static final String Descriptions = "<Taems>\n"
+			+ "<Task id=\"T1\" name=\"T1\" qaf=\"SumAll\" ><Method id=\"M1\" name=\"M1\" Quality=\"500\" Duration=\"10\" XCoord=\"445\" YCoord=\"287\"></Method></Task>\n"
+			+ "<Task id=\"T2\" name=\"T2\" qaf=\"ExactlyOne\" recurring=\"true\">"
+			+ "<Method id=\"M2\" name=\"M2\" Quality=\"300\" Duration=\"5\" XCoord=\"355\" YCoord=\"201\"/>"
+			+ "<Task id=\"T3\" name=\"T3\" qaf=\"SeqSum\"><Method id=\"M3\" name=\"M3\" Quality=\"100\" Duration=\"1\" XCoord=\"1\" YCoord=\"2\"/></Task>"
+			+ "</Task>\n"
+			+ "</Taems>";
+
+	@Before
+	public void setUp() throws Exception {
+		folder = File.createTempFile("taskrepository", "");
+		folder.delete();
+		folder.mkdirs();
+		Write(Descriptions);
+		TaskTemplateLibrary.Clear();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		TaskTemplateLibrary.Clear();
+		for(File f : folder.listFiles()) f.delete();
+		folder.delete();
+	}
+
+	private void Write(String content) throws IOException
+	{
+		FileWriter writer = new FileWriter(new File(folder, "Tasks.xml"));
+		writer.write(content);
+		writer.close();
+	}
+
+	private String describe(Node node)
+	{
+		if (!node.IsTask())
+		{
+			Method m = (Method)node;
+			return m.label + "(" + m.getOutcome().getQuality() + "," + m.getOutcome().getDuration() + "," + m.x + "," + m.y + ")";
+		}
+		Task t = (Task)node;
+		String description = t.label + ":" + t.getQAF().getClass().getSimpleName() + "[";
+		for(Iterator<Node> it = t.getSubtasks(); it.hasNext(); )
+		{
+			description += describe(it.next()) + " ";
+		}
+		return description + "]";
+	}
+
+	private TaskRepository Read()
+	{
+		TaskRepository repository = new TaskRepository(folder.getPath());
+		repository.ReadTaskDescriptions("Tasks.xml");
+		return repository;
+	}
+
+	@Test
+	public void ReadsNestedTasksAndMethods()
+	{
+		TaskRepository repository = Read();
+		Assert.assertEquals("[T1, T2]", repository.GetTaskLabels().toString());
+		Assert.assertEquals("T2:ExactlyOneQAF[M2(300.0,5.0,355.0,201.0) T3:SeqSumQAF[M3(100.0,1.0,1.0,2.0) ] ]", describe(repository.GetTask("T2")));
+		Assert.assertTrue(repository.GetTask("T2").getQAF() instanceof ExactlyOneQAF);
+		Assert.assertEquals("[M2]", java.util.Arrays.toString(repository.GetSiblingTasks("M2")));
+		Assert.assertNull(repository.GetTask("T9"));
+	}
+
+	@Test
+	public void HandsOutIndependentCopies()
+	{
+		TaskRepository repository = Read();
+		Task first = repository.GetTask("T1");
+		Task second = repository.GetTask(1);
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals(describe(first), describe(second));
+		Assert.assertNotSame(first.GetMethods().get(0), second.GetMethods().get(0));
+		//Labels are interned, so the identity comparisons made on labels elsewhere hold
+		Assert.assertSame(first.label, second.label);
+	}
+
+	@Test
+	public void RepositoriesShareOneParse()
+	{
+		Read();
+		Assert.assertTrue(TaskTemplateLibrary.SnapshotFile(new File(folder, "Tasks.xml")).exists());
+		TaskRepository repository = Read();
+		Assert.assertNotNull(repository.GetTask("T1"));
+	}
+
+	@Test
+	public void LaterRunsReadTheSnapshot() throws IOException
+	{
+		String parsed = describe(Read().GetTask("T2"));
+		TaskTemplateLibrary.Clear();
+		File file = new File(folder, "Tasks.xml");
+		Assert.assertTrue(TaskTemplateLibrary.Get(file).IsLoadedFromSnapshot());
+		TaskTemplateLibrary.Clear();
+		Assert.assertEquals(parsed, describe(Read().GetTask("T2")));
+	}
+
+	@Test
+	public void ChangedFileInvalidatesSnapshot() throws IOException
+	{
+		Read();
+		TaskTemplateLibrary.Clear();
+		File file = new File(folder, "Tasks.xml");
+		Write(Descriptions.replace("Quality=\"500\"", "Quality=\"700\""));
+		file.setLastModified(file.lastModified() + 2000);
+		TaskTemplateLibrary library = TaskTemplateLibrary.Get(file);
+		Assert.assertFalse(library.IsLoadedFromSnapshot());
+		Assert.assertEquals("T1:SumAllQAF[M1(700.0,10.0,445.0,287.0) ]", describe((Task)library.GetTemplate(1).Instantiate()));
+	}
+}
@@ -0,0 +1,139 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+import masSim.schedule.Scheduler;
+import masSim.taems.Method;
+import masSim.taems.Schedule;
+import masSim.taems.SumAllQAF;
+import masSim.taems.Task;
+import masSim.world.Agent;
+import masSim.world.MqttMessagingProvider;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TaskTreeContentionTests {
+
+	static final int Agents = 32;
+	static final int Rounds = 40;
+
+	//One agent adding tasks to its task group, scheduling a snapshot of it and cleaning up completed tasks, the
+	//way an agent's scheduler does. When a shared monitor is given, every round holds it, as every tree
+	//operation used to hold the global task lock
+	private static Callable<Integer> AgentWork(final int agentNumber, final Object sharedMonitor, final List<Agent> agents)
+	{
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				Agent agent = new Agent("Contention" + agentNumber, false, agentNumber * 10, agentNumber * 10, null);
+				agents.add(agent);
+				Scheduler scheduler = new Scheduler(agent);
+				Task taskGroup = new Task("Task Group", new SumAllQAF(), agent);
+				MqttMessagingProvider mq = MqttMessagingProvider.GetMqttProvider();
+				int scheduled = 0;
+				for(int round=0; round<Rounds; round++)
+				{
+					if (sharedMonitor!=null)
+					{
+						synchronized (sharedMonitor)
+						{
+							scheduled += Round(agent, scheduler, taskGroup, mq, round);
+						}
+					}
+					else
+					{
+						scheduled += Round(agent, scheduler, taskGroup, mq, round);
+					}
+				}
+				return scheduled;
+			}
+		};
+	}
+
+	private static int Round(Agent agent, Scheduler scheduler, Task taskGroup, MqttMessagingProvider mq, int round)
+	{
+		Task task = new Task("T" + round, new SumAllQAF(), agent, new Method[]{
+			new Method("M" + round, 100, 0, (round * 37) % 400, (round * 53) % 400, 0, null)
+		});
+		taskGroup.addTask(task);
+		//Keep a few tasks around, completing the oldest one every round
+		if (round>=4) ((Task)taskGroup.getSubtasks().next()).MarkCompleted();
+		taskGroup.Cleanup(mq);
+		Schedule schedule = scheduler.CalculateScheduleFromTaems(taskGroup.Snapshot());
+		return schedule==null ? 0 : 1;
+	}
+
+	//Runs every agent's work at once, and returns how long it took in milliseconds. The agents made are added to
+	//the given list, which must be safe to add to from several threads, for the caller to shut down
+	static long Run(Object sharedMonitor, List<Agent> agents) throws Exception
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(Agents);
+		try
+		{
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			long start = System.nanoTime();
+			for(int i=0;i<Agents;i++)
+			{
+				results.add(pool.submit(AgentWork(i, sharedMonitor, agents)));
+			}
+			for(Future<Integer> result : results)
+			{
+				Assert.assertEquals(Rounds, result.get().intValue());
+			}
+			return (System.nanoTime() - start) / 1000000;
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	private final List<Agent> agents = Collections.synchronizedList(new ArrayList<Agent>());
+
+	@After
+	public void tearDown() throws Exception {
+		for(Agent agent : agents)
+		{
+			agent.Shutdown();
+		}
+		agents.clear();
+	}
+
+	@Test
+	public void AgentsScheduleConcurrentlyWithoutSharedLock() throws Exception
+	{
+		Run(null, agents);
+		Assert.assertEquals(Agents, agents.size());
+	}
+
+	@Test
+	public void CleanupRemovesCompletedChildrenWhileIterating()
+	{
+		Task taskGroup = new Task("Task Group", new SumAllQAF(), null);
+		List<Task> tasks = new ArrayList<Task>();
+		for(int i=0;i<6;i++)
+		{
+			Task t = new Task("T" + i, new SumAllQAF(), null);
+			tasks.add(t);
+			taskGroup.addTask(t);
+		}
+		tasks.get(1).MarkCompleted();
+		tasks.get(2).MarkCompleted();
+		tasks.get(5).MarkCompleted();
+		taskGroup.Cleanup(MqttMessagingProvider.GetMqttProvider());
+		String remaining = "";
+		for(java.util.Iterator<masSim.taems.Node> it = taskGroup.getSubtasks(); it.hasNext(); )
+		{
+			remaining += it.next().getLabel() + " ";
+		}
+		Assert.assertEquals("T0 T3 T4 ", remaining);
+	}
+}
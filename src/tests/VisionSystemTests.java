@@ -0,0 +1,194 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+import raven.game.VisionSystem;
+import raven.game.interfaces.IRavenBot;
+import raven.math.CellSpacePartition;
+import raven.math.Vector2D;
+import raven.math.Wall2D;
+import raven.math.WallTree;
+
+import org.junit.Test;
+
+public class VisionSystemTests {
+
+	static List<Wall2D> RandomWalls(Random random, int count, double size)
+	{
+		List<Wall2D> walls = new ArrayList<Wall2D>();
+		for(int i=0;i<count;i++)
+		{
+			double x = random.nextDouble() * size;
+			double y = random.nextDouble() * size;
+			walls.add(new Wall2D(new Vector2D(x, y), new Vector2D(x + random.nextDouble() * 60 - 30, y + random.nextDouble() * 60 - 30)));
+		}
+		return walls;
+	}
+
+	static Vector2D RandomFacing(Random random)
+	{
+		double angle = random.nextDouble() * Math.PI * 2;
+		return new Vector2D(Math.cos(angle), Math.sin(angle));
+	}
+
+	static List<StubBot> RandomBots(Random random, int count, double size, CellSpacePartition<IRavenBot> partition)
+	{
+		List<StubBot> bots = new ArrayList<StubBot>();
+		for(int i=0;i<count;i++)
+		{
+			StubBot bot = new StubBot(i, new Vector2D(random.nextDouble() * size, random.nextDouble() * size), RandomFacing(random));
+			bots.add(bot);
+			partition.addEntity(bot);
+		}
+		return bots;
+	}
+
+	static List<IRavenBot> Bots(List<StubBot> bots)
+	{
+		List<IRavenBot> all = new ArrayList<IRavenBot>();
+		for(StubBot bot : bots) all.add(bot);
+		return all;
+	}
+
+	//Moves every bot a step along its facing, within the map, turning one in a hundred of them
+	static void MoveBots(Random random, List<StubBot> bots, CellSpacePartition<IRavenBot> partition)
+	{
+		for(StubBot bot : bots)
+		{
+			bot.position = new Vector2D(Math.max(0, Math.min(2000, bot.position.x + bot.facing.x)), Math.max(0, Math.min(2000, bot.position.y + bot.facing.y)));
+			if (random.nextInt(100) == 0) bot.facing = RandomFacing(random);
+			partition.updateEntity(bot);
+		}
+	}
+
+	@Test
+	public void SeesWhatAFullScanSees()
+	{
+		Random random = new Random(23);
+		CellSpacePartition<IRavenBot> partition = new CellSpacePartition<IRavenBot>(1000, 1000, 10, 10, 200);
+		List<StubBot> bots = RandomBots(random, 200, 1000, partition);
+		List<Wall2D> walls = RandomWalls(random, 300, 1000);
+		WallTree tree = new WallTree(walls);
+		VisionSystem vision = new VisionSystem(250);
+		vision.update(Bots(bots), partition, tree, 0.005);
+
+		int seen = 0;
+		for(StubBot a : bots)
+		{
+			for(StubBot b : bots)
+			{
+				if (a == b) continue;
+				boolean inRange = a.position.distance(b.position) < 250;
+				boolean inFOV = Vector2D.isSecondInFOVOfFirst(a.position, a.facing, b.position, Math.PI);
+				boolean clear = !tree.obstructsSegment(a.position, b.position);
+				boolean visible = inRange && inFOV && clear;
+				Assert.assertEquals(visible, a.memory.isOpponentWithinFOV(b));
+				if (visible)
+				{
+					seen++;
+					Assert.assertEquals(0.0, a.memory.getTimeSinceLastSensed(b), 1e-12);
+					Assert.assertEquals(b.position.x, a.memory.getLastRecordedPositionOfOpponent(b).x, 1e-12);
+				}
+				if (inRange && inFOV)
+				{
+					Assert.assertEquals(clear, a.memory.isOpponentShootable(b));
+				}
+			}
+		}
+		Assert.assertTrue(seen > 100);
+		//Pairs facing each other were only tested once
+		Assert.assertTrue(vision.getLOSShared() > 0);
+		Assert.assertTrue(vision.getLOSTests() < seen * 2);
+	}
+
+	@Test
+	public void OpponentsAreForgottenAfterTheMemorySpan()
+	{
+		CellSpacePartition<IRavenBot> partition = new CellSpacePartition<IRavenBot>(100, 100, 4, 4, 2);
+		StubBot watcher = new StubBot(0, new Vector2D(10, 50), new Vector2D(1, 0));
+		StubBot runner = new StubBot(1, new Vector2D(50, 50), new Vector2D(1, 0));
+		//The runner does not look back
+		runner.vision = false;
+		partition.addEntity(watcher);
+		partition.addEntity(runner);
+		List<IRavenBot> bots = new ArrayList<IRavenBot>();
+		bots.add(watcher);
+		bots.add(runner);
+		WallTree tree = new WallTree(new ArrayList<Wall2D>());
+		VisionSystem vision = new VisionSystem(1000);
+
+		for(int i=0;i<10;i++) vision.update(bots, partition, tree, 0.1);
+		Assert.assertTrue(watcher.memory.isOpponentWithinFOV(runner));
+		Assert.assertEquals(0.9, watcher.memory.getTimeOpponentHasBeenVisible(runner), 1e-9);
+		Assert.assertTrue(runner.memory.getListOfRecentlySensedOpponents().isEmpty());
+
+		//Behind the watcher it can still be shot, but is no longer seen
+		runner.position = new Vector2D(5, 50);
+		partition.updateEntity(runner);
+		for(int i=0;i<10;i++) vision.update(bots, partition, tree, 0.1);
+		Assert.assertFalse(watcher.memory.isOpponentWithinFOV(runner));
+		Assert.assertTrue(watcher.memory.isOpponentShootable(runner));
+		Assert.assertEquals(1.0, watcher.memory.getTimeOpponentHasBeenOutOfView(runner), 1e-9);
+		Assert.assertEquals(50.0, watcher.memory.getLastRecordedPositionOfOpponent(runner).x, 1e-12);
+		Assert.assertEquals(1, watcher.memory.getListOfRecentlySensedOpponents().size());
+
+		for(int i=0;i<50;i++) vision.update(bots, partition, tree, 0.1);
+		Assert.assertTrue(watcher.memory.getListOfRecentlySensedOpponents().isEmpty());
+
+		watcher.memory.removeBotFromMemory(runner);
+		Assert.assertFalse(watcher.memory.isOpponentShootable(runner));
+		Assert.assertEquals(Double.MAX_VALUE, watcher.memory.getTimeOpponentHasBeenOutOfView(runner));
+
+		//A bot without a target asks about no one
+		Assert.assertFalse(watcher.memory.isOpponentShootable(null));
+		Assert.assertFalse(watcher.memory.isOpponentWithinFOV(null));
+		Assert.assertEquals(Double.MAX_VALUE, watcher.memory.getTimeOpponentHasBeenOutOfView(null));
+	}
+
+	@Test
+	public void FiveHundredBotsMovingForTwoHundredTicks()
+	{
+		Random random = new Random(29);
+		CellSpacePartition<IRavenBot> partition = new CellSpacePartition<IRavenBot>(2000, 2000, 20, 20, 500);
+		List<StubBot> bots = RandomBots(random, 500, 2000, partition);
+		List<IRavenBot> botList = Bots(bots);
+		WallTree tree = new WallTree(RandomWalls(random, 1000, 2000));
+		VisionSystem vision = new VisionSystem(400);
+		for(int tick=0;tick<200;tick++)
+		{
+			MoveBots(random, bots, partition);
+			vision.update(botList, partition, tree, 0.005);
+		}
+		//Pairs a bot could see from where everyone ended up: in line of sight and in its field of view
+		int visible = 0;
+		for(StubBot bot : bots)
+		{
+			for(StubBot other : bots)
+			{
+				if (bot != other && !tree.obstructsSegment(bot.position, other.position)
+						&& Vector2D.isSecondInFOVOfFirst(bot.position, bot.facing, other.position, Math.PI)) visible++;
+			}
+		}
+
+		//The bots seen in the last update were close enough, in view and not behind a wall
+		int seen = 0;
+		for(StubBot bot : bots)
+		{
+			for(IRavenBot other : bot.memory.getListOfRecentlySensedOpponents())
+			{
+				Assert.assertNotSame(bot, other);
+				if (bot.memory.isOpponentWithinFOV(other))
+				{
+					seen++;
+					Assert.assertTrue(bot.position.distance(other.pos()) < 400);
+					Assert.assertTrue(Vector2D.isSecondInFOVOfFirst(bot.position, bot.facing, other.pos(), Math.PI));
+					Assert.assertFalse(tree.obstructsSegment(bot.position, other.pos()));
+				}
+			}
+		}
+		Assert.assertTrue(seen > 0 && seen <= visible);
+	}
+}
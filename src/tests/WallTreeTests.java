@@ -0,0 +1,132 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+import raven.math.Vector2D;
+import raven.math.Wall2D;
+import raven.math.WallIntersectionTest;
+import raven.math.WallTree;
+
+import org.junit.Test;
+
+public class WallTreeTests {
+
+	//Short walls scattered over a 1000 by 1000 map, like the rooms of a large map
+	static List<Wall2D> RandomWalls(Random random, int count)
+	{
+		List<Wall2D> walls = new ArrayList<Wall2D>();
+		for(int i=0;i<count;i++)
+		{
+			double x = random.nextDouble() * 1000;
+			double y = random.nextDouble() * 1000;
+			walls.add(new Wall2D(new Vector2D(x, y), new Vector2D(x + random.nextDouble() * 60 - 30, y + random.nextDouble() * 60 - 30)));
+		}
+		return walls;
+	}
+
+	static Vector2D RandomPoint(Random random)
+	{
+		return new Vector2D(random.nextDouble() * 1100 - 50, random.nextDouble() * 1100 - 50);
+	}
+
+	@Test
+	public void AnswersMatchTheLinearScan()
+	{
+		Random random = new Random(13);
+		List<Wall2D> walls = RandomWalls(random, 500);
+		WallTree tree = new WallTree(walls);
+		Assert.assertEquals(500, tree.size());
+		int obstructed = 0;
+		int intersected = 0;
+		for(int q=0;q<5000;q++)
+		{
+			Vector2D from = RandomPoint(random);
+			Vector2D to = from.add(new Vector2D(random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100));
+			boolean expected = WallIntersectionTest.doWallsObstructLineSegment(from, to, walls);
+			Assert.assertEquals(expected, WallIntersectionTest.doWallsObstructLineSegment(from, to, tree));
+			if (expected) obstructed++;
+
+			double radius = random.nextDouble() * 20;
+			expected = WallIntersectionTest.doWallsIntersectCircle(walls, from, radius);
+			Assert.assertEquals(expected, WallIntersectionTest.doWallsIntersectCircle(tree, from, radius));
+			if (expected) intersected++;
+		}
+		//Both answers came up often enough for the comparison to mean something
+		Assert.assertTrue(obstructed > 500 && obstructed < 4500);
+		Assert.assertTrue(intersected > 500 && intersected < 4500);
+	}
+
+	@Test
+	public void FindsTheClosestWallAlongARay()
+	{
+		Random random = new Random(17);
+		List<Wall2D> walls = RandomWalls(random, 300);
+		WallTree tree = new WallTree(walls);
+		for(int q=0;q<2000;q++)
+		{
+			Vector2D origin = RandomPoint(random);
+			double angle = random.nextDouble() * Math.PI * 2;
+			Vector2D heading = new Vector2D(Math.cos(angle), Math.sin(angle));
+			double maxDistance = random.nextDouble() * 400;
+
+			//Step along the ray, finding the first point past which a wall is crossed
+			double expected = Double.MAX_VALUE;
+			double step = 0.01;
+			Vector2D end = origin.add(heading.mul(maxDistance));
+			if (WallIntersectionTest.doWallsObstructLineSegment(origin, end, walls))
+			{
+				double low = 0, high = maxDistance;
+				while (high - low > step)
+				{
+					double middle = (low + high) / 2;
+					if (WallIntersectionTest.doWallsObstructLineSegment(origin, origin.add(heading.mul(middle)), walls)) high = middle;
+					else low = middle;
+				}
+				expected = high;
+			}
+			double found = tree.distanceToClosestWall(origin, heading, maxDistance);
+			if (expected == Double.MAX_VALUE)
+			{
+				Assert.assertEquals(Double.MAX_VALUE, found);
+			}
+			else
+			{
+				Assert.assertEquals(expected, found, 2 * step);
+			}
+		}
+	}
+
+	@Test
+	public void NoWallsObstructNothing()
+	{
+		WallTree tree = new WallTree(new ArrayList<Wall2D>());
+		Assert.assertFalse(tree.obstructsSegment(new Vector2D(0, 0), new Vector2D(10, 10)));
+		Assert.assertFalse(tree.intersectsCircle(new Vector2D(0, 0), 10));
+		Assert.assertEquals(Double.MAX_VALUE, tree.distanceToClosestWall(new Vector2D(0, 0), new Vector2D(1, 0), 100));
+	}
+
+	@Test
+	public void LineOfSightOnALargeMap()
+	{
+		Random random = new Random(19);
+		List<Wall2D> walls = RandomWalls(random, 2000);
+		WallTree tree = new WallTree(walls);
+		Vector2D[] from = new Vector2D[20000];
+		Vector2D[] to = new Vector2D[from.length];
+		for(int q=0;q<from.length;q++)
+		{
+			from[q] = RandomPoint(random);
+			to[q] = from[q].add(new Vector2D(random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50));
+		}
+		int linearHits = 0, treeHits = 0;
+		for(int q=0;q<from.length;q++)
+		{
+			if (WallIntersectionTest.doWallsObstructLineSegment(from[q], to[q], walls)) linearHits++;
+			if (tree.obstructsSegment(from[q], to[q])) treeHits++;
+		}
+		Assert.assertEquals(linearHits, treeHits);
+	}
+}